@@ -0,0 +1,120 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sangupta.jerry.http.HttpExecutor;
+import com.sangupta.jerry.http.HttpInvocationInterceptor;
+import com.sangupta.jerry.http.WebRequest;
+import com.sangupta.jerry.http.WebResponse;
+
+/**
+ * Benchmarks a full round-trip through {@link HttpExecutor#execute(WebRequest)}
+ * against a loopback server, with and without an invocation interceptor.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpExecutorBenchmark {
+	
+	private LoopbackServer server;
+	
+	private String url;
+	
+	private HttpExecutor plainExecutor;
+	
+	private HttpExecutor interceptedExecutor;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		this.server = new LoopbackServer();
+		this.url = this.server.getEchoUrl();
+		
+		this.plainExecutor = HttpExecutor.builder().maxConnections(64).maxConnectionsPerRoute(64).build();
+		
+		this.interceptedExecutor = HttpExecutor.builder().maxConnections(64).maxConnectionsPerRoute(64).build();
+		this.interceptedExecutor.addInvocationInterception(new PassThroughInterceptor());
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.plainExecutor.shutdown();
+		this.interceptedExecutor.shutdown();
+		this.server.stop();
+	}
+	
+	@Benchmark
+	public WebResponse execute() throws IOException {
+		return this.plainExecutor.execute(WebRequest.get(this.url)).webResponse();
+	}
+	
+	@Benchmark
+	public WebResponse executeWithInterceptor() throws IOException {
+		return this.interceptedExecutor.execute(WebRequest.get(this.url)).webResponse();
+	}
+	
+	/**
+	 * Interceptor that neither short-circuits nor changes the response, so
+	 * that only the cost of interception is measured.
+	 */
+	private static class PassThroughInterceptor implements HttpInvocationInterceptor {
+
+		@Override
+		public int getPriority() {
+			return 0;
+		}
+
+		@Override
+		public WebResponse beforeInvocation(WebRequest request) {
+			return null;
+		}
+
+		@Override
+		public WebResponse afterInvocation(WebResponse response, IOException exception) {
+			return response;
+		}
+		
+	}
+
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process HTTP server bound to an ephemeral loopback port, so that the
+ * benchmarks measure the client and not the network.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+@SuppressWarnings("restriction")
+class LoopbackServer {
+	
+	/**
+	 * Size of the body served by <code>/echo</code>
+	 */
+	static final int BODY_SIZE = 1024;
+	
+	private final HttpServer server;
+	
+	LoopbackServer() throws IOException {
+		final byte[] body = new byte[BODY_SIZE];
+		for(int index = 0; index < body.length; index++) {
+			body[index] = (byte) ('a' + (index % 26));
+		}
+		
+		// without this the JDK server is subject to the delayed-ACK stall on
+		// every response, which would dwarf the client side costs
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		this.server.createContext("/echo", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+				exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+				exchange.getResponseHeaders().add("X-Benchmark", "jerry-http");
+				exchange.sendResponseHeaders(200, body.length);
+				
+				OutputStream os = exchange.getResponseBody();
+				os.write(body);
+				os.close();
+			}
+			
+		});
+		this.server.createContext("/delay", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					Thread.sleep(Long.parseLong(exchange.getRequestURI().getQuery()));
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				
+				exchange.sendResponseHeaders(200, body.length);
+				
+				OutputStream os = exchange.getResponseBody();
+				os.write(body);
+				os.close();
+			}
+			
+		});
+		this.server.createContext("/upload", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				// drain the body as sent, without decoding it
+				long received = 0;
+				InputStream stream = exchange.getRequestBody();
+				byte[] buffer = new byte[8192];
+				int read;
+				while((read = stream.read(buffer)) != -1) {
+					received += read;
+				}
+				
+				byte[] bytes = String.valueOf(received).getBytes("UTF-8");
+				exchange.sendResponseHeaders(200, bytes.length);
+				
+				OutputStream os = exchange.getResponseBody();
+				os.write(bytes);
+				os.close();
+			}
+			
+		});
+		this.server.setExecutor(Executors.newCachedThreadPool());
+		this.server.start();
+	}
+	
+	/**
+	 * @return the URL of the <code>/echo</code> end-point
+	 */
+	String getEchoUrl() {
+		return "http://127.0.0.1:" + this.server.getAddress().getPort() + "/echo";
+	}
+	
+	/**
+	 * @param millis
+	 *            the time the server waits before responding
+	 * 
+	 * @return the URL of the <code>/delay</code> end-point
+	 */
+	String getDelayUrl(long millis) {
+		return "http://127.0.0.1:" + this.server.getAddress().getPort() + "/delay?" + millis;
+	}
+	
+	/**
+	 * @return the URL of the <code>/upload</code> end-point, that responds
+	 *         with the number of body bytes received
+	 */
+	String getUploadUrl() {
+		return "http://127.0.0.1:" + this.server.getAddress().getPort() + "/upload";
+	}
+	
+	void stop() {
+		this.server.stop(0);
+	}
+	
+}
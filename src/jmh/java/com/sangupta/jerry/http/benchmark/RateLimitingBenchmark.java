@@ -0,0 +1,157 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sangupta.jerry.http.HttpRateLimitingClient;
+import com.sangupta.jerry.http.TokenBucketRateLimiter;
+
+/**
+ * Benchmarks the rate limit admission check of {@link HttpRateLimitingClient}
+ * when many threads hit the same host. The wrapped client does no I/O, and the
+ * limit is high enough never to reject, so only the admission cost is
+ * measured.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class RateLimitingBenchmark {
+	
+	private HttpRateLimitingClient client;
+	
+	private final HttpUriRequest limitedRequest = new HttpGet("http://limited.example.com/resource");
+	
+	private final HttpUriRequest unlimitedRequest = new HttpGet("http://unlimited.example.com/resource");
+	
+	@Setup
+	public void setup() {
+		this.client = new HttpRateLimitingClient(new NoOpHttpClient(), new TokenBucketRateLimiter());
+		this.client.addRateLimiting("limited.example.com", Integer.MAX_VALUE, 1, TimeUnit.HOURS);
+	}
+	
+	@Benchmark
+	public HttpResponse limitedHost() throws IOException {
+		return this.client.execute(this.limitedRequest);
+	}
+	
+	@Benchmark
+	public HttpResponse unlimitedHost() throws IOException {
+		return this.client.execute(this.unlimitedRequest);
+	}
+	
+	/**
+	 * {@link HttpClient} that answers every request with the same response
+	 * without doing any I/O.
+	 */
+	@SuppressWarnings("deprecation")
+	private static class NoOpHttpClient implements HttpClient {
+		
+		private final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+
+		@Override
+		public HttpParams getParams() {
+			return null;
+		}
+
+		@Override
+		public ClientConnectionManager getConnectionManager() {
+			return null;
+		}
+
+		@Override
+		public HttpResponse execute(HttpUriRequest request) throws IOException, ClientProtocolException {
+			return this.response;
+		}
+
+		@Override
+		public HttpResponse execute(HttpUriRequest request, HttpContext context) throws IOException, ClientProtocolException {
+			return this.response;
+		}
+
+		@Override
+		public HttpResponse execute(HttpHost target, HttpRequest request) throws IOException, ClientProtocolException {
+			return this.response;
+		}
+
+		@Override
+		public HttpResponse execute(HttpHost target, HttpRequest request, HttpContext context) throws IOException, ClientProtocolException {
+			return this.response;
+		}
+
+		@Override
+		public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException, ClientProtocolException {
+			return responseHandler.handleResponse(this.response);
+		}
+
+		@Override
+		public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler, HttpContext context) throws IOException, ClientProtocolException {
+			return responseHandler.handleResponse(this.response);
+		}
+
+		@Override
+		public <T> T execute(HttpHost target, HttpRequest request, ResponseHandler<? extends T> responseHandler) throws IOException, ClientProtocolException {
+			return responseHandler.handleResponse(this.response);
+		}
+
+		@Override
+		public <T> T execute(HttpHost target, HttpRequest request, ResponseHandler<? extends T> responseHandler, HttpContext context) throws IOException, ClientProtocolException {
+			return responseHandler.handleResponse(this.response);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,147 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sangupta.jerry.constants.HttpMimeType;
+import com.sangupta.jerry.http.HttpExecutor;
+import com.sangupta.jerry.http.WebRequest;
+
+/**
+ * Measures the CPU cost of compressing request bodies against the bytes it
+ * saves on the wire, for telemetry-like JSON uploads to a loopback server.
+ * A <code>level</code> of <code>-2</code> sends the body uncompressed.
+ * 
+ * The bytes the server receives per upload are printed at setup. On a real
+ * link the time saved is the difference in bytes divided by its bandwidth,
+ * to be weighed against the extra time per operation measured here.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestCompressionBenchmark {
+	
+	/**
+	 * Size of the uploaded body, in bytes
+	 */
+	@Param({ "65536", "4194304" })
+	public int size;
+	
+	/**
+	 * The compression level, or <code>-2</code> for none
+	 */
+	@Param({ "-2", "1", "6" })
+	public int level;
+	
+	private LoopbackServer server;
+	
+	private String url;
+	
+	private HttpExecutor executor;
+	
+	private String body;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		this.server = new LoopbackServer();
+		this.url = this.server.getUploadUrl();
+		this.executor = HttpExecutor.builder().build();
+		this.body = createTelemetry(this.size);
+		
+		long wireBytes = this.upload();
+		System.out.println("Body of " + this.body.length() + " bytes sent as " + wireBytes + " bytes on the wire");
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.executor.shutdown();
+		this.server.stop();
+	}
+	
+	/**
+	 * Upload the body, compressed while being written when enabled.
+	 * 
+	 */
+	@Benchmark
+	public long upload() throws IOException {
+		WebRequest request = WebRequest.post(this.url);
+		if(this.level >= -1) {
+			request.compressBody(0, this.level);
+		}
+		
+		request.bodyString(this.body, HttpMimeType.JSON);
+		
+		return Long.parseLong(this.executor.execute(request).webResponse().getContent());
+	}
+	
+	/**
+	 * Create a JSON array of metric samples of about the given size, with
+	 * the repetition of keys and values typical of telemetry.
+	 * 
+	 */
+	private static String createTelemetry(int size) {
+		Random random = new Random(42);
+		StringBuilder builder = new StringBuilder(size + 256);
+		builder.append('[');
+		long timestamp = 1700000000000L;
+		while(builder.length() < size) {
+			if(builder.length() > 1) {
+				builder.append(',');
+			}
+			
+			timestamp += random.nextInt(1000);
+			builder.append("{\"timestamp\":").append(timestamp)
+				.append(",\"host\":\"web-").append(random.nextInt(16)).append(".example.com\"")
+				.append(",\"metric\":\"http.server.requests\"")
+				.append(",\"status\":").append(random.nextInt(10) == 0 ? 500 : 200)
+				.append(",\"latency\":").append(random.nextInt(250)).append('.').append(random.nextInt(100))
+				.append(",\"tags\":{\"region\":\"us-east-1\",\"service\":\"checkout\"}}");
+		}
+		
+		return builder.append(']').toString();
+	}
+	
+}
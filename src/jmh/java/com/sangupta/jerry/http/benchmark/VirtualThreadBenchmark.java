@@ -0,0 +1,173 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.sangupta.jerry.http.HttpBulkExecutor;
+import com.sangupta.jerry.http.HttpExecutor;
+import com.sangupta.jerry.http.VirtualThreads;
+import com.sangupta.jerry.http.WebRequest;
+import com.sangupta.jerry.http.WebResponse;
+
+/**
+ * Compares running blocking requests on virtual threads against the
+ * platform-thread path, for a batch of requests to a loopback server that
+ * waits a little before responding. The <code>virtual</code> runs fall back
+ * to platform threads on JVMs without virtual threads, which
+ * {@link VirtualThreads#isSupported()} reports at setup.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadBenchmark {
+	
+	/**
+	 * Number of requests in a batch
+	 */
+	private static final int BATCH = 256;
+	
+	/**
+	 * Whether to use virtual threads
+	 */
+	@Param({ "false", "true" })
+	public boolean virtual;
+	
+	/**
+	 * The time the server takes to respond, in millis
+	 */
+	@Param({ "0", "5" })
+	public long delay;
+	
+	private LoopbackServer server;
+	
+	private String url;
+	
+	private HttpExecutor executor;
+	
+	private ExecutorService platformPool;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		if(this.virtual && !VirtualThreads.isSupported()) {
+			System.out.println("Virtual threads are not supported by this JVM, measuring the fallback");
+		}
+		
+		this.server = new LoopbackServer();
+		this.url = this.delay > 0 ? this.server.getDelayUrl(this.delay) : this.server.getEchoUrl();
+		this.executor = HttpExecutor.builder().maxConnections(BATCH).maxConnectionsPerRoute(BATCH).build();
+		this.platformPool = Executors.newFixedThreadPool(BATCH);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.platformPool.shutdown();
+		this.executor.shutdown();
+		this.server.stop();
+	}
+	
+	/**
+	 * A batch of requests over {@link HttpBulkExecutor}, on a fixed pool or
+	 * on a thread per request.
+	 * 
+	 */
+	@Benchmark
+	public void bulk(Blackhole blackhole) {
+		List<WebRequest> requests = new ArrayList<>(BATCH);
+		for(int index = 0; index < BATCH; index++) {
+			requests.add(WebRequest.get(this.url));
+		}
+		
+		HttpBulkExecutor.ResultIterator iterator = new HttpBulkExecutor(this.executor).parallelism(64).maxPerHost(64).virtualThreads(this.virtual).executeAll(requests);
+		while(iterator.hasNext()) {
+			blackhole.consume(iterator.next().getResponse());
+		}
+	}
+	
+	/**
+	 * A batch of requests fanned out at once, either with
+	 * {@link HttpExecutor#submit(WebRequest)} or over a pool of platform
+	 * threads.
+	 * 
+	 */
+	@Benchmark
+	public void fanOut(Blackhole blackhole) throws InterruptedException, ExecutionException {
+		List<Future<WebResponse>> futures = new ArrayList<>(BATCH);
+		for(int index = 0; index < BATCH; index++) {
+			final WebRequest request = WebRequest.get(this.url);
+			if(this.virtual) {
+				futures.add(this.executor.submit(request));
+				continue;
+			}
+			
+			CompletableFuture<WebResponse> future = new CompletableFuture<>();
+			this.platformPool.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						future.complete(executor.execute(request).webResponse());
+					} catch(Exception e) {
+						future.completeExceptionally(e);
+					}
+				}
+				
+			});
+			futures.add(future);
+		}
+		
+		for(Future<WebResponse> future : futures) {
+			blackhole.consume(future.get());
+		}
+	}
+	
+}
@@ -0,0 +1,99 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sangupta.jerry.http.WebForm;
+import com.sangupta.jerry.http.WebRequest;
+
+/**
+ * Benchmarks the construction of {@link WebRequest} and {@link WebForm}
+ * objects, that happens on every call.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebRequestBenchmark {
+	
+	private final String url = "http://127.0.0.1:8080/benchmark/resource?query=value";
+	
+	private final String[] names = new String[16];
+	
+	@Setup
+	public void setup() {
+		for(int index = 0; index < this.names.length; index++) {
+			this.names[index] = "param" + index;
+		}
+	}
+	
+	@Benchmark
+	public WebRequest createGet() {
+		return WebRequest.get(this.url);
+	}
+	
+	@Benchmark
+	public WebRequest createConfiguredGet() {
+		return WebRequest.get(this.url)
+						 .connectTimeout(1000)
+						 .socketTimeout(1000)
+						 .followRedirects()
+						 .addHeader("X-Request-Id", "benchmark")
+						 .userAgent("jerry-http-benchmark");
+	}
+	
+	@Benchmark
+	public WebRequest createPostWithForm() {
+		return WebRequest.post(this.url).bodyForm(WebForm.newForm().addParam("name", "jerry").addParam("value", "http").build());
+	}
+	
+	@Benchmark
+	public List<NameValuePair> webFormAddParam() {
+		WebForm form = WebForm.newForm();
+		for(String name : this.names) {
+			form.addParam(name, "value");
+		}
+		
+		return form.build();
+	}
+	
+}
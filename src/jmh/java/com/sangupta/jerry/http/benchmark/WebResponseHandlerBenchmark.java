@@ -0,0 +1,94 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sangupta.jerry.http.WebResponse;
+import com.sangupta.jerry.http.WebResponseHandler;
+
+/**
+ * Benchmarks the header and body copying done by
+ * {@link WebResponseHandler#handleResponse(URI, HttpResponse, HttpContext)}
+ * over an in-memory response.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebResponseHandlerBenchmark {
+	
+	@Param({ "1024", "65536" })
+	private int bodySize;
+	
+	private final WebResponseHandler handler = new WebResponseHandler();
+	
+	private final URI uri = URI.create("http://127.0.0.1/benchmark");
+	
+	private final HttpContext context = new BasicHttpContext();
+	
+	private HttpResponse response;
+	
+	@Setup
+	public void setup() {
+		this.response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		for(int index = 0; index < 16; index++) {
+			this.response.addHeader("X-Header-" + index, "value-" + index);
+		}
+		
+		// a byte array entity is repeatable, so the same response can be handled again
+		this.response.setEntity(new ByteArrayEntity(new byte[this.bodySize], ContentType.APPLICATION_OCTET_STREAM));
+	}
+	
+	@Benchmark
+	public WebResponse handleResponse() throws IOException {
+		return this.handler.handleResponse(this.uri, this.response, this.context);
+	}
+	
+}
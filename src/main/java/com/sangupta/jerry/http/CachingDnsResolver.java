@@ -0,0 +1,535 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+
+package com.sangupta.jerry.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DnsResolver} that caches the addresses of each host name, so that
+ * new connections of the pool do not pay for a lookup each time. Set it on
+ * an executor using {@link HttpExecutor.Builder#dnsResolver(DnsResolver)}.
+ * 
+ * Resolved addresses are fresh for the TTL. Once it expires they are still
+ * served, for at most the stale period, while a background thread resolves
+ * the host again - a lookup thus only blocks a request the first time a host
+ * is seen, or after it was not used for longer than the stale period. If the
+ * background lookup fails the stale addresses keep being served until the
+ * stale period runs out. Failed lookups are cached for the negative TTL so
+ * that a missing host does not trigger a lookup per request. Concurrent
+ * lookups of a host that is not cached are collapsed into one.
+ * 
+ * When a host has more than one address, each call returns them rotated by
+ * one, so that new connections are spread over all the addresses while the
+ * client still fails over to the next ones in order.
+ * 
+ * The delegate resolver, {@link SystemDefaultDnsResolver} by default, may
+ * have a cache of its own - the JVM caches lookups for 30 seconds unless the
+ * <code>networkaddress.cache.ttl</code> security property says otherwise.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class CachingDnsResolver implements DnsResolver {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(CachingDnsResolver.class);
+	
+	/**
+	 * The default time resolved addresses are fresh, in millis
+	 */
+	public static final long DEFAULT_TTL_MILLIS = 60000;
+	
+	/**
+	 * The default time a failed lookup is cached, in millis
+	 */
+	public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 10000;
+	
+	/**
+	 * The default time expired addresses are served while being refreshed,
+	 * in millis
+	 */
+	public static final long DEFAULT_STALE_MILLIS = 600000;
+	
+	/**
+	 * The default number of host names cached
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+	
+	/**
+	 * Runs the background refreshes - lookups block in native code, thus
+	 * these are platform threads
+	 */
+	private static final ExecutorService REFRESHER = Executors.newCachedThreadPool(new DaemonThreadFactory("jerry-http-dns"));
+	
+	/**
+	 * The resolver doing the actual lookups
+	 */
+	private final DnsResolver delegate;
+	
+	private volatile long ttlNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TTL_MILLIS);
+	
+	private volatile long negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_NEGATIVE_TTL_MILLIS);
+	
+	private volatile long staleNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_STALE_MILLIS);
+	
+	private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+	
+	/**
+	 * The cached lookups by lower-cased host name
+	 */
+	private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+	
+	/**
+	 * The lookups of hosts not in the cache that are in progress
+	 */
+	private final ConcurrentMap<String, FutureTask<CacheEntry>> pending = new ConcurrentHashMap<String, FutureTask<CacheEntry>>();
+	
+	private final LongAdder hits = new LongAdder();
+	
+	private final LongAdder misses = new LongAdder();
+	
+	private final LongAdder refreshes = new LongAdder();
+	
+	/**
+	 * Create a resolver that caches the lookups of the
+	 * {@link SystemDefaultDnsResolver}.
+	 * 
+	 */
+	public CachingDnsResolver() {
+		this(SystemDefaultDnsResolver.INSTANCE);
+	}
+	
+	/**
+	 * Create a resolver that caches the lookups of the given resolver.
+	 * 
+	 * @param delegate
+	 *            the {@link DnsResolver} to do the lookups with
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if delegate is <code>null</code>
+	 */
+	public CachingDnsResolver(DnsResolver delegate) {
+		if(delegate == null) {
+			throw new IllegalArgumentException("DnsResolver cannot be null");
+		}
+		
+		this.delegate = delegate;
+	}
+	
+	/**
+	 * Set the time resolved addresses are fresh.
+	 * 
+	 * @param ttl
+	 *            the time to live
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the time
+	 * 
+	 * @return this very {@link CachingDnsResolver}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if ttl is negative or time unit is <code>null</code>
+	 */
+	public CachingDnsResolver ttl(long ttl, TimeUnit timeUnit) {
+		this.ttlNanos = toNanos(ttl, timeUnit, "TTL");
+		return this;
+	}
+	
+	/**
+	 * Set the time a failed lookup is cached. Zero disables negative
+	 * caching.
+	 * 
+	 * @param ttl
+	 *            the time to live
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the time
+	 * 
+	 * @return this very {@link CachingDnsResolver}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if ttl is negative or time unit is <code>null</code>
+	 */
+	public CachingDnsResolver negativeTtl(long ttl, TimeUnit timeUnit) {
+		this.negativeTtlNanos = toNanos(ttl, timeUnit, "Negative TTL");
+		return this;
+	}
+	
+	/**
+	 * Set the time expired addresses are still served while they are
+	 * refreshed in the background. Zero makes every lookup after the TTL
+	 * block the request.
+	 * 
+	 * @param stale
+	 *            the stale period
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the period
+	 * 
+	 * @return this very {@link CachingDnsResolver}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if stale is negative or time unit is <code>null</code>
+	 */
+	public CachingDnsResolver staleWhileRefresh(long stale, TimeUnit timeUnit) {
+		this.staleNanos = toNanos(stale, timeUnit, "Stale period");
+		return this;
+	}
+	
+	/**
+	 * Set the number of host names cached. Once full, expired entries are
+	 * dropped first.
+	 * 
+	 * @param maxEntries
+	 *            the number of host names
+	 * 
+	 * @return this very {@link CachingDnsResolver}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if max entries is not positive
+	 */
+	public CachingDnsResolver maxEntries(int maxEntries) {
+		if(maxEntries <= 0) {
+			throw new IllegalArgumentException("Max entries must be positive");
+		}
+		
+		this.maxEntries = maxEntries;
+		return this;
+	}
+	
+	private static long toNanos(long value, TimeUnit timeUnit, String name) {
+		if(value < 0) {
+			throw new IllegalArgumentException(name + " cannot be negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		return timeUnit.toNanos(value);
+	}
+	
+	@Override
+	public InetAddress[] resolve(String host) throws UnknownHostException {
+		if(host == null) {
+			throw new UnknownHostException("Host name cannot be null");
+		}
+		
+		String key = host.toLowerCase(Locale.ROOT);
+		long now = System.nanoTime();
+		
+		CacheEntry entry = this.cache.get(key);
+		if(entry != null) {
+			long age = now - entry.resolvedAt;
+			if(entry.addresses == null) {
+				if(age < this.negativeTtlNanos) {
+					this.hits.increment();
+					throw entry.newError(host);
+				}
+			} else if(age < this.ttlNanos) {
+				this.hits.increment();
+				return entry.rotate();
+			} else if(age < this.ttlNanos + this.staleNanos) {
+				this.hits.increment();
+				this.refresh(key, host, entry);
+				return entry.rotate();
+			}
+		}
+		
+		this.misses.increment();
+		entry = this.load(key, host);
+		if(entry.addresses == null) {
+			throw entry.newError(host);
+		}
+		
+		return entry.rotate();
+	}
+	
+	/**
+	 * Look the host up on the calling thread, joining a lookup already in
+	 * progress for the same host.
+	 * 
+	 */
+	private CacheEntry load(final String key, final String host) throws UnknownHostException {
+		FutureTask<CacheEntry> task = this.pending.get(key);
+		if(task == null) {
+			FutureTask<CacheEntry> created = new FutureTask<CacheEntry>(new Callable<CacheEntry>() {
+				
+				@Override
+				public CacheEntry call() {
+					return lookup(host);
+				}
+				
+			});
+			task = this.pending.putIfAbsent(key, created);
+			if(task == null) {
+				task = created;
+				try {
+					task.run();
+					this.store(key, task.get());
+				} catch(InterruptedException | ExecutionException e) {
+					// handled by the get below
+				} finally {
+					this.pending.remove(key, task);
+				}
+			}
+		}
+		
+		try {
+			return task.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnknownHostException("Interrupted while resolving: " + host);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Look the host up in the background, once per expiry, keeping the
+	 * stale entry if the lookup fails.
+	 * 
+	 */
+	private void refresh(final String key, final String host, final CacheEntry stale) {
+		if(!stale.refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		
+		this.refreshes.increment();
+		try {
+			REFRESHER.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					CacheEntry entry = lookup(host);
+					if(entry.addresses == null) {
+						LOGGER.debug("Unable to refresh addresses of host: {}, serving stale ones", host);
+						stale.refreshing.set(false);
+						return;
+					}
+					
+					// keep rotating from where the stale entry was
+					entry.next.set(stale.next.get());
+					cache.replace(key, stale, entry);
+				}
+				
+			});
+		} catch(RuntimeException e) {
+			stale.refreshing.set(false);
+		}
+	}
+	
+	/**
+	 * Look the host up with the delegate.
+	 * 
+	 */
+	private CacheEntry lookup(String host) {
+		try {
+			InetAddress[] addresses = this.delegate.resolve(host);
+			if(addresses == null || addresses.length == 0) {
+				return new CacheEntry(null, "No address found for host: " + host);
+			}
+			
+			return new CacheEntry(addresses, null);
+		} catch(UnknownHostException e) {
+			return new CacheEntry(null, e.getMessage());
+		}
+	}
+	
+	private void store(String key, CacheEntry entry) {
+		if(entry.addresses == null && this.negativeTtlNanos == 0) {
+			this.cache.remove(key);
+			return;
+		}
+		
+		if(this.cache.size() >= this.maxEntries && !this.cache.containsKey(key)) {
+			this.evict();
+		}
+		
+		this.cache.put(key, entry);
+	}
+	
+	/**
+	 * Drop the expired entries, or any one entry if none has expired.
+	 * 
+	 */
+	private void evict() {
+		long now = System.nanoTime();
+		boolean evicted = false;
+		
+		Iterator<Entry<String, CacheEntry>> iterator = this.cache.entrySet().iterator();
+		while(iterator.hasNext()) {
+			CacheEntry entry = iterator.next().getValue();
+			long lifetime = entry.addresses == null ? this.negativeTtlNanos : this.ttlNanos + this.staleNanos;
+			if(now - entry.resolvedAt >= lifetime) {
+				iterator.remove();
+				evicted = true;
+			}
+		}
+		
+		if(!evicted) {
+			iterator = this.cache.entrySet().iterator();
+			if(iterator.hasNext()) {
+				iterator.next();
+				iterator.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Remove the cached lookup of the given host.
+	 * 
+	 * @param host
+	 *            the host name
+	 */
+	public void invalidate(String host) {
+		if(host != null) {
+			this.cache.remove(host.toLowerCase(Locale.ROOT));
+		}
+	}
+	
+	/**
+	 * Remove all cached lookups.
+	 * 
+	 */
+	public void invalidateAll() {
+		this.cache.clear();
+	}
+	
+	/**
+	 * @return the number of host names cached
+	 */
+	public int size() {
+		return this.cache.size();
+	}
+	
+	/**
+	 * @return the number of lookups answered from the cache, fresh or stale
+	 */
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+	
+	/**
+	 * @return the number of lookups that blocked on the delegate
+	 */
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+	
+	/**
+	 * @return the number of background refreshes started
+	 */
+	public long getRefreshCount() {
+		return this.refreshes.sum();
+	}
+	
+	/**
+	 * The result of a single lookup
+	 */
+	private static final class CacheEntry {
+		
+		/**
+		 * The addresses found, <code>null</code> if the lookup failed
+		 */
+		private final InetAddress[] addresses;
+		
+		/**
+		 * The message of the lookup failure
+		 */
+		private final String error;
+		
+		private final long resolvedAt = System.nanoTime();
+		
+		/**
+		 * The offset of the next rotation
+		 */
+		private final AtomicInteger next = new AtomicInteger();
+		
+		/**
+		 * Whether a background refresh is in progress
+		 */
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+		
+		CacheEntry(InetAddress[] addresses, String error) {
+			this.addresses = addresses;
+			this.error = error;
+		}
+		
+		/**
+		 * Return a copy of the addresses, starting at the next one in turn.
+		 * 
+		 */
+		InetAddress[] rotate() {
+			int length = this.addresses.length;
+			if(length == 1) {
+				return this.addresses.clone();
+			}
+			
+			int start = (this.next.getAndIncrement() & Integer.MAX_VALUE) % length;
+			InetAddress[] rotated = new InetAddress[length];
+			System.arraycopy(this.addresses, start, rotated, 0, length - start);
+			System.arraycopy(this.addresses, 0, rotated, length - start, start);
+			return rotated;
+		}
+		
+		/**
+		 * A new exception for each caller, as exceptions carry the stack of
+		 * the thread creating them.
+		 * 
+		 */
+		UnknownHostException newError(String host) {
+			return new UnknownHostException(this.error != null ? this.error : host);
+		}
+		
+	}
+	
+}
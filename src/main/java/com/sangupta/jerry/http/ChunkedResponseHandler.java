@@ -0,0 +1,169 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * A {@link HttpResponseHandler} that never buffers the response body. The body
+ * is read in fixed size chunks into a single reused buffer which is handed
+ * over to a {@link ChunkListener}. The returned {@link WebResponse} carries
+ * the status, headers and redirect chain but no body.
+ * 
+ * Memory usage thus stays constant irrespective of the size of the response.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class ChunkedResponseHandler implements HttpResponseHandler {
+	
+	/**
+	 * The default size of each chunk
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+	
+	/**
+	 * Callback that receives the response body one chunk at a time.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	public interface ChunkListener {
+		
+		/**
+		 * Invoked for every chunk read off the response body. The buffer is
+		 * reused between invocations and must not be retained.
+		 * 
+		 * @param buffer
+		 *            the buffer holding the chunk
+		 * 
+		 * @param offset
+		 *            the offset at which the chunk starts
+		 * 
+		 * @param length
+		 *            the number of bytes in the chunk
+		 * 
+		 * @throws IOException
+		 *             if the chunk cannot be processed, this aborts reading
+		 *             the body
+		 */
+		public void onChunk(byte[] buffer, int offset, int length) throws IOException;
+		
+	}
+	
+	/**
+	 * The listener to hand chunks to
+	 */
+	private final ChunkListener listener;
+	
+	/**
+	 * The size of each chunk
+	 */
+	private final int chunkSize;
+	
+	/**
+	 * Create a handler that reads chunks of {@link #DEFAULT_CHUNK_SIZE} bytes.
+	 * 
+	 * @param listener
+	 *            the {@link ChunkListener} to hand chunks to
+	 */
+	public ChunkedResponseHandler(ChunkListener listener) {
+		this(listener, DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * Create a handler that reads chunks of the given size.
+	 * 
+	 * @param listener
+	 *            the {@link ChunkListener} to hand chunks to
+	 * 
+	 * @param chunkSize
+	 *            the maximum number of bytes in a chunk
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if listener is <code>null</code> or the chunk size is not
+	 *             positive
+	 */
+	public ChunkedResponseHandler(ChunkListener listener, int chunkSize) {
+		if(listener == null) {
+			throw new IllegalArgumentException("Chunk listener cannot be null");
+		}
+		
+		if(chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive");
+		}
+		
+		this.listener = listener;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @see com.sangupta.jerry.http.HttpResponseHandler#handleResponse(java.net.URI, org.apache.http.HttpResponse, org.apache.http.protocol.HttpContext)
+	 */
+	@Override
+	public WebResponse handleResponse(URI originalURI, HttpResponse response, HttpContext httpContext) throws ClientProtocolException, IOException {
+		final WebResponse webResponse = new WebResponse(originalURI, (byte[]) null);
+		WebResponseHandler.populate(webResponse, response, httpContext);
+		
+		HttpEntity entity = response.getEntity();
+		if(entity == null) {
+			return webResponse;
+		}
+		
+		InputStream stream = entity.getContent();
+		if(stream == null) {
+			return webResponse;
+		}
+		
+		boolean completed = false;
+		try {
+			final byte[] buffer = new byte[this.chunkSize];
+			int read;
+			while((read = stream.read(buffer)) != -1) {
+				if(read > 0) {
+					this.listener.onChunk(buffer, 0, read);
+				}
+			}
+			
+			completed = true;
+		} finally {
+			if(!completed && response instanceof Closeable) {
+				// abort the connection rather than draining the remaining body
+				((Closeable) response).close();
+			} else {
+				stream.close();
+			}
+		}
+		
+		return webResponse;
+	}
+
+}
@@ -0,0 +1,135 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HTTP;
+
+/**
+ * An entity that gzip compresses the wrapped entity while it is written to
+ * the connection, so that no compressed copy of the body is held in memory
+ * by the blocking client. The body is sent chunked as its compressed length is not known
+ * upfront. The entity is repeatable if the wrapped one is.
+ * 
+ * The asynchronous client reads the body via {@link #getContent()}, which
+ * compresses it into memory first.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+final class CompressingEntity extends HttpEntityWrapper {
+	
+	/**
+	 * Size of the buffer holding compressed bytes before they are written
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+	
+	private static final Header CONTENT_ENCODING = new BasicHeader(HTTP.CONTENT_ENCODING, "gzip");
+	
+	/**
+	 * The compression level, as in {@link java.util.zip.Deflater}
+	 */
+	private final int level;
+	
+	CompressingEntity(HttpEntity entity, int level) {
+		super(entity);
+		this.level = level;
+	}
+	
+	@Override
+	public Header getContentEncoding() {
+		return CONTENT_ENCODING;
+	}
+	
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+	
+	@Override
+	public boolean isChunked() {
+		return true;
+	}
+	
+	/**
+	 * Return the compressed body, that is built in memory. Only meant for
+	 * consumers that cannot write the entity to a stream, such as the
+	 * asynchronous client.
+	 * 
+	 */
+	@Override
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(BUFFER_SIZE);
+		this.writeTo(stream);
+		return new ByteArrayInputStream(stream.toByteArray());
+	}
+	
+	@Override
+	public void writeTo(OutputStream outStream) throws IOException {
+		if(outStream == null) {
+			throw new IllegalArgumentException("Output stream cannot be null");
+		}
+		
+		LevelGZIPOutputStream stream = new LevelGZIPOutputStream(outStream, this.level);
+		try {
+			this.wrappedEntity.writeTo(stream);
+			stream.finish();
+		} finally {
+			stream.end();
+		}
+	}
+	
+	/**
+	 * A {@link GZIPOutputStream} at a given compression level, that leaves
+	 * closing the underlying stream to the connection.
+	 * 
+	 */
+	private static final class LevelGZIPOutputStream extends GZIPOutputStream {
+		
+		LevelGZIPOutputStream(OutputStream stream, int level) throws IOException {
+			super(stream, BUFFER_SIZE);
+			this.def.setLevel(level);
+		}
+		
+		/**
+		 * Free the native memory of the deflater.
+		 * 
+		 */
+		void end() {
+			this.def.end();
+		}
+		
+	}
+	
+}
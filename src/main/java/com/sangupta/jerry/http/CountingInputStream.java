@@ -0,0 +1,128 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} that counts the bytes read through it, so that the
+ * size of a body can be known without trusting the
+ * <code>Content-Length</code> sent by the server.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+final class CountingInputStream extends FilterInputStream {
+	
+	/**
+	 * Number of bytes read so far
+	 */
+	private volatile long count;
+	
+	private boolean closed;
+	
+	CountingInputStream(InputStream in) {
+		super(in);
+	}
+	
+	@Override
+	public int read() throws IOException {
+		int value = super.read();
+		if(value != -1) {
+			this.count++;
+		}
+		
+		return value;
+	}
+	
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		int read = super.read(bytes, offset, length);
+		if(read > 0) {
+			this.count += read;
+		}
+		
+		return read;
+	}
+	
+	@Override
+	public long skip(long length) throws IOException {
+		long skipped = super.skip(length);
+		if(skipped > 0) {
+			this.count += skipped;
+		}
+		
+		return skipped;
+	}
+	
+	/**
+	 * Marking is not supported, as bytes read again after a reset would be
+	 * counted twice.
+	 */
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	/**
+	 * Drains the rest of the stream before closing it, as closing the
+	 * response body would, so that the drained bytes are counted as well.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.closed) {
+			return;
+		}
+		
+		this.closed = true;
+		try {
+			this.drain();
+		} finally {
+			super.close();
+		}
+	}
+	
+	/**
+	 * Read and count the rest of the stream.
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	void drain() throws IOException {
+		byte[] buffer = new byte[8 * 1024];
+		while(this.read(buffer, 0, buffer.length) != -1) {
+			// counted by read
+		}
+	}
+	
+	/**
+	 * @return the number of bytes read so far
+	 */
+	long getCount() {
+		return this.count;
+	}
+	
+}
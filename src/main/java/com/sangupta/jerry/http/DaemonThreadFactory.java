@@ -0,0 +1,64 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ThreadFactory} that creates named daemon threads, so that the
+ * background threads started by the library never keep the JVM alive.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+class DaemonThreadFactory implements ThreadFactory {
+	
+	/**
+	 * The prefix to use for all thread names
+	 */
+	private final String prefix;
+	
+	/**
+	 * Counter used to number the threads
+	 */
+	private final AtomicInteger counter = new AtomicInteger();
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param prefix
+	 *            the prefix to use for thread names
+	 */
+	DaemonThreadFactory(String prefix) {
+		this.prefix = prefix;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, this.prefix + "-" + this.counter.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+	
+}
@@ -0,0 +1,441 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * An {@link InputStream} that inflates a <code>gzip</code> or
+ * <code>deflate</code> encoded response body as it is read, and fails once
+ * the inflated size goes past a limit.
+ * 
+ * Unlike {@link java.util.zip.GZIPInputStream}, the {@link Inflater} and the
+ * read buffer are borrowed from pools shared by all streams, and returned as
+ * soon as the body is read fully or the stream is closed, sparing the
+ * native memory of an inflater per response. The gzip and zlib wrappers are
+ * thus parsed here, and all inflaters work on raw deflate data.
+ * <code>deflate</code> bodies may be zlib wrapped, as the specification
+ * says, or raw deflate, as some servers send.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+final class DecompressingInputStream extends InputStream {
+	
+	/**
+	 * Size of the pooled read buffers
+	 */
+	static final int BUFFER_SIZE = 8 * 1024;
+	
+	/**
+	 * Maximum number of inflaters and buffers kept in the pools
+	 */
+	private static final int POOL_SIZE = 64;
+	
+	private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+	
+	private static final BlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(POOL_SIZE);
+	
+	private static final int GZIP_FHCRC = 2;
+	
+	private static final int GZIP_FEXTRA = 4;
+	
+	private static final int GZIP_FNAME = 8;
+	
+	private static final int GZIP_FCOMMENT = 16;
+	
+	/**
+	 * The compressed stream
+	 */
+	private final InputStream in;
+	
+	/**
+	 * Whether the body is gzip encoded, deflate otherwise
+	 */
+	private final boolean gzip;
+	
+	/**
+	 * The decompressor recording the bytes read
+	 */
+	private final HttpDecompressor decompressor;
+	
+	/**
+	 * Maximum number of inflated bytes
+	 */
+	private final long maxSize;
+	
+	private Inflater inflater;
+	
+	private byte[] buffer;
+	
+	/**
+	 * Position of the next unread byte in the buffer
+	 */
+	private int position;
+	
+	/**
+	 * Number of bytes in the buffer
+	 */
+	private int count;
+	
+	/**
+	 * Checksum of the inflated bytes, <code>null</code> for raw deflate
+	 */
+	private Checksum checksum;
+	
+	/**
+	 * Compressed bytes read from the underlying stream
+	 */
+	private long compressed;
+	
+	/**
+	 * Inflated bytes returned
+	 */
+	private long decompressed;
+	
+	/**
+	 * Inflated bytes of the current gzip member
+	 */
+	private long memberSize;
+	
+	private boolean started;
+	
+	private boolean eof;
+	
+	private boolean closed;
+	
+	private final byte[] single = new byte[1];
+	
+	DecompressingInputStream(InputStream in, boolean gzip, HttpDecompressor decompressor) {
+		this.in = in;
+		this.gzip = gzip;
+		this.decompressor = decompressor;
+		this.maxSize = decompressor.getMaxDecompressedSize();
+		
+		byte[] buffer = BUFFERS.poll();
+		this.buffer = buffer != null ? buffer : new byte[BUFFER_SIZE];
+	}
+	
+	@Override
+	public int read() throws IOException {
+		int read = this.read(this.single, 0, 1);
+		if(read == -1) {
+			return -1;
+		}
+		
+		return this.single[0] & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if(this.closed) {
+			throw new IOException("Stream closed");
+		}
+		
+		if(offset < 0 || length < 0 || length > bytes.length - offset) {
+			throw new IndexOutOfBoundsException();
+		}
+		
+		if(length == 0) {
+			return 0;
+		}
+		
+		if(this.eof) {
+			return -1;
+		}
+		
+		if(!this.started) {
+			this.start();
+			if(this.eof) {
+				return -1;
+			}
+		}
+		
+		while(true) {
+			int read;
+			try {
+				read = this.inflater.inflate(bytes, offset, length);
+			} catch(DataFormatException e) {
+				throw new ZipException(e.getMessage());
+			}
+			
+			if(read > 0) {
+				this.decompressed += read;
+				this.memberSize += read;
+				if(this.checksum != null) {
+					this.checksum.update(bytes, offset, read);
+				}
+				
+				if(this.decompressed > this.maxSize) {
+					this.decompressor.recordRejection();
+					this.close();
+					throw new HttpDecompressionException("Decompressed response exceeds the maximum size of " + this.maxSize + " bytes");
+				}
+				
+				return read;
+			}
+			
+			if(this.inflater.finished()) {
+				this.position = this.count - this.inflater.getRemaining();
+				this.readTrailer();
+				if(!this.nextMember()) {
+					this.eof = true;
+					this.release();
+					return -1;
+				}
+				
+				continue;
+			}
+			
+			if(this.inflater.needsDictionary()) {
+				throw new ZipException("Preset dictionaries are not supported");
+			}
+			
+			if(this.inflater.needsInput()) {
+				if(this.position >= this.count && this.fill() == -1) {
+					throw new EOFException("Unexpected end of compressed stream");
+				}
+				
+				this.inflater.setInput(this.buffer, this.position, this.count - this.position);
+				this.position = this.count;
+			}
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if(this.closed) {
+			return;
+		}
+		
+		this.closed = true;
+		this.release();
+		this.in.close();
+	}
+	
+	/**
+	 * Read the header of the body and borrow an inflater.
+	 * 
+	 */
+	private void start() throws IOException {
+		this.started = true;
+		
+		// an empty body has nothing to inflate
+		if(!this.ensure(1)) {
+			this.eof = true;
+			this.release();
+			return;
+		}
+		
+		if(this.gzip) {
+			this.readGzipHeader();
+			this.checksum = new CRC32();
+		} else if(this.ensure(2) && isZlibHeader(this.buffer[this.position] & 0xff, this.buffer[this.position + 1] & 0xff)) {
+			if((this.buffer[this.position + 1] & 0x20) != 0) {
+				throw new ZipException("Preset dictionaries are not supported");
+			}
+			
+			this.position += 2;
+			this.checksum = new Adler32();
+		}
+		
+		Inflater inflater = INFLATERS.poll();
+		this.inflater = inflater != null ? inflater : new Inflater(true);
+	}
+	
+	static boolean isZlibHeader(int cmf, int flg) {
+		return (cmf & 0x0f) == 8 && (cmf >> 4) <= 7 && ((cmf << 8) | flg) % 31 == 0;
+	}
+	
+	private void readGzipHeader() throws IOException {
+		if(this.readByte() != 0x1f || this.readByte() != 0x8b) {
+			throw new ZipException("Not in GZIP format");
+		}
+		
+		if(this.readByte() != 8) {
+			throw new ZipException("Unsupported compression method");
+		}
+		
+		int flags = this.readByte();
+		
+		// modification time, extra flags and operating system
+		this.skip(6);
+		
+		if((flags & GZIP_FEXTRA) != 0) {
+			this.skip(this.readByte() | (this.readByte() << 8));
+		}
+		
+		if((flags & GZIP_FNAME) != 0) {
+			while(this.readByte() != 0) {
+				// skip the file name
+			}
+		}
+		
+		if((flags & GZIP_FCOMMENT) != 0) {
+			while(this.readByte() != 0) {
+				// skip the comment
+			}
+		}
+		
+		if((flags & GZIP_FHCRC) != 0) {
+			this.skip(2);
+		}
+	}
+	
+	private void readTrailer() throws IOException {
+		if(this.checksum == null) {
+			return;
+		}
+		
+		if(this.gzip) {
+			long crc = this.readByte() | (this.readByte() << 8) | (this.readByte() << 16) | ((long) this.readByte() << 24);
+			long size = this.readByte() | (this.readByte() << 8) | (this.readByte() << 16) | ((long) this.readByte() << 24);
+			if(crc != this.checksum.getValue()) {
+				throw new ZipException("Corrupt GZIP trailer");
+			}
+			
+			if(size != (this.memberSize & 0xffffffffL)) {
+				throw new ZipException("Corrupt GZIP trailer");
+			}
+			
+			return;
+		}
+		
+		long adler = ((long) this.readByte() << 24) | (this.readByte() << 16) | (this.readByte() << 8) | this.readByte();
+		if(adler != this.checksum.getValue()) {
+			throw new ZipException("Corrupt zlib trailer");
+		}
+	}
+	
+	/**
+	 * Start the next member of a gzip body, if any. Anything after the last
+	 * member that is not a gzip header is ignored.
+	 * 
+	 * @return <code>true</code> if there is another member to inflate
+	 */
+	private boolean nextMember() throws IOException {
+		if(!this.gzip || !this.ensure(1) || (this.buffer[this.position] & 0xff) != 0x1f) {
+			return false;
+		}
+		
+		this.readGzipHeader();
+		this.inflater.reset();
+		this.checksum.reset();
+		this.memberSize = 0;
+		return true;
+	}
+	
+	private int readByte() throws IOException {
+		if(this.position >= this.count && this.fill() == -1) {
+			throw new EOFException("Unexpected end of compressed stream");
+		}
+		
+		return this.buffer[this.position++] & 0xff;
+	}
+	
+	private void skip(int bytes) throws IOException {
+		for(int index = 0; index < bytes; index++) {
+			this.readByte();
+		}
+	}
+	
+	/**
+	 * Refill the empty buffer from the underlying stream.
+	 * 
+	 * @return the number of bytes read, or <code>-1</code> at the end of the
+	 *         stream
+	 */
+	private int fill() throws IOException {
+		int read = this.in.read(this.buffer, 0, this.buffer.length);
+		if(read == -1) {
+			return -1;
+		}
+		
+		this.compressed += read;
+		this.position = 0;
+		this.count = read;
+		return read;
+	}
+	
+	/**
+	 * Make sure the buffer holds at least the given number of unread bytes.
+	 * 
+	 * @return <code>false</code> if the stream ends before
+	 */
+	private boolean ensure(int bytes) throws IOException {
+		while(this.count - this.position < bytes) {
+			if(this.position > 0) {
+				System.arraycopy(this.buffer, this.position, this.buffer, 0, this.count - this.position);
+				this.count -= this.position;
+				this.position = 0;
+			}
+			
+			int read = this.in.read(this.buffer, this.count, this.buffer.length - this.count);
+			if(read == -1) {
+				return false;
+			}
+			
+			this.compressed += read;
+			this.count += read;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Return the inflater and buffer to the pools, and record the bytes read.
+	 * 
+	 */
+	private void release() {
+		if(this.buffer == null) {
+			return;
+		}
+		
+		if(this.inflater != null) {
+			this.inflater.reset();
+			if(!INFLATERS.offer(this.inflater)) {
+				this.inflater.end();
+			}
+			
+			this.inflater = null;
+		}
+		
+		BUFFERS.offer(this.buffer);
+		this.buffer = null;
+		this.eof = true;
+		
+		this.decompressor.record(this.compressed, this.decompressed);
+	}
+	
+}
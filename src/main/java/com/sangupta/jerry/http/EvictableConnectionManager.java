@@ -0,0 +1,90 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+
+package com.sangupta.jerry.http;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.config.Registry;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolEntry;
+import org.apache.http.pool.PoolEntryCallback;
+
+/**
+ * A {@link PoolingHttpClientConnectionManager} that lets the
+ * {@link HttpConnectionEvictor} walk its idle connections in a single pass,
+ * closing each for the reason that applies.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+class EvictableConnectionManager extends PoolingHttpClientConnectionManager {
+	
+	EvictableConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry) {
+		super(socketFactoryRegistry);
+	}
+	
+	EvictableConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry, DnsResolver dnsResolver, long timeToLive, TimeUnit timeUnit) {
+		super(socketFactoryRegistry, null, null, dnsResolver, timeToLive, timeUnit);
+	}
+	
+	/**
+	 * Close the idle connections that are expired, have been idle for too
+	 * long, or have been open for too long, recording each in the counters
+	 * of the evictor.
+	 * 
+	 * @param evictor
+	 *            the {@link HttpConnectionEvictor} deciding which connections
+	 *            to close
+	 */
+	void evict(final HttpConnectionEvictor evictor) {
+		final long now = System.currentTimeMillis();
+		final long idleMillis = evictor.getIdleTimeoutMillis();
+		final long lifetimeMillis = evictor.getMaxLifetimeMillis();
+		
+		this.enumAvailable(new PoolEntryCallback<HttpRoute, ManagedHttpClientConnection>() {
+			
+			@Override
+			public void process(PoolEntry<HttpRoute, ManagedHttpClientConnection> entry) {
+				if(entry.isExpired(now)) {
+					evictor.expired.increment();
+				} else if(idleMillis > 0 && now - entry.getUpdated() >= idleMillis) {
+					evictor.idle.increment();
+				} else if(lifetimeMillis > 0 && now - entry.getCreated() >= lifetimeMillis) {
+					evictor.aged.increment();
+				} else {
+					return;
+				}
+				
+				entry.close();
+			}
+			
+		});
+	}
+	
+}
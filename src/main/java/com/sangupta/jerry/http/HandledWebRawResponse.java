@@ -23,9 +23,11 @@ package com.sangupta.jerry.http;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
 
 /**
  * An already-handled version of {@link WebRawResponse} that uses a
@@ -56,11 +58,78 @@ public class HandledWebRawResponse extends WebRawResponse {
 		return this.webResponse;
 	}
 	
+	@Override
+	int getResponseCode() {
+		if(this.webResponse == null) {
+			return -1;
+		}
+		
+		return this.webResponse.getResponseCode();
+	}
+	
+	@Override
+	String getFirstHeader(String name) {
+		if(this.webResponse == null) {
+			return null;
+		}
+		
+		return this.webResponse.getHeader(name);
+	}
+	
 	@Override
 	public WebResponse webResponse(HttpResponseHandler handler) throws ClientProtocolException, IOException {
 		throw new IllegalStateException("RawResponse has already been handled.");
 	}
 
+	@Override
+	public StreamingWebResponse streamResponse() {
+		throw new IllegalStateException("RawResponse has already been handled.");
+	}
+
+	/**
+	 * Deserialize the JSON body of the already handled response, which has
+	 * been buffered in memory.
+	 * 
+	 */
+	@Override
+	public <T> T as(Class<T> type) throws IOException {
+		if(type == null) {
+			throw new IllegalArgumentException("Type cannot be null");
+		}
+		
+		if(this.webResponse == null) {
+			return null;
+		}
+		
+		this.assertSuccess();
+		return readJson(this.webResponse.asStream(), this.webResponse, type);
+	}
+	
+	/**
+	 * Iterate over the elements of the JSON body of the already handled
+	 * response, which has been buffered in memory.
+	 * 
+	 */
+	@Override
+	public <T> JsonStreamIterator<T> iterate(Class<T> type) throws HttpResponseException {
+		if(type == null) {
+			throw new IllegalArgumentException("Type cannot be null");
+		}
+		
+		if(this.webResponse == null) {
+			return new JsonStreamIterator<T>(new StringReader(""), type);
+		}
+		
+		this.assertSuccess();
+		return iterateJson(this.webResponse.asStream(), this.webResponse, null, type);
+	}
+	
+	private void assertSuccess() throws HttpResponseException {
+		if(this.webResponse.getResponseCode() >= 300) {
+			throw new HttpResponseException(this.webResponse.getResponseCode(), this.webResponse.getMessage());
+		}
+	}
+	
 	@Override
 	public void writeToFile(File file) throws IOException {
         byte[] bytes = webResponse.getBytes();
@@ -0,0 +1,242 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.HttpHost;
+
+/**
+ * A concurrent map of per-host state that holds at most a given number of
+ * hosts. Once the map grows past the bound, the least recently used hosts
+ * whose state may be dropped are evicted, so that a client hitting an
+ * unbounded number of hosts - such as a crawler - does not keep the state
+ * of every host it has ever seen.
+ * 
+ * Lookups only read the clock and, at most once per millisecond, write the
+ * time of last use, thus do not allocate.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+final class HostTable<V extends HostTable.Entry> {
+	
+	/**
+	 * The default maximum number of hosts held
+	 */
+	static final int DEFAULT_MAX_HOSTS = 256;
+	
+	/**
+	 * Nanos within which the time of last use is not updated again
+	 */
+	private static final long TOUCH_GRANULARITY_NANOS = 1000000l;
+	
+	private final ConcurrentMap<HttpHost, V> entries = new ConcurrentHashMap<HttpHost, V>();
+	
+	private final int maxHosts;
+	
+	/**
+	 * Whether a thread is evicting, so that others do not evict as well
+	 */
+	private final AtomicBoolean evicting = new AtomicBoolean();
+	
+	HostTable(int maxHosts) {
+		if(maxHosts <= 0) {
+			throw new IllegalArgumentException("Maximum number of hosts must be positive");
+		}
+		
+		this.maxHosts = maxHosts;
+	}
+	
+	/**
+	 * Return the state of the given host, marking it as used.
+	 * 
+	 * @return the state, or <code>null</code> if the host is not held
+	 */
+	V get(HttpHost host) {
+		V entry = this.entries.get(host);
+		if(entry != null) {
+			entry.touch();
+		}
+		
+		return entry;
+	}
+	
+	/**
+	 * Return the state of the given host without marking it as used.
+	 * 
+	 * @return the state, or <code>null</code> if the host is not held
+	 */
+	V peek(HttpHost host) {
+		return this.entries.get(host);
+	}
+	
+	/**
+	 * Hold the given state for the host, unless some state is held already.
+	 * 
+	 * @return the state now held for the host
+	 */
+	V putIfAbsent(HttpHost host, V entry) {
+		V existing = this.entries.putIfAbsent(host, entry);
+		if(existing != null) {
+			existing.touch();
+			return existing;
+		}
+		
+		if(this.entries.size() > this.maxHosts) {
+			this.evict();
+		}
+		
+		return entry;
+	}
+	
+	void remove(HttpHost host) {
+		this.entries.remove(host);
+	}
+	
+	void clear() {
+		this.entries.clear();
+	}
+	
+	int size() {
+		return this.entries.size();
+	}
+	
+	Set<Map.Entry<HttpHost, V>> entrySet() {
+		return this.entries.entrySet();
+	}
+	
+	Collection<V> values() {
+		return this.entries.values();
+	}
+	
+	/**
+	 * Evict the least recently used evictable hosts, down to seven-eighths
+	 * of the bound so that eviction does not run for every new host.
+	 * 
+	 */
+	private void evict() {
+		if(!this.evicting.compareAndSet(false, true)) {
+			return;
+		}
+		
+		try {
+			// ages are taken once, as entries may be used while sorting
+			final long now = System.nanoTime();
+			List<Candidate<V>> candidates = new ArrayList<Candidate<V>>();
+			for(Map.Entry<HttpHost, V> entry : this.entries.entrySet()) {
+				V value = entry.getValue();
+				if(value.isEvictable()) {
+					candidates.add(new Candidate<V>(entry.getKey(), value, now - value.getLastUsedNanos()));
+				}
+			}
+			
+			Collections.sort(candidates, new Comparator<Candidate<V>>() {
+				
+				@Override
+				public int compare(Candidate<V> first, Candidate<V> second) {
+					// oldest first
+					return Long.compare(second.age, first.age);
+				}
+				
+			});
+			
+			int excess = this.entries.size() - (this.maxHosts - this.maxHosts / 8);
+			for(int index = 0; index < candidates.size() && excess > 0; index++) {
+				Candidate<V> candidate = candidates.get(index);
+				if(this.entries.remove(candidate.host, candidate.value)) {
+					excess--;
+				}
+			}
+		} finally {
+			this.evicting.set(false);
+		}
+	}
+	
+	/**
+	 * A host that may be evicted, with the age of its state.
+	 * 
+	 */
+	private static final class Candidate<V> {
+		
+		final HttpHost host;
+		
+		final V value;
+		
+		final long age;
+		
+		Candidate(HttpHost host, V value, long age) {
+			this.host = host;
+			this.value = value;
+			this.age = age;
+		}
+		
+	}
+	
+	/**
+	 * The state of a single host.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	static abstract class Entry {
+		
+		/**
+		 * When this state was last used, as per {@link System#nanoTime()}
+		 */
+		private volatile long lastUsedNanos = System.nanoTime();
+		
+		final long getLastUsedNanos() {
+			return this.lastUsedNanos;
+		}
+		
+		final void touch() {
+			long now = System.nanoTime();
+			if(now - this.lastUsedNanos >= TOUCH_GRANULARITY_NANOS) {
+				this.lastUsedNanos = now;
+			}
+		}
+		
+		/**
+		 * Whether this state may be dropped when the table is full. Dropped
+		 * state starts afresh if the host is seen again.
+		 * 
+		 * @return <code>true</code> if the state may be evicted
+		 */
+		boolean isEvictable() {
+			return true;
+		}
+		
+	}
+	
+}
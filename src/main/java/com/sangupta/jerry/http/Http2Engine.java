@@ -0,0 +1,120 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.lang.reflect.Constructor;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Locates the HTTP/2 engine of the library. The engine is built over the
+ * HTTP client of the JDK that is only present in Java 11 and above, and is
+ * compiled separately from the rest of the library. It is thus looked up
+ * reflectively once, and executors fall back to HTTP/1.1 when it is not
+ * available.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+final class Http2Engine {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(Http2Engine.class);
+	
+	/**
+	 * The name of the engine class
+	 */
+	private static final String ENGINE_CLASS = "com.sangupta.jerry.http.JdkHttp2Client";
+	
+	/**
+	 * The constructor of the engine, or <code>null</code> if not supported
+	 */
+	private static final Constructor<?> CONSTRUCTOR;
+	
+	static {
+		Constructor<?> constructor = null;
+		try {
+			Class.forName("java.net.http.HttpClient");
+			constructor = Class.forName(ENGINE_CLASS).getDeclaredConstructor(CloseableHttpClient.class, HttpProcessor.class);
+			constructor.setAccessible(true);
+		} catch(ReflectiveOperationException | RuntimeException | LinkageError e) {
+			LOGGER.debug("HTTP/2 engine is not available, using HTTP/1.1");
+			constructor = null;
+		}
+		
+		CONSTRUCTOR = constructor;
+	}
+	
+	/**
+	 * Private constructor
+	 * 
+	 */
+	private Http2Engine() {
+		
+	}
+	
+	/**
+	 * Check if the HTTP/2 engine can be used in the running JVM.
+	 * 
+	 * @return <code>true</code> if available, <code>false</code> otherwise
+	 */
+	static boolean isSupported() {
+		return CONSTRUCTOR != null;
+	}
+	
+	/**
+	 * Create a new HTTP/2 client that sends requests it cannot serve over
+	 * HTTP/2 to the given HTTP/1.1 client. Closing the returned client also
+	 * closes the given one.
+	 * 
+	 * @param http1Client
+	 *            the client to use for HTTP/1.1 requests
+	 * 
+	 * @param contentDecoding
+	 *            the processor that sets the accepted encodings of requests
+	 *            and decodes the responses sent over HTTP/2, as done by the
+	 *            HTTP/1.1 client
+	 * 
+	 * @return the HTTP/2 client, or <code>null</code> if the engine is not
+	 *         available
+	 */
+	static CloseableHttpClient create(CloseableHttpClient http1Client, HttpProcessor contentDecoding) {
+		if(CONSTRUCTOR == null) {
+			return null;
+		}
+		
+		try {
+			return (CloseableHttpClient) CONSTRUCTOR.newInstance(http1Client, contentDecoding);
+		} catch(ReflectiveOperationException e) {
+			LOGGER.warn("Unable to create HTTP/2 engine, using HTTP/1.1", e);
+			return null;
+		}
+	}
+	
+}
@@ -0,0 +1,733 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.utils.URIUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes a large number of {@link WebRequest}s over a {@link HttpExecutor}
+ * with a bounded parallelism, handing back each {@link WebResponse} as soon
+ * as it is available rather than when all of them are done.
+ * 
+ * Two caps are applied: at most <code>parallelism</code> requests are in
+ * flight overall, and at most <code>maxPerHost</code> of them go to the same
+ * host. A request whose host is at its cap is parked, and the slot it would
+ * have taken is given to the next request for another host, so that the pool
+ * stays busy without flooding any single route. The per-host cap should not
+ * be more than the connections per route of the executor's pool, else the
+ * extra threads just wait for a connection.
+ * 
+ * The requests are read lazily from the given {@link Iterable}, and the
+ * number of requests that are either running, parked or completed but not yet
+ * consumed never exceeds twice the parallelism - a slow consumer thus slows
+ * down the execution rather than buffering responses in memory.
+ * 
+ * Results are returned in completion order, each carrying the index of its
+ * request in the original sequence.
+ * 
+ * By default the requests run over a fixed pool of <code>parallelism</code>
+ * platform threads. With {@link #virtualThreads(boolean)} each request runs
+ * on its own virtual thread instead, with the same caps applied, when the
+ * running JVM supports them - see {@link VirtualThreads}.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpBulkExecutor {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpBulkExecutor.class);
+	
+	/**
+	 * The default number of requests in flight
+	 */
+	public static final int DEFAULT_PARALLELISM = 16;
+	
+	/**
+	 * The default number of requests in flight to a single host - same as
+	 * the default connections per route of {@link HttpExecutor}
+	 */
+	public static final int DEFAULT_MAX_PER_HOST = 5;
+	
+	/**
+	 * The executor used for all requests
+	 */
+	private final HttpExecutor executor;
+	
+	/**
+	 * Number of requests in flight
+	 */
+	private volatile int parallelism = DEFAULT_PARALLELISM;
+	
+	/**
+	 * Number of requests in flight to a single host
+	 */
+	private volatile int maxPerHost = DEFAULT_MAX_PER_HOST;
+	
+	/**
+	 * Whether to run each request on its own virtual thread
+	 */
+	private volatile boolean virtualThreads;
+	
+	/**
+	 * Create a bulk executor over {@link HttpExecutor#DEFAULT}.
+	 * 
+	 */
+	public HttpBulkExecutor() {
+		this(HttpExecutor.DEFAULT);
+	}
+	
+	/**
+	 * Create a bulk executor over the given {@link HttpExecutor}.
+	 * 
+	 * @param executor
+	 *            the {@link HttpExecutor} to use for all requests
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if executor is <code>null</code>
+	 */
+	public HttpBulkExecutor(HttpExecutor executor) {
+		if(executor == null) {
+			throw new IllegalArgumentException("HttpExecutor cannot be null");
+		}
+		
+		this.executor = executor;
+	}
+	
+	/**
+	 * Set the number of requests that are in flight at any time.
+	 * 
+	 * @param parallelism
+	 *            the number of parallel requests
+	 * 
+	 * @return this very {@link HttpBulkExecutor}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if parallelism is not positive
+	 */
+	public HttpBulkExecutor parallelism(int parallelism) {
+		if(parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+		
+		this.parallelism = parallelism;
+		return this;
+	}
+	
+	/**
+	 * Set the number of requests that are in flight to a single host at any
+	 * time.
+	 * 
+	 * @param maxPerHost
+	 *            the number of parallel requests per host
+	 * 
+	 * @return this very {@link HttpBulkExecutor}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the value is not positive
+	 */
+	public HttpBulkExecutor maxPerHost(int maxPerHost) {
+		if(maxPerHost <= 0) {
+			throw new IllegalArgumentException("Max requests per host must be positive");
+		}
+		
+		this.maxPerHost = maxPerHost;
+		return this;
+	}
+	
+	/**
+	 * Run each request on its own virtual thread rather than over a fixed
+	 * pool of platform threads. If the running JVM does not support virtual
+	 * threads, each request runs on a cached platform thread instead.
+	 * 
+	 * @param virtualThreads
+	 *            <code>true</code> to use virtual threads
+	 * 
+	 * @return this very {@link HttpBulkExecutor}
+	 */
+	public HttpBulkExecutor virtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+		return this;
+	}
+	
+	/**
+	 * Start executing the given requests and return an iterator over the
+	 * results in the order they complete. The iterator blocks until the next
+	 * result is available. Closing the iterator before it is exhausted stops
+	 * reading further requests and aborts the ones in flight.
+	 * 
+	 * @param requests
+	 *            the requests to execute
+	 * 
+	 * @return the {@link ResultIterator} over the results
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if requests is <code>null</code>
+	 */
+	public ResultIterator executeAll(Iterable<WebRequest> requests) {
+		if(requests == null) {
+			throw new IllegalArgumentException("Requests cannot be null");
+		}
+		
+		BulkExecution execution = new BulkExecution(requests.iterator(), this.parallelism, this.maxPerHost, this.virtualThreads);
+		execution.start();
+		return execution.results;
+	}
+	
+	/**
+	 * Execute a single request, capturing the response or the error.
+	 * 
+	 */
+	private Result execute(int index, WebRequest request) {
+		try {
+			request.prepareForExecute();
+			return new Result(index, request, this.executor.execute(request).webResponse(), null);
+		} catch(Exception e) {
+			LOGGER.debug("Unable to fetch response from url: {}", request.getURI(), e);
+			return new Result(index, request, null, e);
+		}
+	}
+	
+	/**
+	 * Return the key used to cap the requests to a single host.
+	 * 
+	 */
+	private static String getHostKey(WebRequest request) {
+		HttpHost host = URIUtils.extractHost(request.getURI());
+		if(host == null) {
+			return "";
+		}
+		
+		return host.toHostString().toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * State of a single call to {@link HttpBulkExecutor#executeAll(Iterable)}.
+	 * 
+	 */
+	private class BulkExecution implements Runnable {
+		
+		/**
+		 * The requests still to be read
+		 */
+		private final Iterator<WebRequest> requests;
+		
+		/**
+		 * Requests per host that are in flight
+		 */
+		private final int maxPerHost;
+		
+		/**
+		 * Bounds the requests that are running, parked or not yet consumed
+		 */
+		private final Semaphore window;
+		
+		/**
+		 * Bounds the requests that are running when each runs on a thread of
+		 * its own, <code>null</code> over a fixed pool
+		 */
+		private final Semaphore running;
+		
+		/**
+		 * The workers that execute the requests
+		 */
+		private final ExecutorService workers;
+		
+		/**
+		 * The dispatcher thread reading the requests
+		 */
+		private final Thread dispatcher;
+		
+		/**
+		 * Per-host state, guarded by the host lock
+		 */
+		private final Map<String, HostQueue> hosts = new HashMap<String, HostQueue>();
+		
+		/**
+		 * Guards the per-host state - a {@link Lock} rather than a monitor
+		 * so that virtual threads do not pin their carrier when contended
+		 */
+		private final Lock hostLock = new ReentrantLock();
+		
+		/**
+		 * Requests currently being executed, so they can be aborted
+		 */
+		private final Set<WebRequest> inFlight = ConcurrentHashMap.newKeySet();
+		
+		/**
+		 * Tasks not yet completed, plus one for the dispatcher
+		 */
+		private final AtomicInteger outstanding = new AtomicInteger(1);
+		
+		/**
+		 * The iterator handed back to the caller
+		 */
+		private final ResultIterator results;
+		
+		BulkExecution(Iterator<WebRequest> requests, int parallelism, int maxPerHost, boolean virtual) {
+			this.requests = requests;
+			this.maxPerHost = maxPerHost;
+			this.window = new Semaphore(parallelism * 2);
+			if(virtual) {
+				this.running = new Semaphore(parallelism);
+				this.workers = VirtualThreads.newExecutor("jerry-http-bulk");
+			} else {
+				this.running = null;
+				this.workers = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory("jerry-http-bulk"));
+			}
+			
+			this.dispatcher = new DaemonThreadFactory("jerry-http-bulk-dispatcher").newThread(this);
+			this.results = new ResultIterator(this);
+		}
+		
+		void start() {
+			this.dispatcher.start();
+		}
+		
+		@Override
+		public void run() {
+			int index = 0;
+			try {
+				while(!this.results.closed && this.requests.hasNext()) {
+					this.window.acquire();
+					
+					WebRequest request = this.requests.next();
+					if(request == null) {
+						throw new IllegalArgumentException("Request at index " + index + " is null");
+					}
+					
+					this.outstanding.incrementAndGet();
+					this.dispatch(new Task(index++, request));
+				}
+			} catch(InterruptedException e) {
+				// closed by the consumer
+			} catch(RuntimeException e) {
+				this.results.failure = e;
+			} finally {
+				this.taskDone();
+			}
+		}
+		
+		/**
+		 * Run the task now if its host is below the cap, else park it.
+		 * 
+		 */
+		private void dispatch(Task task) {
+			this.hostLock.lock();
+			try {
+				HostQueue queue = this.hosts.get(task.host);
+				if(queue == null) {
+					queue = new HostQueue();
+					this.hosts.put(task.host, queue);
+				}
+				
+				if(queue.active >= this.maxPerHost) {
+					queue.parked.add(task);
+					return;
+				}
+				
+				queue.active++;
+			} finally {
+				this.hostLock.unlock();
+			}
+			
+			this.submit(task);
+		}
+		
+		/**
+		 * Release the host slot of the given task, handing it over to the
+		 * next parked task of the same host.
+		 * 
+		 */
+		private void release(Task task) {
+			Task next;
+			this.hostLock.lock();
+			try {
+				HostQueue queue = this.hosts.get(task.host);
+				next = queue.parked.poll();
+				if(next == null) {
+					queue.active--;
+					if(queue.active == 0) {
+						this.hosts.remove(task.host);
+					}
+				}
+			} finally {
+				this.hostLock.unlock();
+			}
+			
+			if(next != null) {
+				this.submit(next);
+			}
+		}
+		
+		private void submit(Task task) {
+			try {
+				this.workers.execute(task);
+			} catch(RuntimeException e) {
+				// rejected as we are closed
+				this.taskDone();
+			}
+		}
+		
+		/**
+		 * Mark a task done, ending the results once all are done.
+		 * 
+		 */
+		private void taskDone() {
+			if(this.outstanding.decrementAndGet() == 0) {
+				this.workers.shutdown();
+				this.results.queue.add(ResultIterator.END);
+			}
+		}
+		
+		/**
+		 * Stop reading requests and abort the ones in flight.
+		 * 
+		 */
+		void close() {
+			this.dispatcher.interrupt();
+			this.workers.shutdownNow();
+			
+			for(WebRequest request : this.inFlight) {
+				try {
+					request.abort();
+				} catch(RuntimeException e) {
+					// ignore
+				}
+			}
+		}
+		
+		/**
+		 * A single request to be executed
+		 */
+		private class Task implements Runnable {
+			
+			private final int index;
+			
+			private final WebRequest request;
+			
+			private final String host;
+			
+			Task(int index, WebRequest request) {
+				this.index = index;
+				this.request = request;
+				this.host = getHostKey(request);
+			}
+
+			@Override
+			public void run() {
+				Result result = null;
+				if(!results.closed && this.acquireRunning()) {
+					inFlight.add(this.request);
+					try {
+						result = execute(this.index, this.request);
+					} finally {
+						inFlight.remove(this.request);
+						if(running != null) {
+							running.release();
+						}
+					}
+				}
+				
+				release(this);
+				if(result != null && !results.closed) {
+					results.queue.add(result);
+				} else {
+					window.release();
+				}
+				
+				taskDone();
+			}
+			
+			/**
+			 * Wait for a running slot when on a thread of its own.
+			 * 
+			 */
+			private boolean acquireRunning() {
+				if(running == null) {
+					return true;
+				}
+				
+				try {
+					running.acquire();
+					return true;
+				} catch(InterruptedException e) {
+					// closed by the consumer
+					return false;
+				}
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Requests in flight and parked for a single host
+	 */
+	private static class HostQueue {
+		
+		private int active;
+		
+		private final Queue<BulkExecution.Task> parked = new ArrayDeque<BulkExecution.Task>();
+		
+	}
+	
+	/**
+	 * Iterates over the results of a bulk execution in the order they
+	 * complete. Each call to {@link #next()} blocks until a result is
+	 * available.
+	 * 
+	 * @author sangupta
+	 * 
+	 * @since 2.1.0
+	 */
+	public static final class ResultIterator implements Iterator<Result>, Closeable {
+		
+		/**
+		 * Marks the end of the results
+		 */
+		private static final Result END = new Result(-1, null, null, null);
+		
+		/**
+		 * The execution producing the results
+		 */
+		private final BulkExecution execution;
+		
+		/**
+		 * The completed results not yet consumed
+		 */
+		private final BlockingQueue<Result> queue = new LinkedBlockingQueue<Result>();
+		
+		/**
+		 * The next result to be returned
+		 */
+		private Result next;
+		
+		/**
+		 * Whether all results have been consumed
+		 */
+		private boolean done;
+		
+		/**
+		 * Whether the consumer has closed this iterator
+		 */
+		private volatile boolean closed;
+		
+		/**
+		 * The error raised while reading the requests, if any
+		 */
+		private volatile RuntimeException failure;
+		
+		private ResultIterator(BulkExecution execution) {
+			this.execution = execution;
+		}
+
+		/**
+		 * Wait for the next result.
+		 * 
+		 * @throws IllegalStateException
+		 *             if interrupted while waiting for the next result
+		 * 
+		 * @throws RuntimeException
+		 *             the error raised by the requests {@link Iterable}, once
+		 *             all the requests read before it have completed
+		 */
+		@Override
+		public boolean hasNext() {
+			if(this.next != null) {
+				return true;
+			}
+			
+			if(this.done || this.closed) {
+				return false;
+			}
+			
+			Result result;
+			try {
+				result = this.queue.take();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for next result", e);
+			}
+			
+			if(result == END) {
+				this.done = true;
+				if(this.failure != null) {
+					throw this.failure;
+				}
+				
+				return false;
+			}
+			
+			this.execution.window.release();
+			this.next = result;
+			return true;
+		}
+
+		@Override
+		public Result next() {
+			if(!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			Result result = this.next;
+			this.next = null;
+			return result;
+		}
+		
+		/**
+		 * Stop the execution: no more requests are read, the ones in flight
+		 * are aborted and the results not yet consumed are discarded.
+		 * 
+		 */
+		@Override
+		public void close() {
+			if(this.closed) {
+				return;
+			}
+			
+			this.closed = true;
+			this.queue.clear();
+			this.execution.close();
+		}
+		
+	}
+	
+	/**
+	 * The outcome of a single request of a bulk execution.
+	 * 
+	 * @author sangupta
+	 * 
+	 * @since 2.1.0
+	 */
+	public static final class Result {
+		
+		/**
+		 * Index of the request in the original sequence
+		 */
+		private final int index;
+		
+		/**
+		 * The request that was executed
+		 */
+		private final WebRequest request;
+		
+		/**
+		 * The response obtained, if any
+		 */
+		private final WebResponse response;
+		
+		/**
+		 * The error raised, if any
+		 */
+		private final Exception error;
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param index
+		 *            index of the request in the original sequence
+		 * 
+		 * @param request
+		 *            the request that was executed
+		 * 
+		 * @param response
+		 *            the response obtained, <code>null</code> if the request
+		 *            failed
+		 * 
+		 * @param error
+		 *            the error raised, <code>null</code> if the request
+		 *            succeeded
+		 */
+		public Result(int index, WebRequest request, WebResponse response, Exception error) {
+			this.index = index;
+			this.request = request;
+			this.response = response;
+			this.error = error;
+		}
+		
+		/**
+		 * @return whether a response was obtained
+		 */
+		public boolean isSuccess() {
+			return this.response != null;
+		}
+
+		/**
+		 * @return the index of the request in the original sequence
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return the request that was executed
+		 */
+		public WebRequest getRequest() {
+			return request;
+		}
+
+		/**
+		 * @return the response obtained, <code>null</code> if the request
+		 *         failed
+		 */
+		public WebResponse getResponse() {
+			return response;
+		}
+
+		/**
+		 * @return the error raised, <code>null</code> if the request
+		 *         succeeded
+		 */
+		public Exception getError() {
+			return error;
+		}
+		
+	}
+
+}
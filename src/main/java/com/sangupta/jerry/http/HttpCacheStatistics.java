@@ -0,0 +1,142 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.client.cache.CacheResponseStatus;
+
+/**
+ * Counters describing how requests executed via a caching {@link HttpExecutor}
+ * were served by the HTTP response cache.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpCacheStatistics {
+	
+	/**
+	 * Responses served entirely from the cache
+	 */
+	private final LongAdder hits = new LongAdder();
+	
+	/**
+	 * Responses fetched from the origin server
+	 */
+	private final LongAdder misses = new LongAdder();
+	
+	/**
+	 * Responses served from the cache after a successful conditional
+	 * revalidation with the origin server
+	 */
+	private final LongAdder validated = new LongAdder();
+	
+	/**
+	 * Responses generated by the caching module itself, like a 504 for an
+	 * only-if-cached request that could not be served
+	 */
+	private final LongAdder moduleResponses = new LongAdder();
+	
+	/**
+	 * Record the cache status of a single response.
+	 * 
+	 * @param status
+	 *            the {@link CacheResponseStatus} of the response, may be
+	 *            <code>null</code>
+	 */
+	void record(CacheResponseStatus status) {
+		if(status == null) {
+			return;
+		}
+		
+		switch(status) {
+			case CACHE_HIT:
+				this.hits.increment();
+				break;
+				
+			case CACHE_MISS:
+				this.misses.increment();
+				break;
+				
+			case VALIDATED:
+				this.validated.increment();
+				break;
+				
+			case CACHE_MODULE_RESPONSE:
+				this.moduleResponses.increment();
+				break;
+				
+			default:
+				break;
+		}
+	}
+	
+	/**
+	 * Reset all counters to zero.
+	 * 
+	 */
+	public void reset() {
+		this.hits.reset();
+		this.misses.reset();
+		this.validated.reset();
+		this.moduleResponses.reset();
+	}
+
+	/**
+	 * @return the number of responses served from the cache
+	 */
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * @return the number of responses fetched from the origin server
+	 */
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * @return the number of responses served from the cache after
+	 *         revalidation
+	 */
+	public long getValidated() {
+		return this.validated.sum();
+	}
+
+	/**
+	 * @return the number of responses generated by the caching module
+	 */
+	public long getModuleResponses() {
+		return this.moduleResponses.sum();
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "[HttpCacheStatistics: hits=" + this.getHits() + ", misses=" + this.getMisses() + ", validated=" + this.getValidated() + ", moduleResponses=" + this.getModuleResponses() + "]";
+	}
+
+}
@@ -0,0 +1,598 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpHost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A circuit breaker per target host for the requests of a
+ * {@link HttpExecutor}, that fails requests fast once a host is found to be
+ * down instead of letting them wait on connect and socket timeouts.
+ * 
+ * Each host starts <code>CLOSED</code>, and the outcomes of its last calls
+ * are kept in a sliding window. A call fails if it raises an I/O error or
+ * gets a <code>5xx</code> response, and is slow if its response headers take
+ * longer than the slow call duration. Once the window holds the minimum
+ * number of calls, and the rate of failed or slow calls crosses its
+ * threshold, the circuit turns <code>OPEN</code> and all requests to the
+ * host are rejected with a {@link HttpCircuitOpenException} without being
+ * sent. After the open duration the circuit turns <code>HALF_OPEN</code>
+ * and lets through a few trial calls: if their failure and slow rates are
+ * below the thresholds the circuit closes, else it opens again.
+ * 
+ * The state of each host is an immutable phase swapped with compare-and-set,
+ * and the window is a ring of atomic slots, so neither recording a call nor
+ * rejecting one takes a lock. Circuits are kept for the 256 most recently
+ * used hosts, besides those that are open; an evicted host starts afresh
+ * with a closed circuit.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpCircuitBreaker {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpCircuitBreaker.class);
+	
+	/**
+	 * The default percentage of failed calls that opens the circuit
+	 */
+	public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+	
+	/**
+	 * The default percentage of slow calls that opens the circuit
+	 */
+	public static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 100;
+	
+	/**
+	 * The default duration after which a call is slow, in millis
+	 */
+	public static final long DEFAULT_SLOW_CALL_DURATION_MILLIS = 10000;
+	
+	/**
+	 * The default number of calls in the sliding window
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 100;
+	
+	/**
+	 * The default number of calls needed before the rates are evaluated
+	 */
+	public static final int DEFAULT_MINIMUM_CALLS = 20;
+	
+	/**
+	 * The default time a circuit stays open, in millis
+	 */
+	public static final long DEFAULT_OPEN_DURATION_MILLIS = 30000;
+	
+	/**
+	 * The default number of trial calls when half-open
+	 */
+	public static final int DEFAULT_HALF_OPEN_CALLS = 5;
+	
+	/**
+	 * The state of the circuit of a host.
+	 * 
+	 */
+	public static enum State {
+		
+		/**
+		 * Calls are let through and recorded
+		 */
+		CLOSED,
+		
+		/**
+		 * Calls are rejected
+		 */
+		OPEN,
+		
+		/**
+		 * A limited number of trial calls are let through
+		 */
+		HALF_OPEN;
+		
+	}
+	
+	private volatile int failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+	
+	private volatile int slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+	
+	private volatile long slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_CALL_DURATION_MILLIS);
+	
+	private volatile int windowSize = DEFAULT_WINDOW_SIZE;
+	
+	private volatile int minimumCalls = DEFAULT_MINIMUM_CALLS;
+	
+	private volatile long openDurationNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_OPEN_DURATION_MILLIS);
+	
+	private volatile int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+	
+	/**
+	 * The circuits by target host, of the most recently used hosts
+	 */
+	private final HostTable<Circuit> circuits = new HostTable<Circuit>(HostTable.DEFAULT_MAX_HOSTS);
+	
+	/**
+	 * Set the percentage of failed calls at which the circuit opens.
+	 * 
+	 * @param percent
+	 *            the percentage, from <code>1</code> to <code>100</code>
+	 * 
+	 * @return this very {@link HttpCircuitBreaker}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if percent is not between <code>1</code> and
+	 *             <code>100</code>
+	 */
+	public HttpCircuitBreaker failureRateThreshold(int percent) {
+		if(percent < 1 || percent > 100) {
+			throw new IllegalArgumentException("Failure rate threshold must be between 1 and 100");
+		}
+		
+		this.failureRateThreshold = percent;
+		return this;
+	}
+	
+	/**
+	 * Set the percentage of slow calls at which the circuit opens, and the
+	 * duration after which a call is slow.
+	 * 
+	 * @param percent
+	 *            the percentage, from <code>1</code> to <code>100</code>
+	 * 
+	 * @param slowCallDuration
+	 *            the time to response headers after which a call is slow
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the duration
+	 * 
+	 * @return this very {@link HttpCircuitBreaker}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if percent is not between <code>1</code> and
+	 *             <code>100</code>, the duration is not positive or time unit
+	 *             is <code>null</code>
+	 */
+	public HttpCircuitBreaker slowCallRateThreshold(int percent, long slowCallDuration, TimeUnit timeUnit) {
+		if(percent < 1 || percent > 100) {
+			throw new IllegalArgumentException("Slow call rate threshold must be between 1 and 100");
+		}
+		
+		if(slowCallDuration <= 0) {
+			throw new IllegalArgumentException("Slow call duration must be positive");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		this.slowCallRateThreshold = percent;
+		this.slowCallDurationNanos = timeUnit.toNanos(slowCallDuration);
+		return this;
+	}
+	
+	/**
+	 * Set the number of calls in the sliding window, and the number of calls
+	 * needed before the rates are evaluated. Applies to circuits that close
+	 * after the change.
+	 * 
+	 * @param windowSize
+	 *            the number of most recent calls whose outcome is kept
+	 * 
+	 * @param minimumCalls
+	 *            the number of calls needed to evaluate the rates
+	 * 
+	 * @return this very {@link HttpCircuitBreaker}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if either is not positive, or minimum calls is more than the
+	 *             window size
+	 */
+	public HttpCircuitBreaker slidingWindow(int windowSize, int minimumCalls) {
+		if(windowSize <= 0 || minimumCalls <= 0) {
+			throw new IllegalArgumentException("Window size and minimum calls must be positive");
+		}
+		
+		if(minimumCalls > windowSize) {
+			throw new IllegalArgumentException("Minimum calls cannot be more than the window size");
+		}
+		
+		this.windowSize = windowSize;
+		this.minimumCalls = minimumCalls;
+		return this;
+	}
+	
+	/**
+	 * Set the time a circuit stays open before letting trial calls through.
+	 * 
+	 * @param openDuration
+	 *            the time to stay open
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the duration
+	 * 
+	 * @return this very {@link HttpCircuitBreaker}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the duration is negative or time unit is
+	 *             <code>null</code>
+	 */
+	public HttpCircuitBreaker openDuration(long openDuration, TimeUnit timeUnit) {
+		if(openDuration < 0) {
+			throw new IllegalArgumentException("Open duration cannot be negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		this.openDurationNanos = timeUnit.toNanos(openDuration);
+		return this;
+	}
+	
+	/**
+	 * Set the number of trial calls let through when half-open.
+	 * 
+	 * @param calls
+	 *            the number of trial calls
+	 * 
+	 * @return this very {@link HttpCircuitBreaker}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if calls is not positive
+	 */
+	public HttpCircuitBreaker halfOpenCalls(int calls) {
+		if(calls <= 0) {
+			throw new IllegalArgumentException("Half-open calls must be positive");
+		}
+		
+		this.halfOpenCalls = calls;
+		return this;
+	}
+	
+	/**
+	 * Return the state of the circuit of the given host.
+	 * 
+	 * @param host
+	 *            the target {@link HttpHost}, with the port
+	 * 
+	 * @return the {@link State}, <code>CLOSED</code> for hosts not seen yet
+	 */
+	public State getState(HttpHost host) {
+		Circuit circuit = this.circuits.peek(host);
+		if(circuit == null) {
+			return State.CLOSED;
+		}
+		
+		return circuit.getState();
+	}
+	
+	/**
+	 * Return the state of the circuit of the host of the given URL.
+	 * 
+	 * @param url
+	 *            the URL to a host
+	 * 
+	 * @return the {@link State}, <code>CLOSED</code> for hosts not seen yet
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the URL is not absolute
+	 */
+	public State getState(String url) {
+		HttpHost host = HttpExecutor.getTargetHost(URI.create(url));
+		if(host == null) {
+			throw new IllegalArgumentException("URL must be absolute");
+		}
+		
+		return this.getState(host);
+	}
+	
+	/**
+	 * Return the state of all circuits.
+	 * 
+	 * @return the {@link State} by host URI, like
+	 *         <code>http://example.com:80</code>
+	 */
+	public Map<String, State> getStates() {
+		Map<String, State> states = new HashMap<String, State>();
+		for(Map.Entry<HttpHost, Circuit> entry : this.circuits.entrySet()) {
+			states.put(entry.getKey().toURI(), entry.getValue().getState());
+		}
+		
+		return Collections.unmodifiableMap(states);
+	}
+	
+	/**
+	 * Return the number of requests rejected as the circuit was not closed.
+	 * 
+	 * @return the number of rejections over all hosts
+	 */
+	public long getRejections() {
+		long rejections = 0;
+		for(Circuit circuit : this.circuits.values()) {
+			rejections += circuit.rejections.sum();
+		}
+		
+		return rejections;
+	}
+	
+	/**
+	 * Close the circuit of the given host, forgetting its recorded calls.
+	 * 
+	 * @param host
+	 *            the target {@link HttpHost}
+	 */
+	public void reset(HttpHost host) {
+		this.circuits.remove(host);
+	}
+	
+	/**
+	 * Close all circuits, forgetting all recorded calls.
+	 * 
+	 */
+	public void resetAll() {
+		this.circuits.clear();
+	}
+	
+	/**
+	 * Acquire permission to call the host of the given URI.
+	 * 
+	 * @return the {@link Phase} to record the outcome in, or
+	 *         <code>null</code> if the URI has no host
+	 * 
+	 * @throws HttpCircuitOpenException
+	 *             if the circuit of the host is not closed
+	 */
+	Phase acquire(URI uri) throws HttpCircuitOpenException {
+		HttpHost host = HttpExecutor.getTargetHost(uri);
+		if(host == null) {
+			return null;
+		}
+		
+		Circuit circuit = this.circuits.get(host);
+		if(circuit == null) {
+			circuit = this.circuits.putIfAbsent(host, new Circuit(host));
+		}
+		
+		return circuit.acquire();
+	}
+	
+	/**
+	 * The circuit of a single host.
+	 * 
+	 */
+	private final class Circuit extends HostTable.Entry {
+		
+		private final HttpHost host;
+		
+		private final AtomicReference<Phase> phase;
+		
+		private final LongAdder rejections = new LongAdder();
+		
+		Circuit(HttpHost host) {
+			this.host = host;
+			this.phase = new AtomicReference<Phase>(new Phase(this, State.CLOSED, 0, windowSize, minimumCalls));
+		}
+		
+		State getState() {
+			Phase phase = this.phase.get();
+			if(phase.state == State.OPEN && System.nanoTime() - phase.openedAt >= openDurationNanos) {
+				return State.HALF_OPEN;
+			}
+			
+			return phase.state;
+		}
+		
+		/**
+		 * An open circuit is kept, so that its host is not hit again before
+		 * the open duration is over.
+		 * 
+		 */
+		@Override
+		boolean isEvictable() {
+			return this.getState() != State.OPEN;
+		}
+		
+		Phase acquire() throws HttpCircuitOpenException {
+			while(true) {
+				Phase current = this.phase.get();
+				switch(current.state) {
+					case CLOSED:
+						return current;
+						
+					case HALF_OPEN:
+						if(current.permits.decrementAndGet() >= 0) {
+							return current;
+						}
+						
+						break;
+						
+					case OPEN:
+						if(System.nanoTime() - current.openedAt >= openDurationNanos) {
+							int calls = halfOpenCalls;
+							this.transition(current, new Phase(this, State.HALF_OPEN, 0, calls, calls));
+							continue;
+						}
+						
+						break;
+				}
+				
+				this.rejections.increment();
+				throw new HttpCircuitOpenException("Circuit is open for host: " + this.host.toURI());
+			}
+		}
+		
+		void transition(Phase from, Phase to) {
+			if(this.phase.compareAndSet(from, to)) {
+				LOGGER.debug("Circuit for host {} is now {}", this.host, to.state);
+			}
+		}
+		
+	}
+	
+	/**
+	 * One phase in the life of a circuit. A closed or half-open phase keeps
+	 * the outcomes of its calls, which are recorded in the phase the call
+	 * was let through in - so that calls started before a transition do not
+	 * count towards the next phase.
+	 * 
+	 */
+	final class Phase {
+		
+		private static final int RECORDED = 1;
+		
+		private static final int FAILED = 2;
+		
+		private static final int SLOW = 4;
+		
+		private final Circuit circuit;
+		
+		private final State state;
+		
+		/**
+		 * When the circuit opened, if open
+		 */
+		private final long openedAt;
+		
+		/**
+		 * Calls needed to evaluate the rates
+		 */
+		private final int minimumCalls;
+		
+		/**
+		 * Trial calls left, if half-open
+		 */
+		private final AtomicInteger permits;
+		
+		/**
+		 * Outcomes of the most recent calls
+		 */
+		private final AtomicIntegerArray window;
+		
+		private final AtomicLong cursor = new AtomicLong();
+		
+		private final AtomicInteger calls = new AtomicInteger();
+		
+		private final AtomicInteger failures = new AtomicInteger();
+		
+		private final AtomicInteger slowCalls = new AtomicInteger();
+		
+		Phase(Circuit circuit, State state, long openedAt, int windowSize, int minimumCalls) {
+			this.circuit = circuit;
+			this.state = state;
+			this.openedAt = openedAt;
+			this.minimumCalls = minimumCalls;
+			this.window = new AtomicIntegerArray(Math.max(windowSize, 1));
+			this.permits = state == State.HALF_OPEN ? new AtomicInteger(windowSize) : null;
+		}
+		
+		/**
+		 * Record the outcome of a call.
+		 * 
+		 * @param durationNanos
+		 *            the time taken to get the response headers, or to fail
+		 * 
+		 * @param failed
+		 *            whether the call failed
+		 */
+		void record(long durationNanos, boolean failed) {
+			int outcome = RECORDED;
+			if(failed) {
+				outcome |= FAILED;
+			}
+			
+			if(durationNanos > slowCallDurationNanos) {
+				outcome |= SLOW;
+			}
+			
+			int slot = (int) (this.cursor.getAndIncrement() % this.window.length());
+			int previous = this.window.getAndSet(slot, outcome);
+			this.add(previous, -1);
+			this.add(outcome, 1);
+			
+			this.evaluate();
+		}
+		
+		/**
+		 * A call that was let through ended without an outcome, as it was
+		 * aborted or rejected by the rate limiter.
+		 * 
+		 */
+		void ignore() {
+			if(this.permits != null) {
+				this.permits.incrementAndGet();
+			}
+		}
+		
+		private void add(int outcome, int delta) {
+			if((outcome & RECORDED) == 0) {
+				return;
+			}
+			
+			this.calls.addAndGet(delta);
+			if((outcome & FAILED) != 0) {
+				this.failures.addAndGet(delta);
+			}
+			
+			if((outcome & SLOW) != 0) {
+				this.slowCalls.addAndGet(delta);
+			}
+		}
+		
+		private void evaluate() {
+			int calls = this.calls.get();
+			if(calls < this.minimumCalls) {
+				return;
+			}
+			
+			boolean tripped = this.failures.get() * 100L >= (long) failureRateThreshold * calls
+					|| this.slowCalls.get() * 100L >= (long) slowCallRateThreshold * calls;
+			
+			if(tripped) {
+				this.circuit.transition(this, new Phase(this.circuit, State.OPEN, System.nanoTime(), 0, 0));
+				return;
+			}
+			
+			if(this.state == State.HALF_OPEN) {
+				this.circuit.transition(this, new Phase(this.circuit, State.CLOSED, 0, windowSize, HttpCircuitBreaker.this.minimumCalls));
+			}
+		}
+		
+	}
+	
+}
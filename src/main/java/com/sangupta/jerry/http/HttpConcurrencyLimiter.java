@@ -0,0 +1,510 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An adaptive limit on the requests in flight to each target host of a
+ * {@link HttpExecutor}, discovered from the measured round-trip times
+ * instead of being configured up front.
+ * 
+ * The limit follows the TCP Vegas algorithm: the lowest round-trip time
+ * seen is taken as the latency without queueing, and the number of
+ * requests queued upstream is estimated as
+ * <code>limit * (1 - minRtt / rtt)</code>. While the estimate is small the
+ * limit grows, and once it is large the limit shrinks. A failed request
+ * shrinks the limit multiplicatively. The lowest round-trip time is probed
+ * afresh every so often, so that a host that has become slower for good
+ * is not throttled forever. The limit only grows while the requests in
+ * flight make use of it.
+ * 
+ * A request to a host at its limit either waits, in arrival order, for a
+ * slot for up to the configured time, or is rejected with a
+ * {@link HttpConcurrencyLimitException}. Asynchronous requests are limited
+ * too, but never wait. A request is in flight until its response has been
+ * consumed or closed, so that the round-trip time includes the transfer of
+ * the body.
+ * 
+ * An executor built via {@link HttpExecutor#builder()} owns its pool and
+ * sets the maximum connections of each route to the limit of the route, so
+ * that the pool neither caps a fast host at the static default nor keeps
+ * idle connections to a fragile one. Executors sharing the global pool
+ * leave it untouched and only gate the requests in flight.
+ * 
+ * Limits are kept for the 256 most recently used hosts, besides those with
+ * requests in flight; an evicted host starts afresh at the initial limit.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpConcurrencyLimiter {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpConcurrencyLimiter.class);
+	
+	/**
+	 * The default limit of a host not seen yet
+	 */
+	public static final int DEFAULT_INITIAL_LIMIT = 5;
+	
+	/**
+	 * The default lowest limit
+	 */
+	public static final int DEFAULT_MIN_LIMIT = 1;
+	
+	/**
+	 * The default highest limit
+	 */
+	public static final int DEFAULT_MAX_LIMIT = 200;
+	
+	/**
+	 * Factor applied to the limit when a request fails
+	 */
+	private static final double BACK_OFF_RATIO = 0.9;
+	
+	/**
+	 * Samples after which the lowest round-trip time is probed afresh
+	 */
+	private static final long PROBE_INTERVAL_SAMPLES = 1000;
+	
+	private volatile int initialLimit = DEFAULT_INITIAL_LIMIT;
+	
+	private volatile int minLimit = DEFAULT_MIN_LIMIT;
+	
+	private volatile int maxLimit = DEFAULT_MAX_LIMIT;
+	
+	/**
+	 * Time to wait for a slot, zero to reject right away
+	 */
+	private volatile long maxWaitNanos = 0;
+	
+	/**
+	 * The limits by target host, of the most recently used hosts
+	 */
+	private final HostTable<RouteLimit> limits = new HostTable<RouteLimit>(HostTable.DEFAULT_MAX_HOSTS);
+	
+	private final LongAdder rejections = new LongAdder();
+	
+	/**
+	 * Set the initial, lowest and highest limit of a host.
+	 * 
+	 * @param initialLimit
+	 *            the limit of a host not seen yet
+	 * 
+	 * @param minLimit
+	 *            the lowest limit
+	 * 
+	 * @param maxLimit
+	 *            the highest limit
+	 * 
+	 * @return this very {@link HttpConcurrencyLimiter}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the lowest limit is not positive, or the initial limit is
+	 *             not between the lowest and highest limits
+	 */
+	public HttpConcurrencyLimiter limits(int initialLimit, int minLimit, int maxLimit) {
+		if(minLimit <= 0) {
+			throw new IllegalArgumentException("Minimum limit must be positive");
+		}
+		
+		if(initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("Initial limit must be between minimum and maximum limits");
+		}
+		
+		this.initialLimit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		return this;
+	}
+	
+	/**
+	 * Let blocking requests to a host at its limit wait for a slot.
+	 * 
+	 * @param maxWait
+	 *            the maximum time to wait for a slot
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the wait
+	 * 
+	 * @return this very {@link HttpConcurrencyLimiter}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if wait is negative or time unit is <code>null</code>
+	 */
+	public HttpConcurrencyLimiter queue(long maxWait, TimeUnit timeUnit) {
+		if(maxWait < 0) {
+			throw new IllegalArgumentException("Max wait cannot be negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		this.maxWaitNanos = timeUnit.toNanos(maxWait);
+		return this;
+	}
+	
+	/**
+	 * Reject requests to a host at its limit right away. This is the
+	 * default.
+	 * 
+	 * @return this very {@link HttpConcurrencyLimiter}
+	 */
+	public HttpConcurrencyLimiter rejectWhenLimited() {
+		this.maxWaitNanos = 0;
+		return this;
+	}
+	
+	/**
+	 * Return the current limit of the given host.
+	 * 
+	 * @param host
+	 *            the target {@link HttpHost}, with the port
+	 * 
+	 * @return the limit, the initial limit for hosts not seen yet
+	 */
+	public int getLimit(HttpHost host) {
+		RouteLimit limit = this.limits.peek(host);
+		if(limit == null) {
+			return this.initialLimit;
+		}
+		
+		return limit.getLimit();
+	}
+	
+	/**
+	 * Return the number of requests in flight to the given host.
+	 * 
+	 * @param host
+	 *            the target {@link HttpHost}, with the port
+	 * 
+	 * @return the requests in flight
+	 */
+	public int getInFlight(HttpHost host) {
+		RouteLimit limit = this.limits.peek(host);
+		if(limit == null) {
+			return 0;
+		}
+		
+		return limit.inFlight.get();
+	}
+	
+	/**
+	 * Return the current limit of all hosts seen.
+	 * 
+	 * @return the limit by host URI, like <code>http://example.com:80</code>
+	 */
+	public Map<String, Integer> getLimits() {
+		Map<String, Integer> map = new HashMap<String, Integer>();
+		for(Map.Entry<HttpHost, RouteLimit> entry : this.limits.entrySet()) {
+			map.put(entry.getKey().toURI(), entry.getValue().getLimit());
+		}
+		
+		return Collections.unmodifiableMap(map);
+	}
+	
+	/**
+	 * @return the number of requests rejected as their host was at its limit
+	 */
+	public long getRejections() {
+		return this.rejections.sum();
+	}
+	
+	/**
+	 * Acquire a slot for a request to the host of the given URI.
+	 * 
+	 * @param uri
+	 *            the URI of the request
+	 * 
+	 * @param wait
+	 *            whether the request may wait for a slot
+	 * 
+	 * @return the {@link RouteLimit} to release the slot to, or
+	 *         <code>null</code> if the URI has no host
+	 * 
+	 * @throws HttpConcurrencyLimitException
+	 *             if no slot could be acquired
+	 */
+	RouteLimit acquire(URI uri, boolean wait) {
+		HttpHost host = HttpExecutor.getTargetHost(uri);
+		if(host == null) {
+			return null;
+		}
+		
+		RouteLimit limit = this.limits.get(host);
+		if(limit == null) {
+			limit = this.limits.putIfAbsent(host, new RouteLimit(host, this.initialLimit));
+		}
+		
+		if(limit.tryAcquire()) {
+			return limit;
+		}
+		
+		long maxWait = this.maxWaitNanos;
+		if(wait && maxWait > 0 && limit.acquire(maxWait)) {
+			return limit;
+		}
+		
+		this.rejections.increment();
+		throw new HttpConcurrencyLimitException("Host is at its concurrency limit of " + limit.getLimit() + ": " + host.toURI());
+	}
+	
+	/**
+	 * The limit of a single host.
+	 * 
+	 */
+	final class RouteLimit extends HostTable.Entry {
+		
+		private final HttpHost host;
+		
+		/**
+		 * The limit, as the bits of a double
+		 */
+		private final AtomicLong limitBits;
+		
+		private final AtomicInteger inFlight = new AtomicInteger();
+		
+		/**
+		 * Lowest round-trip time seen since the last probe
+		 */
+		private final AtomicLong minRttNanos = new AtomicLong(Long.MAX_VALUE);
+		
+		private final AtomicLong samples = new AtomicLong();
+		
+		/**
+		 * Threads waiting for a slot, in arrival order
+		 */
+		private final Queue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+		
+		/**
+		 * Serializes applying the limit to the connection pool, without
+		 * pinning the carrier of a virtual thread as a monitor would
+		 */
+		private final ReentrantLock poolLock = new ReentrantLock();
+		
+		RouteLimit(HttpHost host, int initialLimit) {
+			this.host = host;
+			this.limitBits = new AtomicLong(Double.doubleToLongBits(initialLimit));
+		}
+		
+		/**
+		 * Only an idle limit is evicted, so that the slots in flight are
+		 * released to the limit that counts them.
+		 * 
+		 */
+		@Override
+		boolean isEvictable() {
+			return this.inFlight.get() == 0 && this.waiters.isEmpty();
+		}
+		
+		/**
+		 * @return the limit, rounded up
+		 */
+		int getLimit() {
+			return (int) Math.ceil(Double.longBitsToDouble(this.limitBits.get()));
+		}
+		
+		/**
+		 * Set the maximum connections of the given route in the pool to the
+		 * current limit. The limit is read and applied under a lock, so that
+		 * requests completing concurrently cannot leave the pool at a stale
+		 * limit.
+		 * 
+		 */
+		void applyTo(PoolingHttpClientConnectionManager connectionManager, HttpRoute route) {
+			this.poolLock.lock();
+			try {
+				connectionManager.setMaxPerRoute(route, this.getLimit());
+			} finally {
+				this.poolLock.unlock();
+			}
+		}
+		
+		boolean tryAcquire() {
+			final int limit = this.getLimit();
+			while(true) {
+				int current = this.inFlight.get();
+				if(current >= limit) {
+					return false;
+				}
+				
+				if(this.inFlight.compareAndSet(current, current + 1)) {
+					return true;
+				}
+			}
+		}
+		
+		/**
+		 * Wait for a slot, behind the threads already waiting.
+		 * 
+		 */
+		boolean acquire(long maxWaitNanos) {
+			final Thread current = Thread.currentThread();
+			final long deadline = System.nanoTime() + maxWaitNanos;
+			
+			this.waiters.add(current);
+			try {
+				while(true) {
+					if(this.waiters.peek() == current && this.tryAcquire()) {
+						return true;
+					}
+					
+					long remaining = deadline - System.nanoTime();
+					if(remaining <= 0 || current.isInterrupted()) {
+						return false;
+					}
+					
+					LockSupport.parkNanos(this, remaining);
+				}
+			} finally {
+				this.waiters.remove(current);
+				
+				// pass the turn on to the next waiter
+				this.signal();
+			}
+		}
+		
+		private void signal() {
+			Thread next = this.waiters.peek();
+			if(next != null) {
+				LockSupport.unpark(next);
+			}
+		}
+		
+		/**
+		 * Release the slot of a request that ended without a usable sample,
+		 * as it was aborted or rejected.
+		 * 
+		 */
+		void release() {
+			this.inFlight.decrementAndGet();
+			this.signal();
+		}
+		
+		/**
+		 * Release the slot of a completed request, updating the limit.
+		 * 
+		 * @param rttNanos
+		 *            the time taken to complete the exchange, or to fail
+		 * 
+		 * @param failed
+		 *            whether the request failed
+		 * 
+		 * @return the limit to apply to the pool if it changed, or this is
+		 *         the first sample of the host, else <code>-1</code>
+		 */
+		int release(long rttNanos, boolean failed) {
+			final int inFlight = this.inFlight.getAndDecrement();
+			try {
+				final long sample = this.samples.incrementAndGet();
+				int changed = this.update(rttNanos, failed, inFlight, sample);
+				if(changed < 0 && sample == 1) {
+					return this.getLimit();
+				}
+				
+				return changed;
+			} finally {
+				this.signal();
+			}
+		}
+		
+		private int update(long rttNanos, boolean failed, int inFlight, long sample) {
+			if(sample % PROBE_INTERVAL_SAMPLES == 0) {
+				this.minRttNanos.set(rttNanos);
+			} else if(!failed) {
+				while(true) {
+					long current = this.minRttNanos.get();
+					if(rttNanos >= current || this.minRttNanos.compareAndSet(current, rttNanos)) {
+						break;
+					}
+				}
+			}
+			
+			final long minRtt = this.minRttNanos.get();
+			final int min = minLimit;
+			final int max = maxLimit;
+			while(true) {
+				long bits = this.limitBits.get();
+				double limit = Double.longBitsToDouble(bits);
+				double next;
+				
+				if(failed) {
+					next = limit * BACK_OFF_RATIO;
+				} else if(inFlight * 2 < limit || minRtt == Long.MAX_VALUE || rttNanos <= 0) {
+					// not enough demand to learn anything
+					return -1;
+				} else {
+					double log = Math.max(1, Math.log10(limit));
+					double queue = limit * (1 - (double) minRtt / rttNanos);
+					if(queue <= 3 * log) {
+						next = limit + log;
+					} else if(queue >= 6 * log) {
+						next = limit - log;
+					} else {
+						return -1;
+					}
+				}
+				
+				next = Math.max(min, Math.min(max, next));
+				if(next == limit) {
+					return -1;
+				}
+				
+				if(this.limitBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+					int previous = (int) Math.ceil(limit);
+					int current = (int) Math.ceil(next);
+					if(previous == current) {
+						return -1;
+					}
+					
+					LOGGER.debug("Concurrency limit of host {} is now {}", this.host, current);
+					return current;
+				}
+			}
+		}
+		
+	}
+	
+}
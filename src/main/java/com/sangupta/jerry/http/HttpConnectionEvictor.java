@@ -0,0 +1,364 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+
+package com.sangupta.jerry.http;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Closes the idle connections of the pool of a {@link HttpExecutor} in the
+ * background, before the server does, so that a request does not pick up a
+ * half-closed socket and fail with a <code>NoHttpResponseException</code>.
+ * 
+ * An idle connection is closed once it is past the keep-alive period the
+ * server announced in its <code>Keep-Alive: timeout=</code> header, once it
+ * has been idle for the idle timeout, or once it has been open for the
+ * maximum lifetime. The keep-alive period is shortened by up to a second,
+ * and by up to half for short periods, so that the client gives up on the
+ * connection before the server closes it.
+ * 
+ * A single daemon thread, shared by all pools, sweeps every second. Every
+ * executor starts with an evictor; executors sharing the global pool share
+ * its evictor.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpConnectionEvictor {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpConnectionEvictor.class);
+	
+	/**
+	 * The default time after which an idle connection is closed, in millis
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30000;
+	
+	/**
+	 * How often the pools are swept, in millis
+	 */
+	static final long SWEEP_INTERVAL_MILLIS = 1000;
+	
+	/**
+	 * The largest amount a keep-alive period is shortened by, in millis
+	 */
+	private static final long MAX_KEEP_ALIVE_MARGIN_MILLIS = 1000;
+	
+	/**
+	 * Sets the keep-alive period of a connection from the
+	 * <code>Keep-Alive</code> header of its last response, shortened so that
+	 * the client closes the connection first. Connections without the header
+	 * are kept until the evictor or the server closes them.
+	 */
+	static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = new ConnectionKeepAliveStrategy() {
+		
+		@Override
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			HeaderElementIterator iterator = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+			while(iterator.hasNext()) {
+				HeaderElement element = iterator.nextElement();
+				if(element.getValue() != null && "timeout".equalsIgnoreCase(element.getName())) {
+					try {
+						return getKeepAliveMillis(Long.parseLong(element.getValue().trim()));
+					} catch(NumberFormatException e) {
+						// ignore
+					}
+				}
+			}
+			
+			return -1;
+		}
+		
+	};
+	
+	/**
+	 * The pools being swept, held weakly so that an executor that is never
+	 * shut down can still be collected
+	 */
+	private static final List<Registration> REGISTRATIONS = new CopyOnWriteArrayList<Registration>();
+	
+	/**
+	 * Runs the sweeps of all pools
+	 */
+	private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("jerry-http-evictor"));
+	
+	static {
+		SWEEPER.scheduleWithFixedDelay(new Runnable() {
+			
+			@Override
+			public void run() {
+				sweep();
+			}
+			
+		}, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Run the given housekeeping task on the sweeper thread at every sweep,
+	 * till the returned future is cancelled. The task must not throw.
+	 * 
+	 * @param task
+	 *            the task to run
+	 * 
+	 * @return the {@link ScheduledFuture} to cancel the task with
+	 */
+	static ScheduledFuture<?> scheduleWithSweep(Runnable task) {
+		return SWEEPER.scheduleWithFixedDelay(task, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	private volatile long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+	
+	private volatile long maxLifetimeMillis;
+	
+	/**
+	 * Connections closed as past their keep-alive period
+	 */
+	final LongAdder expired = new LongAdder();
+	
+	/**
+	 * Connections closed as idle for too long
+	 */
+	final LongAdder idle = new LongAdder();
+	
+	/**
+	 * Connections closed as open for too long
+	 */
+	final LongAdder aged = new LongAdder();
+	
+	/**
+	 * Set the time after which an idle connection is closed. Zero keeps
+	 * idle connections until their keep-alive period ends.
+	 * 
+	 * @param idleTimeout
+	 *            the idle timeout
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the timeout
+	 * 
+	 * @return this very {@link HttpConnectionEvictor}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the timeout is negative or time unit is
+	 *             <code>null</code>
+	 */
+	public HttpConnectionEvictor idleTimeout(long idleTimeout, TimeUnit timeUnit) {
+		this.idleTimeoutMillis = toMillis(idleTimeout, timeUnit, "Idle timeout");
+		return this;
+	}
+	
+	/**
+	 * Set the time after which a connection is closed once idle, however
+	 * much it is used. Zero, the default, does not limit the lifetime.
+	 * 
+	 * @param maxLifetime
+	 *            the maximum lifetime
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the lifetime
+	 * 
+	 * @return this very {@link HttpConnectionEvictor}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the lifetime is negative or time unit is
+	 *             <code>null</code>
+	 */
+	public HttpConnectionEvictor maxLifetime(long maxLifetime, TimeUnit timeUnit) {
+		this.maxLifetimeMillis = toMillis(maxLifetime, timeUnit, "Max lifetime");
+		return this;
+	}
+	
+	private static long toMillis(long value, TimeUnit timeUnit, String name) {
+		if(value < 0) {
+			throw new IllegalArgumentException(name + " cannot be negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		return timeUnit.toMillis(value);
+	}
+	
+	/**
+	 * @return the idle timeout in millis
+	 */
+	public long getIdleTimeoutMillis() {
+		return this.idleTimeoutMillis;
+	}
+	
+	/**
+	 * @return the maximum lifetime in millis, zero if not limited
+	 */
+	public long getMaxLifetimeMillis() {
+		return this.maxLifetimeMillis;
+	}
+	
+	/**
+	 * @return the number of connections closed as past the keep-alive period
+	 *         of the server
+	 */
+	public long getExpiredEvictions() {
+		return this.expired.sum();
+	}
+	
+	/**
+	 * @return the number of connections closed as idle for longer than the
+	 *         idle timeout
+	 */
+	public long getIdleEvictions() {
+		return this.idle.sum();
+	}
+	
+	/**
+	 * @return the number of connections closed as open for longer than the
+	 *         maximum lifetime
+	 */
+	public long getLifetimeEvictions() {
+		return this.aged.sum();
+	}
+	
+	/**
+	 * @return the number of connections closed for any reason
+	 */
+	public long getEvictions() {
+		return this.expired.sum() + this.idle.sum() + this.aged.sum();
+	}
+	
+	/**
+	 * Return the keep-alive period to use for the one announced by the
+	 * server.
+	 * 
+	 */
+	static long getKeepAliveMillis(long timeoutSeconds) {
+		if(timeoutSeconds <= 0) {
+			// not to be reused, but zero would mean forever
+			return 1;
+		}
+		
+		long millis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+		return millis - Math.min(MAX_KEEP_ALIVE_MARGIN_MILLIS, millis / 2);
+	}
+	
+	/**
+	 * Sweep the given pool with the given evictor, replacing any evictor the
+	 * pool had.
+	 * 
+	 */
+	static void register(EvictableConnectionManager connectionManager, HttpConnectionEvictor evictor) {
+		synchronized(REGISTRATIONS) {
+			unregister(connectionManager);
+			if(evictor != null) {
+				REGISTRATIONS.add(new Registration(connectionManager, evictor));
+			}
+		}
+	}
+	
+	/**
+	 * Stop sweeping the given pool.
+	 * 
+	 */
+	static void unregister(EvictableConnectionManager connectionManager) {
+		synchronized(REGISTRATIONS) {
+			for(Registration registration : REGISTRATIONS) {
+				EvictableConnectionManager registered = registration.connectionManager.get();
+				if(registered == null || registered == connectionManager) {
+					REGISTRATIONS.remove(registration);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Return the evictor sweeping the given pool.
+	 * 
+	 */
+	static HttpConnectionEvictor getEvictor(EvictableConnectionManager connectionManager) {
+		for(Registration registration : REGISTRATIONS) {
+			if(registration.connectionManager.get() == connectionManager) {
+				return registration.evictor;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Sweep all pools once.
+	 * 
+	 */
+	static void sweep() {
+		Iterator<Registration> iterator = REGISTRATIONS.iterator();
+		while(iterator.hasNext()) {
+			Registration registration = iterator.next();
+			EvictableConnectionManager connectionManager = registration.connectionManager.get();
+			if(connectionManager == null) {
+				REGISTRATIONS.remove(registration);
+				continue;
+			}
+			
+			try {
+				connectionManager.evict(registration.evictor);
+			} catch(RuntimeException e) {
+				LOGGER.warn("Unable to evict connections", e);
+			}
+		}
+	}
+	
+	/**
+	 * A pool and its evictor
+	 */
+	private static final class Registration {
+		
+		private final WeakReference<EvictableConnectionManager> connectionManager;
+		
+		private final HttpConnectionEvictor evictor;
+		
+		Registration(EvictableConnectionManager connectionManager, HttpConnectionEvictor evictor) {
+			this.connectionManager = new WeakReference<EvictableConnectionManager>(connectionManager);
+			this.evictor = evictor;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,364 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens connections of a pool ahead of the requests that need them, so that
+ * the TCP and TLS handshakes are not paid by the first requests to a route.
+ * 
+ * A warm-up leases the wanted number of connections at once, which makes the
+ * pool validate the idle ones and hand out empty slots for the rest, opens
+ * the empty ones in parallel and releases them all back as idle. Routes with
+ * a minimum number of idle connections are warmed up again periodically, so
+ * that connections closed by the server or found stale are replaced.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+final class HttpConnectionWarmer {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpConnectionWarmer.class);
+	
+	/**
+	 * Time given to a single connection to open, in millis
+	 */
+	static final int CONNECT_TIMEOUT_MILLIS = 10000;
+	
+	/**
+	 * How often the routes with a minimum of idle connections are checked,
+	 * in millis
+	 */
+	static final long MAINTENANCE_INTERVAL_MILLIS = 5000;
+	
+	/**
+	 * How long the periodic warm-up waits for a slot of a busy route, in
+	 * millis - a route whose connections are all in use needs no warming
+	 */
+	private static final long MAINTENANCE_LEASE_MILLIS = 100;
+	
+	/**
+	 * Runs the periodic warm-ups of all pools
+	 */
+	private static final ScheduledExecutorService SCHEDULER;
+	
+	static {
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("jerry-http-warm-up"));
+		scheduler.setRemoveOnCancelPolicy(true);
+		SCHEDULER = scheduler;
+	}
+	
+	/**
+	 * The pool being warmed up
+	 */
+	private final PoolingHttpClientConnectionManager connectionManager;
+	
+	/**
+	 * Minimum idle connections by route
+	 */
+	private final ConcurrentMap<HttpRoute, Integer> minIdle = new ConcurrentHashMap<HttpRoute, Integer>();
+	
+	/**
+	 * The periodic warm-up, <code>null</code> when no route has a minimum
+	 */
+	private ScheduledFuture<?> maintenance;
+	
+	HttpConnectionWarmer(PoolingHttpClientConnectionManager connectionManager) {
+		this.connectionManager = connectionManager;
+	}
+	
+	/**
+	 * Keep at least the given number of idle connections open to the route,
+	 * as far as the maximum connections of the route allow with the ones in
+	 * use. Zero removes the minimum.
+	 * 
+	 */
+	void setMinIdle(HttpRoute route, int count) {
+		if(count == 0) {
+			this.minIdle.remove(route);
+		} else {
+			this.minIdle.put(route, count);
+		}
+		
+		synchronized(this) {
+			if(this.minIdle.isEmpty()) {
+				this.cancel();
+			} else if(this.maintenance == null) {
+				this.maintenance = SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+					
+					@Override
+					public void run() {
+						maintain();
+					}
+					
+				}, MAINTENANCE_INTERVAL_MILLIS, MAINTENANCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+	
+	/**
+	 * @return the routes with a minimum of idle connections
+	 */
+	Map<HttpRoute, Integer> getMinIdle() {
+		return Collections.unmodifiableMap(new HashMap<HttpRoute, Integer>(this.minIdle));
+	}
+	
+	/**
+	 * Stop the periodic warm-up.
+	 * 
+	 */
+	synchronized void cancel() {
+		if(this.maintenance != null) {
+			this.maintenance.cancel(false);
+			this.maintenance = null;
+		}
+	}
+	
+	/**
+	 * Warm up all routes with a minimum of idle connections in parallel, and
+	 * wait until they are warm or the timeout expires.
+	 * 
+	 * @return <code>true</code> if all routes are warm
+	 */
+	boolean awaitWarm(long timeoutNanos) throws InterruptedException {
+		final long deadline = System.nanoTime() + timeoutNanos;
+		
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for(final Entry<HttpRoute, Integer> entry : this.minIdle.entrySet()) {
+			FutureTask<Integer> task = new FutureTask<Integer>(new Callable<Integer>() {
+				
+				@Override
+				public Integer call() throws Exception {
+					return warmUp(entry.getKey(), entry.getValue(), deadline);
+				}
+				
+			});
+			
+			VirtualThreads.shared().execute(task);
+			futures.add(task);
+		}
+		
+		for(Future<Integer> future : futures) {
+			try {
+				future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			} catch(ExecutionException e) {
+				LOGGER.debug("Unable to warm up connections", e.getCause());
+			} catch(TimeoutException e) {
+				return false;
+			}
+		}
+		
+		for(Entry<HttpRoute, Integer> entry : this.minIdle.entrySet()) {
+			if(!this.isWarm(entry.getKey(), entry.getValue())) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Check if the route has the given number of connections open, or all
+	 * its connections are in use.
+	 * 
+	 */
+	boolean isWarm(HttpRoute route, int count) {
+		PoolStats stats = this.connectionManager.getStats(route);
+		int target = Math.min(count, stats.getMax() - stats.getLeased());
+		return stats.getAvailable() >= target;
+	}
+	
+	/**
+	 * Warm up all routes with a minimum of idle connections once.
+	 * 
+	 */
+	void maintain() {
+		for(Entry<HttpRoute, Integer> entry : this.minIdle.entrySet()) {
+			// a route not in use is warmed up even if it has enough idle
+			// connections, so that the ones closed by the server are found
+			HttpRoute route = entry.getKey();
+			if(this.isWarm(route, entry.getValue()) && this.connectionManager.getStats(route).getLeased() > 0) {
+				continue;
+			}
+			
+			try {
+				this.warmUp(route, entry.getValue(), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAINTENANCE_INTERVAL_MILLIS), MAINTENANCE_LEASE_MILLIS);
+			} catch(IOException e) {
+				LOGGER.debug("Unable to keep connections warm for route: {}", route, e);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch(RuntimeException e) {
+				LOGGER.warn("Unable to keep connections warm for route: {}", route, e);
+			}
+		}
+	}
+	
+	/**
+	 * Open connections to the route until the given number are open, or all
+	 * connections of the route are.
+	 * 
+	 * @return the number of connections opened
+	 */
+	int warmUp(HttpRoute route, int count, long deadline) throws IOException, InterruptedException {
+		return this.warmUp(route, count, deadline, Long.MAX_VALUE);
+	}
+	
+	private int warmUp(final HttpRoute route, int count, long deadline, long maxLeaseMillis) throws IOException, InterruptedException {
+		if(route.getProxyHost() != null) {
+			throw new IllegalArgumentException("Warming up routes via a proxy is not supported");
+		}
+		
+		PoolStats stats = this.connectionManager.getStats(route);
+		count = Math.min(count, stats.getMax() - stats.getLeased());
+		
+		// lease all at once, else the pool hands back the same connection
+		List<HttpClientConnection> leased = new ArrayList<HttpClientConnection>(count);
+		List<HttpClientConnection> unopened = new ArrayList<HttpClientConnection>(count);
+		List<Future<Void>> opening = new ArrayList<Future<Void>>(count);
+		IOException error = null;
+		int opened = 0;
+		try {
+			for(int index = 0; index < count; index++) {
+				long millis = Math.min(maxLeaseMillis, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+				if(millis <= 0) {
+					break;
+				}
+				
+				HttpClientConnection connection;
+				ConnectionRequest request = this.connectionManager.requestConnection(route, null);
+				try {
+					connection = request.get(millis, TimeUnit.MILLISECONDS);
+				} catch(ConnectionPoolTimeoutException e) {
+					// the remaining connections are in use
+					break;
+				} catch(ExecutionException e) {
+					throw new IOException("Unable to lease connection for route: " + route, e.getCause());
+				}
+				
+				if(connection.isOpen()) {
+					leased.add(connection);
+				} else {
+					unopened.add(connection);
+				}
+			}
+			
+			// open them only once all are leased, else a connection released
+			// by its task would be leased again
+			while(!unopened.isEmpty()) {
+				final HttpClientConnection connection = unopened.remove(unopened.size() - 1);
+				
+				// released by the task, which may outlive the deadline
+				FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+					
+					@Override
+					public Void call() throws IOException {
+						try {
+							HttpClientContext context = HttpClientContext.create();
+							connectionManager.connect(connection, route, CONNECT_TIMEOUT_MILLIS, context);
+							connectionManager.routeComplete(connection, route, context);
+							return null;
+						} finally {
+							release(connection);
+						}
+					}
+					
+				});
+				
+				VirtualThreads.shared().execute(task);
+				opening.add(task);
+			}
+			
+			for(Future<Void> future : opening) {
+				try {
+					future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+					opened++;
+				} catch(ExecutionException e) {
+					if(error == null) {
+						error = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+					}
+				} catch(TimeoutException e) {
+					break;
+				}
+			}
+		} finally {
+			for(HttpClientConnection connection : leased) {
+				this.release(connection);
+			}
+			
+			for(HttpClientConnection connection : unopened) {
+				this.release(connection);
+			}
+		}
+		
+		if(opened == 0 && error != null) {
+			throw error;
+		}
+		
+		LOGGER.debug("Opened {} connections for route: {}", opened, route);
+		return opened;
+	}
+	
+	/**
+	 * Return the connection to the pool - the pool keeps it as idle if it is
+	 * open and connected, else drops it.
+	 * 
+	 */
+	private void release(HttpClientConnection connection) {
+		this.connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+	}
+	
+}
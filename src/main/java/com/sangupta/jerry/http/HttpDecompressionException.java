@@ -0,0 +1,53 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+
+/**
+ * Exception that signifies that a compressed response body was not read
+ * fully, as it inflates to more than the maximum size allowed by the
+ * {@link HttpDecompressor} of the executor.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpDecompressionException extends IOException {
+
+	/**
+	 * Generated via Eclipse
+	 */
+	private static final long serialVersionUID = -2304896711290154118L;
+
+	/**
+	 * Convenience constructor
+	 * 
+	 * @param message
+	 *            the error message to use
+	 */
+	public HttpDecompressionException(String message) {
+		super(message);
+	}
+	
+}
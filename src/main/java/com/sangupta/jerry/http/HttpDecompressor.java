@@ -0,0 +1,351 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Decompresses response bodies for an {@link HttpExecutor}, in place of the
+ * built-in content decoding of HttpClient. It advertises the configured
+ * encodings in the <code>Accept-Encoding</code> header of each request that
+ * does not carry one, and inflates <code>gzip</code> and
+ * <code>deflate</code> encoded bodies as they are read, using inflaters and
+ * buffers pooled across all responses.
+ * 
+ * A body that inflates to more than {@link #maxDecompressedSize(long)} bytes
+ * fails with a {@link HttpDecompressionException} as soon as the limit is
+ * crossed, guarding against decompression bombs. Compressed and inflated
+ * byte counts are recorded for every decompressed response.
+ * 
+ * Usage:
+ * <pre>
+ * HttpDecompressor decompressor = new HttpDecompressor().maxDecompressedSize(16 * 1024 * 1024);
+ * HttpExecutor executor = HttpExecutor.builder().decompressor(decompressor).build();
+ * </pre>
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpDecompressor implements HttpRequestInterceptor, HttpResponseInterceptor {
+	
+	/**
+	 * Default maximum decompressed size of a response body, 64 MB
+	 */
+	public static final long DEFAULT_MAX_DECOMPRESSED_SIZE = 64L * 1024 * 1024;
+	
+	/**
+	 * The value of the <code>Accept-Encoding</code> header
+	 */
+	private volatile String acceptEncoding = "gzip, deflate";
+	
+	/**
+	 * Maximum decompressed size of a response body
+	 */
+	private volatile long maxDecompressedSize = DEFAULT_MAX_DECOMPRESSED_SIZE;
+	
+	private final LongAdder compressedBytes = new LongAdder();
+	
+	private final LongAdder decompressedBytes = new LongAdder();
+	
+	private final LongAdder responses = new LongAdder();
+	
+	private final LongAdder rejections = new LongAdder();
+	
+	/**
+	 * Advertise the given encodings, in order of preference, to servers.
+	 * Only <code>gzip</code> and <code>deflate</code> are supported. Bodies
+	 * in either encoding are decompressed irrespective of the encodings
+	 * advertised.
+	 * 
+	 * @param encodings
+	 *            the encodings to advertise
+	 * 
+	 * @return this very {@link HttpDecompressor}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if no encoding is given, or an encoding is not supported
+	 */
+	public HttpDecompressor encodings(String... encodings) {
+		if(encodings == null || encodings.length == 0) {
+			throw new IllegalArgumentException("At least one encoding is required");
+		}
+		
+		StringBuilder builder = new StringBuilder();
+		for(String encoding : encodings) {
+			if(getCodec(encoding) == null) {
+				throw new IllegalArgumentException("Unsupported content encoding: " + encoding);
+			}
+			
+			if(builder.length() > 0) {
+				builder.append(", ");
+			}
+			
+			builder.append(encoding.trim().toLowerCase(Locale.ROOT));
+		}
+		
+		this.acceptEncoding = builder.toString();
+		return this;
+	}
+	
+	/**
+	 * Set the maximum size a response body may inflate to.
+	 * 
+	 * @param bytes
+	 *            the maximum number of decompressed bytes
+	 * 
+	 * @return this very {@link HttpDecompressor}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the size is less than 1
+	 */
+	public HttpDecompressor maxDecompressedSize(long bytes) {
+		if(bytes < 1) {
+			throw new IllegalArgumentException("Maximum decompressed size cannot be less than 1");
+		}
+		
+		this.maxDecompressedSize = bytes;
+		return this;
+	}
+	
+	/**
+	 * Add the <code>Accept-Encoding</code> header to the request, unless
+	 * present or content compression is disabled in the request
+	 * configuration.
+	 * 
+	 */
+	@Override
+	public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+		if(!isEnabled(context) || request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+			return;
+		}
+		
+		request.addHeader(HttpHeaders.ACCEPT_ENCODING, this.acceptEncoding);
+	}
+	
+	/**
+	 * Replace a <code>gzip</code> or <code>deflate</code> encoded entity of
+	 * the response with one that inflates it when read.
+	 * 
+	 */
+	@Override
+	public void process(HttpResponse response, HttpContext context) throws HttpException, IOException {
+		HttpEntity entity = response.getEntity();
+		if(entity == null || entity.getContentLength() == 0 || !isEnabled(context)) {
+			return;
+		}
+		
+		Header contentEncoding = entity.getContentEncoding();
+		if(contentEncoding == null) {
+			return;
+		}
+		
+		// bodies encoded more than once are left as they are
+		HeaderElement[] codecs = contentEncoding.getElements();
+		if(codecs.length != 1) {
+			return;
+		}
+		
+		Boolean gzip = getCodec(codecs[0].getName());
+		if(gzip == null) {
+			return;
+		}
+		
+		response.setEntity(new DecompressingEntity(entity, gzip, this));
+		response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+		response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+		response.removeHeaders(HttpHeaders.CONTENT_MD5);
+	}
+	
+	/**
+	 * Find the codec for the given encoding.
+	 * 
+	 * @return {@link Boolean#TRUE} for gzip, {@link Boolean#FALSE} for
+	 *         deflate, or <code>null</code> if not supported
+	 */
+	private static Boolean getCodec(String encoding) {
+		if(encoding == null) {
+			return null;
+		}
+		
+		String name = encoding.trim().toLowerCase(Locale.ROOT);
+		if("gzip".equals(name) || "x-gzip".equals(name)) {
+			return Boolean.TRUE;
+		}
+		
+		if("deflate".equals(name)) {
+			return Boolean.FALSE;
+		}
+		
+		return null;
+	}
+	
+	private static boolean isEnabled(HttpContext context) {
+		return context == null || HttpClientContext.adapt(context).getRequestConfig().isContentCompressionEnabled();
+	}
+	
+	/**
+	 * Record a decompressed response body, once read fully or closed.
+	 * 
+	 * @param compressed
+	 *            the number of compressed bytes read
+	 * 
+	 * @param decompressed
+	 *            the number of decompressed bytes returned
+	 */
+	void record(long compressed, long decompressed) {
+		this.compressedBytes.add(compressed);
+		this.decompressedBytes.add(decompressed);
+		this.responses.increment();
+	}
+	
+	/**
+	 * Record a response body that went past the maximum size.
+	 * 
+	 */
+	void recordRejection() {
+		this.rejections.increment();
+	}
+	
+	/**
+	 * @return the value of the <code>Accept-Encoding</code> header
+	 */
+	public String getAcceptEncoding() {
+		return this.acceptEncoding;
+	}
+	
+	/**
+	 * @return the maximum number of decompressed bytes of a response body
+	 */
+	public long getMaxDecompressedSize() {
+		return this.maxDecompressedSize;
+	}
+	
+	/**
+	 * @return the number of compressed bytes read off the wire
+	 */
+	public long getCompressedBytes() {
+		return this.compressedBytes.sum();
+	}
+	
+	/**
+	 * @return the number of bytes the compressed bodies inflated to
+	 */
+	public long getDecompressedBytes() {
+		return this.decompressedBytes.sum();
+	}
+	
+	/**
+	 * @return the number of response bodies decompressed
+	 */
+	public long getDecompressedResponses() {
+		return this.responses.sum();
+	}
+	
+	/**
+	 * @return the number of response bodies that went past the maximum
+	 *         decompressed size
+	 */
+	public long getRejectedResponses() {
+		return this.rejections.sum();
+	}
+	
+	/**
+	 * An entity that inflates the wrapped compressed entity when read.
+	 * 
+	 */
+	private static final class DecompressingEntity extends HttpEntityWrapper {
+		
+		private final boolean gzip;
+		
+		private final HttpDecompressor decompressor;
+		
+		private InputStream content;
+		
+		DecompressingEntity(HttpEntity entity, boolean gzip, HttpDecompressor decompressor) {
+			super(entity);
+			this.gzip = gzip;
+			this.decompressor = decompressor;
+		}
+		
+		@Override
+		public InputStream getContent() throws IOException {
+			if(!this.wrappedEntity.isStreaming()) {
+				return new DecompressingInputStream(this.wrappedEntity.getContent(), this.gzip, this.decompressor);
+			}
+			
+			if(this.content == null) {
+				this.content = new DecompressingInputStream(this.wrappedEntity.getContent(), this.gzip, this.decompressor);
+			}
+			
+			return this.content;
+		}
+		
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+		
+		@Override
+		public Header getContentEncoding() {
+			return null;
+		}
+		
+		@Override
+		public void writeTo(OutputStream outStream) throws IOException {
+			if(outStream == null) {
+				throw new IllegalArgumentException("Output stream cannot be null");
+			}
+			
+			InputStream stream = this.getContent();
+			try {
+				byte[] buffer = new byte[DecompressingInputStream.BUFFER_SIZE];
+				int read;
+				while((read = stream.read(buffer)) != -1) {
+					outStream.write(buffer, 0, read);
+				}
+			} finally {
+				stream.close();
+			}
+		}
+		
+	}
+	
+}
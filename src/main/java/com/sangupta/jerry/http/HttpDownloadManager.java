@@ -0,0 +1,663 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.jerry.util.AssertUtils;
+
+/**
+ * Downloads large resources over a {@link HttpExecutor} by splitting them into
+ * fixed size segments that are fetched in parallel using <code>Range</code>
+ * requests and written at their position in the target file.
+ * 
+ * A <code>HEAD</code> request first establishes the <code>Content-Length</code>
+ * and <code>ETag</code> of the resource. The segments are written to a
+ * <code>.part</code> file next to the target, and every segment that has been
+ * flushed to disk is recorded in a <code>.journal</code> file. If the process
+ * crashes, or a download fails, calling
+ * {@link #download(String, File)} again only fetches the segments missing
+ * from the journal - as long as the resource still has the same length and
+ * <code>ETag</code>. Once all segments are in, the file length is validated
+ * and the <code>.part</code> file is moved to the target.
+ * 
+ * Servers that do not advertise <code>Accept-Ranges: bytes</code> or a
+ * <code>Content-Length</code> are downloaded in a single stream.
+ * 
+ * All requests go through the executor, and thus its rate limits. A segment
+ * that is rejected with a {@link HttpRateLimitException} is retried after a
+ * back-off rather than failing the download.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpDownloadManager {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpDownloadManager.class);
+	
+	/**
+	 * The default size of each segment - 8 MB
+	 */
+	public static final long DEFAULT_SEGMENT_SIZE = 8l * 1024 * 1024;
+	
+	/**
+	 * The default number of segments fetched in parallel
+	 */
+	public static final int DEFAULT_PARALLELISM = 4;
+	
+	/**
+	 * The default number of times a failed segment is retried
+	 */
+	public static final int DEFAULT_MAX_RETRIES = 3;
+	
+	/**
+	 * Suffix of the file that holds the data while downloading
+	 */
+	public static final String PART_SUFFIX = ".part";
+	
+	/**
+	 * Suffix of the file that holds the progress journal
+	 */
+	public static final String JOURNAL_SUFFIX = ".journal";
+	
+	/**
+	 * Size of the buffer used to copy a segment to disk
+	 */
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * The <code>Accept-Encoding</code> that asks for the resource as is
+	 */
+	private static final String IDENTITY = "identity";
+	
+	/**
+	 * The executor used for all requests
+	 */
+	private final HttpExecutor executor;
+	
+	/**
+	 * Number of segments fetched in parallel
+	 */
+	private volatile int parallelism = DEFAULT_PARALLELISM;
+	
+	/**
+	 * Size of each segment in bytes
+	 */
+	private volatile long segmentSize = DEFAULT_SEGMENT_SIZE;
+	
+	/**
+	 * Number of times a failed segment is retried
+	 */
+	private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+	
+	/**
+	 * Millis to wait before retrying a request rejected by the rate limiter
+	 */
+	private volatile long rateLimitBackOffMillis = 250;
+	
+	/**
+	 * Create a download manager over {@link HttpExecutor#DEFAULT}.
+	 * 
+	 */
+	public HttpDownloadManager() {
+		this(HttpExecutor.DEFAULT);
+	}
+	
+	/**
+	 * Create a download manager over the given {@link HttpExecutor}.
+	 * 
+	 * @param executor
+	 *            the {@link HttpExecutor} to use for all requests
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if executor is <code>null</code>
+	 */
+	public HttpDownloadManager(HttpExecutor executor) {
+		if(executor == null) {
+			throw new IllegalArgumentException("HttpExecutor cannot be null");
+		}
+		
+		this.executor = executor;
+	}
+	
+	/**
+	 * Set the number of segments that are fetched in parallel.
+	 * 
+	 * @param parallelism
+	 *            the number of parallel segment requests
+	 * 
+	 * @return this very {@link HttpDownloadManager}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if parallelism is not positive
+	 */
+	public HttpDownloadManager parallelism(int parallelism) {
+		if(parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+		
+		this.parallelism = parallelism;
+		return this;
+	}
+	
+	/**
+	 * Set the size of each segment. A resumed download must use the same
+	 * segment size as the original one, else it starts afresh.
+	 * 
+	 * @param segmentSize
+	 *            the size of each segment in bytes
+	 * 
+	 * @return this very {@link HttpDownloadManager}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if segment size is not positive
+	 */
+	public HttpDownloadManager segmentSize(long segmentSize) {
+		if(segmentSize <= 0) {
+			throw new IllegalArgumentException("Segment size must be positive");
+		}
+		
+		this.segmentSize = segmentSize;
+		return this;
+	}
+	
+	/**
+	 * Set the number of times a segment that failed with an
+	 * {@link IOException} is retried before the download fails.
+	 * 
+	 * @param maxRetries
+	 *            the number of retries
+	 * 
+	 * @return this very {@link HttpDownloadManager}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if retries is negative
+	 */
+	public HttpDownloadManager maxRetries(int maxRetries) {
+		if(maxRetries < 0) {
+			throw new IllegalArgumentException("Retries cannot be negative");
+		}
+		
+		this.maxRetries = maxRetries;
+		return this;
+	}
+	
+	/**
+	 * Set the time to wait before retrying a request that was rejected by
+	 * the rate limiter of the executor.
+	 * 
+	 * @param backOff
+	 *            the time to wait
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the wait
+	 * 
+	 * @return this very {@link HttpDownloadManager}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if back-off is negative or time unit is <code>null</code>
+	 */
+	public HttpDownloadManager rateLimitBackOff(long backOff, TimeUnit timeUnit) {
+		if(backOff < 0) {
+			throw new IllegalArgumentException("Back-off cannot be negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		this.rateLimitBackOffMillis = timeUnit.toMillis(backOff);
+		return this;
+	}
+	
+	/**
+	 * Download the resource at the given URL into the given file, resuming
+	 * a previous attempt if its journal is found and still valid.
+	 * 
+	 * @param url
+	 *            the URL of the resource
+	 * 
+	 * @param file
+	 *            the file to download the resource into
+	 * 
+	 * @return the number of bytes in the downloaded file
+	 * 
+	 * @throws HttpResponseException
+	 *             if the server responds with an error, or the resource
+	 *             changes while being downloaded
+	 * 
+	 * @throws IOException
+	 *             if the download fails, the journal is kept so that the
+	 *             download can be resumed
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if url is empty or file is <code>null</code>
+	 */
+	public long download(String url, File file) throws IOException {
+		if(AssertUtils.isEmpty(url)) {
+			throw new IllegalArgumentException("URL cannot be null/empty");
+		}
+		
+		if(file == null) {
+			throw new IllegalArgumentException("File cannot be null");
+		}
+		
+		final File partFile = new File(file.getPath() + PART_SUFFIX);
+		final File journalFile = new File(file.getPath() + JOURNAL_SUFFIX);
+		
+		// lengths and ranges must count the bytes written to the file, so
+		// the resource is never asked for compressed
+		WebResponse head = this.open(WebRequest.head(url).addHeader(HttpHeaders.ACCEPT_ENCODING, IDENTITY));
+		close(head);
+		if(head.getResponseCode() >= 300) {
+			throw new HttpResponseException(head.getResponseCode(), head.getMessage());
+		}
+		
+		final long length = head.getSize();
+		final String etag = head.getHeader(HttpHeaders.ETAG);
+		if(length <= 0 || !"bytes".equalsIgnoreCase(head.getHeader(HttpHeaders.ACCEPT_RANGES))) {
+			LOGGER.debug("Server does not support ranges for {}, downloading in a single stream", url);
+			
+			journalFile.delete();
+			this.downloadWhole(url, partFile);
+			return moveInPlace(partFile, file);
+		}
+		
+		final long segmentSize = this.segmentSize;
+		final DownloadJournal journal = DownloadJournal.open(journalFile, partFile, url, length, etag, segmentSize);
+		
+		final int segments = (int) ((length + segmentSize - 1) / segmentSize);
+		final List<Integer> pending = new ArrayList<Integer>();
+		for(int index = 0; index < segments; index++) {
+			if(!journal.isCompleted(index)) {
+				pending.add(index);
+			}
+		}
+		
+		LOGGER.debug("Downloading {} in {} segments, {} pending", url, segments, pending.size());
+		
+		if(!pending.isEmpty()) {
+			this.downloadSegments(url, length, etag, segmentSize, pending, partFile, journal);
+		}
+		
+		// validate before handing over the file
+		if(partFile.length() != length) {
+			throw new IOException("Downloaded file size " + partFile.length() + " does not match Content-Length " + length);
+		}
+		
+		long size = moveInPlace(partFile, file);
+		journalFile.delete();
+		return size;
+	}
+	
+	/**
+	 * Fetch all pending segments in parallel and write them to the part file.
+	 * 
+	 */
+	private void downloadSegments(final String url, final long length, final String etag, final long segmentSize, final List<Integer> pending, final File partFile, final DownloadJournal journal) throws IOException {
+		final FileChannel channel = FileChannel.open(partFile.toPath(), StandardOpenOption.WRITE);
+		final ExecutorService pool = Executors.newFixedThreadPool(Math.min(this.parallelism, pending.size()), new DaemonThreadFactory("jerry-http-download"));
+		final Set<WebRequest> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<WebRequest, Boolean>());
+		boolean completed = false;
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(pending.size());
+			for(final Integer index : pending) {
+				futures.add(pool.submit(new Callable<Void>() {
+					
+					@Override
+					public Void call() throws IOException {
+						long start = index * segmentSize;
+						long end = Math.min(start + segmentSize, length) - 1;
+						
+						downloadSegment(url, length, etag, start, end, channel, inFlight);
+						
+						// make sure the data is on disk before it is journaled
+						channel.force(false);
+						journal.markCompleted(index);
+						return null;
+					}
+					
+				}));
+			}
+			
+			for(Future<Void> future : futures) {
+				future.get();
+			}
+			
+			completed = true;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while downloading " + url);
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			
+			throw new IOException("Unable to download " + url, cause);
+		} finally {
+			pool.shutdownNow();
+			
+			// blocking socket reads do not react to interrupts
+			if(!completed) {
+				for(WebRequest request : inFlight) {
+					request.abort();
+				}
+			}
+			
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Fetch a single segment, retrying on I/O failures.
+	 * 
+	 */
+	private void downloadSegment(String url, long length, String etag, long start, long end, FileChannel channel, Set<WebRequest> inFlight) throws IOException {
+		int attempt = 0;
+		while(true) {
+			try {
+				this.fetchRange(url, length, etag, start, end, channel, inFlight);
+				return;
+			} catch(ClientProtocolException e) {
+				// protocol errors and a changed resource will not get better
+				throw e;
+			} catch(InterruptedIOException e) {
+				throw e;
+			} catch(IOException e) {
+				if(attempt++ >= this.maxRetries) {
+					throw e;
+				}
+				
+				LOGGER.debug("Retrying segment {}-{} of {} after failure", start, end, url, e);
+			}
+		}
+	}
+	
+	/**
+	 * Fetch the given byte range and write it at its position in the file.
+	 * 
+	 */
+	private void fetchRange(String url, long length, String etag, long start, long end, FileChannel channel, Set<WebRequest> inFlight) throws IOException {
+		WebRequest request = WebRequest.get(url).addHeader(HttpHeaders.RANGE, "bytes=" + start + "-" + end).addHeader(HttpHeaders.ACCEPT_ENCODING, IDENTITY);
+		if(etag != null && !etag.startsWith("W/")) {
+			request.addHeader(HttpHeaders.IF_RANGE, etag);
+		}
+		
+		inFlight.add(request);
+		WebResponse response = null;
+		try {
+			response = this.open(request);
+			
+			int code = response.getResponseCode();
+			if(code == HttpStatus.SC_OK) {
+				// the If-Range did not match, the whole resource was sent
+				throw new HttpResponseException(HttpStatus.SC_PRECONDITION_FAILED, "Resource changed while downloading: " + url);
+			}
+			
+			if(code != HttpStatus.SC_PARTIAL_CONTENT) {
+				throw new HttpResponseException(code, response.getMessage());
+			}
+			
+			String responseTag = response.getHeader(HttpHeaders.ETAG);
+			if(etag != null && responseTag != null && !etag.equals(responseTag)) {
+				throw new HttpResponseException(HttpStatus.SC_PRECONDITION_FAILED, "Resource changed while downloading: " + url);
+			}
+			
+			String contentRange = response.getHeader(HttpHeaders.CONTENT_RANGE);
+			if(contentRange != null && !contentRange.trim().equals("bytes " + start + "-" + end + "/" + length)) {
+				throw new ClientProtocolException("Unexpected Content-Range " + contentRange + " for bytes " + start + "-" + end);
+			}
+			
+			ReadableByteChannel source = getChannel(response);
+			if(source == null) {
+				throw new IOException("No content received for bytes " + start + "-" + end);
+			}
+			
+			ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+			long position = start;
+			while(source.read(buffer) != -1) {
+				buffer.flip();
+				if(position + buffer.remaining() > end + 1) {
+					throw new ClientProtocolException("Server sent more than the requested bytes " + start + "-" + end);
+				}
+				
+				while(buffer.hasRemaining()) {
+					position += channel.write(buffer, position);
+				}
+				
+				buffer.clear();
+			}
+			
+			if(position != end + 1) {
+				throw new IOException("Segment " + start + "-" + end + " truncated at " + position);
+			}
+		} finally {
+			inFlight.remove(request);
+			if(response != null) {
+				close(response);
+			}
+		}
+	}
+	
+	/**
+	 * Download the resource in a single stream.
+	 * 
+	 */
+	private void downloadWhole(String url, File partFile) throws IOException {
+		WebResponse response = this.open(WebRequest.get(url));
+		try {
+			response.writeToFile(partFile);
+		} finally {
+			close(response);
+		}
+	}
+	
+	/**
+	 * Execute the request, waiting and retrying as long as the rate limiter
+	 * of the executor rejects it. The body is not read into memory unless an
+	 * interceptor has already handled the response.
+	 * 
+	 */
+	private WebResponse open(WebRequest request) throws IOException {
+		while(true) {
+			try {
+				WebRawResponse raw = this.executor.execute(request);
+				if(raw instanceof HandledWebRawResponse) {
+					return raw.webResponse();
+				}
+				
+				return raw.streamResponse();
+			} catch(HttpRateLimitException e) {
+				try {
+					Thread.sleep(this.rateLimitBackOffMillis);
+				} catch(InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for rate limit on " + request);
+				}
+			}
+		}
+	}
+	
+	private static ReadableByteChannel getChannel(WebResponse response) {
+		if(response instanceof StreamingWebResponse) {
+			return ((StreamingWebResponse) response).asChannel();
+		}
+		
+		if(response.asStream() == null) {
+			return null;
+		}
+		
+		return Channels.newChannel(response.asStream());
+	}
+	
+	private static void close(WebResponse response) throws IOException {
+		if(response instanceof StreamingWebResponse) {
+			((StreamingWebResponse) response).close();
+		}
+	}
+	
+	/**
+	 * Move the completed part file over the target, atomically if the file
+	 * system allows.
+	 * 
+	 */
+	private static long moveInPlace(File partFile, File file) throws IOException {
+		try {
+			Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(AtomicMoveNotSupportedException e) {
+			Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		
+		return file.length();
+	}
+	
+	/**
+	 * The progress journal of a segmented download. The first lines identify
+	 * the download, followed by one line per completed segment. A line is
+	 * only considered once its terminating new-line has been written, so that
+	 * a crash in the middle of an append cannot mark a wrong segment.
+	 * 
+	 */
+	private static final class DownloadJournal {
+		
+		private static final String MAGIC = "jerry-http-download-1";
+		
+		private static final int HEADER_LINES = 5;
+		
+		private final File file;
+		
+		private final BitSet completed;
+		
+		/**
+		 * Guards the journal - segment threads block on the synced write
+		 * while holding it, so it is not a monitor that would pin a virtual
+		 * thread
+		 */
+		private final Lock lock = new ReentrantLock();
+		
+		private DownloadJournal(File file, BitSet completed) {
+			this.file = file;
+			this.completed = completed;
+		}
+		
+		/**
+		 * Load the journal if it matches the given download and the part file
+		 * is intact, else start a fresh journal and part file.
+		 * 
+		 */
+		static DownloadJournal open(File file, File partFile, String url, long length, String etag, long segmentSize) throws IOException {
+			final String header = MAGIC + "\n" + url + "\n" + length + "\n" + (etag == null ? "" : etag) + "\n" + segmentSize + "\n";
+			
+			if(file.exists() && partFile.exists() && partFile.length() == length) {
+				String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+				if(contents.startsWith(header)) {
+					BitSet completed = new BitSet();
+					
+					String[] lines = contents.substring(0, contents.lastIndexOf('\n') + 1).split("\n");
+					for(int index = HEADER_LINES; index < lines.length; index++) {
+						try {
+							completed.set(Integer.parseInt(lines[index].trim()));
+						} catch(NumberFormatException e) {
+							// skip a damaged line, the segment is fetched again
+						}
+					}
+					
+					return new DownloadJournal(file, completed);
+				}
+			}
+			
+			// start afresh
+			RandomAccessFile raf = new RandomAccessFile(partFile, "rw");
+			try {
+				raf.setLength(length);
+			} finally {
+				raf.close();
+			}
+			
+			Files.write(file.toPath(), header.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+			return new DownloadJournal(file, new BitSet());
+		}
+		
+		boolean isCompleted(int segment) {
+			this.lock.lock();
+			try {
+				return this.completed.get(segment);
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		
+		void markCompleted(int segment) throws IOException {
+			this.lock.lock();
+			try {
+				Files.write(this.file.toPath(), (segment + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+				this.completed.set(segment);
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		
+	}
+
+}
@@ -21,17 +21,37 @@
 
 package com.sangupta.jerry.http;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 
 import javax.net.ssl.SSLContext;
 
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -40,10 +60,18 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.cache.CacheResponseStatus;
+import org.apache.http.client.cache.HttpCacheContext;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.protocol.RequestAcceptEncoding;
+import org.apache.http.client.protocol.ResponseContentEncoding;
+import org.apache.http.client.utils.URIUtils;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
@@ -54,9 +82,29 @@ import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
+import org.apache.http.impl.client.cache.FileResourceFactory;
+import org.apache.http.impl.client.cache.ManagedHttpCacheStorage;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.protocol.ImmutableHttpProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -100,7 +148,11 @@ public class HttpExecutor {
 	 */
 	public static final HttpClient HTTP_CLIENT;
 	
-	private final List<HttpInvocationInterceptor> interceptors = new ArrayList<>();
+	/**
+	 * The interceptors attached to this executor - a copy-on-write list as
+	 * asynchronous responses read it from the I/O reactor threads
+	 */
+	private final List<HttpInvocationInterceptor> interceptors = new CopyOnWriteArrayList<>();
 	
 	private final HttpInvocationInterceptorComparator interceptorComparator = new HttpInvocationInterceptorComparator();
 	
@@ -108,6 +160,23 @@ public class HttpExecutor {
 	 * Build up the default instance
 	 */
 	static {
+        HTTP_CONNECTION_MANAGER = new EvictableConnectionManager(createSocketFactoryRegistry());
+        HTTP_CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        HTTP_CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL_CONNECTIONS);
+        HTTP_CONNECTION_MANAGER.setValidateAfterInactivity(VALIDATE_CONNECTION_AFTER_INACTIVITY_MILLIS);
+        
+        HttpConnectionEvictor.register((EvictableConnectionManager) HTTP_CONNECTION_MANAGER, new HttpConnectionEvictor());
+        
+        CloseableHttpClient closeableHttpClient = HttpClientBuilder.create().setConnectionManager(HTTP_CONNECTION_MANAGER).setKeepAliveStrategy(HttpConnectionEvictor.KEEP_ALIVE_STRATEGY).build();
+        HTTP_CLIENT = new HttpRateLimitingClient(closeableHttpClient);
+	}
+	
+	/**
+	 * Create the registry of socket factories for plain and SSL connections.
+	 * 
+	 * @return the {@link Registry} of {@link ConnectionSocketFactory}
+	 */
+	private static Registry<ConnectionSocketFactory> createSocketFactoryRegistry() {
 		LayeredConnectionSocketFactory ssl = null;
         try {
             ssl = SSLConnectionSocketFactory.getSystemSocketFactory();
@@ -126,24 +195,88 @@ public class HttpExecutor {
             }
         }
 
-        final Registry<ConnectionSocketFactory> sfr = RegistryBuilder.<ConnectionSocketFactory>create()
-            .register("http", PlainConnectionSocketFactory.getSocketFactory())
-            .register("https", ssl != null ? ssl : SSLConnectionSocketFactory.getSocketFactory())
+        // wrapped to let the metrics record connect latency
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", TimingConnectionSocketFactory.wrap(PlainConnectionSocketFactory.getSocketFactory()))
+            .register("https", TimingConnectionSocketFactory.wrap(ssl != null ? ssl : SSLConnectionSocketFactory.getSocketFactory()))
             .build();
-        
-        HTTP_CONNECTION_MANAGER = new PoolingHttpClientConnectionManager(sfr);
-        HTTP_CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
-        HTTP_CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL_CONNECTIONS);
-        HTTP_CONNECTION_MANAGER.setValidateAfterInactivity(VALIDATE_CONNECTION_AFTER_INACTIVITY_MILLIS);
-        
-        CloseableHttpClient closeableHttpClient = HttpClientBuilder.create().setConnectionManager(HTTP_CONNECTION_MANAGER).build();
-        HTTP_CLIENT = new HttpRateLimitingClient(closeableHttpClient);
 	}
 	
 	/**
 	 * Default {@link HttpExecutor} instance that can be used across application
 	 */
-	public static final HttpExecutor DEFAULT = new HttpExecutor(HTTP_CLIENT);
+	public static final HttpExecutor DEFAULT = new HttpExecutor(HTTP_CLIENT, HTTP_CONNECTION_MANAGER, null, null);
+	
+	/**
+	 * Lazy holder for the non-blocking {@link HttpAsyncClient} so that the I/O
+	 * reactor threads are only started when the first asynchronous request is
+	 * made.
+	 * 
+	 */
+	private static final class AsyncClientHolder {
+		
+		/**
+		 * The non-blocking connection manager backing the async client
+		 */
+		static final PoolingNHttpClientConnectionManager ASYNC_CONNECTION_MANAGER;
+		
+		/**
+		 * The singleton instance of the started async client
+		 */
+		static final CloseableHttpAsyncClient HTTP_ASYNC_CLIENT;
+		
+		static {
+			IOReactorConfig config = IOReactorConfig.custom()
+					.setIoThreadCount(Runtime.getRuntime().availableProcessors())
+					.build();
+			
+			final ConnectingIOReactor ioReactor;
+			try {
+				ioReactor = new DefaultConnectingIOReactor(config, new DaemonThreadFactory("jerry-http-io"));
+			} catch(IOReactorException e) {
+				throw new IllegalStateException("Unable to create the I/O reactor for async client", e);
+			}
+			
+			ASYNC_CONNECTION_MANAGER = new PoolingNHttpClientConnectionManager(ioReactor);
+			ASYNC_CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+			ASYNC_CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL_CONNECTIONS);
+			
+			HTTP_ASYNC_CLIENT = HttpAsyncClients.custom()
+					.setConnectionManager(ASYNC_CONNECTION_MANAGER)
+					.setThreadFactory(new DaemonThreadFactory("jerry-http-async"))
+					.build();
+			
+			HTTP_ASYNC_CLIENT.start();
+		}
+		
+	}
+	
+	/**
+	 * Lazy holder for the scheduler that dispatches asynchronous requests
+	 * which have to wait for a rate limit permit.
+	 * 
+	 */
+	private static final class RateLimitSchedulerHolder {
+		
+		static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("jerry-http-rate-limit"));
+		
+		static {
+			// drop cancelled dispatches right away rather than at their delay
+			SCHEDULER.setRemoveOnCancelPolicy(true);
+		}
+		
+	}
+	
+	/**
+	 * Return the underlying non-blocking {@link HttpAsyncClient} instance that
+	 * is used for asynchronous execution. The client and its I/O reactor are
+	 * started on first access.
+	 * 
+	 * @return the shared {@link HttpAsyncClient} instance
+	 */
+	public static final HttpAsyncClient getHttpAsyncClient() {
+		return AsyncClientHolder.HTTP_ASYNC_CLIENT;
+	}
 	
 	/**
 	 * Return the underlying {@link HttpClient} instance that can be used to
@@ -163,7 +296,7 @@ public class HttpExecutor {
 	 * @return a new {@link HttpExecutor} instance
 	 */
 	public static final HttpExecutor newInstance() {
-		return new HttpExecutor(HTTP_CLIENT);
+		return new HttpExecutor(HTTP_CLIENT, HTTP_CONNECTION_MANAGER, null, null);
 	}
 	
 	/**
@@ -183,7 +316,18 @@ public class HttpExecutor {
 			throw new IllegalArgumentException("HttpClient instance cannot be null");
 		}
 		
-		return new HttpExecutor(client);
+		return new HttpExecutor(client, HTTP_CONNECTION_MANAGER, null, null);
+	}
+	
+	/**
+	 * Get a new {@link Builder} to create an {@link HttpExecutor} that owns
+	 * an isolated connection pool, so that its traffic neither starves nor is
+	 * starved by other executors.
+	 * 
+	 * @return a new {@link Builder} instance
+	 */
+	public static final Builder builder() {
+		return new Builder();
 	}
 	
 	/**
@@ -197,11 +341,15 @@ public class HttpExecutor {
 	 *             if the number of connections is less than <code>1</code>
 	 */
 	public static void setMaxConnections(int numConnections) {
+		setMaxConnections(HTTP_CONNECTION_MANAGER, numConnections);
+	}
+	
+	private static void setMaxConnections(PoolingHttpClientConnectionManager connectionManager, int numConnections) {
 		if(numConnections < 1) {
 			throw new IllegalArgumentException("Number of connections cannot be less than 1");
 		}
 		
-		HTTP_CONNECTION_MANAGER.setMaxTotal(numConnections);
+		connectionManager.setMaxTotal(numConnections);
 	}
 	
 	/**
@@ -215,11 +363,15 @@ public class HttpExecutor {
 	 *             if the number of connections is less than <code>1</code>
 	 */
 	public static void setMaxConnectionsPerRoute(int numConnections) {
+		setMaxConnectionsPerRoute(HTTP_CONNECTION_MANAGER, numConnections);
+	}
+	
+	private static void setMaxConnectionsPerRoute(PoolingHttpClientConnectionManager connectionManager, int numConnections) {
 		if(numConnections < 1) {
 			throw new IllegalArgumentException("Number of connections cannot be less than 1");
 		}
 		
-		HTTP_CONNECTION_MANAGER.setDefaultMaxPerRoute(numConnections);
+		connectionManager.setDefaultMaxPerRoute(numConnections);
 	}
 	
 	/**
@@ -234,11 +386,15 @@ public class HttpExecutor {
 	 *             if the number of connections is less than <code>ZERO</code>
 	 */
 	public static void setMaxConnectionsOnHost(HttpRoute route, int numConnections) {
+		setMaxConnectionsOnHost(HTTP_CONNECTION_MANAGER, route, numConnections);
+	}
+	
+	private static void setMaxConnectionsOnHost(PoolingHttpClientConnectionManager connectionManager, HttpRoute route, int numConnections) {
 		if(numConnections <= 0) {
 			throw new IllegalArgumentException("Number of connections cannot be less than 1");
 		}
 		
-		HTTP_CONNECTION_MANAGER.setMaxPerRoute(route, numConnections);
+		connectionManager.setMaxPerRoute(route, numConnections);
 	}
 	
 	/**
@@ -337,17 +493,130 @@ public class HttpExecutor {
 	 */
 	private CookieStore cookieStore;
 	
-	private HttpExecutor(final HttpClient client) {
+	/**
+	 * The connection pool that the pool-sizing methods of this instance act
+	 * upon
+	 */
+	private final PoolingHttpClientConnectionManager connectionManager;
+	
+	/**
+	 * The client owned, and thus closed, by this instance along with its
+	 * connection pool - <code>null</code> when the global pool is shared
+	 */
+	private final CloseableHttpClient ownedClient;
+	
+	/**
+	 * The cache counters if response caching is enabled, <code>null</code>
+	 * otherwise
+	 */
+	private final HttpCacheStatistics cacheStatistics;
+	
+	/**
+	 * The latency, traffic and error metrics of this instance
+	 */
+	private final HttpMetrics metrics;
+	
+	/**
+	 * The hedging policy for idempotent requests, <code>null</code> if
+	 * requests are not hedged
+	 */
+	private volatile HttpHedgingPolicy hedgingPolicy;
+	
+	/**
+	 * The retry policy, <code>null</code> if requests are not retried
+	 */
+	private volatile HttpRetryPolicy retryPolicy;
+	
+	/**
+	 * The circuit breaker, <code>null</code> if requests are never rejected
+	 * by it
+	 */
+	private volatile HttpCircuitBreaker circuitBreaker;
+	
+	/**
+	 * The adaptive limit on requests in flight per host, <code>null</code>
+	 * if not limited
+	 */
+	private volatile HttpConcurrencyLimiter concurrencyLimiter;
+	
+	/**
+	 * Maximum nanos a request of this instance waits for a rate limit
+	 * permit, <code>-1</code> to use the wait of the client
+	 */
+	private volatile long maxRateLimitWaitNanos = -1;
+	
+	/**
+	 * Opens connections of the pool ahead of requests
+	 */
+	private final HttpConnectionWarmer connectionWarmer;
+	
+	/**
+	 * The protocol this instance talks
+	 */
+	private HttpProtocol protocol = HttpProtocol.HTTP_1_1;
+	
+	/**
+	 * Decompresses the response bodies, if set
+	 */
+	private HttpDecompressor decompressor;
+	
+	/**
+	 * The storage of the disk cache, if enabled
+	 */
+	private ManagedHttpCacheStorage cacheStorage;
+	
+	/**
+	 * The periodic cleaning of the disk cache, if enabled
+	 */
+	private ScheduledFuture<?> cacheCleaner;
+	
+	/**
+	 * Creates the non-blocking client owned by this instance on the first
+	 * asynchronous request, <code>null</code> when the global async client is
+	 * shared or asynchronous execution is not supported
+	 */
+	private AsyncClientFactory asyncClientFactory;
+	
+	/**
+	 * The non-blocking client owned by this instance, <code>null</code> until
+	 * the first asynchronous request
+	 */
+	private volatile CloseableHttpAsyncClient ownedAsyncClient;
+	
+	/**
+	 * Guards the creation of the owned non-blocking client against
+	 * {@link #shutdown()}
+	 */
+	private final Object asyncClientLock = new Object();
+	
+	/**
+	 * Whether this instance has been shut down
+	 */
+	private boolean shutdown;
+	
+	private HttpExecutor(final HttpClient client, final PoolingHttpClientConnectionManager connectionManager, final CloseableHttpClient ownedClient, final HttpCacheStatistics cacheStatistics) {
 		if(client == null) {
 			throw new IllegalArgumentException("Cannot create executor over null client instance");
 		}
 
 		this.client = client;
 		this.authCache = new BasicAuthCache();
+		this.connectionManager = connectionManager;
+		this.ownedClient = ownedClient;
+		this.cacheStatistics = cacheStatistics;
+		this.metrics = new HttpMetrics(connectionManager);
+		this.connectionWarmer = new HttpConnectionWarmer(connectionManager);
 	}
 	
 	/**
 	 * Execute the given web request and return the obtained raw web response.
+	 * The returned response must be consumed, for example via
+	 * {@link WebRawResponse#webResponse()}, by closing the stream of
+	 * {@link WebRawResponse#streamResponse()}, or be dropped via
+	 * {@link WebRawResponse#discardContent()}. Till then the request holds
+	 * its pooled connection and, with a {@link HttpConcurrencyLimiter} set,
+	 * its slot of the limit of its host - a response that is ignored leaks
+	 * both for good.
 	 * 
 	 * @param webRequest
 	 *            the {@link WebRequest} to be executed
@@ -361,6 +630,20 @@ public class HttpExecutor {
 	 *             if something fails
 	 */
 	public WebRawResponse execute(WebRequest webRequest) throws ClientProtocolException, IOException {
+		HttpRetryPolicy retryPolicy = this.retryPolicy;
+		if(retryPolicy != null && retryPolicy.isRetryable(webRequest)) {
+			return retryPolicy.execute(this, webRequest);
+		}
+		
+		return this.executeAttempt(webRequest);
+	}
+	
+	/**
+	 * Execute a single attempt of the given web request through the
+	 * interceptors.
+	 * 
+	 */
+	WebRawResponse executeAttempt(WebRequest webRequest) throws ClientProtocolException, IOException {
 		boolean interceptRequest = !this.interceptors.isEmpty();
 		if(!interceptRequest) {
 			return this.executeInternal(webRequest);
@@ -394,142 +677,835 @@ public class HttpExecutor {
 	}
 	
 	private WebRawResponse executeInternal(WebRequest webRequest) throws ClientProtocolException, IOException {
-		// sharing the context may lead to circular redirects in case
-		// of redirections from two request objects towards a single
-		// URI - like hitting http://google.com twice leads to circular
-		// redirects in the second request
-		HttpContext localHttpContext = new BasicHttpContext();
+		HttpHedgingPolicy hedgingPolicy = this.hedgingPolicy;
+		if(hedgingPolicy != null && hedgingPolicy.isHedgeable(webRequest)) {
+			return hedgingPolicy.execute(this, webRequest);
+		}
 		
-        localHttpContext.setAttribute(HttpClientContext.CREDS_PROVIDER, this.credentialsProvider);
-        localHttpContext.setAttribute(HttpClientContext.AUTH_CACHE, this.authCache);
-        localHttpContext.setAttribute(HttpClientContext.COOKIE_STORE, this.cookieStore);
+		return this.executeOnce(webRequest);
+	}
+	
+	/**
+	 * Execute the given web request exactly once over the client.
+	 * 
+	 */
+	WebRawResponse executeOnce(WebRequest webRequest) throws ClientProtocolException, IOException {
+		final HttpContext localHttpContext = this.newLocalHttpContext();
         
         HttpRequestBase httpRequest = webRequest.getHttpRequest();
         httpRequest.reset();
         
-        return new WebRawResponse(httpRequest.getURI(), this.client.execute(httpRequest, localHttpContext), localHttpContext);
+        // the reset undoes a cancellation that raced it, so abort again
+        if(webRequest.isCancelled()) {
+        	httpRequest.abort();
+        }
+        
+        HttpCircuitBreaker circuitBreaker = this.circuitBreaker;
+        HttpCircuitBreaker.Phase circuit = null;
+        if(circuitBreaker != null) {
+        	circuit = circuitBreaker.acquire(httpRequest.getURI());
+        }
+        
+        HttpConcurrencyLimiter concurrencyLimiter = this.concurrencyLimiter;
+        HttpConcurrencyLimiter.RouteLimit limit = null;
+        if(concurrencyLimiter != null) {
+        	try {
+        		limit = concurrencyLimiter.acquire(httpRequest.getURI(), true);
+        	} catch(HttpConcurrencyLimitException e) {
+        		if(circuit != null) {
+        			circuit.ignore();
+        		}
+        		
+        		this.metrics.route(getTargetHost(httpRequest, localHttpContext)).recordRateLimitRejection();
+        		throw e;
+        	}
+        }
+        
+        final long start = System.nanoTime();
+        final HttpResponse response;
+        try {
+        	response = this.client.execute(httpRequest, localHttpContext);
+        } catch(HttpRateLimitException e) {
+        	this.metrics.route(getTargetHost(httpRequest, localHttpContext)).recordRateLimitRejection();
+        	if(circuit != null) {
+        		circuit.ignore();
+        	}
+        	
+        	if(limit != null) {
+        		limit.release();
+        	}
+        	
+        	throw e;
+        } catch(IOException e) {
+        	if(circuit != null) {
+        		if(httpRequest.isAborted()) {
+        			circuit.ignore();
+        		} else {
+        			circuit.record(System.nanoTime() - start, true);
+        		}
+        	}
+        	
+        	if(limit != null) {
+        		if(httpRequest.isAborted()) {
+        			limit.release();
+        		} else {
+        			this.applyLimit(localHttpContext, limit, limit.release(System.nanoTime() - start, true));
+        		}
+        	}
+        	
+        	if(!httpRequest.isAborted()) {
+        		this.metrics.route(getTargetHost(httpRequest, localHttpContext)).recordFailure();
+        	}
+        	
+        	throw e;
+        } catch(RuntimeException e) {
+        	if(circuit != null) {
+        		circuit.ignore();
+        	}
+        	
+        	if(limit != null) {
+        		limit.release();
+        	}
+        	
+        	throw e;
+        }
+        
+        final long now = System.nanoTime();
+        final int statusCode = response.getStatusLine().getStatusCode();
+        if(circuit != null) {
+        	circuit.record(now - start, statusCode >= 500);
+        }
+        
+        HttpMetrics.RouteMetrics routeMetrics = this.metrics.route(getTargetHost(httpRequest, localHttpContext));
+        routeMetrics.recordResponse(start, now, getConnectNanos(localHttpContext), statusCode, getRequestBodyLength(httpRequest));
+        
+        if(this.cacheStatistics != null) {
+        	this.cacheStatistics.record((CacheResponseStatus) localHttpContext.getAttribute(HttpCacheContext.CACHE_RESPONSE_STATUS));
+        }
+        
+        WebRawResponse rawResponse = new WebRawResponse(httpRequest.getURI(), response, localHttpContext);
+        rawResponse.instrument(routeMetrics, start);
+        
+        // the request stays in flight till its body has been consumed
+        if(limit != null) {
+        	final HttpConcurrencyLimiter.RouteLimit routeLimit = limit;
+        	final boolean overloaded = isOverloaded(statusCode);
+        	rawResponse.onCompletion(new Runnable() {
+				
+				@Override
+				public void run() {
+					applyLimit(localHttpContext, routeLimit, routeLimit.release(System.nanoTime() - start, overloaded));
+				}
+				
+			});
+        }
+        
+        return rawResponse;
 	}
-    
-	// Methods related to rate limiting
 	
 	/**
-	 * Add new rate limiting for the given host.
-	 * 
-	 * @param hostName
-	 *            the hostname to add rate limit to
-	 * 
-	 * @param limit
-	 *            the limit to be used
-	 * 
-	 * @param timeUnit
-	 *            the time unit against which we are setting rate limit
+	 * Returns the non-blocking client to execute asynchronous requests with.
+	 * An instance that owns its pool creates and starts its non-blocking
+	 * client, and with it the I/O reactor threads, on the first call.
 	 * 
-	 * @return this very {@link HttpExecutor} instance
+	 * @throws IllegalStateException
+	 *             if this instance owns its pool, but no non-blocking client,
+	 *             or has been shut down
 	 */
-	public HttpExecutor addRateLimiting(String hostName, int limit, TimeUnit timeUnit) {
-		if(this.client instanceof HttpRateLimitingClient) {
-			((HttpRateLimitingClient) this.client).addRateLimiting(hostName, limit, timeUnit);
-			return this;
+	private HttpAsyncClient getAsyncClient() {
+		CloseableHttpAsyncClient asyncClient = this.ownedAsyncClient;
+		if(asyncClient != null) {
+			return asyncClient;
 		}
 		
-		throw new IllegalStateException("Current client does not support rate-limiting");
+		if(this.ownedClient == null) {
+			return getHttpAsyncClient();
+		}
+		
+		if(this.asyncClientFactory == null) {
+			throw new IllegalStateException("Asynchronous execution is not supported along with response caching or HTTP/2, use submit() instead");
+		}
+		
+		synchronized(this.asyncClientLock) {
+			if(this.shutdown) {
+				throw new IllegalStateException("Executor has been shut down");
+			}
+			
+			asyncClient = this.ownedAsyncClient;
+			if(asyncClient == null) {
+				asyncClient = this.asyncClientFactory.create();
+				this.ownedAsyncClient = asyncClient;
+			}
+			
+			return asyncClient;
+		}
 	}
 	
 	/**
-	 * Remove any previous rate limiting that has been set for the host.
-	 * 
-	 * @param hostName
-	 *            the host name for which we need to remove rate limiting
+	 * Set the maximum connections of the route of the executed request to
+	 * the current concurrency limit. Only the pool owned by this instance is
+	 * touched - the global pool is shared with other executors, and a client
+	 * supplied by the caller may not use it at all.
 	 * 
-	 * @return this very {@link HttpExecutor} instance
 	 */
-	public HttpExecutor removeRateLimiting(String hostName) {
-		if(this.client instanceof HttpRateLimitingClient) {
-			((HttpRateLimitingClient) this.client).removeRateLimiting(hostName);
-			return this;
+	private void applyLimit(HttpContext localHttpContext, HttpConcurrencyLimiter.RouteLimit routeLimit, int changed) {
+		if(changed <= 0 || this.ownedClient == null || this.connectionManager == null) {
+			return;
 		}
 		
-		throw new IllegalStateException("Current client does not support rate-limiting");
+		Object route = localHttpContext.getAttribute(HttpClientContext.HTTP_ROUTE);
+		if(route instanceof HttpRoute) {
+			routeLimit.applyTo(this.connectionManager, (HttpRoute) route);
+		}
 	}
 	
 	/**
-	 * Remove all previously set rate limiting.
+	 * Check if the status code signals that the server is overloaded.
 	 * 
-	 * @return this very {@link HttpExecutor} instance
 	 */
-	public HttpExecutor removeAllRateLimiting() {
-		if(this.client instanceof HttpRateLimitingClient) {
-			((HttpRateLimitingClient) this.client).removeAllRateLimiting();
-			return this;
+	private static boolean isOverloaded(int statusCode) {
+		return statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE || statusCode == 429;
+	}
+	
+	/**
+	 * Find the target host a request was sent to, preferring the route of
+	 * the executed request so that no objects need to be created.
+	 * 
+	 */
+	private static HttpHost getTargetHost(HttpRequestBase httpRequest, HttpContext localHttpContext) {
+		Object route = localHttpContext.getAttribute(HttpClientContext.HTTP_ROUTE);
+		if(route instanceof HttpRoute) {
+			return ((HttpRoute) route).getTargetHost();
 		}
 		
-		throw new IllegalStateException("Current client does not support rate-limiting");
+		// request did not reach the connection layer
+		HttpHost host = getTargetHost(httpRequest.getURI());
+		if(host == null) {
+			return new HttpHost("unknown");
+		}
+		
+		return host;
 	}
 	
-	// Methods related to authentication
-	
 	/**
-	 * Add provided authentication
-	 * 
-	 * @param authScope
-	 *            the {@link AuthScope} that needs to be set
+	 * Find the target host of the given URI, with the port set to the
+	 * default for the scheme if missing - the same host as that of the route
+	 * the request is executed on.
 	 * 
-	 * @param credentials
-	 *            the {@link Credentials} that need to be set
-	 * 
-	 * @return this very {@link HttpExecutor}
+	 * @return the {@link HttpHost}, or <code>null</code> if the URI is not
+	 *         absolute
 	 */
-	public HttpExecutor addAuthentication(AuthScope authScope, Credentials credentials) {
-		if (this.credentialsProvider == null) {
-            this.credentialsProvider = new BasicCredentialsProvider();
-        }
-        this.credentialsProvider.setCredentials(authScope, credentials);
-        return this;
+	static HttpHost getTargetHost(URI uri) {
+		HttpHost host = URIUtils.extractHost(uri);
+		if(host == null) {
+			return null;
+		}
+		
+		if(host.getPort() < 0) {
+			host = new HttpHost(host.getHostName(), "https".equalsIgnoreCase(host.getSchemeName()) ? 443 : 80, host.getSchemeName());
+		}
+		
+		return host;
 	}
 	
 	/**
-	 * Clear all authentication that may have been set.
+	 * Return the nanos spent opening a new connection for the request, or
+	 * <code>-1</code> if a pooled connection was used.
 	 * 
-	 * @return this very {@link HttpExecutor}
 	 */
-	public HttpExecutor clearAllAuthentication() {
-        if (this.credentialsProvider != null) {
-            this.credentialsProvider.clear();
-        }
-        
-        return this;
-    }
+	private static long getConnectNanos(HttpContext localHttpContext) {
+		Object nanos = localHttpContext.getAttribute(HttpMetrics.CONNECT_NANOS_ATTRIBUTE);
+		if(nanos instanceof Long) {
+			return (Long) nanos;
+		}
+		
+		return -1;
+	}
+	
+	private static long getRequestBodyLength(HttpRequestBase httpRequest) {
+		if(httpRequest instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+			if(entity != null) {
+				return entity.getContentLength();
+			}
+		}
+		
+		return 0;
+	}
 	
 	/**
-	 * Add authentication for a given host
+	 * Execute the given web request asynchronously over the non-blocking
+	 * client and return a future that completes with the {@link WebResponse}.
+	 * The calling thread is never blocked on network I/O.
+	 * 
+	 * Interceptors, rate-limiting and response handling behave as they do in
+	 * {@link #execute(WebRequest)}. The response is handled on the I/O reactor
+	 * thread, thus any heavy processing should be chained using the
+	 * <code>*Async</code> methods of the returned {@link CompletableFuture}.
+	 * Cancelling the returned future aborts the underlying exchange.
+	 * 
+	 * An instance built via {@link #builder()} uses a non-blocking client of
+	 * its own, with the pool sizes, socket configuration, DNS resolver and
+	 * decompressor of the builder. Such an instance with response caching or
+	 * HTTP/2 enabled does not support asynchronous execution - use
+	 * {@link #submit(WebRequest)} instead.
 	 * 
-	 * @param host
-	 *            the host name for which authentication needs to be set
-	 *            
-	 * @param userName
-	 *            the username that needs to be set
+	 * @param webRequest
+	 *            the {@link WebRequest} to be executed
 	 * 
-	 * @param password
-	 *            the password that needs to be set
+	 * @return the {@link CompletableFuture} that completes with the response,
+	 *         or completes exceptionally with the {@link IOException} or
+	 *         {@link HttpRateLimitException} raised
 	 * 
-	 * @return this very {@link HttpExecutor}
+	 * @throws IllegalArgumentException
+	 *             if the {@link WebRequest} is <code>null</code>
+	 * 
+	 * @throws IllegalStateException
+	 *             if asynchronous execution is not supported by this
+	 *             instance
 	 */
-	public HttpExecutor addAuthentication(String host, String userName, String password) {
-		AuthScope authScope = new AuthScope(host, 80);
-		Credentials credentials = new UsernamePasswordCredentials(userName, password);
-		return this.addAuthentication(authScope, credentials);
+	public CompletableFuture<WebResponse> executeAsync(WebRequest webRequest) {
+		return this.executeAsync(webRequest, WebRawResponse.DEFAULT_RESPONSE_HANDLER);
 	}
 	
 	/**
-	 * Add authentication for given host and port.
+	 * Execute the given web request asynchronously and convert the obtained
+	 * response using the given {@link HttpResponseHandler}.
 	 * 
-	 * @param host
-	 *            the host name for which authentication needs to be set
+	 * @param webRequest
+	 *            the {@link WebRequest} to be executed
 	 * 
-	 * @param port
-	 *            the port for which authentication needs to be set
+	 * @param handler
+	 *            the {@link HttpResponseHandler} to convert the response with
 	 * 
-	 * @param userName
+	 * @return the {@link CompletableFuture} that completes with the response
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the {@link WebRequest} or handler is <code>null</code>
+	 */
+	public CompletableFuture<WebResponse> executeAsync(WebRequest webRequest, HttpResponseHandler handler) {
+		if(webRequest == null) {
+			throw new IllegalArgumentException("WebRequest cannot be null");
+		}
+		
+		if(handler == null) {
+			throw new IllegalArgumentException("HttpResponseHandler cannot be null");
+		}
+		
+		// fail right away rather than in the reactor callback
+		this.getAsyncClient();
+		
+		boolean interceptRequest = !this.interceptors.isEmpty();
+		if(interceptRequest) {
+			for(HttpInvocationInterceptor interceptor : this.interceptors) {
+				WebResponse response = interceptor.beforeInvocation(webRequest);
+				if(response != null) {
+					return CompletableFuture.completedFuture(response);
+				}
+			}
+		}
+		
+		final CompletableFuture<WebResponse> future = new CompletableFuture<>();
+		try {
+			this.executeAsyncInternal(webRequest, handler, future);
+		} catch(RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		
+		if(!interceptRequest) {
+			return future;
+		}
+		
+		final CompletableFuture<WebResponse> intercepted = future.handle(new BiFunction<WebResponse, Throwable, WebResponse>() {
+			
+			@Override
+			public WebResponse apply(WebResponse actualResponse, Throwable throwable) {
+				IOException exception = null;
+				if(throwable instanceof IOException) {
+					exception = (IOException) throwable;
+				} else if(throwable != null) {
+					// rate-limiting and other runtime failures are not
+					// passed to interceptors in the blocking path either
+					throw throwable instanceof CompletionException ? (CompletionException) throwable : new CompletionException(throwable);
+				}
+				
+				for(HttpInvocationInterceptor interceptor : interceptors) {
+					actualResponse = interceptor.afterInvocation(actualResponse, exception);
+				}
+				
+				return actualResponse;
+			}
+			
+		});
+		
+		// cancelling the returned future cancels the request
+		intercepted.whenComplete(new BiConsumer<WebResponse, Throwable>() {
+			
+			@Override
+			public void accept(WebResponse response, Throwable throwable) {
+				if(intercepted.isCancelled()) {
+					future.cancel(false);
+				}
+			}
+			
+		});
+		
+		return intercepted;
+	}
+	
+	/**
+	 * Execute the given web request over the blocking client on a thread of
+	 * its own - a virtual thread when the running JVM supports them, see
+	 * {@link VirtualThreads} - and return a future that completes with the
+	 * {@link WebResponse}.
+	 * 
+	 * Unlike {@link #executeAsync(WebRequest)} the request goes through the
+	 * exact path of {@link #execute(WebRequest)}, including retries, hedging,
+	 * the circuit breaker and the concurrency limiter, and the number of
+	 * concurrent requests is bounded by the connection pool rather than by
+	 * the I/O reactor. Cancelling the returned future aborts the request.
+	 * 
+	 * @param webRequest
+	 *            the {@link WebRequest} to be executed
+	 * 
+	 * @return the {@link CompletableFuture} that completes with the response,
+	 *         or completes exceptionally with the error raised
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the {@link WebRequest} is <code>null</code>
+	 */
+	public CompletableFuture<WebResponse> submit(final WebRequest webRequest) {
+		if(webRequest == null) {
+			throw new IllegalArgumentException("WebRequest cannot be null");
+		}
+		
+		final CompletableFuture<WebResponse> future = new CompletableFuture<>();
+		VirtualThreads.shared().execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				if(future.isDone()) {
+					return;
+				}
+				
+				try {
+					future.complete(execute(webRequest).webResponse());
+				} catch(Exception e) {
+					future.completeExceptionally(e);
+				}
+			}
+			
+		});
+		
+		future.whenComplete(new BiConsumer<WebResponse, Throwable>() {
+			
+			@Override
+			public void accept(WebResponse response, Throwable throwable) {
+				if(future.isCancelled()) {
+					webRequest.abort();
+				}
+			}
+			
+		});
+		
+		return future;
+	}
+	
+	private void executeAsyncInternal(final WebRequest webRequest, final HttpResponseHandler handler, final CompletableFuture<WebResponse> future) {
+		final HttpContext localHttpContext = this.newLocalHttpContext();
+		
+		final HttpRequestBase httpRequest = webRequest.getHttpRequest();
+		httpRequest.reset();
+		
+		long wait = 0;
+		if(this.client instanceof HttpRateLimitingClient) {
+			try {
+				wait = ((HttpRateLimitingClient) this.client).reservePermit(httpRequest, localHttpContext);
+			} catch(HttpRateLimitException e) {
+				this.metrics.route(getTargetHost(httpRequest, localHttpContext)).recordRateLimitRejection();
+				throw e;
+			}
+		}
+		
+		if(wait == 0) {
+			this.dispatchAsync(httpRequest, localHttpContext, handler, future);
+			return;
+		}
+		
+		// defer the request till its reserved permit without holding a thread
+		final HttpRateLimitingClient rateLimitingClient = (HttpRateLimitingClient) this.client;
+		final ScheduledFuture<?> dispatch = RateLimitSchedulerHolder.SCHEDULER.schedule(new Runnable() {
+			
+			@Override
+			public void run() {
+				if(future.isDone()) {
+					// given up while waiting, the permit is not used
+					rateLimitingClient.cancelPermit(httpRequest);
+					return;
+				}
+				
+				try {
+					dispatchAsync(httpRequest, localHttpContext, handler, future);
+				} catch(RuntimeException e) {
+					future.completeExceptionally(e);
+				}
+			}
+			
+		}, wait, TimeUnit.NANOSECONDS);
+		
+		// a request cancelled before its turn gives its permit back
+		future.whenComplete(new BiConsumer<WebResponse, Throwable>() {
+			
+			@Override
+			public void accept(WebResponse response, Throwable throwable) {
+				if(dispatch.cancel(false)) {
+					rateLimitingClient.cancelPermit(httpRequest);
+				}
+			}
+			
+		});
+	}
+	
+	private void dispatchAsync(final HttpRequestBase httpRequest, final HttpContext localHttpContext, final HttpResponseHandler handler, final CompletableFuture<WebResponse> future) {
+		final URI originalURI = httpRequest.getURI();
+		
+		final HttpCircuitBreaker circuitBreaker = this.circuitBreaker;
+		final HttpCircuitBreaker.Phase circuit;
+		if(circuitBreaker != null) {
+			try {
+				circuit = circuitBreaker.acquire(originalURI);
+			} catch(HttpCircuitOpenException e) {
+				future.completeExceptionally(e);
+				return;
+			}
+		} else {
+			circuit = null;
+		}
+		
+		final HttpConcurrencyLimiter concurrencyLimiter = this.concurrencyLimiter;
+		final HttpConcurrencyLimiter.RouteLimit limit;
+		if(concurrencyLimiter != null) {
+			try {
+				limit = concurrencyLimiter.acquire(originalURI, false);
+			} catch(HttpConcurrencyLimitException e) {
+				if(circuit != null) {
+					circuit.ignore();
+				}
+				
+				this.metrics.route(getTargetHost(httpRequest, localHttpContext)).recordRateLimitRejection();
+				future.completeExceptionally(e);
+				return;
+			}
+		} else {
+			limit = null;
+		}
+		
+		final long start = System.nanoTime();
+		final Future<HttpResponse> pending = this.getAsyncClient().execute(httpRequest, localHttpContext, new FutureCallback<HttpResponse>() {
+			
+			@Override
+			public void completed(HttpResponse response) {
+				final long now = System.nanoTime();
+				final int statusCode = response.getStatusLine().getStatusCode();
+				if(circuit != null) {
+					circuit.record(now - start, statusCode >= 500);
+				}
+				
+				if(limit != null) {
+					limit.release(now - start, isOverloaded(statusCode));
+				}
+				
+				// the async client has buffered the body by now, thus the
+				// time to first byte cannot be told apart from the total
+				HttpMetrics.RouteMetrics routeMetrics = metrics.route(getTargetHost(httpRequest, localHttpContext));
+				routeMetrics.recordResponse(start, now, -1, statusCode, getRequestBodyLength(httpRequest));
+				
+				WebRawResponse rawResponse = new WebRawResponse(originalURI, response, localHttpContext);
+				rawResponse.instrument(routeMetrics, start);
+				
+				try {
+					future.complete(rawResponse.webResponse(handler));
+				} catch(IOException | RuntimeException e) {
+					future.completeExceptionally(e);
+				}
+			}
+			
+			@Override
+			public void failed(Exception e) {
+				if(circuit != null) {
+					circuit.record(System.nanoTime() - start, true);
+				}
+				
+				if(limit != null) {
+					limit.release(System.nanoTime() - start, true);
+				}
+				
+				metrics.route(getTargetHost(httpRequest, localHttpContext)).recordFailure();
+				
+				if(e instanceof HttpException) {
+					future.completeExceptionally(new ClientProtocolException(e));
+					return;
+				}
+				
+				future.completeExceptionally(e);
+			}
+			
+			@Override
+			public void cancelled() {
+				if(circuit != null) {
+					circuit.ignore();
+				}
+				
+				if(limit != null) {
+					limit.release();
+				}
+				
+				future.cancel(false);
+			}
+			
+		});
+		
+		// cancelling the returned future must release the connection
+		future.whenComplete(new BiConsumer<WebResponse, Throwable>() {
+			
+			@Override
+			public void accept(WebResponse response, Throwable throwable) {
+				if(future.isCancelled()) {
+					pending.cancel(true);
+				}
+			}
+			
+		});
+	}
+	
+	/**
+	 * Create a new local {@link HttpContext} for a single request execution.
+	 * Sharing the context may lead to circular redirects in case of
+	 * redirections from two request objects towards a single URI - like
+	 * hitting http://google.com twice leads to circular redirects in the
+	 * second request.
+	 * 
+	 * @return the newly created {@link HttpContext}
+	 */
+	private HttpContext newLocalHttpContext() {
+		HttpContext localHttpContext = new BasicHttpContext();
+		
+        localHttpContext.setAttribute(HttpClientContext.CREDS_PROVIDER, this.credentialsProvider);
+        localHttpContext.setAttribute(HttpClientContext.AUTH_CACHE, this.authCache);
+        localHttpContext.setAttribute(HttpClientContext.COOKIE_STORE, this.cookieStore);
+        
+        long maxRateLimitWaitNanos = this.maxRateLimitWaitNanos;
+        if(maxRateLimitWaitNanos >= 0) {
+        	localHttpContext.setAttribute(HttpRateLimitingClient.MAX_WAIT_NANOS_ATTRIBUTE, maxRateLimitWaitNanos);
+        }
+        
+        return localHttpContext;
+	}
+    
+	// Methods related to rate limiting
+	
+	/**
+	 * Add new rate limiting for the given host.
+	 * 
+	 * @param hostName
+	 *            the hostname to add rate limit to
+	 * 
+	 * @param limit
+	 *            the limit to be used
+	 * 
+	 * @param timeUnit
+	 *            the time unit against which we are setting rate limit
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor addRateLimiting(String hostName, int limit, TimeUnit timeUnit) {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).addRateLimiting(hostName, limit, timeUnit);
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Add new rate limiting for the given host, allowing <code>limit</code>
+	 * requests every <code>period</code> units of time.
+	 * 
+	 * @param hostName
+	 *            the hostname to add rate limit to
+	 * 
+	 * @param limit
+	 *            the limit to be used
+	 * 
+	 * @param period
+	 *            the length of the period
+	 * 
+	 * @param timeUnit
+	 *            the time unit of the period
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor addRateLimiting(String hostName, int limit, long period, TimeUnit timeUnit) {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).addRateLimiting(hostName, limit, period, timeUnit);
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Park requests that are over the rate limit of their host until a permit
+	 * is available, instead of rejecting them. Blocking requests park the
+	 * calling thread, while asynchronous requests are deferred without holding
+	 * a thread. Waiting requests are admitted in FIFO order per host. A
+	 * request that would need to wait longer than the given time is rejected
+	 * with {@link HttpRateLimitException}. A waiting request that is
+	 * interrupted, or whose future is cancelled, gives its permit back if the
+	 * {@link HttpRateLimiter} supports it. The wait only applies to the
+	 * requests of this instance, even when its client, and with it the rate
+	 * limits, is shared with other instances.
+	 * 
+	 * @param maxWait
+	 *            the maximum time to wait for a permit
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the wait
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the wait is negative or the time unit is <code>null</code>
+	 */
+	public HttpExecutor blockOnRateLimit(long maxWait, TimeUnit timeUnit) {
+		if(maxWait < 0) {
+			throw new IllegalArgumentException("Maximum wait cannot be negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		if(this.client instanceof HttpRateLimitingClient) {
+			this.maxRateLimitWaitNanos = timeUnit.toNanos(maxWait);
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Reject requests that are over the rate limit of their host right away
+	 * with {@link HttpRateLimitException}. This is the default. As with
+	 * {@link #blockOnRateLimit(long, TimeUnit)}, this only applies to the
+	 * requests of this instance.
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor rejectOnRateLimit() {
+		if(this.client instanceof HttpRateLimitingClient) {
+			this.maxRateLimitWaitNanos = 0;
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Remove any previous rate limiting that has been set for the host.
+	 * 
+	 * @param hostName
+	 *            the host name for which we need to remove rate limiting
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor removeRateLimiting(String hostName) {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).removeRateLimiting(hostName);
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	/**
+	 * Remove all previously set rate limiting.
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor removeAllRateLimiting() {
+		if(this.client instanceof HttpRateLimitingClient) {
+			((HttpRateLimitingClient) this.client).removeAllRateLimiting();
+			return this;
+		}
+		
+		throw new IllegalStateException("Current client does not support rate-limiting");
+	}
+	
+	// Methods related to authentication
+	
+	/**
+	 * Add provided authentication
+	 * 
+	 * @param authScope
+	 *            the {@link AuthScope} that needs to be set
+	 * 
+	 * @param credentials
+	 *            the {@link Credentials} that need to be set
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+	public HttpExecutor addAuthentication(AuthScope authScope, Credentials credentials) {
+		if (this.credentialsProvider == null) {
+            this.credentialsProvider = new BasicCredentialsProvider();
+        }
+        this.credentialsProvider.setCredentials(authScope, credentials);
+        return this;
+	}
+	
+	/**
+	 * Clear all authentication that may have been set.
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+	public HttpExecutor clearAllAuthentication() {
+        if (this.credentialsProvider != null) {
+            this.credentialsProvider.clear();
+        }
+        
+        return this;
+    }
+	
+	/**
+	 * Add authentication for a given host
+	 * 
+	 * @param host
+	 *            the host name for which authentication needs to be set
+	 *            
+	 * @param userName
+	 *            the username that needs to be set
+	 * 
+	 * @param password
+	 *            the password that needs to be set
+	 * 
+	 * @return this very {@link HttpExecutor}
+	 */
+	public HttpExecutor addAuthentication(String host, String userName, String password) {
+		AuthScope authScope = new AuthScope(host, 80);
+		Credentials credentials = new UsernamePasswordCredentials(userName, password);
+		return this.addAuthentication(authScope, credentials);
+	}
+	
+	/**
+	 * Add authentication for given host and port.
+	 * 
+	 * @param host
+	 *            the host name for which authentication needs to be set
+	 * 
+	 * @param port
+	 *            the port for which authentication needs to be set
+	 * 
+	 * @param userName
 	 *            the username that needs to be set
 	 * 
 	 * @param password
@@ -612,7 +1588,7 @@ public class HttpExecutor {
 	 * @return this very {@link HttpExecutor} instance
 	 */
 	public HttpExecutor maxConnections(int numConnections) {
-		setMaxConnections(numConnections);
+		setMaxConnections(this.connectionManager, numConnections);
 		return this;
 	}
 	
@@ -626,7 +1602,7 @@ public class HttpExecutor {
 	 * @return this very {@link HttpExecutor} instance
 	 */
 	public HttpExecutor maxConnectionsPerRoute(int numConnections) {
-		setMaxConnectionsPerRoute(numConnections);
+		setMaxConnectionsPerRoute(this.connectionManager, numConnections);
 		return this;
 	}
 	
@@ -643,7 +1619,7 @@ public class HttpExecutor {
 	 * @return this very {@link HttpExecutor} instance
 	 */
 	public HttpExecutor maxConnectionsOnHost(HttpRoute route, int numConnections) {
-		setMaxConnectionsOnHost(route, numConnections);
+		setMaxConnectionsOnHost(this.connectionManager, route, numConnections);
 		return this;
 	}
 	
@@ -661,7 +1637,7 @@ public class HttpExecutor {
 	 */
 	public HttpExecutor maxConnectionsOnHost(String hostName, int numConnections) {
 		HttpRoute route = new HttpRoute(new HttpHost(hostName));
-		setMaxConnectionsOnHost(route, numConnections);
+		setMaxConnectionsOnHost(this.connectionManager, route, numConnections);
 		return this;
 	}
 	
@@ -682,7 +1658,7 @@ public class HttpExecutor {
 	 */
 	public HttpExecutor maxConnectionsOnHost(String hostName, int port, int numConnections) {
 		HttpRoute route = new HttpRoute(new HttpHost(hostName, port));
-		setMaxConnectionsOnHost(route, numConnections);
+		setMaxConnectionsOnHost(this.connectionManager, route, numConnections);
 		return this;
 	}
 	
@@ -705,7 +1681,7 @@ public class HttpExecutor {
 		}
 		
 		this.interceptors.add(interceptor);
-		Collections.sort(this.interceptors, this.interceptorComparator);
+		this.interceptors.sort(this.interceptorComparator);
 	}
 	
 	/**
@@ -733,30 +1709,968 @@ public class HttpExecutor {
 		this.interceptors.clear();
 	}
 	
-	static PoolingHttpClientConnectionManager getConnectionManager() {
-		return HTTP_CONNECTION_MANAGER;
+	/**
+	 * Close idle connections of the pool of this instance that have been idle
+	 * for longer than given value.
+	 * 
+	 * @param idleForMillis
+	 *            idle time for a connection to clean up
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor closeIdle(long idleForMillis) {
+		this.connectionManager.closeIdleConnections(idleForMillis, TimeUnit.MILLISECONDS);
+		return this;
 	}
 	
-	// Finalization methods
+	/**
+	 * Close expired connections of the pool of this instance.
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor closeExpired() {
+		this.connectionManager.closeExpiredConnections();
+		return this;
+	}
 	
-	/* (non-Javadoc)
-	 * @see java.lang.Object#finalize()
+	static PoolingHttpClientConnectionManager getConnectionManager() {
+		return HTTP_CONNECTION_MANAGER;
+	}
+	
+	PoolingHttpClientConnectionManager getPoolingConnectionManager() {
+		return this.connectionManager;
+	}
+	
+	/**
+	 * Guard the requests of this instance, blocking and asynchronous, with
+	 * the given circuit breaker. Requests to a host whose circuit is open
+	 * fail with a {@link HttpCircuitOpenException} without being sent.
+	 * 
+	 * @param circuitBreaker
+	 *            the {@link HttpCircuitBreaker} to use, or <code>null</code>
+	 *            to remove it
+	 * 
+	 * @return this very {@link HttpExecutor} instance
 	 */
-	@Override
-	protected void finalize() throws Throwable {
-		super.finalize();
+	public HttpExecutor circuitBreaker(HttpCircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+		return this;
+	}
+	
+	/**
+	 * Limit the requests in flight to each host using the given adaptive
+	 * limiter. Both blocking and asynchronous requests are limited, the
+	 * latter being rejected rather than made to wait. For an instance built
+	 * via {@link #builder()} the maximum connections of each route of its
+	 * own pool follow the limit discovered for the route, while instances
+	 * sharing the global pool leave it untouched. A blocking request stays
+	 * in flight till its response has been consumed, see
+	 * {@link #execute(WebRequest)}.
+	 * 
+	 * @param concurrencyLimiter
+	 *            the {@link HttpConcurrencyLimiter} to use, or
+	 *            <code>null</code> to remove it
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor concurrencyLimiter(HttpConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+		return this;
+	}
+	
+	/**
+	 * Retry the failed requests executed via {@link #execute(WebRequest)}
+	 * using the given policy. Asynchronous requests are never retried.
+	 * 
+	 * The clients of the default executors retry idempotent requests on some
+	 * I/O errors on their own, use
+	 * {@link Builder#retryPolicy(HttpRetryPolicy)} for an executor where the
+	 * policy is the only source of retries.
+	 * 
+	 * @param policy
+	 *            the {@link HttpRetryPolicy} to use, or <code>null</code> to
+	 *            stop retrying
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor retrying(HttpRetryPolicy policy) {
+		this.retryPolicy = policy;
+		return this;
+	}
+	
+	/**
+	 * Hedge the <code>GET</code> and <code>HEAD</code> requests executed via
+	 * {@link #execute(WebRequest)} using the given policy. Asynchronous
+	 * requests are never hedged.
+	 * 
+	 * @param policy
+	 *            the {@link HttpHedgingPolicy} to use, or <code>null</code>
+	 *            to stop hedging
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 */
+	public HttpExecutor hedging(HttpHedgingPolicy policy) {
+		this.hedgingPolicy = policy;
+		return this;
+	}
+	
+	/**
+	 * Open connections to the given route until the given number of them
+	 * are idle in the pool, or all connections of the route are open, so
+	 * that the next requests skip the TCP and TLS handshakes. Idle
+	 * connections are validated, and the new ones opened in parallel. Routes
+	 * via a proxy are not supported.
+	 * 
+	 * @param route
+	 *            the {@link HttpRoute} to warm up, see
+	 *            {@link #getRoute(String)}
+	 * 
+	 * @param numConnections
+	 *            the number of connections wanted
+	 * 
+	 * @return the number of connections opened
+	 * 
+	 * @throws IOException
+	 *             if no connection could be opened
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the route is <code>null</code> or via a proxy, or the
+	 *             number of connections is negative
+	 */
+	public int warmUp(HttpRoute route, int numConnections) throws IOException {
+		if(route == null) {
+			throw new IllegalArgumentException("HttpRoute cannot be null");
+		}
+		
+		if(numConnections < 0) {
+			throw new IllegalArgumentException("Number of connections cannot be negative");
+		}
+		
+		try {
+			return this.connectionWarmer.warmUp(route, numConnections, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(HttpConnectionWarmer.CONNECT_TIMEOUT_MILLIS));
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while warming up route: " + route);
+		}
+	}
+	
+	/**
+	 * Keep at least the given number of connections to the route idle in
+	 * the pool, as far as the maximum connections of the route allow next to
+	 * those in use. The connections are opened, and replaced once closed, by
+	 * a background thread every few seconds - use
+	 * {@link #awaitWarm(long, TimeUnit)} to wait for them at start-up.
+	 * 
+	 * @param route
+	 *            the {@link HttpRoute} to keep warm, see
+	 *            {@link #getRoute(String)}
+	 * 
+	 * @param numConnections
+	 *            the number of idle connections, zero to stop keeping the
+	 *            route warm
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the route is <code>null</code> or via a proxy, or the
+	 *             number of connections is negative
+	 */
+	public HttpExecutor minIdleConnections(HttpRoute route, int numConnections) {
+		if(route == null) {
+			throw new IllegalArgumentException("HttpRoute cannot be null");
+		}
+		
+		if(route.getProxyHost() != null) {
+			throw new IllegalArgumentException("Warming up routes via a proxy is not supported");
+		}
+		
+		if(numConnections < 0) {
+			throw new IllegalArgumentException("Number of connections cannot be negative");
+		}
+		
+		this.connectionWarmer.setMinIdle(route, numConnections);
+		return this;
+	}
+	
+	/**
+	 * Warm up all routes set via {@link #minIdleConnections(HttpRoute, int)}
+	 * in parallel, and block until each has its idle connections open or
+	 * the timeout expires. Meant to be called at start-up, before taking
+	 * traffic.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the timeout
+	 * 
+	 * @return <code>true</code> if all routes are warm, <code>false</code>
+	 *         if the timeout expired or connections failed to open
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the time unit is <code>null</code>
+	 */
+	public boolean awaitWarm(long timeout, TimeUnit timeUnit) throws InterruptedException {
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		return this.connectionWarmer.awaitWarm(timeUnit.toNanos(timeout));
+	}
+	
+	/**
+	 * Return the {@link HttpRoute} the requests to the given URL are executed
+	 * on, when no proxy is used.
+	 * 
+	 * @param url
+	 *            the absolute URL
+	 * 
+	 * @return the {@link HttpRoute}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the URL is not an absolute URL
+	 */
+	public static HttpRoute getRoute(String url) {
+		HttpHost host = null;
+		if(AssertUtils.isNotEmpty(url)) {
+			try {
+				host = getTargetHost(new URI(url));
+			} catch(URISyntaxException e) {
+				// handled below
+			}
+		}
+		
+		if(host == null) {
+			throw new IllegalArgumentException("Not an absolute URL: " + url);
+		}
+		
+		return new HttpRoute(host, null, "https".equalsIgnoreCase(host.getSchemeName()));
+	}
+	
+	/**
+	 * Close the idle connections of the pool of this instance in the
+	 * background using the given evictor, replacing the one it had. All
+	 * executors over the global pool share its evictor.
+	 * 
+	 * @param evictor
+	 *            the {@link HttpConnectionEvictor} to use, or
+	 *            <code>null</code> to stop evicting
+	 * 
+	 * @return this very {@link HttpExecutor} instance
+	 * 
+	 * @throws IllegalStateException
+	 *             if the pool of this instance was not created by this
+	 *             library
+	 */
+	public HttpExecutor connectionEvictor(HttpConnectionEvictor evictor) {
+		if(!(this.connectionManager instanceof EvictableConnectionManager)) {
+			throw new IllegalStateException("Connection pool does not support eviction");
+		}
+		
+		HttpConnectionEvictor.register((EvictableConnectionManager) this.connectionManager, evictor);
+		return this;
+	}
+	
+	/**
+	 * Return the evictor closing the idle connections of the pool of this
+	 * instance.
+	 * 
+	 * @return the {@link HttpConnectionEvictor}, or <code>null</code> if
+	 *         connections are not evicted
+	 */
+	public HttpConnectionEvictor getConnectionEvictor() {
+		if(!(this.connectionManager instanceof EvictableConnectionManager)) {
+			return null;
+		}
+		
+		return HttpConnectionEvictor.getEvictor((EvictableConnectionManager) this.connectionManager);
+	}
+	
+	/**
+	 * Return the protocol this instance talks to servers.
+	 * 
+	 * @return {@link HttpProtocol#HTTP_2} if requests are multiplexed over
+	 *         HTTP/2 where servers support it, {@link HttpProtocol#HTTP_1_1}
+	 *         otherwise
+	 */
+	public HttpProtocol getProtocol() {
+		return this.protocol;
+	}
+	
+	/**
+	 * Return the decompressor that inflates the response bodies of this
+	 * instance.
+	 * 
+	 * @return the {@link HttpDecompressor}, or <code>null</code> if the
+	 *         built-in content decoding of HttpClient is used
+	 */
+	public HttpDecompressor getDecompressor() {
+		return this.decompressor;
+	}
+	
+	/**
+	 * Return the latency, traffic and error metrics of this instance. The
+	 * returned object is live, call {@link HttpMetrics#snapshot()} to read it.
+	 * 
+	 * @return the {@link HttpMetrics} of this instance
+	 */
+	public HttpMetrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * Return the response cache counters of this instance.
+	 * 
+	 * @return the {@link HttpCacheStatistics} if caching was enabled via the
+	 *         {@link Builder}, <code>null</code> otherwise
+	 */
+	public HttpCacheStatistics getCacheStatistics() {
+		return this.cacheStatistics;
+	}
+	
+	/**
+	 * Shut down the clients and connection pools of this instance, if it was
+	 * created by a {@link Builder}. Executors sharing the global pool are not
+	 * affected.
+	 * 
+	 */
+	public void shutdown() {
+		this.connectionWarmer.cancel();
+		if(this.ownedClient == null) {
+			return;
+		}
 		
 		try {
-			HTTP_CONNECTION_MANAGER.close();
+			this.ownedClient.close();
 		} catch(Throwable t) {
 			// eat up
 		}
-
+		
+		// only close the non-blocking client if one was ever created
+		final CloseableHttpAsyncClient asyncClient;
+		synchronized(this.asyncClientLock) {
+			this.shutdown = true;
+			asyncClient = this.ownedAsyncClient;
+		}
+		
+		if(asyncClient != null) {
+			try {
+				asyncClient.close();
+			} catch(Throwable t) {
+				// eat up
+			}
+		}
+		
+		if(this.cacheStorage != null) {
+			this.cacheCleaner.cancel(false);
+			
+			// deletes the files of all entries
+			this.cacheStorage.shutdown();
+		}
+		
 		try {
-			HTTP_CONNECTION_MANAGER.shutdown();
+			this.connectionManager.shutdown();
 		} catch(Throwable t) {
 			// eat up
 		}
+		
+		if(this.connectionManager instanceof EvictableConnectionManager) {
+			HttpConnectionEvictor.unregister((EvictableConnectionManager) this.connectionManager);
+		}
+	}
+	
+	// Finalization methods
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#finalize()
+	 */
+	@Override
+	protected void finalize() throws Throwable {
+		super.finalize();
+		
+		// only the owner may close the pool - instances over the global
+		// pool must not tear it down for everyone else
+		this.shutdown();
+	}
+	
+	/**
+	 * Deletes the files of the entries evicted from a disk cache.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static final class CacheCleaner implements Runnable {
+		
+		private final ManagedHttpCacheStorage cacheStorage;
+		
+		CacheCleaner(ManagedHttpCacheStorage cacheStorage) {
+			this.cacheStorage = cacheStorage;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				this.cacheStorage.cleanResources();
+			} catch(RuntimeException e) {
+				LOGGER.warn("Unable to delete the files of evicted cache entries", e);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Creates the non-blocking client of an instance that owns its pool with
+	 * the pool sizes, socket configuration, DNS resolver and decompressor its
+	 * {@link Builder} had when the instance was built. Connections of the
+	 * non-blocking pool need no validation after inactivity, as the I/O
+	 * reactor notices those closed by the server.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static final class AsyncClientFactory {
+		
+		private final int maxConnections;
+		
+		private final int maxConnectionsPerRoute;
+		
+		private final Map<HttpRoute, Integer> maxConnectionsOnRoute;
+		
+		private final long connectionTimeToLive;
+		
+		private final TimeUnit connectionTimeToLiveUnit;
+		
+		private final SocketConfig socketConfig;
+		
+		private final DnsResolver dnsResolver;
+		
+		private final HttpDecompressor decompressor;
+		
+		AsyncClientFactory(Builder builder) {
+			this.maxConnections = builder.maxConnections;
+			this.maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+			this.maxConnectionsOnRoute = new HashMap<>(builder.maxConnectionsOnRoute);
+			this.connectionTimeToLive = builder.connectionTimeToLive;
+			this.connectionTimeToLiveUnit = builder.connectionTimeToLiveUnit;
+			this.socketConfig = builder.socketConfig;
+			this.dnsResolver = builder.dnsResolver;
+			this.decompressor = builder.decompressor;
+		}
+		
+		/**
+		 * Create and start the non-blocking client.
+		 * 
+		 */
+		CloseableHttpAsyncClient create() {
+			IOReactorConfig.Builder config = IOReactorConfig.custom().setIoThreadCount(Runtime.getRuntime().availableProcessors());
+			if(this.socketConfig != null) {
+				config.setSoTimeout(this.socketConfig.getSoTimeout())
+					  .setSoKeepAlive(this.socketConfig.isSoKeepAlive())
+					  .setTcpNoDelay(this.socketConfig.isTcpNoDelay())
+					  .setSoReuseAddress(this.socketConfig.isSoReuseAddress())
+					  .setSoLinger(this.socketConfig.getSoLinger());
+				
+				if(this.socketConfig.getRcvBufSize() > 0) {
+					config.setRcvBufSize(this.socketConfig.getRcvBufSize());
+				}
+				
+				if(this.socketConfig.getSndBufSize() > 0) {
+					config.setSndBufSize(this.socketConfig.getSndBufSize());
+				}
+			}
+			
+			final ConnectingIOReactor ioReactor;
+			try {
+				ioReactor = new DefaultConnectingIOReactor(config.build(), new DaemonThreadFactory("jerry-http-io"));
+			} catch(IOReactorException e) {
+				throw new IllegalStateException("Unable to create the I/O reactor for async client", e);
+			}
+			
+			Registry<SchemeIOSessionStrategy> strategies = RegistryBuilder.<SchemeIOSessionStrategy>create()
+					.register("http", NoopIOSessionStrategy.INSTANCE)
+					.register("https", SSLIOSessionStrategy.getSystemDefaultStrategy())
+					.build();
+			
+			DnsResolver dnsResolver = this.dnsResolver != null ? this.dnsResolver : SystemDefaultDnsResolver.INSTANCE;
+			PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(ioReactor, null, strategies, DefaultSchemePortResolver.INSTANCE, dnsResolver, this.connectionTimeToLive, this.connectionTimeToLiveUnit);
+			connectionManager.setMaxTotal(this.maxConnections);
+			connectionManager.setDefaultMaxPerRoute(this.maxConnectionsPerRoute);
+			for(Entry<HttpRoute, Integer> entry : this.maxConnectionsOnRoute.entrySet()) {
+				connectionManager.setMaxPerRoute(entry.getKey(), entry.getValue());
+			}
+			
+			HttpAsyncClientBuilder clientBuilder = HttpAsyncClients.custom()
+					.setConnectionManager(connectionManager)
+					.setKeepAliveStrategy(HttpConnectionEvictor.KEEP_ALIVE_STRATEGY)
+					.setThreadFactory(new DaemonThreadFactory("jerry-http-async"));
+			
+			// decode responses as the blocking client does
+			if(this.decompressor != null) {
+				clientBuilder.addInterceptorLast((HttpRequestInterceptor) this.decompressor);
+				clientBuilder.addInterceptorLast((HttpResponseInterceptor) this.decompressor);
+			} else {
+				clientBuilder.addInterceptorLast(new RequestAcceptEncoding());
+				clientBuilder.addInterceptorLast(new ResponseContentEncoding());
+			}
+			
+			CloseableHttpAsyncClient asyncClient = clientBuilder.build();
+			asyncClient.start();
+			return asyncClient;
+		}
+		
+	}
+	
+	/**
+	 * Builder that creates an {@link HttpExecutor} over its own isolated
+	 * connection pool and socket configuration.
+	 * 
+	 * @author sangupta
+	 * 
+	 * @since 2.1.0
+	 */
+	public static class Builder {
+		
+		private int maxConnections = MAX_TOTAL_CONNECTIONS;
+		
+		private int maxConnectionsPerRoute = MAX_CONNECTIONS_PER_ROUTE;
+		
+		private final Map<HttpRoute, Integer> maxConnectionsOnRoute = new HashMap<>();
+		
+		private int validateAfterInactivityMillis = VALIDATE_CONNECTION_AFTER_INACTIVITY_MILLIS;
+		
+		private long connectionTimeToLive = -1;
+		
+		private TimeUnit connectionTimeToLiveUnit = TimeUnit.MILLISECONDS;
+		
+		private SocketConfig socketConfig;
+		
+		private HttpRateLimiter rateLimiter;
+		
+		private CacheConfig cacheConfig;
+		
+		private File cacheDirectory;
+		
+		private HttpRetryPolicy retryPolicy;
+		
+		private DnsResolver dnsResolver;
+		
+		private final Map<HttpRoute, Integer> minIdleOnRoute = new HashMap<>();
+		
+		private HttpConnectionEvictor connectionEvictor = new HttpConnectionEvictor();
+		
+		private HttpProtocol protocol = HttpProtocol.HTTP_1_1;
+		
+		private HttpDecompressor decompressor;
+		
+		Builder() {
+			// use HttpExecutor.builder()
+		}
+		
+		/**
+		 * Set overall maximum connections in the pool.
+		 * 
+		 * @param numConnections
+		 *            the number of connections
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder maxConnections(int numConnections) {
+			if(numConnections < 1) {
+				throw new IllegalArgumentException("Number of connections cannot be less than 1");
+			}
+			
+			this.maxConnections = numConnections;
+			return this;
+		}
+		
+		/**
+		 * Set the default maximum connections per route in the pool.
+		 * 
+		 * @param numConnections
+		 *            the number of connections
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder maxConnectionsPerRoute(int numConnections) {
+			if(numConnections < 1) {
+				throw new IllegalArgumentException("Number of connections cannot be less than 1");
+			}
+			
+			this.maxConnectionsPerRoute = numConnections;
+			return this;
+		}
+		
+		/**
+		 * Set the maximum connections for the given route in the pool.
+		 * 
+		 * @param route
+		 *            the {@link HttpRoute} to set the limit for
+		 * 
+		 * @param numConnections
+		 *            the number of connections
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder maxConnectionsOnHost(HttpRoute route, int numConnections) {
+			if(route == null) {
+				throw new IllegalArgumentException("HttpRoute cannot be null");
+			}
+			
+			if(numConnections < 1) {
+				throw new IllegalArgumentException("Number of connections cannot be less than 1");
+			}
+			
+			this.maxConnectionsOnRoute.put(route, numConnections);
+			return this;
+		}
+		
+		/**
+		 * Set the inactivity period after which a pooled connection is
+		 * validated before being leased again.
+		 * 
+		 * @param millis
+		 *            the inactivity in millis, negative to disable validation
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder validateAfterInactivity(int millis) {
+			this.validateAfterInactivityMillis = millis;
+			return this;
+		}
+		
+		/**
+		 * Set the maximum lifetime of a pooled connection.
+		 * 
+		 * @param timeToLive
+		 *            the lifetime, zero/negative for no limit
+		 * 
+		 * @param timeUnit
+		 *            the {@link TimeUnit} of the lifetime
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder connectionTimeToLive(long timeToLive, TimeUnit timeUnit) {
+			if(timeUnit == null) {
+				throw new IllegalArgumentException("TimeUnit cannot be null");
+			}
+			
+			this.connectionTimeToLive = timeToLive;
+			this.connectionTimeToLiveUnit = timeUnit;
+			return this;
+		}
+		
+		/**
+		 * Set the {@link SocketConfig} used for connections of the pool.
+		 * 
+		 * @param socketConfig
+		 *            the {@link SocketConfig} to use
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder socketConfig(SocketConfig socketConfig) {
+			this.socketConfig = socketConfig;
+			return this;
+		}
+		
+		/**
+		 * Use the given {@link HttpRateLimiter} instead of the rate limits
+		 * shared by all default executors.
+		 * 
+		 * @param rateLimiter
+		 *            the {@link HttpRateLimiter} to use
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder rateLimiter(HttpRateLimiter rateLimiter) {
+			this.rateLimiter = rateLimiter;
+			return this;
+		}
+		
+		/**
+		 * Enable an RFC 7234 compliant response cache that keeps entries in
+		 * memory. The least recently used entries are evicted once the cache
+		 * is full.
+		 * 
+		 * @param maxEntries
+		 *            the maximum number of responses to cache
+		 * 
+		 * @param maxObjectSize
+		 *            the maximum size in bytes of a cacheable response body
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder memoryCache(int maxEntries, long maxObjectSize) {
+			this.cacheConfig = createCacheConfig(maxEntries, maxObjectSize);
+			this.cacheDirectory = null;
+			return this;
+		}
+		
+		/**
+		 * Enable an RFC 7234 compliant response cache that keeps response
+		 * bodies as files in the given directory. The files of evicted
+		 * entries are deleted in the background once the entries have been
+		 * garbage collected, and all files are deleted on
+		 * {@link HttpExecutor#shutdown()}.
+		 * 
+		 * @param directory
+		 *            the directory to store response bodies in
+		 * 
+		 * @param maxEntries
+		 *            the maximum number of responses to cache
+		 * 
+		 * @param maxObjectSize
+		 *            the maximum size in bytes of a cacheable response body
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder diskCache(File directory, int maxEntries, long maxObjectSize) {
+			if(directory == null) {
+				throw new IllegalArgumentException("Cache directory cannot be null");
+			}
+			
+			if(!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IllegalArgumentException("Cache directory cannot be created: " + directory.getAbsolutePath());
+			}
+			
+			this.cacheConfig = createCacheConfig(maxEntries, maxObjectSize);
+			this.cacheDirectory = directory;
+			return this;
+		}
+		
+		/**
+		 * Retry failed requests using the given policy. The automatic retries
+		 * of the underlying client are disabled so that the policy, and its
+		 * budget, govern all retries.
+		 * 
+		 * @param retryPolicy
+		 *            the {@link HttpRetryPolicy} to use
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder retryPolicy(HttpRetryPolicy retryPolicy) {
+			this.retryPolicy = retryPolicy;
+			return this;
+		}
+		
+		/**
+		 * Resolve the host names of new connections with the given
+		 * {@link DnsResolver}, such as a {@link CachingDnsResolver}, instead
+		 * of the system resolver.
+		 * 
+		 * @param dnsResolver
+		 *            the {@link DnsResolver} to use
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder dnsResolver(DnsResolver dnsResolver) {
+			this.dnsResolver = dnsResolver;
+			return this;
+		}
+		
+		/**
+		 * Keep at least the given number of connections to the route idle in
+		 * the pool - see {@link HttpExecutor#minIdleConnections(HttpRoute, int)}.
+		 * 
+		 * @param route
+		 *            the {@link HttpRoute} to keep warm
+		 * 
+		 * @param numConnections
+		 *            the number of idle connections
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder minIdleConnections(HttpRoute route, int numConnections) {
+			if(route == null) {
+				throw new IllegalArgumentException("HttpRoute cannot be null");
+			}
+			
+			if(route.getProxyHost() != null) {
+				throw new IllegalArgumentException("Warming up routes via a proxy is not supported");
+			}
+			
+			if(numConnections < 1) {
+				throw new IllegalArgumentException("Number of connections cannot be less than 1");
+			}
+			
+			this.minIdleOnRoute.put(route, numConnections);
+			return this;
+		}
+		
+		/**
+		 * Close idle connections of the pool using the given evictor, in
+		 * place of one with the default settings.
+		 * 
+		 * @param evictor
+		 *            the {@link HttpConnectionEvictor} to use, or
+		 *            <code>null</code> to not evict connections
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder connectionEvictor(HttpConnectionEvictor evictor) {
+			this.connectionEvictor = evictor;
+			return this;
+		}
+		
+		/**
+		 * Use the given protocol to talk to servers. With
+		 * {@link HttpProtocol#HTTP_2} all requests to a host are multiplexed
+		 * over a single connection once the server agrees to HTTP/2 - the
+		 * connection pool then only serves plain-text servers that are not
+		 * on the loopback interface, and servers that do not speak HTTP/2.
+		 * 
+		 * HTTP/2 needs Java 11 or above, and is not used together with
+		 * response caching; the executor falls back to HTTP/1.1 in both
+		 * cases, see {@link HttpExecutor#getProtocol()}.
+		 * 
+		 * @param protocol
+		 *            the {@link HttpProtocol} to use
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder protocol(HttpProtocol protocol) {
+			if(protocol == null) {
+				throw new IllegalArgumentException("Protocol cannot be null");
+			}
+			
+			this.protocol = protocol;
+			return this;
+		}
+		
+		/**
+		 * Decompress response bodies using the given {@link HttpDecompressor},
+		 * which controls the encodings advertised to servers and the
+		 * maximum size a body may inflate to, in place of the built-in
+		 * content decoding of HttpClient.
+		 * 
+		 * @param decompressor
+		 *            the {@link HttpDecompressor} to use
+		 * 
+		 * @return this very {@link Builder}
+		 */
+		public Builder decompressor(HttpDecompressor decompressor) {
+			this.decompressor = decompressor;
+			return this;
+		}
+		
+		private static CacheConfig createCacheConfig(int maxEntries, long maxObjectSize) {
+			if(maxEntries < 1) {
+				throw new IllegalArgumentException("Maximum cache entries cannot be less than 1");
+			}
+			
+			if(maxObjectSize < 1) {
+				throw new IllegalArgumentException("Maximum cached object size cannot be less than 1");
+			}
+			
+			// a client-side cache may also hold responses marked private
+			return CacheConfig.custom()
+					.setMaxCacheEntries(maxEntries)
+					.setMaxObjectSize(maxObjectSize)
+					.setSharedCache(false)
+					.build();
+		}
+		
+		/**
+		 * Build the {@link HttpExecutor} with a newly created connection pool.
+		 * 
+		 * @return the newly created {@link HttpExecutor}
+		 */
+		public HttpExecutor build() {
+			EvictableConnectionManager connectionManager = new EvictableConnectionManager(createSocketFactoryRegistry(), this.dnsResolver, this.connectionTimeToLive, this.connectionTimeToLiveUnit);
+			connectionManager.setMaxTotal(this.maxConnections);
+			connectionManager.setDefaultMaxPerRoute(this.maxConnectionsPerRoute);
+			connectionManager.setValidateAfterInactivity(this.validateAfterInactivityMillis);
+			for(Entry<HttpRoute, Integer> entry : this.maxConnectionsOnRoute.entrySet()) {
+				connectionManager.setMaxPerRoute(entry.getKey(), entry.getValue());
+			}
+			
+			if(this.socketConfig != null) {
+				connectionManager.setDefaultSocketConfig(this.socketConfig);
+			}
+			
+			HttpClientBuilder clientBuilder;
+			HttpCacheStatistics cacheStatistics = null;
+			ManagedHttpCacheStorage cacheStorage = null;
+			if(this.cacheConfig != null) {
+				CachingHttpClientBuilder cachingBuilder = CachingHttpClientBuilder.create().setCacheConfig(this.cacheConfig);
+				if(this.cacheDirectory != null) {
+					// the files of evicted entries are only deleted when the
+					// storage is cleaned, which the executor does periodically
+					cacheStorage = new ManagedHttpCacheStorage(this.cacheConfig);
+					cachingBuilder.setResourceFactory(new FileResourceFactory(this.cacheDirectory));
+					cachingBuilder.setHttpCacheStorage(cacheStorage);
+				}
+				
+				clientBuilder = cachingBuilder;
+				cacheStatistics = new HttpCacheStatistics();
+			} else {
+				clientBuilder = HttpClientBuilder.create();
+			}
+			
+			if(this.retryPolicy != null) {
+				clientBuilder.disableAutomaticRetries();
+			}
+			
+			HttpProcessor contentDecoding;
+			if(this.decompressor != null) {
+				clientBuilder.disableContentCompression();
+				clientBuilder.addInterceptorLast((HttpRequestInterceptor) this.decompressor);
+				clientBuilder.addInterceptorLast((HttpResponseInterceptor) this.decompressor);
+				contentDecoding = new ImmutableHttpProcessor(new HttpRequestInterceptor[] { this.decompressor }, new HttpResponseInterceptor[] { this.decompressor });
+			} else {
+				contentDecoding = new ImmutableHttpProcessor(new HttpRequestInterceptor[] { new RequestAcceptEncoding() }, new HttpResponseInterceptor[] { new ResponseContentEncoding() });
+			}
+			
+			CloseableHttpClient closeableHttpClient = clientBuilder.setConnectionManager(connectionManager).setKeepAliveStrategy(HttpConnectionEvictor.KEEP_ALIVE_STRATEGY).build();
+			
+			HttpProtocol protocol = HttpProtocol.HTTP_1_1;
+			if(this.protocol == HttpProtocol.HTTP_2) {
+				CloseableHttpClient http2Client = null;
+				if(this.cacheConfig != null) {
+					LOGGER.warn("HTTP/2 is not supported along with response caching, using HTTP/1.1");
+				} else {
+					http2Client = Http2Engine.create(closeableHttpClient, contentDecoding);
+					if(http2Client == null) {
+						LOGGER.warn("HTTP/2 requires Java 11 or above, using HTTP/1.1");
+					}
+				}
+				
+				if(http2Client != null) {
+					closeableHttpClient = http2Client;
+					protocol = HttpProtocol.HTTP_2;
+				}
+			}
+			
+			HttpClient client;
+			if(this.rateLimiter != null) {
+				client = new HttpRateLimitingClient(closeableHttpClient, this.rateLimiter);
+			} else {
+				client = new HttpRateLimitingClient(closeableHttpClient);
+			}
+			
+			HttpExecutor executor = new HttpExecutor(client, connectionManager, closeableHttpClient, cacheStatistics);
+			if(this.cacheConfig == null && protocol == HttpProtocol.HTTP_1_1) {
+				executor.asyncClientFactory = new AsyncClientFactory(this);
+			}
+			
+			if(cacheStorage != null) {
+				executor.cacheStorage = cacheStorage;
+				executor.cacheCleaner = HttpConnectionEvictor.scheduleWithSweep(new CacheCleaner(cacheStorage));
+			}
+			
+			executor.retryPolicy = this.retryPolicy;
+			executor.protocol = protocol;
+			executor.decompressor = this.decompressor;
+			HttpConnectionEvictor.register(connectionManager, this.connectionEvictor);
+			for(Entry<HttpRoute, Integer> entry : this.minIdleOnRoute.entrySet()) {
+				executor.connectionWarmer.setMinIdle(entry.getKey(), entry.getValue());
+			}
+			
+			return executor;
+		}
+		
 	}
 
 }
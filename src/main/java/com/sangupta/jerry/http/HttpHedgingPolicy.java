@@ -0,0 +1,547 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpHost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hedging policy for idempotent <code>GET</code> and <code>HEAD</code>
+ * requests of a {@link HttpExecutor}. If the response headers of a request do
+ * not arrive within the hedge delay, a duplicate request is fired on another
+ * pooled connection. The first response wins, and the other request is
+ * aborted via {@link WebRequest#abort()}.
+ * 
+ * The hedge delay is either fixed, or the given percentile of the
+ * time-to-first-byte observed by the {@link HttpMetrics} of the executor for
+ * the route, falling back to the fixed delay until enough samples are
+ * recorded.
+ * 
+ * The extra load is capped by a budget: every hedgeable request earns the
+ * budget percentage of a hedge, and a hedge is only fired when a whole one
+ * has been earned. The earned hedges are capped, so that a long period of
+ * fast responses cannot be followed by a burst of hedges.
+ * 
+ * The request is executed on the calling thread, and the hedge on a shared
+ * daemon pool. If the hedge wins, the original {@link WebRequest} is aborted,
+ * and the response returned belongs to the duplicate request.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpHedgingPolicy {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpHedgingPolicy.class);
+	
+	/**
+	 * The default percentage of requests that may be hedged
+	 */
+	public static final double DEFAULT_BUDGET_PERCENT = 5;
+	
+	/**
+	 * The default number of samples needed before the percentile of a route
+	 * is used as the delay
+	 */
+	public static final int DEFAULT_MIN_SAMPLES = 100;
+	
+	/**
+	 * Hedges that may be saved up in the budget
+	 */
+	private static final int MAX_SAVED_HEDGES = 10;
+	
+	/**
+	 * How often the delay of a route is recomputed from its metrics
+	 */
+	private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+	
+	/**
+	 * Fires the hedges once the delay expires
+	 */
+	private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("jerry-http-hedge-timer"));
+	
+	/**
+	 * Executes the hedge requests, on virtual threads where supported
+	 */
+	private static final ExecutorService HEDGE_POOL = VirtualThreads.newExecutor("jerry-http-hedge");
+	
+	static {
+		TIMER.setRemoveOnCancelPolicy(true);
+	}
+	
+	/**
+	 * The fixed delay, and the fallback for percentile based delays
+	 */
+	private final long delayNanos;
+	
+	/**
+	 * The percentile of time-to-first-byte to use as delay, or zero to always
+	 * use the fixed delay
+	 */
+	private volatile double percentile;
+	
+	/**
+	 * Samples needed before the percentile of a route is used
+	 */
+	private volatile int minSamples = DEFAULT_MIN_SAMPLES;
+	
+	/**
+	 * Caps the hedges at a percentage of the requests, starts empty
+	 */
+	private final RequestBudget budget = new RequestBudget(DEFAULT_BUDGET_PERCENT, MAX_SAVED_HEDGES, false);
+	
+	/**
+	 * The computed delays of the most recently used routes
+	 */
+	private final HostTable<RouteDelay> routeDelays = new HostTable<RouteDelay>(HostTable.DEFAULT_MAX_HOSTS);
+	
+	private final LongAdder requests = new LongAdder();
+	
+	private final LongAdder hedges = new LongAdder();
+	
+	private final LongAdder hedgeWins = new LongAdder();
+	
+	private final LongAdder budgetRejections = new LongAdder();
+	
+	/**
+	 * Create a policy that hedges after the given fixed delay.
+	 * 
+	 * @param delay
+	 *            the time to wait for a response before hedging
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the delay
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if delay is negative or time unit is <code>null</code>
+	 */
+	public HttpHedgingPolicy(long delay, TimeUnit timeUnit) {
+		if(delay < 0) {
+			throw new IllegalArgumentException("Hedge delay cannot be negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		this.delayNanos = timeUnit.toNanos(delay);
+	}
+	
+	/**
+	 * Use the given percentile of the time-to-first-byte of the route as the
+	 * hedge delay, once enough samples have been recorded. The fixed delay is
+	 * used till then.
+	 * 
+	 * @param percentile
+	 *            the percentile to use, say <code>95</code>
+	 * 
+	 * @return this very {@link HttpHedgingPolicy}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if percentile is not between <code>0</code> (exclusive) and
+	 *             <code>100</code>
+	 */
+	public HttpHedgingPolicy usePercentile(double percentile) {
+		if(percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100");
+		}
+		
+		this.percentile = percentile;
+		return this;
+	}
+	
+	/**
+	 * Set the number of samples that a route needs before its percentile is
+	 * used as the hedge delay.
+	 * 
+	 * @param minSamples
+	 *            the number of samples
+	 * 
+	 * @return this very {@link HttpHedgingPolicy}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if samples is not positive
+	 */
+	public HttpHedgingPolicy minSamples(int minSamples) {
+		if(minSamples <= 0) {
+			throw new IllegalArgumentException("Minimum samples must be positive");
+		}
+		
+		this.minSamples = minSamples;
+		return this;
+	}
+	
+	/**
+	 * Set the percentage of hedgeable requests that may be hedged.
+	 * 
+	 * @param percent
+	 *            the percentage, from <code>0</code> to <code>100</code>
+	 * 
+	 * @return this very {@link HttpHedgingPolicy}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if percent is not between <code>0</code> and
+	 *             <code>100</code>
+	 */
+	public HttpHedgingPolicy budget(double percent) {
+		this.budget.setPercent(percent);
+		return this;
+	}
+	
+	/**
+	 * @return the number of hedgeable requests executed
+	 */
+	public long getRequestCount() {
+		return this.requests.sum();
+	}
+	
+	/**
+	 * @return the number of hedges fired
+	 */
+	public long getHedgeCount() {
+		return this.hedges.sum();
+	}
+	
+	/**
+	 * @return the number of hedges whose response arrived first
+	 */
+	public long getHedgeWins() {
+		return this.hedgeWins.sum();
+	}
+	
+	/**
+	 * @return the number of hedges not fired as the budget was exhausted
+	 */
+	public long getBudgetRejections() {
+		return this.budgetRejections.sum();
+	}
+	
+	/**
+	 * Check if the given request may be hedged.
+	 * 
+	 */
+	boolean isHedgeable(WebRequest request) {
+		WebRequestMethod method = request.getWebRequestMethod();
+		return method == WebRequestMethod.GET || method == WebRequestMethod.HEAD;
+	}
+	
+	/**
+	 * Execute the request over the executor, hedging it if the response is
+	 * late.
+	 * 
+	 */
+	WebRawResponse execute(HttpExecutor executor, WebRequest request) throws IOException {
+		this.requests.increment();
+		this.budget.earn();
+		
+		Hedge hedge = new Hedge(executor, request);
+		hedge.timer = TIMER.schedule(hedge, this.getDelayNanos(executor, request), TimeUnit.NANOSECONDS);
+		
+		WebRawResponse response;
+		try {
+			response = executor.executeOnce(request);
+		} catch(IOException e) {
+			return hedge.primaryFailed(e);
+		} catch(RuntimeException e) {
+			hedge.abandon();
+			throw e;
+		}
+		
+		return hedge.primaryCompleted(response);
+	}
+	
+	/**
+	 * Return the delay for the route of the request.
+	 * 
+	 */
+	private long getDelayNanos(HttpExecutor executor, WebRequest request) {
+		if(this.percentile <= 0) {
+			return this.delayNanos;
+		}
+		
+		HttpHost host = HttpExecutor.getTargetHost(request.getURI());
+		if(host == null) {
+			return this.delayNanos;
+		}
+		
+		RouteDelay delay = this.routeDelays.get(host);
+		if(delay == null) {
+			delay = this.routeDelays.putIfAbsent(host, new RouteDelay());
+		}
+		
+		long now = System.nanoTime();
+		if(now - delay.refreshedAt >= DELAY_REFRESH_NANOS || delay.nanos < 0) {
+			LatencyHistogram.Snapshot snapshot = executor.getMetrics().route(host).timeToFirstByte.snapshot();
+			if(snapshot.getCount() >= this.minSamples) {
+				delay.nanos = TimeUnit.MICROSECONDS.toNanos(snapshot.getValueAtPercentile(this.percentile));
+			} else {
+				delay.nanos = this.delayNanos;
+			}
+			
+			delay.refreshedAt = now;
+		}
+		
+		return delay.nanos;
+	}
+	
+	/**
+	 * Close a response that lost the race without reading its body.
+	 * 
+	 */
+	private static void discard(WebRawResponse response) {
+		try {
+			response.streamResponse().close();
+		} catch(RuntimeException | IOException e) {
+			// ignore
+		}
+	}
+	
+	/**
+	 * The last computed delay of a route
+	 */
+	private static class RouteDelay extends HostTable.Entry {
+		
+		volatile long nanos = -1;
+		
+		volatile long refreshedAt;
+		
+	}
+	
+	/**
+	 * The race between a request and its hedge.
+	 * 
+	 */
+	private class Hedge implements Runnable {
+		
+		private static final int NONE = 0;
+		
+		private static final int PRIMARY = 1;
+		
+		private static final int HEDGE = 2;
+		
+		private final HttpExecutor executor;
+		
+		private final WebRequest primary;
+		
+		/**
+		 * Who won the race
+		 */
+		private final AtomicInteger winner = new AtomicInteger(NONE);
+		
+		/**
+		 * Counted down once the hedge completes
+		 */
+		private final CountDownLatch done = new CountDownLatch(1);
+		
+		volatile ScheduledFuture<?> timer;
+		
+		/**
+		 * The duplicate request, once fired
+		 */
+		private volatile WebRequest duplicate;
+		
+		private volatile WebRawResponse response;
+		
+		private volatile IOException error;
+		
+		Hedge(HttpExecutor executor, WebRequest primary) {
+			this.executor = executor;
+			this.primary = primary;
+		}
+		
+		/**
+		 * Invoked by the timer once the delay expires.
+		 * 
+		 */
+		@Override
+		public void run() {
+			if(this.winner.get() != NONE) {
+				return;
+			}
+			
+			if(!budget.trySpend()) {
+				budgetRejections.increment();
+				return;
+			}
+			
+			final WebRequest duplicate = this.primary.duplicate();
+			this.duplicate = duplicate;
+			if(this.winner.get() != NONE) {
+				// lost the race to fire
+				this.duplicate = null;
+				return;
+			}
+			
+			hedges.increment();
+			LOGGER.debug("Hedging request to {}", duplicate.getURI());
+			
+			try {
+				HEDGE_POOL.execute(new Runnable() {
+					
+					@Override
+					public void run() {
+						executeHedge(duplicate);
+					}
+					
+				});
+			} catch(RuntimeException e) {
+				this.error = new IOException("Unable to fire hedge", e);
+				this.done.countDown();
+			}
+		}
+		
+		private void executeHedge(WebRequest duplicate) {
+			try {
+				WebRawResponse response = this.executor.executeOnce(duplicate);
+				if(this.winner.compareAndSet(NONE, HEDGE)) {
+					hedgeWins.increment();
+					this.response = response;
+					this.primary.abort();
+				} else {
+					discard(response);
+				}
+			} catch(IOException e) {
+				this.error = e;
+			} catch(RuntimeException e) {
+				this.error = new IOException(e);
+			} finally {
+				this.done.countDown();
+			}
+		}
+		
+		/**
+		 * The primary request obtained a response.
+		 * 
+		 */
+		WebRawResponse primaryCompleted(WebRawResponse response) throws IOException {
+			if(this.winner.compareAndSet(NONE, PRIMARY)) {
+				this.timer.cancel(false);
+				
+				WebRequest duplicate = this.duplicate;
+				if(duplicate != null) {
+					duplicate.cancel();
+				}
+				
+				return response;
+			}
+			
+			discard(response);
+			return this.awaitHedge(null);
+		}
+		
+		/**
+		 * The primary request failed, or was aborted as the hedge won.
+		 * 
+		 */
+		WebRawResponse primaryFailed(IOException e) throws IOException {
+			if(this.duplicate == null && this.winner.compareAndSet(NONE, PRIMARY)) {
+				this.timer.cancel(false);
+				
+				WebRequest duplicate = this.duplicate;
+				if(duplicate != null) {
+					// fired in between, as we have won it will not be used
+					duplicate.cancel();
+				}
+				
+				throw e;
+			}
+			
+			return this.awaitHedge(e);
+		}
+		
+		/**
+		 * The primary request failed with an unexpected error, make sure
+		 * the hedge does not leak a connection.
+		 * 
+		 */
+		void abandon() {
+			if(this.winner.compareAndSet(NONE, PRIMARY)) {
+				this.timer.cancel(false);
+				
+				WebRequest duplicate = this.duplicate;
+				if(duplicate != null) {
+					duplicate.cancel();
+				}
+				
+				return;
+			}
+			
+			try {
+				this.done.await();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			WebRawResponse response = this.response;
+			if(response != null) {
+				discard(response);
+			}
+		}
+		
+		/**
+		 * Wait for the hedge to complete, returning its response or throwing
+		 * the error of the primary request if the hedge failed too.
+		 * 
+		 */
+		private WebRawResponse awaitHedge(IOException primaryError) throws IOException {
+			try {
+				this.done.await();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				
+				WebRequest duplicate = this.duplicate;
+				if(duplicate != null) {
+					duplicate.cancel();
+				}
+				
+				throw new InterruptedIOException("Interrupted while waiting for hedged request");
+			}
+			
+			if(this.response != null) {
+				return this.response;
+			}
+			
+			if(primaryError != null) {
+				throw primaryError;
+			}
+			
+			throw this.error;
+		}
+		
+	}
+	
+}
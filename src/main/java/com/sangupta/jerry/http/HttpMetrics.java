@@ -0,0 +1,471 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Instrumentation of a {@link HttpExecutor}. For every route (target host)
+ * the executor records:
+ * 
+ * <ul>
+ * <li>connect latency - time to establish a new connection, only recorded
+ * when a connection was opened for the request</li>
+ * <li>time to first byte - time till the status line and headers were
+ * received</li>
+ * <li>total latency - time till the response body was consumed</li>
+ * <li>bytes sent in request bodies and received in response bodies</li>
+ * <li>responses by status class, I/O failures and rate limit rejections</li>
+ * </ul>
+ * 
+ * Latencies are kept in {@link LatencyHistogram}s. Recording is lock-free
+ * and does not allocate once a route has been seen. Metrics are kept for
+ * the 256 most recently used routes only, as the histograms of a route take
+ * some 28 KB; the metrics of a route that is evicted start afresh when it
+ * is used again. Exporters pull the
+ * current values using {@link #snapshot()}, which also captures the leased,
+ * pending and available connections of the connection pool.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpMetrics {
+	
+	/**
+	 * Context attribute holding the nanos spent in connecting the socket
+	 */
+	static final String CONNECT_NANOS_ATTRIBUTE = "jerry.http.connect-nanos";
+	
+	/**
+	 * Metrics by target host
+	 */
+	private final HostTable<RouteMetrics> routes = new HostTable<RouteMetrics>(HostTable.DEFAULT_MAX_HOSTS);
+	
+	/**
+	 * The pool to snapshot, <code>null</code> if the executor does not use a
+	 * pool it knows of
+	 */
+	private final PoolingHttpClientConnectionManager connectionManager;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param connectionManager
+	 *            the pool to snapshot, may be <code>null</code>
+	 */
+	HttpMetrics(PoolingHttpClientConnectionManager connectionManager) {
+		this.connectionManager = connectionManager;
+	}
+	
+	/**
+	 * Return the recorder for the given target host, creating it when the
+	 * host is first seen.
+	 * 
+	 * @param host
+	 *            the target {@link HttpHost}
+	 * 
+	 * @return the {@link RouteMetrics}
+	 */
+	RouteMetrics route(HttpHost host) {
+		RouteMetrics metrics = this.routes.get(host);
+		if(metrics != null) {
+			return metrics;
+		}
+		
+		return this.routes.putIfAbsent(host, new RouteMetrics());
+	}
+	
+	/**
+	 * Reset all recorded metrics.
+	 * 
+	 */
+	public void reset() {
+		this.routes.clear();
+	}
+	
+	/**
+	 * Take a copy of all recorded metrics along with the state of the
+	 * connection pool.
+	 * 
+	 * @return the {@link Snapshot}
+	 */
+	public Snapshot snapshot() {
+		Map<String, RouteSnapshot> routeSnapshots = new HashMap<String, RouteSnapshot>();
+		for(Map.Entry<HttpHost, RouteMetrics> entry : this.routes.entrySet()) {
+			routeSnapshots.put(entry.getKey().toURI(), entry.getValue().snapshot());
+		}
+		
+		PoolSnapshot total = null;
+		Map<String, PoolSnapshot> pools = new HashMap<String, PoolSnapshot>();
+		if(this.connectionManager != null) {
+			total = new PoolSnapshot(this.connectionManager.getTotalStats());
+			for(HttpRoute route : this.connectionManager.getRoutes()) {
+				pools.put(route.getTargetHost().toURI(), new PoolSnapshot(this.connectionManager.getStats(route)));
+			}
+		}
+		
+		return new Snapshot(Collections.unmodifiableMap(routeSnapshots), total, Collections.unmodifiableMap(pools));
+	}
+	
+	/**
+	 * The recorder for a single route.
+	 * 
+	 */
+	static final class RouteMetrics extends HostTable.Entry {
+		
+		final LatencyHistogram connect = new LatencyHistogram();
+		
+		final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+		
+		final LatencyHistogram total = new LatencyHistogram();
+		
+		final LongAdder bytesSent = new LongAdder();
+		
+		final LongAdder bytesReceived = new LongAdder();
+		
+		/**
+		 * Responses by status class, index 0 is 1xx and index 4 is 5xx
+		 */
+		final LongAdder[] statusClasses = new LongAdder[] { new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder() };
+		
+		final LongAdder failures = new LongAdder();
+		
+		final LongAdder rateLimitRejections = new LongAdder();
+		
+		/**
+		 * Record the receipt of the response headers.
+		 * 
+		 * @param startNanos
+		 *            when the request was started
+		 * 
+		 * @param nowNanos
+		 *            when the headers were received
+		 * 
+		 * @param connectNanos
+		 *            nanos spent in connecting, or negative if an existing
+		 *            connection was used
+		 * 
+		 * @param statusCode
+		 *            the HTTP status code
+		 * 
+		 * @param bytesSent
+		 *            number of bytes in the request body
+		 */
+		void recordResponse(long startNanos, long nowNanos, long connectNanos, int statusCode, long bytesSent) {
+			this.timeToFirstByte.recordNanos(nowNanos - startNanos);
+			if(connectNanos >= 0) {
+				this.connect.recordNanos(connectNanos);
+			}
+			
+			if(bytesSent > 0) {
+				this.bytesSent.add(bytesSent);
+			}
+			
+			int statusClass = statusCode / 100 - 1;
+			if(statusClass >= 0 && statusClass < this.statusClasses.length) {
+				this.statusClasses[statusClass].increment();
+			}
+		}
+		
+		/**
+		 * Record the completion of the exchange once the body was consumed.
+		 * 
+		 * @param startNanos
+		 *            when the request was started
+		 * 
+		 * @param bytesReceived
+		 *            number of bytes in the response body
+		 */
+		void recordCompletion(long startNanos, long bytesReceived) {
+			this.total.recordNanos(System.nanoTime() - startNanos);
+			if(bytesReceived > 0) {
+				this.bytesReceived.add(bytesReceived);
+			}
+		}
+		
+		void recordFailure() {
+			this.failures.increment();
+		}
+		
+		void recordRateLimitRejection() {
+			this.rateLimitRejections.increment();
+		}
+		
+		RouteSnapshot snapshot() {
+			long[] statuses = new long[this.statusClasses.length];
+			for(int index = 0; index < statuses.length; index++) {
+				statuses[index] = this.statusClasses[index].sum();
+			}
+			
+			return new RouteSnapshot(this.connect.snapshot(), this.timeToFirstByte.snapshot(), this.total.snapshot(), this.bytesSent.sum(), this.bytesReceived.sum(), statuses, this.failures.sum(), this.rateLimitRejections.sum());
+		}
+		
+	}
+	
+	/**
+	 * Point in time copy of all metrics of a {@link HttpExecutor}.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	public static class Snapshot {
+		
+		private final Map<String, RouteSnapshot> routes;
+		
+		private final PoolSnapshot pool;
+		
+		private final Map<String, PoolSnapshot> routePools;
+		
+		Snapshot(Map<String, RouteSnapshot> routes, PoolSnapshot pool, Map<String, PoolSnapshot> routePools) {
+			this.routes = routes;
+			this.pool = pool;
+			this.routePools = routePools;
+		}
+
+		/**
+		 * @return the metrics keyed by target host, like
+		 *         <code>http://localhost:8080</code>
+		 */
+		public Map<String, RouteSnapshot> getRoutes() {
+			return this.routes;
+		}
+		
+		/**
+		 * @param host
+		 *            the target host, like <code>http://localhost:8080</code>
+		 * 
+		 * @return the metrics of the target host, or <code>null</code> if no
+		 *         request was made to it
+		 */
+		public RouteSnapshot getRoute(String host) {
+			return this.routes.get(host);
+		}
+
+		/**
+		 * @return the totals of the connection pool, or <code>null</code> if
+		 *         the executor was created over a client it does not know the
+		 *         pool of
+		 */
+		public PoolSnapshot getPool() {
+			return this.pool;
+		}
+		
+		/**
+		 * @return the connection pool stats keyed by target host
+		 */
+		public Map<String, PoolSnapshot> getRoutePools() {
+			return this.routePools;
+		}
+		
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "[HttpMetrics: pool=" + this.pool + ", routes=" + this.routes + "]";
+		}
+		
+	}
+	
+	/**
+	 * Point in time copy of the metrics of a single route.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	public static class RouteSnapshot {
+		
+		private final LatencyHistogram.Snapshot connect;
+		
+		private final LatencyHistogram.Snapshot timeToFirstByte;
+		
+		private final LatencyHistogram.Snapshot total;
+		
+		private final long bytesSent;
+		
+		private final long bytesReceived;
+		
+		private final long[] statusClasses;
+		
+		private final long failures;
+		
+		private final long rateLimitRejections;
+
+		RouteSnapshot(LatencyHistogram.Snapshot connect, LatencyHistogram.Snapshot timeToFirstByte, LatencyHistogram.Snapshot total, long bytesSent, long bytesReceived, long[] statusClasses, long failures, long rateLimitRejections) {
+			this.connect = connect;
+			this.timeToFirstByte = timeToFirstByte;
+			this.total = total;
+			this.bytesSent = bytesSent;
+			this.bytesReceived = bytesReceived;
+			this.statusClasses = statusClasses;
+			this.failures = failures;
+			this.rateLimitRejections = rateLimitRejections;
+		}
+		
+		/**
+		 * @return the latency of opening new connections
+		 */
+		public LatencyHistogram.Snapshot getConnect() {
+			return this.connect;
+		}
+		
+		/**
+		 * @return the latency till response headers were received
+		 */
+		public LatencyHistogram.Snapshot getTimeToFirstByte() {
+			return this.timeToFirstByte;
+		}
+		
+		/**
+		 * @return the latency till the response body was consumed
+		 */
+		public LatencyHistogram.Snapshot getTotal() {
+			return this.total;
+		}
+		
+		/**
+		 * @return the number of request body bytes sent
+		 */
+		public long getBytesSent() {
+			return this.bytesSent;
+		}
+		
+		/**
+		 * @return the number of response body bytes received
+		 */
+		public long getBytesReceived() {
+			return this.bytesReceived;
+		}
+		
+		/**
+		 * Return the number of responses in the given status class.
+		 * 
+		 * @param statusClass
+		 *            the status class from <code>1</code> (1xx) to
+		 *            <code>5</code> (5xx)
+		 * 
+		 * @return the number of responses, or <code>0</code> for an unknown
+		 *         class
+		 */
+		public long getResponses(int statusClass) {
+			if(statusClass < 1 || statusClass > this.statusClasses.length) {
+				return 0;
+			}
+			
+			return this.statusClasses[statusClass - 1];
+		}
+		
+		/**
+		 * @return the number of requests that failed with an I/O error
+		 */
+		public long getFailures() {
+			return this.failures;
+		}
+		
+		/**
+		 * @return the number of requests rejected by the rate limiter
+		 */
+		public long getRateLimitRejections() {
+			return this.rateLimitRejections;
+		}
+		
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "[ttfb=" + this.timeToFirstByte + ", total=" + this.total + ", 2xx=" + this.getResponses(2) + ", 4xx=" + this.getResponses(4) + ", 5xx=" + this.getResponses(5) + ", failures=" + this.failures + ", rejected=" + this.rateLimitRejections + "]";
+		}
+		
+	}
+	
+	/**
+	 * Point in time copy of {@link PoolStats}.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	public static class PoolSnapshot {
+		
+		private final int leased;
+		
+		private final int pending;
+		
+		private final int available;
+		
+		private final int max;
+		
+		PoolSnapshot(PoolStats stats) {
+			this.leased = stats.getLeased();
+			this.pending = stats.getPending();
+			this.available = stats.getAvailable();
+			this.max = stats.getMax();
+		}
+
+		/**
+		 * @return the number of connections in use
+		 */
+		public int getLeased() {
+			return this.leased;
+		}
+
+		/**
+		 * @return the number of requests waiting for a connection
+		 */
+		public int getPending() {
+			return this.pending;
+		}
+
+		/**
+		 * @return the number of idle connections
+		 */
+		public int getAvailable() {
+			return this.available;
+		}
+
+		/**
+		 * @return the maximum number of connections
+		 */
+		public int getMax() {
+			return this.max;
+		}
+		
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "[leased=" + this.leased + ", pending=" + this.pending + ", available=" + this.available + ", max=" + this.max + "]";
+		}
+		
+	}
+
+}
@@ -0,0 +1,51 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+/**
+ * The protocol an {@link HttpExecutor} uses to talk to servers.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public enum HttpProtocol {
+	
+	/**
+	 * HTTP/1.1 over the pooled connections of the executor, one request in
+	 * flight per connection.
+	 */
+	HTTP_1_1,
+	
+	/**
+	 * HTTP/2 with many requests multiplexed over a single connection per
+	 * host. The protocol is negotiated using ALPN for <code>https</code>
+	 * servers, and using the <code>h2c</code> upgrade for plain-text servers
+	 * on the loopback interface. Servers that do not speak HTTP/2, and all
+	 * other plain-text servers, are served over HTTP/1.1.
+	 * 
+	 * Requires Java 11 or above at runtime.
+	 */
+	HTTP_2;
+	
+}
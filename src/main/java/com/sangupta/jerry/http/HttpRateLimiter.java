@@ -0,0 +1,129 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contract for a rate limiter that decides whether a request to a given host
+ * may be admitted right now. Implementations must be thread-safe, as the
+ * limiter is consulted by every request thread and by the asynchronous client.
+ * 
+ * Host names are matched case-insensitively.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public interface HttpRateLimiter {
+
+	/**
+	 * Add rate limiting around the given host, admitting at most
+	 * <code>limit</code> requests every <code>period</code> units of time.
+	 * 
+	 * @param hostName
+	 *            the host name
+	 * 
+	 * @param limit
+	 *            the number of requests allowed per period
+	 * 
+	 * @param period
+	 *            the length of the period
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the period
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the limit or period is zero/negative
+	 * 
+	 * @throws IllegalStateException
+	 *             if a limit is already set for the host
+	 */
+	public void addRateLimiting(String hostName, int limit, long period, TimeUnit timeUnit);
+	
+	/**
+	 * Remove rate limiting around the given host.
+	 * 
+	 * @param hostName
+	 *            the host name
+	 */
+	public void removeRateLimiting(String hostName);
+	
+	/**
+	 * Remove all rate limiting that has been set.
+	 * 
+	 */
+	public void removeAllRateLimiting();
+	
+	/**
+	 * Try to acquire a permit to hit the given host.
+	 * 
+	 * @param hostName
+	 *            the host name
+	 * 
+	 * @return <code>true</code> if the request may proceed, or if the host is
+	 *         not rate limited, <code>false</code> otherwise
+	 */
+	public boolean tryAcquire(String hostName);
+	
+	/**
+	 * Reserve a permit to hit the given host, waiting at most the given time
+	 * for it. Reservations are handed out in the order they are requested,
+	 * thus callers that wait for their reservation form a fair FIFO queue per
+	 * host.
+	 * 
+	 * The default implementation does not support waiting and only succeeds
+	 * if a permit is available right away.
+	 * 
+	 * @param hostName
+	 *            the host name
+	 * 
+	 * @param maxWaitNanos
+	 *            the maximum time in nanoseconds the caller is willing to wait
+	 * 
+	 * @return the nanoseconds the caller must wait before hitting the host,
+	 *         <code>0</code> if it may proceed right away, or <code>-1</code>
+	 *         if no permit is available within the maximum wait, in which case
+	 *         nothing has been reserved
+	 */
+	public default long reserve(String hostName, long maxWaitNanos) {
+		return this.tryAcquire(hostName) ? 0 : -1;
+	}
+	
+	/**
+	 * Give back a permit obtained via {@link #reserve(String, long)} that
+	 * will not be used, such as when the caller gives up before its
+	 * reservation is due, so that the next caller for the host is admitted
+	 * earlier. Reservations already handed out to other callers are not
+	 * moved.
+	 * 
+	 * The default implementation does nothing, thus permits are not
+	 * refunded.
+	 * 
+	 * @param hostName
+	 *            the host name
+	 */
+	public default void cancelReservation(String hostName) {
+		// permits are not refundable by default
+	}
+	
+}
@@ -22,10 +22,9 @@
 package com.sangupta.jerry.http;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.InterruptedIOException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
@@ -51,28 +50,63 @@ import org.apache.http.protocol.HttpContext;
 public class HttpRateLimitingClient implements HttpClient {
 	
 	/**
-	 * Rate-limit mappings are their associated meta-data is kept here
+	 * The rate limiter shared by all clients that do not specify their own
 	 */
-	private static final Map<String, RateLimitValues> RATE_LIMITED_HOSTS = new HashMap<String, RateLimitValues>();
+	private static final HttpRateLimiter DEFAULT_RATE_LIMITER = new TokenBucketRateLimiter();
+	
+	/**
+	 * Attribute of the {@link HttpContext} that holds the maximum nanos the
+	 * request waits for a permit, overriding the wait of this client
+	 */
+	static final String MAX_WAIT_NANOS_ATTRIBUTE = "jerry.http.rate-limit.max-wait-nanos";
 	
 	/**
 	 * The actual client instance that does all the magic
 	 */
 	private HttpClient actualClient;
-
+	
 	/**
-	 * Boolean flag to skip checks if there are no limited hosts defined
+	 * The rate limiter that admits requests
 	 */
-	private volatile boolean hasHosts = false;
+	private final HttpRateLimiter rateLimiter;
 	
+	/**
+	 * Maximum nanos a request waits for a permit before being rejected -
+	 * <code>0</code> rejects right away
+	 */
+	private volatile long maxWaitNanos = 0;
+
 	/**
 	 * Constructor - takes an actual implementation of an {@link HttpClient}.
+	 * Rate limits are shared with all other clients created this way.
 	 * 
 	 * @param actualClient
 	 *            the {@link HttpClient} to use
 	 */
 	public HttpRateLimitingClient(HttpClient actualClient) {
+		this(actualClient, DEFAULT_RATE_LIMITER);
+	}
+	
+	/**
+	 * Constructor - takes an actual implementation of an {@link HttpClient}
+	 * and the {@link HttpRateLimiter} to use.
+	 * 
+	 * @param actualClient
+	 *            the {@link HttpClient} to use
+	 * 
+	 * @param rateLimiter
+	 *            the {@link HttpRateLimiter} to use
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the rate limiter is <code>null</code>
+	 */
+	public HttpRateLimitingClient(HttpClient actualClient, HttpRateLimiter rateLimiter) {
+		if(rateLimiter == null) {
+			throw new IllegalArgumentException("HttpRateLimiter cannot be null");
+		}
+		
 		this.actualClient = actualClient;
+		this.rateLimiter = rateLimiter;
 	}
 	
 	/**
@@ -84,6 +118,56 @@ public class HttpRateLimitingClient implements HttpClient {
 		return this.actualClient;
 	}
 	
+	/**
+	 * Return the rate limiter being used by this client.
+	 * 
+	 * @return the {@link HttpRateLimiter} being used
+	 */
+	public HttpRateLimiter getRateLimiter() {
+		return this.rateLimiter;
+	}
+	
+	/**
+	 * Park requests that are over the limit of their host, until a permit is
+	 * available, instead of rejecting them. Waiting requests are admitted in
+	 * FIFO order. A request that would need to wait longer than the given
+	 * time is rejected with {@link HttpRateLimitException}. The wait applies
+	 * to every request made over this client, including those of all
+	 * {@link HttpExecutor} instances sharing it that have not set a wait of
+	 * their own via {@link HttpExecutor#blockOnRateLimit(long, TimeUnit)}.
+	 * 
+	 * @param maxWait
+	 *            the maximum time to wait for a permit
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the wait
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the wait is negative or the time unit is <code>null</code>
+	 */
+	public void blockOnRateLimit(long maxWait, TimeUnit timeUnit) {
+		if(maxWait < 0) {
+			throw new IllegalArgumentException("Maximum wait cannot be negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		this.maxWaitNanos = timeUnit.toNanos(maxWait);
+	}
+	
+	/**
+	 * Reject requests that are over the limit of their host right away with
+	 * {@link HttpRateLimitException}. This is the default. As with
+	 * {@link #blockOnRateLimit(long, TimeUnit)}, this applies to every request
+	 * made over this client.
+	 * 
+	 */
+	public void rejectOnRateLimit() {
+		this.maxWaitNanos = 0;
+	}
+	
 	/**
 	 * Add rate limiting around a given host name
 	 * 
@@ -97,38 +181,28 @@ public class HttpRateLimitingClient implements HttpClient {
 	 *            the time unit against which the limit is set
 	 */
 	public void addRateLimiting(String hostName, int limit, TimeUnit timeUnit) {
-		if(limit <= 0) {
-			throw new IllegalArgumentException("Rate limit cannot be zero/negative");
-		}
-		
-		long divisor;
-		switch(timeUnit) {
-			case SECONDS:
-				divisor = 1000;
-				break;
-				
-			case MINUTES:
-				divisor = 60 * 1000;
-				break;
-				
-			case HOURS:
-				divisor = 60 * 60 * 1000;
-				break;
-				
-			case DAYS:
-				divisor = 24 * 60 * 60 * 1000;
-				break;
-				
-			default:
-				throw new IllegalArgumentException("Rate limiting not supported at this level.");
-		}
-		
-		if(RATE_LIMITED_HOSTS.containsKey(hostName)) {
-			throw new IllegalStateException("To change the rate limit, remove any current limit and then reset");
-		}
-		
-		RATE_LIMITED_HOSTS.put(hostName.toLowerCase(), new RateLimitValues(divisor, limit));
-		this.hasHosts = true;
+		this.addRateLimiting(hostName, limit, 1, timeUnit);
+	}
+	
+	/**
+	 * Add rate limiting around a given host name, allowing the given number
+	 * of requests every <code>period</code> units of time. This allows
+	 * sub-second limits like 5 requests every 100 milliseconds.
+	 * 
+	 * @param hostName
+	 *            the host name
+	 * 
+	 * @param limit
+	 *            the limit
+	 * 
+	 * @param period
+	 *            the length of the period
+	 * 
+	 * @param timeUnit
+	 *            the time unit of the period
+	 */
+	public void addRateLimiting(String hostName, int limit, long period, TimeUnit timeUnit) {
+		this.rateLimiter.addRateLimiting(hostName, limit, period, timeUnit);
 	}
 	
 	/**
@@ -138,8 +212,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	 *            the host name to remove rate limiting from
 	 */
 	public void removeRateLimiting(String hostName) {
-		RATE_LIMITED_HOSTS.remove(hostName);
-		this.hasHosts = !RATE_LIMITED_HOSTS.isEmpty();
+		this.rateLimiter.removeRateLimiting(hostName);
 	}
 	
 	/**
@@ -147,59 +220,111 @@ public class HttpRateLimitingClient implements HttpClient {
 	 * 
 	 */
 	public void removeAllRateLimiting() {
-		RATE_LIMITED_HOSTS.clear();
-		this.hasHosts = false;
+		this.rateLimiter.removeAllRateLimiting();
 	}
 	
 	/**
-	 * The method checks if the current rate execution rate is within the prescribed limits or not
+	 * Reserve a permit for the given request without blocking.
+	 * 
+	 * @param request
+	 *            the request to be executed
+	 * 
+	 * @param context
+	 *            the {@link HttpContext} the request is executed in, may be
+	 *            <code>null</code>
+	 * 
+	 * @return the nanos after which the request may be sent
+	 * 
+	 * @throws HttpRateLimitException
+	 *             if no permit is available within the maximum wait
 	 */
-	private void assertRateInLimit(HttpUriRequest request) {
-		if(!this.hasHosts) {
-			return;
+	long reservePermit(HttpUriRequest request, HttpContext context) {
+		String host = request.getURI().getHost();
+		long wait = this.rateLimiter.reserve(host, this.getMaxWaitNanos(context));
+		if(wait < 0) {
+			throw new HttpRateLimitException("Host is at its limit: " + host);
 		}
 		
-		assertRateInLimit(request.getURI().getHost().toLowerCase());
+		return wait;
 	}
 	
 	/**
-	 * The method checks if the current rate execution rate is within the prescribed limits or not
+	 * Give back the permit reserved for the given request via
+	 * {@link #reservePermit(HttpUriRequest, HttpContext)}, as the request will not be sent.
+	 * 
+	 * @param request
+	 *            the request that will not be executed
+	 */
+	void cancelPermit(HttpUriRequest request) {
+		this.rateLimiter.cancelReservation(request.getURI().getHost());
+	}
+	
+	/**
+	 * Returns the maximum nanos a request in the given context waits for a
+	 * permit.
 	 */
-	private void assertRateInLimit(HttpHost target) {
-		if(!this.hasHosts) {
-			return;
+	private long getMaxWaitNanos(HttpContext context) {
+		if(context != null) {
+			Object maxWait = context.getAttribute(MAX_WAIT_NANOS_ATTRIBUTE);
+			if(maxWait instanceof Long) {
+				return (Long) maxWait;
+			}
 		}
 		
-		assertRateInLimit(target.getHostName());
+		return this.maxWaitNanos;
 	}
-
+	
 	/**
 	 * The method checks if the current rate execution rate is within the prescribed limits or not
 	 */
-	private void assertRateInLimit(String host) {
-		RateLimitValues values = RATE_LIMITED_HOSTS.get(host);
-		if(values == null) {
-			return;
+	private void assertRateInLimit(HttpUriRequest request, HttpContext context) throws InterruptedIOException {
+		assertRateInLimit(request.getURI().getHost(), context);
+	}
+	
+	/**
+	 * The method checks if the current rate execution rate is within the prescribed limits or not
+	 */
+	private void assertRateInLimit(HttpHost target, HttpContext context) throws InterruptedIOException {
+		assertRateInLimit(target.getHostName(), context);
+	}
+
+	/**
+	 * The method checks if the current rate execution rate is within the
+	 * prescribed limits or not, parking the thread till its reserved permit
+	 * if waiting is enabled.
+	 */
+	private void assertRateInLimit(String host, HttpContext context) throws InterruptedIOException {
+		long wait = this.rateLimiter.reserve(host, this.getMaxWaitNanos(context));
+		if(wait < 0) {
+			throw new HttpRateLimitException("Host is at its limit: " + host);
 		}
 		
-		long block = System.currentTimeMillis() / values.interval;
-		if(block == values.block) {
-			int currentValue = values.current.intValue();
-			if(currentValue == values.limit) {
-				throw new HttpRateLimitException("Host is at its limit: " + host);
+		if(wait > 0) {
+			try {
+				awaitPermit(host, wait);
+			} catch(InterruptedIOException e) {
+				this.rateLimiter.cancelReservation(host);
+				throw e;
 			}
-			
-			// we are in limits
-			boolean updated = values.current.compareAndSet(currentValue, 1);
-			if(!updated) {
-				values.current.incrementAndGet();
-			}
-		} else {
-			// reset the block
-			values.block = block;
-			values.current.set(1);
 		}
 	}
+	
+	/**
+	 * Park the current thread for the given nanos, guarding against spurious
+	 * wake-ups.
+	 */
+	private static void awaitPermit(String host, long waitNanos) throws InterruptedIOException {
+		final long deadline = System.nanoTime() + waitNanos;
+		do {
+			LockSupport.parkNanos(waitNanos);
+			if(Thread.interrupted()) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for rate limit permit of host: " + host);
+			}
+			
+			waitNanos = deadline - System.nanoTime();
+		} while(waitNanos > 0);
+	}
 
 	/**
 	 * @see org.apache.http.client.HttpClient#getParams()
@@ -224,7 +349,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	 */
 	@Override
 	public HttpResponse execute(HttpUriRequest request) throws IOException, ClientProtocolException {
-		assertRateInLimit(request);
+		assertRateInLimit(request, null);
 		return this.actualClient.execute(request);
 	}
 
@@ -233,7 +358,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	 */
 	@Override
 	public HttpResponse execute(HttpUriRequest request, HttpContext context) throws IOException, ClientProtocolException {
-		assertRateInLimit(request);
+		assertRateInLimit(request, context);
 		return this.actualClient.execute(request, context);
 	}
 
@@ -242,7 +367,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	 */
 	@Override
 	public HttpResponse execute(HttpHost target, HttpRequest request) throws IOException, ClientProtocolException {
-		assertRateInLimit(target);
+		assertRateInLimit(target, null);
 		return this.actualClient.execute(target, request);
 	}
 
@@ -251,7 +376,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	 */
 	@Override
 	public HttpResponse execute(HttpHost target, HttpRequest request, HttpContext context) throws IOException, ClientProtocolException {
-		assertRateInLimit(target);
+		assertRateInLimit(target, context);
 		return this.actualClient.execute(target, request, context);
 	}
 
@@ -260,7 +385,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	 */
 	@Override
 	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException, ClientProtocolException {
-		assertRateInLimit(request);
+		assertRateInLimit(request, null);
 		return this.actualClient.execute(request, responseHandler);
 	}
 
@@ -269,7 +394,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	 */
 	@Override
 	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler, HttpContext context) throws IOException, ClientProtocolException {
-		assertRateInLimit(request);
+		assertRateInLimit(request, context);
 		return this.actualClient.execute(request, responseHandler, context);
 	}
 
@@ -278,7 +403,7 @@ public class HttpRateLimitingClient implements HttpClient {
 	 */
 	@Override
 	public <T> T execute(HttpHost target, HttpRequest request, ResponseHandler<? extends T> responseHandler) throws IOException, ClientProtocolException {
-		assertRateInLimit(target);
+		assertRateInLimit(target, null);
 		return this.actualClient.execute(target, request, responseHandler);
 	}
 
@@ -287,30 +412,8 @@ public class HttpRateLimitingClient implements HttpClient {
 	 */
 	@Override
 	public <T> T execute(HttpHost target, HttpRequest request, ResponseHandler<? extends T> responseHandler, HttpContext context) throws IOException, ClientProtocolException {
-		assertRateInLimit(target);
+		assertRateInLimit(target, context);
 		return this.actualClient.execute(target, request, responseHandler, context);
 	}
 
-	/**
-	 * Stores rate-limiting values
-	 * 
-	 * @author sangupta
-	 *
-	 */
-	private static class RateLimitValues {
-		
-		final long interval;
-		
-		final int limit;
-		
-		AtomicInteger current = new AtomicInteger();
-		
-		long block;
-		
-		public RateLimitValues(long interval, int limit) {
-			this.interval = interval;
-			this.limit = limit;
-		}
-	}
-	
 }
@@ -0,0 +1,442 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retry policy for the requests of a {@link HttpExecutor}. A failed attempt
+ * is retried when it is classified as retryable, attempts are left and the
+ * retry budget allows it.
+ * 
+ * By default the following are retried: failures to connect, a pooled
+ * connection that was closed without a response, rejections by the rate
+ * limiter of the executor, and responses with status <code>502</code>,
+ * <code>503</code> or <code>504</code>. Only idempotent requests are retried
+ * unless asked otherwise, and never a request whose body cannot be repeated.
+ * Sub-classes may override {@link #isRetryableError(Exception)} and
+ * {@link #isRetryableStatus(int)} to change the classification.
+ * 
+ * Attempts are spaced using decorrelated jitter: each delay is a random
+ * value between the base delay and three times the previous delay, capped
+ * at the maximum delay. A <code>Retry-After</code> header longer than the
+ * computed delay is honored, and one longer than the maximum delay ends
+ * the retries.
+ * 
+ * The retry budget is a token bucket shared by all requests using this
+ * policy: each request earns a percentage of a retry, and each retry spends
+ * a whole one, so that retries cannot amplify an outage beyond that share of
+ * the traffic. Attach a policy to a single executor to have a budget per
+ * executor.
+ * 
+ * Every attempt goes through the {@link HttpInvocationInterceptor}s of the
+ * executor.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class HttpRetryPolicy {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpRetryPolicy.class);
+	
+	/**
+	 * The default number of attempts, including the first one
+	 */
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	
+	/**
+	 * The default base delay between attempts, in millis
+	 */
+	public static final long DEFAULT_BASE_DELAY_MILLIS = 50;
+	
+	/**
+	 * The default maximum delay between attempts, in millis
+	 */
+	public static final long DEFAULT_MAX_DELAY_MILLIS = 10000;
+	
+	/**
+	 * The default percentage of requests that may be retried
+	 */
+	public static final double DEFAULT_BUDGET_PERCENT = 10;
+	
+	/**
+	 * Retries that may be saved up in the budget
+	 */
+	private static final int MAX_SAVED_RETRIES = 10;
+	
+	/**
+	 * Number of attempts, including the first one
+	 */
+	private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	
+	/**
+	 * The base delay between attempts
+	 */
+	private volatile long baseDelayNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BASE_DELAY_MILLIS);
+	
+	/**
+	 * The maximum delay between attempts
+	 */
+	private volatile long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_DELAY_MILLIS);
+	
+	/**
+	 * The response status codes that are retried
+	 */
+	private volatile int[] retryStatusCodes = new int[] { HttpStatus.SC_BAD_GATEWAY, HttpStatus.SC_SERVICE_UNAVAILABLE, HttpStatus.SC_GATEWAY_TIMEOUT };
+	
+	/**
+	 * Whether requests that are not idempotent are retried
+	 */
+	private volatile boolean retryNonIdempotent = false;
+	
+	/**
+	 * Caps the retries at a percentage of the requests, starts full so that
+	 * the first failures can be retried
+	 */
+	private final RequestBudget budget = new RequestBudget(DEFAULT_BUDGET_PERCENT, MAX_SAVED_RETRIES, true);
+	
+	private final LongAdder requests = new LongAdder();
+	
+	private final LongAdder retries = new LongAdder();
+	
+	private final LongAdder budgetRejections = new LongAdder();
+	
+	/**
+	 * Set the maximum number of attempts for a request, including the first
+	 * one.
+	 * 
+	 * @param maxAttempts
+	 *            the number of attempts
+	 * 
+	 * @return this very {@link HttpRetryPolicy}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if attempts is not positive
+	 */
+	public HttpRetryPolicy maxAttempts(int maxAttempts) {
+		if(maxAttempts <= 0) {
+			throw new IllegalArgumentException("Max attempts must be positive");
+		}
+		
+		this.maxAttempts = maxAttempts;
+		return this;
+	}
+	
+	/**
+	 * Set the base and maximum delay between attempts.
+	 * 
+	 * @param baseDelay
+	 *            the minimum delay between attempts
+	 * 
+	 * @param maxDelay
+	 *            the maximum delay between attempts
+	 * 
+	 * @param timeUnit
+	 *            the {@link TimeUnit} of the delays
+	 * 
+	 * @return this very {@link HttpRetryPolicy}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if base delay is negative, maximum delay is less than the
+	 *             base delay, or time unit is <code>null</code>
+	 */
+	public HttpRetryPolicy backOff(long baseDelay, long maxDelay, TimeUnit timeUnit) {
+		if(baseDelay < 0) {
+			throw new IllegalArgumentException("Base delay cannot be negative");
+		}
+		
+		if(maxDelay < baseDelay) {
+			throw new IllegalArgumentException("Max delay cannot be less than base delay");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		this.baseDelayNanos = timeUnit.toNanos(baseDelay);
+		this.maxDelayNanos = timeUnit.toNanos(maxDelay);
+		return this;
+	}
+	
+	/**
+	 * Set the response status codes that are retried, replacing the default
+	 * ones.
+	 * 
+	 * @param statusCodes
+	 *            the status codes to retry
+	 * 
+	 * @return this very {@link HttpRetryPolicy}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if status codes is <code>null</code>
+	 */
+	public HttpRetryPolicy retryOnStatus(int... statusCodes) {
+		if(statusCodes == null) {
+			throw new IllegalArgumentException("Status codes cannot be null");
+		}
+		
+		this.retryStatusCodes = statusCodes.clone();
+		return this;
+	}
+	
+	/**
+	 * Set whether requests that are not idempotent, like <code>POST</code>
+	 * and <code>PATCH</code>, are retried.
+	 * 
+	 * @param retryNonIdempotent
+	 *            <code>true</code> to retry all requests
+	 * 
+	 * @return this very {@link HttpRetryPolicy}
+	 */
+	public HttpRetryPolicy retryNonIdempotent(boolean retryNonIdempotent) {
+		this.retryNonIdempotent = retryNonIdempotent;
+		return this;
+	}
+	
+	/**
+	 * Set the percentage of requests that may be retried.
+	 * 
+	 * @param percent
+	 *            the percentage, from <code>0</code> to <code>100</code>
+	 * 
+	 * @return this very {@link HttpRetryPolicy}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if percent is not between <code>0</code> and
+	 *             <code>100</code>
+	 */
+	public HttpRetryPolicy budget(double percent) {
+		this.budget.setPercent(percent);
+		return this;
+	}
+	
+	/**
+	 * @return the number of retryable requests executed
+	 */
+	public long getRequestCount() {
+		return this.requests.sum();
+	}
+	
+	/**
+	 * @return the number of retries made
+	 */
+	public long getRetryCount() {
+		return this.retries.sum();
+	}
+	
+	/**
+	 * @return the number of retries not made as the budget was exhausted
+	 */
+	public long getBudgetRejections() {
+		return this.budgetRejections.sum();
+	}
+	
+	/**
+	 * Check if the given failure may be retried.
+	 * 
+	 * @param error
+	 *            the {@link IOException} or {@link HttpRateLimitException}
+	 *            raised by the attempt
+	 * 
+	 * @return <code>true</code> if the attempt may be retried
+	 */
+	public boolean isRetryableError(Exception error) {
+		return error instanceof ConnectException
+				|| error instanceof ConnectTimeoutException
+				|| error instanceof NoHttpResponseException
+				|| error instanceof HttpRateLimitException;
+	}
+	
+	/**
+	 * Check if a response with the given status may be retried.
+	 * 
+	 * @param statusCode
+	 *            the HTTP status code of the response
+	 * 
+	 * @return <code>true</code> if the attempt may be retried
+	 */
+	public boolean isRetryableStatus(int statusCode) {
+		for(int code : this.retryStatusCodes) {
+			if(code == statusCode) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Check if the given request may be retried at all.
+	 * 
+	 */
+	boolean isRetryable(WebRequest request) {
+		if(!this.retryNonIdempotent) {
+			switch(request.getWebRequestMethod()) {
+				case POST:
+				case PATCH:
+					return false;
+					
+				default:
+					break;
+			}
+		}
+		
+		HttpRequestBase httpRequest = request.getHttpRequest();
+		if(httpRequest instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity = ((HttpEntityEnclosingRequest) httpRequest).getEntity();
+			if(entity != null && !entity.isRepeatable()) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Execute the request over the executor, retrying failed attempts.
+	 * 
+	 */
+	WebRawResponse execute(HttpExecutor executor, WebRequest request) throws IOException {
+		this.requests.increment();
+		this.budget.earn();
+		
+		final int maxAttempts = this.maxAttempts;
+		long delayNanos = this.baseDelayNanos;
+		for(int attempt = 1; ; attempt++) {
+			WebRawResponse response;
+			try {
+				response = executor.executeAttempt(request);
+			} catch(IOException | HttpRateLimitException e) {
+				if(attempt >= maxAttempts || !this.isRetryableError(e) || !this.acquireRetry()) {
+					throw e;
+				}
+				
+				delayNanos = this.nextDelayNanos(delayNanos);
+				LOGGER.debug("Retrying request to {} in {} ms after attempt {} failed", request.getURI(), TimeUnit.NANOSECONDS.toMillis(delayNanos), attempt, e);
+				sleep(delayNanos);
+				continue;
+			}
+			
+			if(attempt >= maxAttempts || !this.isRetryableStatus(response.getResponseCode())) {
+				return response;
+			}
+			
+			delayNanos = this.nextDelayNanos(delayNanos);
+			long retryAfterNanos = getRetryAfterNanos(response.getFirstHeader(HttpHeaders.RETRY_AFTER));
+			if(retryAfterNanos > this.maxDelayNanos || !this.acquireRetry()) {
+				return response;
+			}
+			
+			response.discardContent();
+			
+			delayNanos = Math.max(delayNanos, retryAfterNanos);
+			LOGGER.debug("Retrying request to {} in {} ms after attempt {} got status {}", request.getURI(), TimeUnit.NANOSECONDS.toMillis(delayNanos), attempt, response.getResponseCode());
+			sleep(delayNanos);
+		}
+	}
+	
+	/**
+	 * Take a retry out of the budget.
+	 * 
+	 */
+	private boolean acquireRetry() {
+		if(this.budget.trySpend()) {
+			this.retries.increment();
+			return true;
+		}
+		
+		this.budgetRejections.increment();
+		return false;
+	}
+	
+	/**
+	 * Compute the next delay using decorrelated jitter.
+	 * 
+	 */
+	long nextDelayNanos(long previousNanos) {
+		final long base = this.baseDelayNanos;
+		final long upper = Math.min(this.maxDelayNanos, Math.max(base, previousNanos) * 3);
+		if(upper <= base) {
+			return base;
+		}
+		
+		return ThreadLocalRandom.current().nextLong(base, upper + 1);
+	}
+	
+	/**
+	 * Parse the value of a <code>Retry-After</code> header, given either in
+	 * seconds or as a HTTP date.
+	 * 
+	 * @return the nanos to wait, or zero if the header is absent or invalid
+	 */
+	static long getRetryAfterNanos(String retryAfter) {
+		if(retryAfter == null) {
+			return 0;
+		}
+		
+		retryAfter = retryAfter.trim();
+		try {
+			return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(retryAfter)));
+		} catch(NumberFormatException e) {
+			// not in seconds
+		}
+		
+		Date date = DateUtils.parseDate(retryAfter);
+		if(date == null) {
+			return 0;
+		}
+		
+		return TimeUnit.MILLISECONDS.toNanos(Math.max(0, date.getTime() - System.currentTimeMillis()));
+	}
+	
+	private static void sleep(long nanos) throws InterruptedIOException {
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry");
+		}
+	}
+	
+}
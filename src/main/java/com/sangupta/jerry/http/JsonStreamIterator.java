@@ -0,0 +1,324 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sangupta.jerry.util.GsonUtils;
+
+/**
+ * An {@link Iterator} that lazily deserializes the elements of a JSON payload
+ * one at a time, directly off the response stream. Only the element being
+ * read is ever held in memory, which allows arbitrarily large responses to be
+ * processed in constant memory.
+ * 
+ * Two payload shapes are supported: a top-level JSON array, whose elements are
+ * returned in order, and newline-delimited JSON (NDJSON), where each line is a
+ * separate JSON document. The shape is detected from the first token of the
+ * body unless the response is explicitly NDJSON.
+ * 
+ * The underlying connection is released as soon as the last element has been
+ * read or parsing fails. An iterator that is abandoned midway MUST be closed,
+ * preferably using a <code>try-with-resources</code> block.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public final class JsonStreamIterator<T> implements Iterator<T>, Closeable {
+	
+	/**
+	 * The {@link Gson} instance used to deserialize elements
+	 */
+	private final Gson gson;
+	
+	/**
+	 * The reader over the payload
+	 */
+	private final JsonReader reader;
+	
+	/**
+	 * The resource to release once done
+	 */
+	private final Closeable resource;
+	
+	/**
+	 * The type of each element
+	 */
+	private final Type type;
+	
+	/**
+	 * Whether the payload is known to be newline-delimited JSON
+	 */
+	private final boolean lines;
+	
+	/**
+	 * Whether the first token of the payload has been read
+	 */
+	private boolean started;
+	
+	/**
+	 * Whether the payload is a top-level JSON array
+	 */
+	private boolean array;
+	
+	/**
+	 * Whether the element at the current position has been checked for
+	 */
+	private boolean peeked;
+	
+	/**
+	 * Whether there is an element at the current position
+	 */
+	private boolean hasElement;
+	
+	/**
+	 * Flag that signifies if this iterator has been closed
+	 */
+	private boolean closed;
+	
+	/**
+	 * Create an iterator over the JSON payload read from the given
+	 * {@link Reader}, using {@link GsonUtils#getGson()} to deserialize the
+	 * elements. The reader is closed along with this iterator.
+	 * 
+	 * @param reader
+	 *            the {@link Reader} over the payload
+	 * 
+	 * @param type
+	 *            the type of each element
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the reader or type is <code>null</code>
+	 */
+	public JsonStreamIterator(Reader reader, Class<T> type) {
+		this(GsonUtils.getGson(), checkReader(reader), reader, checkType(type), false);
+	}
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param gson
+	 *            the {@link Gson} instance to use
+	 * 
+	 * @param reader
+	 *            the {@link Reader} over the payload
+	 * 
+	 * @param resource
+	 *            the resource to close once done, may be <code>null</code>
+	 * 
+	 * @param type
+	 *            the type of each element
+	 * 
+	 * @param lines
+	 *            whether the payload is known to be newline-delimited JSON
+	 */
+	JsonStreamIterator(Gson gson, Reader reader, Closeable resource, Type type, boolean lines) {
+		this.gson = gson;
+		this.reader = new JsonReader(reader);
+		this.reader.setLenient(true);
+		this.resource = resource;
+		this.type = type;
+		this.lines = lines;
+	}
+	
+	private static Reader checkReader(Reader reader) {
+		if(reader == null) {
+			throw new IllegalArgumentException("Reader cannot be null");
+		}
+		
+		return reader;
+	}
+	
+	private static Type checkType(Type type) {
+		if(type == null) {
+			throw new IllegalArgumentException("Type cannot be null");
+		}
+		
+		return type;
+	}
+	
+	/**
+	 * Check if the given content type denotes newline-delimited JSON.
+	 * 
+	 * @param contentType
+	 *            the <code>Content-Type</code> header value, may be
+	 *            <code>null</code>
+	 * 
+	 * @return <code>true</code> if the content type is NDJSON or JSON lines
+	 */
+	static boolean isLineDelimited(String contentType) {
+		if(contentType == null) {
+			return false;
+		}
+		
+		int index = contentType.indexOf(';');
+		String mimeType = (index < 0 ? contentType : contentType.substring(0, index)).trim().toLowerCase(Locale.ROOT);
+		
+		return "application/x-ndjson".equals(mimeType)
+				|| "application/ndjson".equals(mimeType)
+				|| "application/jsonl".equals(mimeType)
+				|| "application/x-jsonlines".equals(mimeType);
+	}
+	
+	@Override
+	public boolean hasNext() {
+		if(this.closed) {
+			return false;
+		}
+		
+		if(this.peeked) {
+			return this.hasElement;
+		}
+		
+		try {
+			boolean empty = false;
+			if(!this.started) {
+				this.started = true;
+				
+				JsonToken token;
+				try {
+					token = this.reader.peek();
+				} catch(EOFException e) {
+					// an empty body has no elements
+					token = JsonToken.END_DOCUMENT;
+					empty = true;
+				}
+				
+				this.array = !this.lines && token == JsonToken.BEGIN_ARRAY;
+				if(this.array) {
+					this.reader.beginArray();
+				}
+			}
+			
+			if(empty) {
+				this.hasElement = false;
+			} else if(this.array) {
+				this.hasElement = this.reader.hasNext();
+			} else {
+				this.hasElement = this.reader.peek() != JsonToken.END_DOCUMENT;
+			}
+		} catch(IOException e) {
+			this.closeQuietly();
+			throw new JsonIOException(e);
+		} catch(RuntimeException e) {
+			this.closeQuietly();
+			throw e;
+		}
+		
+		this.peeked = true;
+		if(!this.hasElement) {
+			this.closeQuietly();
+		}
+		
+		return this.hasElement;
+	}
+	
+	@Override
+	public T next() {
+		if(!this.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		
+		this.peeked = false;
+		try {
+			return this.gson.fromJson(this.reader, this.type);
+		} catch(RuntimeException e) {
+			this.closeQuietly();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns a sequential {@link Stream} over the remaining elements.
+	 * Closing the stream closes this iterator.
+	 * 
+	 * @return the {@link Stream} of elements
+	 */
+	public Stream<T> stream() {
+		Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED);
+		return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+			
+			@Override
+			public void run() {
+				closeQuietly();
+			}
+			
+		});
+	}
+	
+	/**
+	 * Release the underlying resource. If the payload has not been read till
+	 * the end the connection is aborted. Calling this method more than once
+	 * has no effect.
+	 * 
+	 * @throws IOException
+	 *             if the resource cannot be released
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.closed) {
+			return;
+		}
+		
+		this.closed = true;
+		if(this.resource != null) {
+			this.resource.close();
+		}
+	}
+	
+	/**
+	 * Close this iterator ignoring any error.
+	 * 
+	 */
+	private void closeQuietly() {
+		try {
+			this.close();
+		} catch(IOException e) {
+			// eat up
+		}
+	}
+	
+	/**
+	 * @return whether this iterator has been closed
+	 */
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+}
@@ -0,0 +1,311 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, fixed memory latency histogram using the log-linear bucketing
+ * of HDR histograms. Values are recorded in microseconds: every power of two
+ * range is split into 32 linear buckets, which bounds the error of any
+ * reported percentile to about 3%, for values from 1 microsecond up to about
+ * 12 days.
+ * 
+ * Recording a value never allocates, and may be done concurrently from any
+ * number of threads. A consistent-enough copy for reporting is obtained via
+ * {@link #snapshot()}.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class LatencyHistogram {
+	
+	/**
+	 * Number of bits used for the linear buckets within a power of two
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+	
+	/**
+	 * Number of linear buckets within a power of two
+	 */
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	
+	/**
+	 * Values below this are recorded exactly
+	 */
+	private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+	
+	/**
+	 * The largest value that can be recorded, larger values are clamped
+	 */
+	static final long MAX_VALUE = (1l << 40) - 1;
+	
+	/**
+	 * The total number of buckets
+	 */
+	static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	
+	private final LongAdder count = new LongAdder();
+	
+	private final LongAdder sum = new LongAdder();
+	
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Record a latency measured in nanoseconds.
+	 * 
+	 * @param nanos
+	 *            the latency in nanoseconds, negative values are ignored
+	 */
+	public void recordNanos(long nanos) {
+		if(nanos < 0) {
+			return;
+		}
+		
+		this.recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+	
+	/**
+	 * Record a latency measured in microseconds.
+	 * 
+	 * @param micros
+	 *            the latency in microseconds, negative values are ignored
+	 */
+	public void recordMicros(long micros) {
+		if(micros < 0) {
+			return;
+		}
+		
+		if(micros > MAX_VALUE) {
+			micros = MAX_VALUE;
+		}
+		
+		this.buckets.incrementAndGet(bucketIndex(micros));
+		this.count.increment();
+		this.sum.add(micros);
+		
+		long current;
+		while(micros > (current = this.max.get())) {
+			if(this.max.compareAndSet(current, micros)) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Reset the histogram. Values recorded concurrently may or may not
+	 * survive the reset.
+	 * 
+	 */
+	public void reset() {
+		for(int index = 0; index < BUCKET_COUNT; index++) {
+			this.buckets.set(index, 0);
+		}
+		
+		this.count.reset();
+		this.sum.reset();
+		this.max.set(0);
+	}
+	
+	/**
+	 * Take a copy of the current state of this histogram.
+	 * 
+	 * @return the {@link Snapshot}
+	 */
+	public Snapshot snapshot() {
+		long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for(int index = 0; index < BUCKET_COUNT; index++) {
+			counts[index] = this.buckets.get(index);
+			total += counts[index];
+		}
+		
+		return new Snapshot(counts, total, this.sum.sum(), this.max.get());
+	}
+	
+	/**
+	 * Compute the bucket for the given value.
+	 * 
+	 */
+	static int bucketIndex(long value) {
+		if(value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+		return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+	
+	/**
+	 * Compute the largest value that falls in the given bucket.
+	 * 
+	 */
+	static long highestValueInBucket(int index) {
+		if(index < LINEAR_LIMIT) {
+			return index;
+		}
+		
+		int offset = index - LINEAR_LIMIT;
+		int shift = offset / SUB_BUCKET_COUNT + 1;
+		long subBucket = SUB_BUCKET_COUNT + (offset % SUB_BUCKET_COUNT);
+		return ((subBucket + 1) << shift) - 1;
+	}
+	
+	/**
+	 * An immutable copy of a {@link LatencyHistogram}, all values are in
+	 * microseconds.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	public static class Snapshot {
+		
+		private final long[] counts;
+		
+		private final long count;
+		
+		private final long sum;
+		
+		private final long max;
+		
+		Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+		
+		/**
+		 * Return the value at the given percentile. The returned value is the
+		 * upper bound of the bucket holding the percentile, and never more
+		 * than the maximum recorded value.
+		 * 
+		 * @param percentile
+		 *            the percentile between <code>0</code> and
+		 *            <code>100</code>
+		 * 
+		 * @return the value at the percentile in microseconds, or
+		 *         <code>0</code> if nothing has been recorded
+		 * 
+		 * @throws IllegalArgumentException
+		 *             if the percentile is out of range
+		 */
+		public long getValueAtPercentile(double percentile) {
+			if(percentile < 0 || percentile > 100) {
+				throw new IllegalArgumentException("Percentile must be between 0 and 100");
+			}
+			
+			if(this.count == 0) {
+				return 0;
+			}
+			
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100d * this.count));
+			long seen = 0;
+			for(int index = 0; index < this.counts.length; index++) {
+				seen += this.counts[index];
+				if(seen >= rank) {
+					return Math.min(highestValueInBucket(index), this.max);
+				}
+			}
+			
+			return this.max;
+		}
+		
+		/**
+		 * @return the median in microseconds
+		 */
+		public long getMedian() {
+			return this.getValueAtPercentile(50);
+		}
+		
+		/**
+		 * @return the 90th percentile in microseconds
+		 */
+		public long get90thPercentile() {
+			return this.getValueAtPercentile(90);
+		}
+		
+		/**
+		 * @return the 95th percentile in microseconds
+		 */
+		public long get95thPercentile() {
+			return this.getValueAtPercentile(95);
+		}
+		
+		/**
+		 * @return the 99th percentile in microseconds
+		 */
+		public long get99thPercentile() {
+			return this.getValueAtPercentile(99);
+		}
+		
+		/**
+		 * @return the 99.9th percentile in microseconds
+		 */
+		public long get999thPercentile() {
+			return this.getValueAtPercentile(99.9);
+		}
+		
+		/**
+		 * @return the mean in microseconds, or <code>0</code> if nothing has
+		 *         been recorded
+		 */
+		public double getMean() {
+			if(this.count == 0) {
+				return 0;
+			}
+			
+			return (double) this.sum / this.count;
+		}
+		
+		/**
+		 * @return the number of recorded values
+		 */
+		public long getCount() {
+			return this.count;
+		}
+		
+		/**
+		 * @return the maximum recorded value in microseconds
+		 */
+		public long getMax() {
+			return this.max;
+		}
+		
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "[count=" + this.count + ", mean=" + (long) this.getMean() + "us, p50=" + this.getMedian() + "us, p99=" + this.get99thPercentile() + "us, max=" + this.max + "us]";
+		}
+		
+	}
+	
+}
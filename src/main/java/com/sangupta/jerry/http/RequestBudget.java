@@ -0,0 +1,137 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket that caps extra requests - like retries or
+ * hedges - at a percentage of the requests made. Every request earns the
+ * percentage of a token, and every extra request spends a whole one. The
+ * tokens that can be saved up are capped so that a long quiet period cannot
+ * be followed by a burst of extra requests.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+final class RequestBudget {
+	
+	/**
+	 * Units that make up a single token
+	 */
+	private static final long TOKEN = 1000;
+	
+	/**
+	 * The maximum units that can be saved up
+	 */
+	private final long maxUnits;
+	
+	/**
+	 * Units currently available
+	 */
+	private final AtomicLong units;
+	
+	/**
+	 * Units earned by each request
+	 */
+	private volatile long unitsPerRequest;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param percent
+	 *            percentage of requests that may be followed by an extra one
+	 * 
+	 * @param maxTokens
+	 *            the maximum tokens that can be saved up
+	 * 
+	 * @param startFull
+	 *            whether the bucket starts with all tokens, or empty
+	 */
+	RequestBudget(double percent, int maxTokens, boolean startFull) {
+		this.maxUnits = maxTokens * TOKEN;
+		this.units = new AtomicLong(startFull ? this.maxUnits : 0);
+		this.setPercent(percent);
+	}
+	
+	/**
+	 * Change the percentage of requests that may be followed by an extra one.
+	 * 
+	 * @param percent
+	 *            the percentage, from <code>0</code> to <code>100</code>
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if percent is not between <code>0</code> and
+	 *             <code>100</code>
+	 */
+	void setPercent(double percent) {
+		if(percent < 0 || percent > 100) {
+			throw new IllegalArgumentException("Budget percent must be between 0 and 100");
+		}
+		
+		this.unitsPerRequest = (long) (percent * TOKEN / 100);
+	}
+	
+	/**
+	 * Add the share of a request to the budget.
+	 * 
+	 */
+	void earn() {
+		final long earned = this.unitsPerRequest;
+		if(earned == 0) {
+			return;
+		}
+		
+		while(true) {
+			long current = this.units.get();
+			if(current >= this.maxUnits) {
+				return;
+			}
+			
+			if(this.units.compareAndSet(current, Math.min(this.maxUnits, current + earned))) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Take a token out of the budget for an extra request.
+	 * 
+	 * @return <code>true</code> if a token was available, <code>false</code>
+	 *         otherwise
+	 */
+	boolean trySpend() {
+		while(true) {
+			long current = this.units.get();
+			if(current < TOKEN) {
+				return false;
+			}
+			
+			if(this.units.compareAndSet(current, current - TOKEN)) {
+				return true;
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,205 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.sangupta.jerry.constants.HttpMimeType;
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * An entity that serializes an object straight into the connection as it
+ * is written, without building the serialized form as a string or byte
+ * array first. The body is sent chunked as its length is not known upfront.
+ * This only holds for blocking execution: the non-blocking client reads the
+ * body via {@link #getContent()}, which serializes the whole object into
+ * memory.
+ * 
+ * A one-shot entity serializes the object exactly once and is not
+ * repeatable, so the request is not retried once the body has been sent. A
+ * repeatable entity serializes the object again each time it is written,
+ * letting retries and redirects resend it; the object must thus not change
+ * until the request completes.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+abstract class SerializingEntity extends AbstractHttpEntity {
+	
+	/**
+	 * The charset of the serialized bodies
+	 */
+	private static final Charset CHARSET = StandardCharsets.UTF_8;
+	
+	/**
+	 * Size of the buffer of encoded characters
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+	
+	/**
+	 * Whether the object may be serialized more than once
+	 */
+	private final boolean repeatable;
+	
+	/**
+	 * Whether the object has been serialized, for one-shot entities
+	 */
+	private final AtomicBoolean written = new AtomicBoolean();
+	
+	SerializingEntity(String mimeType, boolean repeatable) {
+		this.repeatable = repeatable;
+		this.setContentType(ContentType.create(mimeType, CHARSET).toString());
+		this.setChunked(true);
+	}
+	
+	/**
+	 * Create an entity that serializes the given object as JSON.
+	 * 
+	 * @param object
+	 *            the object to serialize
+	 * 
+	 * @param gson
+	 *            the {@link Gson} instance to use
+	 * 
+	 * @param repeatable
+	 *            whether the object may be serialized again
+	 * 
+	 * @return the entity
+	 */
+	static SerializingEntity json(final Object object, final Gson gson, boolean repeatable) {
+		return new SerializingEntity(HttpMimeType.JSON, repeatable) {
+			
+			@Override
+			protected void serialize(Writer writer) throws IOException {
+				try {
+					gson.toJson(object, writer);
+				} catch(JsonIOException e) {
+					if(e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					
+					throw e;
+				}
+			}
+			
+		};
+	}
+	
+	/**
+	 * Create an entity that serializes the given object as XML.
+	 * 
+	 * @param object
+	 *            the object to serialize
+	 * 
+	 * @param xStream
+	 *            the {@link XStream} instance to use
+	 * 
+	 * @param repeatable
+	 *            whether the object may be serialized again
+	 * 
+	 * @return the entity
+	 */
+	static SerializingEntity xml(final Object object, final XStream xStream, boolean repeatable) {
+		return new SerializingEntity(HttpMimeType.XML, repeatable) {
+			
+			@Override
+			protected void serialize(Writer writer) throws IOException {
+				xStream.toXML(object, writer);
+			}
+			
+		};
+	}
+	
+	/**
+	 * Write the serialized form of the object to the given writer.
+	 * 
+	 * @param writer
+	 *            the writer to serialize to
+	 * 
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	protected abstract void serialize(Writer writer) throws IOException;
+	
+	@Override
+	public boolean isRepeatable() {
+		return this.repeatable;
+	}
+	
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+	
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+	
+	/**
+	 * Return the serialized body, that is built in memory. Only meant for
+	 * consumers that cannot write the entity to a stream, such as the
+	 * non-blocking client. This writes a one-shot entity, which cannot be
+	 * read again afterwards.
+	 * 
+	 */
+	@Override
+	public InputStream getContent() throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(BUFFER_SIZE);
+		this.writeTo(stream);
+		return new ByteArrayInputStream(stream.toByteArray());
+	}
+	
+	@Override
+	public void writeTo(OutputStream outStream) throws IOException {
+		if(outStream == null) {
+			throw new IllegalArgumentException("Output stream cannot be null");
+		}
+		
+		if(!this.written.compareAndSet(false, true) && !this.repeatable) {
+			throw new IllegalStateException("One-shot entity has already been written");
+		}
+		
+		// the writer is flushed, but not closed, as the stream belongs to the connection
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outStream, CHARSET), BUFFER_SIZE);
+		this.serialize(writer);
+		writer.flush();
+	}
+	
+}
@@ -0,0 +1,434 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * A {@link WebResponse} whose body has not been read into memory. The status,
+ * headers, content-type and redirect chain are available as usual, while the
+ * body is exposed as the live {@link InputStream} or
+ * {@link ReadableByteChannel} of the underlying connection. This allows large
+ * responses to be processed in constant memory.
+ * 
+ * The instance MUST be closed once done, preferably using a
+ * <code>try-with-resources</code> block, so that the underlying connection is
+ * released back to the pool. If the body has been read till the end the
+ * connection is reused, else the connection is aborted so that the remaining
+ * (possibly huge) body is never downloaded.
+ * 
+ * The buffered accessors {@link #asBytes()}, {@link #asClonedBytes()} and
+ * {@link #asString(Charset)} are not supported and throw an
+ * {@link IllegalStateException}.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class StreamingWebResponse extends WebResponse implements Closeable {
+
+	/**
+	 * Generated via Eclipse
+	 */
+	private static final long serialVersionUID = -2469138154802212386L;
+
+	/**
+	 * The live {@link HttpResponse} that holds the connection
+	 */
+	private transient final HttpResponse response;
+	
+	/**
+	 * The stream over the response body, obtained lazily
+	 */
+	private transient CountingInputStream stream;
+	
+	/**
+	 * The default size of the buffer used to copy the body when writing to a
+	 * file
+	 */
+	public static final int DEFAULT_TRANSFER_SIZE = 64 * 1024;
+	
+	/**
+	 * Flag that signifies if this response has been closed
+	 */
+	private transient volatile boolean closed;
+	
+	/**
+	 * The metrics to record the completion of the exchange in, if any
+	 */
+	private transient HttpMetrics.RouteMetrics metrics;
+	
+	/**
+	 * When the request was started, as per {@link System#nanoTime()}
+	 */
+	private transient long startNanos;
+	
+	/**
+	 * The callback to run when this response is closed, if any
+	 */
+	private transient Runnable completion;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param originalURI
+	 *            the original {@link URI} that was hit to get this response
+	 * 
+	 * @param response
+	 *            the live {@link HttpResponse} returned from the server
+	 * 
+	 * @param localHttpContext
+	 *            the local {@link HttpContext} as applicable to this request
+	 */
+	StreamingWebResponse(URI originalURI, HttpResponse response, HttpContext localHttpContext) {
+		super(originalURI, (byte[]) null);
+		
+		this.response = response;
+		WebResponseHandler.populate(this, response, localHttpContext);
+	}
+	
+	/**
+	 * Run the given callback when this response is closed.
+	 * 
+	 */
+	void onCompletion(Runnable completion) {
+		this.completion = completion;
+	}
+	
+	/**
+	 * Record the completion of this exchange in the given metrics when this
+	 * response is closed.
+	 * 
+	 */
+	void instrument(HttpMetrics.RouteMetrics metrics, long startNanos) {
+		this.metrics = metrics;
+		this.startNanos = startNanos;
+	}
+	
+	/**
+	 * Returns the live {@link InputStream} over the response body. Multiple
+	 * calls return the same stream. Closing the stream drains the remaining
+	 * body so that the connection can be reused - to abandon a large body
+	 * prefer {@link #close()} instead.
+	 * 
+	 * @return the {@link InputStream} over the response body, or
+	 *         <code>null</code> if the response has no body
+	 * 
+	 * @throws IllegalStateException
+	 *             if the response has already been closed
+	 * 
+	 * @throws UncheckedIOException
+	 *             if the body stream cannot be obtained
+	 */
+	@Override
+	public InputStream asStream() {
+		if(this.closed) {
+			throw new IllegalStateException("Streaming response has already been closed");
+		}
+		
+		if(this.stream != null) {
+			return this.stream;
+		}
+		
+		HttpEntity entity = this.response.getEntity();
+		if(entity == null) {
+			return null;
+		}
+		
+		try {
+			this.stream = new CountingInputStream(entity.getContent());
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		return this.stream;
+	}
+	
+	/**
+	 * Returns the number of body bytes read so far via {@link #asStream()},
+	 * {@link #asChannel()} or {@link #writeToFile(File, int, boolean)}. Unlike
+	 * {@link #getSize()}, which is the <code>Content-Length</code> sent by the
+	 * server, this is the number of bytes actually received. Bytes drained by
+	 * closing the stream are counted, while bytes skipped by closing this
+	 * response are not.
+	 * 
+	 * @return the number of body bytes read so far
+	 */
+	public long getBytesRead() {
+		if(this.stream == null) {
+			return 0;
+		}
+		
+		return this.stream.getCount();
+	}
+	
+	/**
+	 * Returns a {@link ReadableByteChannel} over the live response body.
+	 * 
+	 * @return the {@link ReadableByteChannel} over the response body, or
+	 *         <code>null</code> if the response has no body
+	 * 
+	 * @throws IllegalStateException
+	 *             if the response has already been closed
+	 */
+	public ReadableByteChannel asChannel() {
+		InputStream stream = this.asStream();
+		if(stream == null) {
+			return null;
+		}
+		
+		return Channels.newChannel(stream);
+	}
+	
+	/**
+	 * Not supported for a streaming response.
+	 * 
+	 * @throws IllegalStateException
+	 *             always
+	 */
+	@Override
+	public String asString(Charset charset) {
+		throw new IllegalStateException("Streaming response body is only available via asStream() or asChannel()");
+	}
+	
+	/**
+	 * Not supported for a streaming response.
+	 * 
+	 * @throws IllegalStateException
+	 *             always
+	 */
+	@Override
+	public byte[] asBytes() {
+		throw new IllegalStateException("Streaming response body is only available via asStream() or asChannel()");
+	}
+	
+	/**
+	 * Not supported for a streaming response.
+	 * 
+	 * @throws IllegalStateException
+	 *             always
+	 */
+	@Override
+	public byte[] asClonedBytes() {
+		throw new IllegalStateException("Streaming response body is only available via asStream() or asChannel()");
+	}
+	
+	/**
+	 * Not supported for a streaming response.
+	 * 
+	 * @throws IllegalStateException
+	 *             always
+	 */
+	@Override
+	public byte[] getBytes() {
+		throw new IllegalStateException("Streaming response body is only available via asStream() or asChannel()");
+	}
+	
+	/**
+	 * Stream the remaining response body to the given file and close this
+	 * response. If the HTTP status code is greater than or equal to HTTP 300,
+	 * an {@link HttpResponseException} is thrown.
+	 * 
+	 * @param file
+	 *            the file to write the response to.
+	 * 
+	 * @throws IOException
+	 *             if something fails during HTTP connection
+	 * 
+	 * @throws HttpResponseException
+	 *             if the HTTP status code is greater than or equal to HTTP 300
+	 */
+	@Override
+	public void writeToFile(File file) throws IOException {
+		this.writeToFile(file, DEFAULT_TRANSFER_SIZE, true);
+	}
+	
+	/**
+	 * Stream the remaining response body to the given file and close this
+	 * response. The body is read into a single buffer of the given size,
+	 * which is written straight to the {@link FileChannel}. The body is not
+	 * moved in kernel space, as it is read off the connection by the HTTP
+	 * client, but larger buffers mean fewer reads and writes per file.
+	 * 
+	 * When asked to preallocate and the server sent a
+	 * <code>Content-Length</code>, the file is sized upfront so that the file
+	 * system can lay it out contiguously. The file is always truncated to the
+	 * number of bytes actually received.
+	 * 
+	 * @param file
+	 *            the file to write the response to.
+	 * 
+	 * @param transferSize
+	 *            the size of the copy buffer
+	 * 
+	 * @param preallocate
+	 *            whether to size the file from <code>Content-Length</code>
+	 *            before writing
+	 * 
+	 * @return the number of bytes written to the file
+	 * 
+	 * @throws IOException
+	 *             if something fails during HTTP connection
+	 * 
+	 * @throws HttpResponseException
+	 *             if the HTTP status code is greater than or equal to HTTP 300
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if file is <code>null</code> or transfer size is not
+	 *             positive
+	 */
+	public long writeToFile(File file, int transferSize, boolean preallocate) throws IOException {
+		if(file == null) {
+			throw new IllegalArgumentException("File cannot be null");
+		}
+		
+		if(transferSize <= 0) {
+			throw new IllegalArgumentException("Transfer size must be positive");
+		}
+		
+		try {
+			if(this.getResponseCode() >= 300) {
+				throw new HttpResponseException(this.getResponseCode(), this.getMessage());
+			}
+			
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				long expected = this.getSize();
+				raf.setLength(preallocate && expected > 0 ? expected : 0);
+				
+				FileChannel fileChannel = raf.getChannel();
+				InputStream source = this.asStream();
+				
+				long position = 0;
+				if(source != null) {
+					// read straight off the stream, as a channel over it
+					// would copy through a small buffer of its own
+					byte[] bytes = new byte[transferSize];
+					ByteBuffer buffer = ByteBuffer.wrap(bytes);
+					
+					int read;
+					while((read = source.read(bytes, buffer.position(), bytes.length - buffer.position())) != -1) {
+						buffer.position(buffer.position() + read);
+						if(buffer.hasRemaining()) {
+							continue;
+						}
+						
+						position += writeFully(fileChannel, buffer, position);
+					}
+					
+					position += writeFully(fileChannel, buffer, position);
+				}
+				
+				if(fileChannel.size() != position) {
+					fileChannel.truncate(position);
+				}
+				
+				return position;
+			} finally {
+				raf.close();
+			}
+		} finally {
+			this.close();
+		}
+	}
+	
+	/**
+	 * Write the bytes in the given buffer to the channel at the given
+	 * position, and clear the buffer.
+	 * 
+	 * @return the number of bytes written
+	 */
+	private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		buffer.flip();
+		
+		int written = 0;
+		while(buffer.hasRemaining()) {
+			written += channel.write(buffer, position + written);
+		}
+		
+		buffer.clear();
+		return written;
+	}
+	
+	/**
+	 * Release the underlying connection. If the body has been fully read the
+	 * connection goes back to the pool for reuse; otherwise the connection is
+	 * aborted without reading the remaining body. Calling this method more
+	 * than once has no effect.
+	 * 
+	 * @throws IOException
+	 *             if the connection cannot be released
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.closed) {
+			return;
+		}
+		
+		this.closed = true;
+		
+		try {
+			// closing the response proxy is a no-op if the body was read till
+			// the end (the connection has already been released for reuse), and
+			// aborts the connection otherwise
+			if(this.response instanceof Closeable) {
+				((Closeable) this.response).close();
+			} else {
+				EntityUtils.consume(this.response.getEntity());
+			}
+		} finally {
+			if(this.completion != null) {
+				this.completion.run();
+				this.completion = null;
+			}
+			
+			if(this.metrics != null) {
+				this.metrics.recordCompletion(this.startNanos, this.getBytesRead());
+			}
+		}
+	}
+	
+	/**
+	 * @return whether this response has been closed
+	 */
+	public boolean isClosed() {
+		return this.closed;
+	}
+	
+}
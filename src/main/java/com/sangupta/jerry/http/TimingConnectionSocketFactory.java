@@ -0,0 +1,104 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * A {@link ConnectionSocketFactory} that stores the time spent in connecting
+ * (including the TLS handshake for SSL sockets) in the request
+ * {@link HttpContext}, so that {@link HttpMetrics} can record the connect
+ * latency of requests that had to open a new connection.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+class TimingConnectionSocketFactory implements ConnectionSocketFactory {
+	
+	/**
+	 * The actual factory
+	 */
+	final ConnectionSocketFactory delegate;
+	
+	/**
+	 * Wrap the given factory keeping its layering capability.
+	 * 
+	 * @param delegate
+	 *            the factory to wrap
+	 * 
+	 * @return the timing factory
+	 */
+	static ConnectionSocketFactory wrap(ConnectionSocketFactory delegate) {
+		if(delegate instanceof LayeredConnectionSocketFactory) {
+			return new Layered((LayeredConnectionSocketFactory) delegate);
+		}
+		
+		return new TimingConnectionSocketFactory(delegate);
+	}
+	
+	private TimingConnectionSocketFactory(ConnectionSocketFactory delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Socket createSocket(HttpContext context) throws IOException {
+		return this.delegate.createSocket(context);
+	}
+
+	@Override
+	public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress, InetSocketAddress localAddress, HttpContext context) throws IOException {
+		final long start = System.nanoTime();
+		Socket connected = this.delegate.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+		
+		if(context != null) {
+			context.setAttribute(HttpMetrics.CONNECT_NANOS_ATTRIBUTE, System.nanoTime() - start);
+		}
+		
+		return connected;
+	}
+	
+	/**
+	 * Timing factory for SSL sockets.
+	 * 
+	 */
+	private static final class Layered extends TimingConnectionSocketFactory implements LayeredConnectionSocketFactory {
+		
+		Layered(LayeredConnectionSocketFactory delegate) {
+			super(delegate);
+		}
+
+		@Override
+		public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+			return ((LayeredConnectionSocketFactory) this.delegate).createLayeredSocket(socket, target, port, context);
+		}
+		
+	}
+
+}
@@ -0,0 +1,254 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sangupta.jerry.util.AssertUtils;
+
+/**
+ * A lock-free token-bucket {@link HttpRateLimiter}. The bucket for each host
+ * holds <code>limit</code> tokens and refills continuously at
+ * <code>limit / period</code>, thus a host may burst up to its limit and is
+ * then smoothed to the configured rate.
+ * 
+ * The entire state of a bucket is kept in a single {@link AtomicLong} - the
+ * theoretical arrival time of the next request in nanoseconds (the GCRA
+ * formulation of a token bucket) - so that admission is a single
+ * compare-and-set without any locking or separate reset step.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public class TokenBucketRateLimiter implements HttpRateLimiter {
+	
+	/**
+	 * Rate-limit buckets keyed by lower-cased host name
+	 */
+	private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+	@Override
+	public void addRateLimiting(String hostName, int limit, long period, TimeUnit timeUnit) {
+		if(AssertUtils.isEmpty(hostName)) {
+			throw new IllegalArgumentException("Hostname cannot be null/empty");
+		}
+		
+		if(limit <= 0) {
+			throw new IllegalArgumentException("Rate limit cannot be zero/negative");
+		}
+		
+		if(period <= 0) {
+			throw new IllegalArgumentException("Rate limit period cannot be zero/negative");
+		}
+		
+		if(timeUnit == null) {
+			throw new IllegalArgumentException("TimeUnit cannot be null");
+		}
+		
+		long periodNanos = timeUnit.toNanos(period);
+		if(periodNanos / limit == 0) {
+			throw new IllegalArgumentException("Rate limiting not supported at this level.");
+		}
+		
+		Bucket existing = this.buckets.putIfAbsent(key(hostName), new Bucket(limit, periodNanos));
+		if(existing != null) {
+			throw new IllegalStateException("To change the rate limit, remove any current limit and then reset");
+		}
+	}
+
+	@Override
+	public void removeRateLimiting(String hostName) {
+		if(hostName == null) {
+			return;
+		}
+		
+		this.buckets.remove(key(hostName));
+	}
+
+	@Override
+	public void removeAllRateLimiting() {
+		this.buckets.clear();
+	}
+
+	@Override
+	public boolean tryAcquire(String hostName) {
+		if(hostName == null || this.buckets.isEmpty()) {
+			return true;
+		}
+		
+		Bucket bucket = this.buckets.get(key(hostName));
+		if(bucket == null) {
+			return true;
+		}
+		
+		return bucket.tryAcquire(System.nanoTime());
+	}
+	
+	@Override
+	public long reserve(String hostName, long maxWaitNanos) {
+		if(hostName == null || this.buckets.isEmpty()) {
+			return 0;
+		}
+		
+		Bucket bucket = this.buckets.get(key(hostName));
+		if(bucket == null) {
+			return 0;
+		}
+		
+		return bucket.reserve(System.nanoTime(), maxWaitNanos);
+	}
+	
+	@Override
+	public void cancelReservation(String hostName) {
+		if(hostName == null || this.buckets.isEmpty()) {
+			return;
+		}
+		
+		Bucket bucket = this.buckets.get(key(hostName));
+		if(bucket == null) {
+			return;
+		}
+		
+		bucket.refund(System.nanoTime());
+	}
+	
+	/**
+	 * Check if any host is currently rate limited.
+	 * 
+	 * @return <code>true</code> if at least one host has a limit,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean hasRateLimits() {
+		return !this.buckets.isEmpty();
+	}
+	
+	private static String key(String hostName) {
+		return hostName.toLowerCase(Locale.ENGLISH);
+	}
+	
+	/**
+	 * Token bucket for a single host.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	static class Bucket {
+		
+		/**
+		 * Nanoseconds it takes for a single token to refill
+		 */
+		final long emissionInterval;
+		
+		/**
+		 * Nanoseconds it takes for the entire bucket to refill
+		 */
+		final long capacity;
+		
+		/**
+		 * Theoretical arrival time in nanos - the instant at which the
+		 * bucket will be full again
+		 */
+		final AtomicLong tat;
+		
+		Bucket(int limit, long periodNanos) {
+			this.emissionInterval = periodNanos / limit;
+			this.capacity = this.emissionInterval * limit;
+			this.tat = new AtomicLong(System.nanoTime());
+		}
+		
+		/**
+		 * Take a token if one is available at the given instant.
+		 * 
+		 * @param now
+		 *            the current {@link System#nanoTime()}
+		 * 
+		 * @return <code>true</code> if a token was taken
+		 */
+		boolean tryAcquire(long now) {
+			return this.reserve(now, 0) == 0;
+		}
+		
+		/**
+		 * Reserve the next token, if it becomes available within the given
+		 * wait. As the arrival time only ever moves forward, reservations are
+		 * granted strictly in the order they succeed.
+		 * 
+		 * @param now
+		 *            the current {@link System#nanoTime()}
+		 * 
+		 * @param maxWaitNanos
+		 *            the maximum nanos the caller will wait
+		 * 
+		 * @return the nanos to wait for the reserved token, or <code>-1</code>
+		 *         if none is available within the wait
+		 */
+		long reserve(long now, long maxWaitNanos) {
+			while(true) {
+				long current = this.tat.get();
+				long base = current - now > 0 ? current : now;
+				long next = base + this.emissionInterval;
+				
+				long wait = next - now - this.capacity;
+				if(wait > maxWaitNanos) {
+					return -1;
+				}
+				
+				if(this.tat.compareAndSet(current, next)) {
+					return wait > 0 ? wait : 0;
+				}
+			}
+		}
+		
+		/**
+		 * Give back a reserved token by moving the arrival time back by one
+		 * token, but never before the given instant as a bucket cannot hold
+		 * more than its capacity.
+		 * 
+		 * @param now
+		 *            the current {@link System#nanoTime()}
+		 */
+		void refund(long now) {
+			while(true) {
+				long current = this.tat.get();
+				if(current - now <= 0) {
+					return;
+				}
+				
+				long previous = current - this.emissionInterval;
+				if(previous - now < 0) {
+					previous = now;
+				}
+				
+				if(this.tat.compareAndSet(current, previous)) {
+					return;
+				}
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,189 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the executors used to run blocking requests, backed by virtual
+ * threads when the running JVM provides them (Java 21 and above) and by
+ * cached daemon platform threads otherwise.
+ * 
+ * The library is compiled for Java 8, thus the virtual thread API is looked
+ * up reflectively once and a single jar serves all runtimes. Code that runs
+ * on these threads should not block while holding a monitor, as a virtual
+ * thread blocked inside a <code>synchronized</code> section pins its carrier
+ * thread - the request path of the library only uses
+ * {@link java.util.concurrent.locks.Lock}s, as does the connection pool of
+ * HttpClient.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public final class VirtualThreads {
+	
+	/**
+	 * My logger instance
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+	
+	/**
+	 * <code>Thread.ofVirtual()</code>, or <code>null</code> if not supported
+	 */
+	private static final Method OF_VIRTUAL;
+	
+	/**
+	 * <code>Thread.Builder.name(String, long)</code>
+	 */
+	private static final Method BUILDER_NAME;
+	
+	/**
+	 * <code>Thread.Builder.factory()</code>
+	 */
+	private static final Method BUILDER_FACTORY;
+	
+	/**
+	 * <code>Executors.newThreadPerTaskExecutor(ThreadFactory)</code>
+	 */
+	private static final Method THREAD_PER_TASK;
+	
+	static {
+		Method ofVirtual = null;
+		Method builderName = null;
+		Method builderFactory = null;
+		Method threadPerTask = null;
+		
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			builderName = builder.getMethod("name", String.class, long.class);
+			builderFactory = builder.getMethod("factory");
+			threadPerTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			
+			// preview builds of Java 19 and 20 throw when called
+			ofVirtual.invoke(null);
+		} catch(ReflectiveOperationException | RuntimeException | LinkageError e) {
+			LOGGER.debug("Virtual threads are not available, using platform threads");
+			ofVirtual = null;
+		}
+		
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+		THREAD_PER_TASK = threadPerTask;
+	}
+	
+	/**
+	 * Lazy holder for the shared executor
+	 */
+	private static final class SharedHolder {
+		
+		static final ExecutorService EXECUTOR = newExecutor("jerry-http-virtual");
+		
+	}
+	
+	/**
+	 * Private constructor
+	 * 
+	 */
+	private VirtualThreads() {
+		
+	}
+	
+	/**
+	 * Check if the running JVM supports virtual threads.
+	 * 
+	 * @return <code>true</code> if virtual threads are used,
+	 *         <code>false</code> if the executors fall back to platform
+	 *         threads
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+	
+	/**
+	 * Return a {@link ThreadFactory} that creates virtual threads, or daemon
+	 * platform threads if virtual threads are not supported. Threads are
+	 * named with the given prefix followed by a counter.
+	 * 
+	 * @param prefix
+	 *            the prefix to use for thread names
+	 * 
+	 * @return the {@link ThreadFactory}
+	 */
+	public static ThreadFactory newThreadFactory(String prefix) {
+		if(OF_VIRTUAL != null) {
+			try {
+				Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix + "-", 1L);
+				return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+			} catch(ReflectiveOperationException e) {
+				LOGGER.warn("Unable to create virtual thread factory, using platform threads", e);
+			}
+		}
+		
+		return new DaemonThreadFactory(prefix);
+	}
+	
+	/**
+	 * Return a new {@link ExecutorService} that runs each task on its own
+	 * virtual thread, or on a cached pool of daemon platform threads if
+	 * virtual threads are not supported. The executor is not bounded in any
+	 * way and callers are expected to limit the tasks they submit.
+	 * 
+	 * @param prefix
+	 *            the prefix to use for thread names
+	 * 
+	 * @return the {@link ExecutorService}
+	 */
+	public static ExecutorService newExecutor(String prefix) {
+		ThreadFactory factory = newThreadFactory(prefix);
+		if(OF_VIRTUAL != null && !(factory instanceof DaemonThreadFactory)) {
+			try {
+				return (ExecutorService) THREAD_PER_TASK.invoke(null, factory);
+			} catch(ReflectiveOperationException e) {
+				LOGGER.warn("Unable to create virtual thread executor, using platform threads", e);
+			}
+		}
+		
+		return Executors.newCachedThreadPool(factory);
+	}
+	
+	/**
+	 * Return the executor shared by the library for blocking requests, as
+	 * used by {@link HttpExecutor#submit(WebRequest)}. It must not be shut
+	 * down.
+	 * 
+	 * @return the shared {@link ExecutorService}
+	 */
+	static ExecutorService shared() {
+		return SharedHolder.EXECUTOR;
+	}
+	
+}
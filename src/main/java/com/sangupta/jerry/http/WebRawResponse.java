@@ -21,21 +21,31 @@
 
 package com.sangupta.jerry.http;
 
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
-import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.sangupta.jerry.util.GsonUtils;
+
 /**
  * A wrapper over the {@link HttpResponse} object that is returned as 
  * part of {@link HttpRequest} execution. This helps in extracting the
@@ -47,7 +57,7 @@ import org.apache.http.util.EntityUtils;
  */
 public class WebRawResponse {
 	
-	private static final HttpResponseHandler DEFAULT_RESPONSE_HANDLER = new WebResponseHandler();
+	static final HttpResponseHandler DEFAULT_RESPONSE_HANDLER = new WebResponseHandler();
 
 	/**
 	 * Internal {@link HttpResponse} handle
@@ -69,6 +79,21 @@ public class WebRawResponse {
 	 * or not.
 	 */
     private volatile boolean consumed;
+    
+    /**
+     * The metrics to record the completion of the exchange in, if any
+     */
+    private HttpMetrics.RouteMetrics metrics;
+    
+    /**
+     * When the request was started, as per {@link System#nanoTime()}
+     */
+    private long startNanos;
+    
+    /**
+     * The callback to run once the exchange completes, if any
+     */
+    private Runnable completion;
 
     /**
 	 * Constructor that takes a {@link HttpResponse} object and stores it
@@ -92,6 +117,82 @@ public class WebRawResponse {
         this.localHttpContext = localHttpContext;
     }
 
+    /**
+     * Record the completion of this exchange in the given metrics once the
+     * response has been consumed.
+     * 
+     * @param metrics
+     *            the route metrics to record in
+     * 
+     * @param startNanos
+     *            when the request was started
+     */
+    void instrument(HttpMetrics.RouteMetrics metrics, long startNanos) {
+    	this.metrics = metrics;
+    	this.startNanos = startNanos;
+    }
+    
+    /**
+     * Run the given callback once the response has been consumed, or the
+     * ownership of the connection has moved to a
+     * {@link StreamingWebResponse} that has been closed.
+     * 
+     * @param completion
+     *            the callback to run
+     */
+    void onCompletion(Runnable completion) {
+    	this.completion = completion;
+    }
+    
+    /**
+     * Record the completion of this exchange, if instrumented.
+     * 
+     * @param bytes
+     *            the number of body bytes received
+     */
+    private void recordCompletion(long bytes) {
+    	Runnable completion = this.completion;
+    	if(completion != null) {
+    		this.completion = null;
+    		completion.run();
+    	}
+    	
+    	HttpMetrics.RouteMetrics metrics = this.metrics;
+    	if(metrics == null) {
+    		return;
+    	}
+    	
+    	this.metrics = null;
+    	metrics.recordCompletion(this.startNanos, bytes);
+    }
+
+    /**
+     * Return the status code of the response without consuming it.
+     * 
+     * @return the HTTP status code
+     */
+    int getResponseCode() {
+    	return this.response.getStatusLine().getStatusCode();
+    }
+    
+    /**
+     * Return the first value of the given response header without consuming
+     * the response.
+     * 
+     * @param name
+     *            the name of the header
+     * 
+     * @return the header value, or <code>null</code> if not present
+     */
+    String getFirstHeader(String name) {
+    	Header header = this.response.getFirstHeader(name);
+    	if(header == null) {
+    		return null;
+    	}
+    	
+    	return header.getValue();
+    }
+    
     /**
      * Check if the response stream has not already been consumed.
      * 
@@ -105,16 +206,39 @@ public class WebRawResponse {
     /**
      * Dispose off the response, after consuming.
      * 
+     * @param webResponse
+     *            the handled response if any, whose body bytes have been
+     *            received already
      */
-    private void dispose() {
+    private void dispose(WebResponse webResponse) {
         if (this.consumed) {
             return;
         }
+        
+        long bytes = 0;
+        CountingInputStream stream = null;
         try {
-            EntityUtils.consume(this.response.getEntity());
+        	HttpEntity entity = this.response.getEntity();
+        	if(webResponse != null) {
+        		// the handler has read the body, only release the connection
+        		if(webResponse.bytes != null) {
+        			bytes = webResponse.bytes.length;
+        		}
+        		
+        		EntityUtils.consume(entity);
+        	} else if(entity != null && entity.isStreaming()) {
+        		// nothing has read the body, count what is drained
+        		stream = new CountingInputStream(entity.getContent());
+        		stream.close();
+        	}
         } catch (Exception ignore) {
         } finally {
             this.consumed = true;
+            if(stream != null) {
+            	bytes += stream.getCount();
+            }
+            
+            this.recordCompletion(bytes);
         }
     }
 
@@ -123,7 +247,7 @@ public class WebRawResponse {
      * 
      */
     public void discardContent() {
-        dispose();
+        dispose(null);
     }
 
     /**
@@ -144,10 +268,12 @@ public class WebRawResponse {
     protected WebResponse handleResponse(HttpResponseHandler handler) throws ClientProtocolException, IOException {
         assertNotConsumed();
         
+        WebResponse webResponse = null;
         try {
-        	return handler.handleResponse(this.originalURI, this.response, this.localHttpContext);
+        	webResponse = handler.handleResponse(this.originalURI, this.response, this.localHttpContext);
+        	return webResponse;
         } finally {
-            dispose();
+            dispose(webResponse);
         }
     }
 
@@ -171,6 +297,203 @@ public class WebRawResponse {
         return handleResponse(handler);
     }
 
+    /**
+	 * Convert the response to a {@link StreamingWebResponse} that exposes the
+	 * live response body without reading it into memory. The ownership of the
+	 * underlying connection moves to the returned object, which MUST be
+	 * closed by the caller.
+	 * 
+	 * @return the {@link StreamingWebResponse} object
+	 * 
+	 * @throws IllegalStateException
+	 *             if the response has already been consumed
+	 * 
+	 * @since 2.1.0
+	 */
+    public StreamingWebResponse streamResponse() {
+    	assertNotConsumed();
+    	
+    	this.consumed = true;
+    	
+    	StreamingWebResponse streamingResponse = new StreamingWebResponse(this.originalURI, this.response, this.localHttpContext);
+    	if(this.metrics != null) {
+    		streamingResponse.instrument(this.metrics, this.startNanos);
+    		this.metrics = null;
+    	}
+    	
+    	if(this.completion != null) {
+    		streamingResponse.onCompletion(this.completion);
+    		this.completion = null;
+    	}
+    	
+    	return streamingResponse;
+    }
+
+    /**
+	 * Deserialize the JSON response body to an object of the given type using
+	 * {@link GsonUtils#getGson()}. The body is parsed straight off the
+	 * connection without being buffered into a {@link String} first. If the
+	 * HTTP status code is greater than or equal to HTTP 300, an
+	 * {@link HttpResponseException} is thrown.
+	 * 
+	 * @param type
+	 *            the type to deserialize to
+	 * 
+	 * @return the deserialized object, or <code>null</code> if the response
+	 *         has no body
+	 * 
+	 * @throws IOException
+	 *             if reading the response body fails
+	 * 
+	 * @throws HttpResponseException
+	 *             if the HTTP status code is greater than or equal to HTTP 300
+	 * 
+	 * @throws JsonParseException
+	 *             if the body is not valid JSON for the given type
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the type is <code>null</code>
+	 * 
+	 * @since 2.1.0
+	 */
+    public <T> T as(Class<T> type) throws IOException {
+    	if(type == null) {
+    		throw new IllegalArgumentException("Type cannot be null");
+    	}
+    	
+    	StreamingWebResponse streamingResponse = this.streamSuccessResponse();
+    	try {
+    		return readJson(streamingResponse.asStream(), streamingResponse, type);
+    	} finally {
+    		streamingResponse.close();
+    	}
+    }
+    
+    /**
+	 * Lazily deserialize the elements of the JSON response body, which is
+	 * either a top-level JSON array or newline-delimited JSON, using
+	 * {@link GsonUtils#getGson()}. Elements are read off the connection one
+	 * at a time as the iterator advances, keeping the memory used constant
+	 * irrespective of the size of the response. If the HTTP status code is
+	 * greater than or equal to HTTP 300, an {@link HttpResponseException} is
+	 * thrown.
+	 * 
+	 * The returned iterator owns the underlying connection and MUST be closed
+	 * if not read till the end.
+	 * 
+	 * @param type
+	 *            the type of each element
+	 * 
+	 * @return the {@link JsonStreamIterator} over the elements
+	 * 
+	 * @throws HttpResponseException
+	 *             if the HTTP status code is greater than or equal to HTTP 300
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the type is <code>null</code>
+	 * 
+	 * @since 2.1.0
+	 */
+    public <T> JsonStreamIterator<T> iterate(Class<T> type) throws HttpResponseException {
+    	if(type == null) {
+    		throw new IllegalArgumentException("Type cannot be null");
+    	}
+    	
+    	StreamingWebResponse streamingResponse = this.streamSuccessResponse();
+    	return iterateJson(streamingResponse.asStream(), streamingResponse, streamingResponse, type);
+    }
+    
+    /**
+	 * Lazily deserialize the elements of the JSON response body as a
+	 * {@link Stream}. See {@link #iterate(Class)} for details. The returned
+	 * stream owns the underlying connection and MUST be closed if not
+	 * consumed fully, preferably using a <code>try-with-resources</code>
+	 * block.
+	 * 
+	 * @param type
+	 *            the type of each element
+	 * 
+	 * @return the {@link Stream} of elements
+	 * 
+	 * @throws HttpResponseException
+	 *             if the HTTP status code is greater than or equal to HTTP 300
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the type is <code>null</code>
+	 * 
+	 * @since 2.1.0
+	 */
+    public <T> Stream<T> stream(Class<T> type) throws HttpResponseException {
+    	return this.iterate(type).stream();
+    }
+    
+    /**
+     * Convert the response to a {@link StreamingWebResponse}, discarding it
+     * if the HTTP status code is greater than or equal to HTTP 300.
+     * 
+     */
+    private StreamingWebResponse streamSuccessResponse() throws HttpResponseException {
+    	if(this.getResponseCode() >= 300) {
+    		int code = this.getResponseCode();
+    		String message = this.response.getStatusLine().getReasonPhrase();
+    		this.discardContent();
+    		
+    		throw new HttpResponseException(code, message);
+    	}
+    	
+    	return this.streamResponse();
+    }
+    
+    /**
+     * Deserialize the JSON read from the given stream, which may be
+     * <code>null</code> if the response has no body.
+     * 
+     */
+    static <T> T readJson(InputStream stream, WebResponse response, Class<T> type) throws IOException {
+    	if(stream == null) {
+    		return null;
+    	}
+    	
+    	try {
+    		return GsonUtils.getGson().fromJson(new InputStreamReader(stream, charsetOf(response)), type);
+    	} catch(JsonIOException e) {
+    		if(e.getCause() instanceof IOException) {
+    			throw (IOException) e.getCause();
+    		}
+    		
+    		throw e;
+    	}
+    }
+    
+    /**
+     * Create a {@link JsonStreamIterator} over the JSON read from the given
+     * stream, which may be <code>null</code> if the response has no body.
+     * 
+     */
+    static <T> JsonStreamIterator<T> iterateJson(InputStream stream, WebResponse response, Closeable resource, Class<T> type) {
+    	if(stream == null) {
+    		stream = new ByteArrayInputStream(new byte[0]);
+    	}
+    	
+    	Reader reader = new InputStreamReader(stream, charsetOf(response));
+    	boolean lines = JsonStreamIterator.isLineDelimited(response.getContentType());
+    	return new JsonStreamIterator<T>(GsonUtils.getGson(), reader, resource, type, lines);
+    }
+    
+    /**
+     * Returns the charset of the given response, defaulting to UTF-8 as
+     * mandated for JSON.
+     * 
+     */
+    private static Charset charsetOf(WebResponse response) {
+    	Charset charset = response.getCharSet();
+    	if(charset == null) {
+    		return StandardCharsets.UTF_8;
+    	}
+    	
+    	return charset;
+    }
+
     /**
 	 * Write the response stream to the given file. If the HTTP status code is
 	 * greater than or equal to HTTP 300, an {@link HttpResponseException} is
@@ -185,27 +508,16 @@ public class WebRawResponse {
 	 * @throws HttpResponseException
 	 *             if the HTTP status code is greater than or equal to HTTP 300
 	 * 
-	 * @throws NullPointerException
+	 * @throws IllegalArgumentException
 	 *             if the file to which the response needs to be written is
 	 *             <code>null</code>
 	 */
     public void writeToFile(final File file) throws IOException {
-        assertNotConsumed();
-        StatusLine statusLine = response.getStatusLine();
-        if (statusLine.getStatusCode() >= 300) {
-            throw new HttpResponseException(statusLine.getStatusCode(), statusLine.getReasonPhrase());
+        if(file == null) {
+        	throw new IllegalArgumentException("File cannot be null");
         }
         
-        BufferedOutputStream bout = new BufferedOutputStream(new FileOutputStream(file));
-        try {
-            HttpEntity entity = this.response.getEntity();
-            if (entity != null) {
-                entity.writeTo(bout);
-            }
-        } finally {
-            this.consumed = true;
-            bout.close();
-        }
+        this.streamResponse().writeToFile(file);
     }
 
 	/**
@@ -32,6 +32,8 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.Deflater;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -62,7 +64,9 @@ import org.apache.http.entity.StringEntity;
 import org.apache.http.protocol.HTTP;
 
 import com.sangupta.jerry.constants.HttpHeaderName;
+import com.sangupta.jerry.util.GsonUtils;
 import com.sangupta.jerry.util.StringUtils;
+import com.sangupta.jerry.util.XStreamUtils;
 
 /**
  * A wrapper that provides a builder based way to constructing a web request,
@@ -90,6 +94,13 @@ public class WebRequest {
 	 */
 	public static final TimeZone TIME_ZONE = TimeZone.getTimeZone("GMT");
 	
+	/**
+	 * The minimum size of a body compressed by {@link #compressBody()}, 1 KB
+	 * 
+	 * @since 2.1.0
+	 */
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+	
 	/**
 	 * Create a HTTP GET based {@link WebRequest} for the given {@link URI}
 	 * 
@@ -298,6 +309,22 @@ public class WebRequest {
      * The associated {@link DateFormat} formatter
      */
     private SimpleDateFormat dateFormatter;
+    
+    /**
+     * The minimum size of a body to be compressed, or <code>-1</code> if
+     * bodies are sent as is
+     */
+    private int compressionThreshold = -1;
+    
+    /**
+     * The level at which bodies are compressed
+     */
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    
+    /**
+     * Whether this request has been aborted for good
+     */
+    private volatile boolean cancelled;
 
     /**
 	 * Create the {@link WebRequest} object using the given
@@ -455,6 +482,45 @@ public class WebRequest {
         return HttpExecutor.DEFAULT.execute(this);
     }
 
+    /**
+	 * Execute this web request asynchronously using the non-blocking client of
+	 * the default {@link HttpExecutor}.
+	 * 
+	 * @return the {@link CompletableFuture} that completes with the obtained
+	 *         {@link WebResponse}
+	 */
+    public CompletableFuture<WebResponse> executeAsync() {
+    	this.prepareForExecute();
+    	return HttpExecutor.DEFAULT.executeAsync(this);
+    }
+
+    /**
+	 * Create a copy of this <code>GET</code> or <code>HEAD</code> request with
+	 * the same URI, headers and configuration, that can be executed in
+	 * parallel to this one.
+	 * 
+	 * @return the new {@link WebRequest}
+	 * 
+	 * @throws IllegalStateException
+	 *             if the request is neither <code>GET</code> nor
+	 *             <code>HEAD</code>
+	 */
+    WebRequest duplicate() {
+    	final HttpRequestBase copy;
+    	if(this.request instanceof HttpGet) {
+    		copy = new HttpGet(this.request.getURI());
+    	} else if(this.request instanceof HttpHead) {
+    		copy = new HttpHead(this.request.getURI());
+    	} else {
+    		throw new IllegalStateException("Only GET and HEAD requests can be duplicated");
+    	}
+    	
+    	copy.setProtocolVersion(this.request.getProtocolVersion());
+    	copy.setHeaders(this.request.getAllHeaders());
+    	copy.setConfig(this.request.getConfig());
+    	return new WebRequest(copy);
+    }
+
     /**
      * Abort this request now.
      * 
@@ -463,6 +529,24 @@ public class WebRequest {
     public void abort() throws UnsupportedOperationException {
         this.request.abort();
     }
+    
+    /**
+     * Abort this request for good. Unlike {@link #abort()}, which is undone
+     * when the request is reset for execution, a request cancelled before it
+     * is sent is aborted again right after the reset.
+     * 
+     */
+    void cancel() {
+    	this.cancelled = true;
+    	this.request.abort();
+    }
+    
+    /**
+     * @return whether this request has been cancelled via {@link #cancel()}
+     */
+    boolean isCancelled() {
+    	return this.cancelled;
+    }
 
     //// HTTP header operations
 
@@ -588,6 +672,20 @@ public class WebRequest {
         return this;
     }
 
+    /**
+	 * Set the If-None-Match header to the given entity tag, so that the
+	 * server, or a response cache, may answer with a 304 if it did not change.
+	 * 
+	 * @param etag
+	 *            the entity tag as received in the ETag header
+	 * 
+	 * @return this very {@link WebRequest}
+	 */
+    public WebRequest setIfNoneMatch(final String etag) {
+        this.request.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        return this;
+    }
+
     /**
 	 * Set the If-Unmodified-Since header to the given date value
 	 * 
@@ -726,7 +824,7 @@ public class WebRequest {
 	 */
     public WebRequest body(final HttpEntity entity) {
         if (this.request instanceof HttpEntityEnclosingRequest) {
-            ((HttpEntityEnclosingRequest) this.request).setEntity(entity);
+            ((HttpEntityEnclosingRequest) this.request).setEntity(this.compress(entity));
         } else {
             throw new IllegalStateException(this.request.getMethod() + " request cannot enclose an entity");
         }
@@ -838,6 +936,92 @@ public class WebRequest {
     	return body(new StringEntity(string, contentType));
     }
     
+    /**
+	 * Set the body to the JSON form of the given object, serialized with
+	 * {@link GsonUtils#getGson()} straight into the connection when the
+	 * request is sent. The object is serialized only once, and the request
+	 * is thus not retried after the body has been sent. See
+	 * {@link #bodyJson(Object, boolean)} for asynchronous execution.
+	 * 
+	 * @param object
+	 *            the object to send
+	 * 
+	 * @return this very {@link WebRequest}
+	 * 
+	 * @since 2.1.0
+	 */
+    public WebRequest bodyJson(final Object object) {
+    	return this.bodyJson(object, false);
+    }
+    
+    /**
+	 * Set the body to the JSON form of the given object, serialized with
+	 * {@link GsonUtils#getGson()} straight into the connection when the
+	 * request is sent. Only blocking execution streams the body, as
+	 * {@link HttpExecutor#executeAsync(WebRequest)} reads it as a whole into
+	 * memory before sending it.
+	 * 
+	 * @param object
+	 *            the object to send
+	 * 
+	 * @param repeatable
+	 *            whether the object may be serialized again to resend the
+	 *            body on retries and redirects, in which case it must not
+	 *            change until the request completes
+	 * 
+	 * @return this very {@link WebRequest}
+	 * 
+	 * @since 2.1.0
+	 */
+    public WebRequest bodyJson(final Object object, boolean repeatable) {
+    	return body(SerializingEntity.json(object, GsonUtils.getGson(), repeatable));
+    }
+    
+    /**
+	 * Set the body to the XML form of the given object, serialized with
+	 * {@link XStreamUtils#getXStream(Class)} straight into the connection
+	 * when the request is sent. The object is serialized only once, and the
+	 * request is thus not retried after the body has been sent. See
+	 * {@link #bodyXml(Object, boolean)} for asynchronous execution.
+	 * 
+	 * @param object
+	 *            the object to send
+	 * 
+	 * @return this very {@link WebRequest}
+	 * 
+	 * @since 2.1.0
+	 */
+    public WebRequest bodyXml(final Object object) {
+    	return this.bodyXml(object, false);
+    }
+    
+    /**
+	 * Set the body to the XML form of the given object, serialized with
+	 * {@link XStreamUtils#getXStream(Class)} straight into the connection
+	 * when the request is sent. As with {@link #bodyJson(Object, boolean)},
+	 * the body is only streamed for blocking execution, and built in memory
+	 * for asynchronous execution.
+	 * 
+	 * @param object
+	 *            the object to send
+	 * 
+	 * @param repeatable
+	 *            whether the object may be serialized again to resend the
+	 *            body on retries and redirects, in which case it must not
+	 *            change until the request completes
+	 * 
+	 * @return this very {@link WebRequest}
+	 * 
+	 * @since 2.1.0
+	 */
+    public WebRequest bodyXml(final Object object, boolean repeatable) {
+    	if(object == null) {
+    		throw new IllegalArgumentException("Object to send cannot be null");
+    	}
+    	
+    	return body(SerializingEntity.xml(object, XStreamUtils.getXStream(object.getClass()), repeatable));
+    }
+    
     /**
 	 * Set the body from given file for the given content type.
 	 * 
@@ -910,6 +1094,103 @@ public class WebRequest {
         return body(new InputStreamEntity(instream, -1, contentType));
     }
 
+    /**
+	 * Compress the body of this request with gzip, at the default level,
+	 * if it is at least {@link #DEFAULT_COMPRESSION_THRESHOLD} bytes long.
+	 * 
+	 * @return this very {@link WebRequest}
+	 * 
+	 * @see #compressBody(int, int)
+	 * 
+	 * @since 2.1.0
+	 */
+    public WebRequest compressBody() {
+    	return this.compressBody(DEFAULT_COMPRESSION_THRESHOLD, Deflater.DEFAULT_COMPRESSION);
+    }
+    
+    /**
+	 * Compress the body of this request with gzip, at the default level,
+	 * if it is at least the given number of bytes long.
+	 * 
+	 * @param minimumSize
+	 *            the minimum size of the body to be compressed
+	 * 
+	 * @return this very {@link WebRequest}
+	 * 
+	 * @see #compressBody(int, int)
+	 * 
+	 * @since 2.1.0
+	 */
+    public WebRequest compressBody(int minimumSize) {
+    	return this.compressBody(minimumSize, Deflater.DEFAULT_COMPRESSION);
+    }
+    
+    /**
+	 * Compress the body of this request with gzip if it is at least the given
+	 * number of bytes long, or if its length is not known. The body is
+	 * compressed while it is written to the connection, and sent chunked with
+	 * a <code>Content-Encoding: gzip</code> header; the server must be able
+	 * to decode such requests. Bodies that already carry a content encoding
+	 * are sent as is.
+	 * 
+	 * Applies to the body set already, as well as to any body set later.
+	 * 
+	 * @param minimumSize
+	 *            the minimum size of the body to be compressed
+	 * 
+	 * @param level
+	 *            the compression level, from <code>0</code> to
+	 *            <code>9</code>, or <code>-1</code> for the default level
+	 * 
+	 * @return this very {@link WebRequest}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the minimum size is negative or the level is not valid
+	 * 
+	 * @throws IllegalStateException
+	 *             if the request cannot enclose an entity
+	 * 
+	 * @since 2.1.0
+	 */
+    public WebRequest compressBody(int minimumSize, int level) {
+    	if(minimumSize < 0) {
+    		throw new IllegalArgumentException("Minimum size cannot be negative");
+    	}
+    	
+    	if(level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+    		throw new IllegalArgumentException("Compression level must be between -1 and 9");
+    	}
+    	
+    	if(!(this.request instanceof HttpEntityEnclosingRequest)) {
+    		throw new IllegalStateException(this.request.getMethod() + " request cannot enclose an entity");
+    	}
+    	
+    	this.compressionThreshold = minimumSize;
+    	this.compressionLevel = level;
+    	
+    	HttpEntityEnclosingRequest enclosingRequest = (HttpEntityEnclosingRequest) this.request;
+    	enclosingRequest.setEntity(this.compress(enclosingRequest.getEntity()));
+    	return this;
+    }
+    
+    /**
+	 * Wrap the given entity to be compressed, if compression is enabled and
+	 * the entity is large enough.
+	 * 
+	 */
+    private HttpEntity compress(HttpEntity entity) {
+    	if(entity == null || this.compressionThreshold < 0 || entity.getContentEncoding() != null) {
+    		return entity;
+    	}
+    	
+    	long length = entity.getContentLength();
+    	if(length >= 0 && length < this.compressionThreshold) {
+    		return entity;
+    	}
+    	
+    	return new CompressingEntity(entity, this.compressionLevel);
+    }
+
 	/**
 	 * Change the cookie policy to given cookie policy name
 	 * 
@@ -29,9 +29,7 @@ import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.nio.charset.Charset;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -87,7 +85,7 @@ public class WebResponse implements Serializable {
     /**
      * The response headers received
      */
-    protected final Map<String, String> headers = new HashMap<String, String>();
+    protected final WebResponseHeaders headers = new WebResponseHeaders();
     
     /**
      * The redirect chain of {@link URI}s
@@ -303,7 +301,8 @@ public class WebResponse implements Serializable {
     }
     
     /**
-	 * Return the value of the header if present, or <code>null</code>
+	 * Return the value of the first header with the given name, matched
+	 * case-insensitively, if present, or <code>null</code>
 	 * 
 	 * @param headerName
 	 *            the name of the header
@@ -311,8 +310,40 @@ public class WebResponse implements Serializable {
 	 * @return the value of the header, or <code>null</code> if header is not
 	 *         present
 	 */
-    private String getHeader(String headerName) {
-    	return headers.get(headerName);
+    public String getHeader(String headerName) {
+    	return headers.getFirst(headerName);
+    }
+    
+    /**
+	 * Return the values of all headers with the given name, matched
+	 * case-insensitively, such as the multiple <code>Set-Cookie</code>
+	 * headers of a response.
+	 * 
+	 * @param headerName
+	 *            the name of the header
+	 * 
+	 * @return the values in the order received, never <code>null</code>
+	 * 
+	 * @since 2.1.0
+	 */
+    public List<String> getHeaders(String headerName) {
+    	return headers.getAll(headerName);
+    }
+    
+    /**
+	 * Set the value of the header with the given name, replacing any existing
+	 * values.
+	 * 
+	 * @param headerName
+	 *            the name of the header
+	 * 
+	 * @param value
+	 *            the value of the header
+	 * 
+	 * @since 2.1.0
+	 */
+    protected void setHeader(String headerName, String value) {
+    	headers.set(headerName, value);
     }
     
     /**
@@ -404,10 +435,24 @@ public class WebResponse implements Serializable {
 	}
 
 	/**
+	 * Return an unmodifiable view of the headers with case-insensitive
+	 * lookups. A repeated header maps to its last value - use
+	 * {@link #getHeaders(String)} or {@link #getAllHeaders()} to read all
+	 * values.
+	 * 
 	 * @return the headers
 	 */
 	public Map<String, String> getHeaders() {
-		return Collections.unmodifiableMap(headers);
+		return headers.asMap();
+	}
+	
+	/**
+	 * @return all the headers received, including repeated ones
+	 * 
+	 * @since 2.1.0
+	 */
+	public WebResponseHeaders getAllHeaders() {
+		return headers;
 	}
 
 	/**
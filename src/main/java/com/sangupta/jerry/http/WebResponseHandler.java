@@ -55,7 +55,6 @@ public class WebResponseHandler implements HttpResponseHandler {
 	 */
 	@Override
 	public WebResponse handleResponse(URI originalURI, HttpResponse response, HttpContext localHttpContext) throws ClientProtocolException, IOException {
-		StatusLine statusLine = response.getStatusLine();
         HttpEntity entity = response.getEntity();
         
         byte[] bytes = null;
@@ -64,6 +63,30 @@ public class WebResponseHandler implements HttpResponseHandler {
         }
 		final WebResponse webResponse = new WebResponse(originalURI, bytes);
 		
+		populate(webResponse, response, localHttpContext);
+		
+		// return the object finally
+        return webResponse;
+	}
+	
+	/**
+	 * Fill in the status, size, content-type, headers, charset and redirect
+	 * chain of the given {@link WebResponse} from the {@link HttpResponse}
+	 * without touching the response body.
+	 * 
+	 * @param webResponse
+	 *            the {@link WebResponse} to fill in
+	 * 
+	 * @param response
+	 *            the {@link HttpResponse} received
+	 * 
+	 * @param localHttpContext
+	 *            the {@link HttpContext} used for the request
+	 */
+	static void populate(WebResponse webResponse, HttpResponse response, HttpContext localHttpContext) {
+		StatusLine statusLine = response.getStatusLine();
+        HttpEntity entity = response.getEntity();
+        
 		// decipher from status line
 		webResponse.responseCode = statusLine.getStatusCode();
 		webResponse.message = statusLine.getReasonPhrase();
@@ -93,13 +116,8 @@ public class WebResponseHandler implements HttpResponseHandler {
         	webResponse.contentType = entity.getContentType().getValue();
         }
 		
-		// response headers
-		final Header[] responseHeaders = response.getAllHeaders();
-        if(AssertUtils.isNotEmpty(responseHeaders)) {
-        	for(Header header : responseHeaders) {
-        		webResponse.headers.put(header.getName(), header.getValue());
-        	}
-        }
+		// response headers, copied in lazily on first access
+		webResponse.headers.wrap(response.getAllHeaders());
 		
 		// charset
         try {
@@ -113,13 +131,12 @@ public class WebResponseHandler implements HttpResponseHandler {
         }
         
         // fill in the redirect uri chain
-        RedirectLocations locations = (RedirectLocations) localHttpContext.getAttribute(HttpClientContext.REDIRECT_LOCATIONS);
-        if(AssertUtils.isNotEmpty(locations)) {
-        	webResponse.setRedirectChain(locations.getAll());
+        if(localHttpContext != null) {
+	        RedirectLocations locations = (RedirectLocations) localHttpContext.getAttribute(HttpClientContext.REDIRECT_LOCATIONS);
+	        if(AssertUtils.isNotEmpty(locations)) {
+	        	webResponse.setRedirectChain(locations.getAll());
+	        }
         }
-        
-		// return the object finally
-        return webResponse;
 	}
 
 }
@@ -0,0 +1,643 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+
+/**
+ * Compact, case-insensitive and multi-valued storage of the headers of a
+ * {@link WebResponse}. Names and values are kept in parallel arrays in the
+ * order received, along with a case-insensitive hash of each name to speed
+ * up lookups. Well-known header names are interned so that responses do not
+ * retain a copy of each.
+ * 
+ * When created from the Apache {@link Header} array of a response, nothing
+ * is copied until the headers are first accessed.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+public final class WebResponseHeaders implements Serializable {
+	
+	/**
+	 * Generated via Eclipse
+	 */
+	private static final long serialVersionUID = 3064284915386210318L;
+	
+	/**
+	 * Well-known header names, keyed by both their canonical and lower-case
+	 * forms, used to intern the names received
+	 */
+	private static final Map<String, String> COMMON_NAMES = new HashMap<String, String>();
+	
+	static {
+		String[] names = new String[] {
+			HttpHeaders.ACCEPT_RANGES, HttpHeaders.AGE, HttpHeaders.ALLOW, HttpHeaders.CACHE_CONTROL,
+			HttpHeaders.CONNECTION, HttpHeaders.CONTENT_ENCODING, HttpHeaders.CONTENT_LANGUAGE,
+			HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_LOCATION, HttpHeaders.CONTENT_RANGE,
+			HttpHeaders.CONTENT_TYPE, HttpHeaders.DATE, HttpHeaders.ETAG, HttpHeaders.EXPIRES,
+			HttpHeaders.LAST_MODIFIED, HttpHeaders.LOCATION, HttpHeaders.PRAGMA, HttpHeaders.RETRY_AFTER,
+			HttpHeaders.SERVER, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.VARY, HttpHeaders.VIA,
+			HttpHeaders.WARNING, HttpHeaders.WWW_AUTHENTICATE, "Keep-Alive", "Set-Cookie",
+			"Strict-Transport-Security", "Access-Control-Allow-Origin", "X-Content-Type-Options",
+			"X-Frame-Options", "X-XSS-Protection"
+		};
+		
+		for(String name : names) {
+			COMMON_NAMES.put(name, name);
+			COMMON_NAMES.put(name.toLowerCase(Locale.ROOT), name);
+		}
+	}
+	
+	/**
+	 * The Apache headers not yet copied, <code>null</code> once copied
+	 */
+	private transient volatile Header[] source;
+	
+	/**
+	 * The header names
+	 */
+	private String[] names;
+	
+	/**
+	 * The header values
+	 */
+	private String[] values;
+	
+	/**
+	 * The case-insensitive hash of each header name
+	 */
+	private int[] hashes;
+	
+	/**
+	 * The number of headers held
+	 */
+	private int size;
+	
+	/**
+	 * The lazily created {@link Map} view
+	 */
+	private transient Map<String, String> mapView;
+	
+	/**
+	 * Create an empty instance.
+	 * 
+	 */
+	WebResponseHeaders() {
+		this.names = new String[4];
+		this.values = new String[4];
+		this.hashes = new int[4];
+	}
+	
+	/**
+	 * Create an instance over the given headers which are copied in on first
+	 * access.
+	 * 
+	 * @param headers
+	 *            the headers received, may be <code>null</code>
+	 */
+	WebResponseHeaders(Header[] headers) {
+		if(headers == null || headers.length == 0) {
+			this.names = new String[0];
+			this.values = new String[0];
+			this.hashes = new int[0];
+			return;
+		}
+		
+		this.source = headers;
+	}
+	
+	/**
+	 * Replace all headers held with the given ones, which are copied in on
+	 * first access.
+	 * 
+	 * @param headers
+	 *            the headers received, may be <code>null</code>
+	 */
+	synchronized void wrap(Header[] headers) {
+		Arrays.fill(this.names, 0, this.size, null);
+		Arrays.fill(this.values, 0, this.size, null);
+		this.size = 0;
+		
+		if(headers == null || headers.length == 0) {
+			this.source = null;
+			return;
+		}
+		
+		this.source = headers;
+	}
+	
+	/**
+	 * Copy in the source headers, if not done already.
+	 * 
+	 */
+	private void inflate() {
+		if(this.source == null) {
+			return;
+		}
+		
+		synchronized(this) {
+			Header[] headers = this.source;
+			if(headers == null) {
+				return;
+			}
+			
+			int length = headers.length;
+			String[] names = new String[length];
+			String[] values = new String[length];
+			int[] hashes = new int[length];
+			
+			int count = 0;
+			for(Header header : headers) {
+				if(header == null) {
+					continue;
+				}
+				
+				String name = intern(header.getName());
+				names[count] = name;
+				values[count] = header.getValue();
+				hashes[count] = hash(name);
+				count++;
+			}
+			
+			this.names = names;
+			this.values = values;
+			this.hashes = hashes;
+			this.size = count;
+			
+			// volatile write publishes the arrays
+			this.source = null;
+		}
+	}
+	
+	/**
+	 * Returns the interned instance of the given name if it is a well-known
+	 * header name in canonical or lower-case form.
+	 * 
+	 */
+	private static String intern(String name) {
+		String common = COMMON_NAMES.get(name);
+		if(common != null) {
+			return common;
+		}
+		
+		return name;
+	}
+	
+	/**
+	 * Compute the case-insensitive hash of the given name.
+	 * 
+	 */
+	static int hash(String name) {
+		int hash = 0;
+		for(int index = 0; index < name.length(); index++) {
+			char ch = name.charAt(index);
+			if(ch >= 'A' && ch <= 'Z') {
+				ch += 'a' - 'A';
+			}
+			
+			hash = 31 * hash + ch;
+		}
+		
+		return hash;
+	}
+	
+	/**
+	 * Returns the index of the first header with the given name at or after
+	 * the given index, or <code>-1</code>.
+	 * 
+	 */
+	private int indexOf(String name, int hash, int from) {
+		for(int index = from; index < this.size; index++) {
+			if(this.hashes[index] == hash) {
+				String candidate = this.names[index];
+				if(candidate == name || candidate.equalsIgnoreCase(name)) {
+					return index;
+				}
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Returns the index of the last header with the given name, or
+	 * <code>-1</code>.
+	 * 
+	 */
+	private int lastIndexOf(String name, int hash) {
+		for(int index = this.size - 1; index >= 0; index--) {
+			if(this.hashes[index] == hash) {
+				String candidate = this.names[index];
+				if(candidate == name || candidate.equalsIgnoreCase(name)) {
+					return index;
+				}
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Returns the value of the first header with the given name, matched
+	 * case-insensitively.
+	 * 
+	 * @param name
+	 *            the name of the header
+	 * 
+	 * @return the value, or <code>null</code> if the header is not present
+	 */
+	public String getFirst(String name) {
+		if(name == null) {
+			return null;
+		}
+		
+		this.inflate();
+		int index = this.indexOf(name, hash(name), 0);
+		if(index < 0) {
+			return null;
+		}
+		
+		return this.values[index];
+	}
+	
+	/**
+	 * Returns the value of the last header with the given name, matched
+	 * case-insensitively.
+	 * 
+	 * @param name
+	 *            the name of the header
+	 * 
+	 * @return the value, or <code>null</code> if the header is not present
+	 */
+	public String getLast(String name) {
+		if(name == null) {
+			return null;
+		}
+		
+		this.inflate();
+		int index = this.lastIndexOf(name, hash(name));
+		if(index < 0) {
+			return null;
+		}
+		
+		return this.values[index];
+	}
+	
+	/**
+	 * Returns the values of all headers with the given name, matched
+	 * case-insensitively, in the order received. This is the way to read
+	 * repeated headers like <code>Set-Cookie</code>.
+	 * 
+	 * @param name
+	 *            the name of the header
+	 * 
+	 * @return the values, never <code>null</code>
+	 */
+	public List<String> getAll(String name) {
+		if(name == null) {
+			return Collections.emptyList();
+		}
+		
+		this.inflate();
+		int hash = hash(name);
+		int index = this.indexOf(name, hash, 0);
+		if(index < 0) {
+			return Collections.emptyList();
+		}
+		
+		List<String> list = new ArrayList<String>(2);
+		while(index >= 0) {
+			list.add(this.values[index]);
+			index = this.indexOf(name, hash, index + 1);
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Check if a header with the given name is present, matched
+	 * case-insensitively.
+	 * 
+	 * @param name
+	 *            the name of the header
+	 * 
+	 * @return <code>true</code> if present, <code>false</code> otherwise
+	 */
+	public boolean contains(String name) {
+		if(name == null) {
+			return false;
+		}
+		
+		this.inflate();
+		return this.indexOf(name, hash(name), 0) >= 0;
+	}
+	
+	/**
+	 * @return the number of headers, counting each repetition
+	 */
+	public int size() {
+		this.inflate();
+		return this.size;
+	}
+	
+	/**
+	 * @return whether there are no headers
+	 */
+	public boolean isEmpty() {
+		return this.size() == 0;
+	}
+	
+	/**
+	 * Returns the name of the header at the given position.
+	 * 
+	 * @param index
+	 *            the position, in the order received
+	 * 
+	 * @return the header name
+	 * 
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is out of range
+	 */
+	public String getName(int index) {
+		this.checkIndex(index);
+		return this.names[index];
+	}
+	
+	/**
+	 * Returns the value of the header at the given position.
+	 * 
+	 * @param index
+	 *            the position, in the order received
+	 * 
+	 * @return the header value
+	 * 
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is out of range
+	 */
+	public String getValue(int index) {
+		this.checkIndex(index);
+		return this.values[index];
+	}
+	
+	private void checkIndex(int index) {
+		if(index < 0 || index >= this.size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.size);
+		}
+	}
+	
+	/**
+	 * Add a header, keeping any existing header with the same name.
+	 * 
+	 * @param name
+	 *            the header name
+	 * 
+	 * @param value
+	 *            the header value
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the name is <code>null</code>
+	 */
+	synchronized void add(String name, String value) {
+		if(name == null) {
+			throw new IllegalArgumentException("Header name cannot be null");
+		}
+		
+		this.inflate();
+		if(this.size == this.names.length) {
+			int capacity = Math.max(4, this.size * 2);
+			this.names = Arrays.copyOf(this.names, capacity);
+			this.values = Arrays.copyOf(this.values, capacity);
+			this.hashes = Arrays.copyOf(this.hashes, capacity);
+		}
+		
+		name = intern(name);
+		this.names[this.size] = name;
+		this.values[this.size] = value;
+		this.hashes[this.size] = hash(name);
+		this.size++;
+	}
+	
+	/**
+	 * Set a header, removing all existing headers with the same name.
+	 * 
+	 * @param name
+	 *            the header name
+	 * 
+	 * @param value
+	 *            the header value
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the name is <code>null</code>
+	 */
+	synchronized void set(String name, String value) {
+		if(name == null) {
+			throw new IllegalArgumentException("Header name cannot be null");
+		}
+		
+		this.inflate();
+		int hash = hash(name);
+		int count = 0;
+		for(int index = 0; index < this.size; index++) {
+			if(this.hashes[index] == hash && this.names[index].equalsIgnoreCase(name)) {
+				continue;
+			}
+			
+			this.names[count] = this.names[index];
+			this.values[count] = this.values[index];
+			this.hashes[count] = this.hashes[index];
+			count++;
+		}
+		
+		Arrays.fill(this.names, count, this.size, null);
+		Arrays.fill(this.values, count, this.size, null);
+		this.size = count;
+		
+		this.add(name, value);
+	}
+	
+	/**
+	 * Returns an unmodifiable {@link Map} view of the headers, with
+	 * case-insensitive lookups. A repeated header maps to its last value -
+	 * use {@link #getAll(String)} to read all values.
+	 * 
+	 * @return the {@link Map} view
+	 */
+	public Map<String, String> asMap() {
+		Map<String, String> view = this.mapView;
+		if(view == null) {
+			view = new MapView();
+			this.mapView = view;
+		}
+		
+		return view;
+	}
+	
+	/**
+	 * Copy in the source headers before serializing.
+	 * 
+	 */
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		this.inflate();
+		stream.defaultWriteObject();
+	}
+	
+	@Override
+	public String toString() {
+		this.inflate();
+		
+		StringBuilder builder = new StringBuilder();
+		builder.append('[');
+		for(int index = 0; index < this.size; index++) {
+			if(index > 0) {
+				builder.append(", ");
+			}
+			
+			builder.append(this.names[index]);
+			builder.append(": ");
+			builder.append(this.values[index]);
+		}
+		
+		builder.append(']');
+		return builder.toString();
+	}
+	
+	/**
+	 * The {@link Map} view over the headers, where each name appears once
+	 * with its last value.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private final class MapView extends AbstractMap<String, String> {
+		
+		@Override
+		public String get(Object key) {
+			if(!(key instanceof String)) {
+				return null;
+			}
+			
+			return getLast((String) key);
+		}
+		
+		@Override
+		public boolean containsKey(Object key) {
+			if(!(key instanceof String)) {
+				return false;
+			}
+			
+			return contains((String) key);
+		}
+		
+		@Override
+		public Set<Map.Entry<String, String>> entrySet() {
+			return new AbstractSet<Map.Entry<String, String>>() {
+				
+				@Override
+				public Iterator<Map.Entry<String, String>> iterator() {
+					return new EntryIterator();
+				}
+				
+				@Override
+				public int size() {
+					int count = 0;
+					for(int index = 0; index < WebResponseHeaders.this.size(); index++) {
+						if(isLastOccurrence(index)) {
+							count++;
+						}
+					}
+					
+					return count;
+				}
+				
+			};
+		}
+		
+	}
+	
+	/**
+	 * Check if the header at the given index is the last one with its name.
+	 * 
+	 */
+	private boolean isLastOccurrence(int index) {
+		return this.lastIndexOf(this.names[index], this.hashes[index]) == index;
+	}
+	
+	/**
+	 * Iterator over the last occurrence of each header name.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+		
+		private int next = this.advance(0);
+		
+		private int advance(int from) {
+			int total = WebResponseHeaders.this.size();
+			for(int index = from; index < total; index++) {
+				if(isLastOccurrence(index)) {
+					return index;
+				}
+			}
+			
+			return -1;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return this.next >= 0;
+		}
+		
+		@Override
+		public Map.Entry<String, String> next() {
+			if(this.next < 0) {
+				throw new NoSuchElementException();
+			}
+			
+			int index = this.next;
+			this.next = this.advance(index + 1);
+			return new AbstractMap.SimpleImmutableEntry<String, String>(names[index], values[index]);
+		}
+		
+	}
+	
+}
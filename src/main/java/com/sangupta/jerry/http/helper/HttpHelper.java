@@ -29,6 +29,9 @@ import org.apache.http.client.HttpResponseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sangupta.jerry.http.HandledWebRawResponse;
+import com.sangupta.jerry.http.StreamingWebResponse;
+import com.sangupta.jerry.http.WebRawResponse;
 import com.sangupta.jerry.http.WebRequest;
 import com.sangupta.jerry.http.WebRequestMethod;
 import com.sangupta.jerry.http.WebResponse;
@@ -101,6 +104,112 @@ public abstract class HttpHelper {
 		return false;
 	}
 
+	/**
+	 * Execute the given {@link WebRequest} and stream the response body
+	 * straight into a newly created temporary file, without buffering it in
+	 * memory.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to execute
+	 * 
+	 * @return the temporary {@link File} holding the response body, or
+	 *         <code>null</code> if the download failed
+	 * 
+	 * @throws IOException
+	 *             if the temporary file cannot be created
+	 * 
+	 * @since 2.1.0
+	 */
+	public static File downloadToTempFile(WebRequest request) throws IOException {
+		if(request == null) {
+			throw new IllegalArgumentException("WebRequest cannot be null");
+		}
+		
+		String extension = UriUtils.extractExtension(request.getURI().toString());
+		File tempFile = File.createTempFile("download", extension);
+		tempFile.deleteOnExit();
+		
+		if(downloadToFile(request, tempFile)) {
+			return tempFile;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Execute the given {@link WebRequest} and stream the response body
+	 * straight into the given file using a copy buffer of
+	 * {@link StreamingWebResponse#DEFAULT_TRANSFER_SIZE} bytes and
+	 * preallocating the file from <code>Content-Length</code>.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to execute
+	 * 
+	 * @param fileToDownloadIn
+	 *            the file to write the response body to
+	 * 
+	 * @return <code>true</code> if the file was successfully downloaded,
+	 *         <code>false</code> otherwise
+	 * 
+	 * @since 2.1.0
+	 */
+	public static boolean downloadToFile(WebRequest request, File fileToDownloadIn) {
+		return downloadToFile(request, fileToDownloadIn, StreamingWebResponse.DEFAULT_TRANSFER_SIZE, true);
+	}
+	
+	/**
+	 * Execute the given {@link WebRequest} and stream the response body
+	 * straight into the given file via {@link StreamingWebResponse}. Falls
+	 * back to writing the buffered body if an interceptor has already
+	 * handled the response.
+	 * 
+	 * @param request
+	 *            the {@link WebRequest} to execute
+	 * 
+	 * @param fileToDownloadIn
+	 *            the file to write the response body to
+	 * 
+	 * @param transferSize
+	 *            the size of the buffer to copy the body with
+	 * 
+	 * @param preallocate
+	 *            whether to size the file from <code>Content-Length</code>
+	 *            before writing
+	 * 
+	 * @return <code>true</code> if the file was successfully downloaded,
+	 *         <code>false</code> otherwise
+	 * 
+	 * @since 2.1.0
+	 */
+	public static boolean downloadToFile(WebRequest request, File fileToDownloadIn, int transferSize, boolean preallocate) {
+		if(request == null) {
+			throw new IllegalArgumentException("WebRequest cannot be null");
+		}
+		
+		if(fileToDownloadIn == null) {
+			throw new IllegalArgumentException("File to download in cannot be null");
+		}
+		
+		LOGGER.debug("Downloading {} to {}", request, fileToDownloadIn.getAbsolutePath());
+		
+		try {
+			WebRawResponse raw = request.execute();
+			if(raw instanceof HandledWebRawResponse) {
+				raw.writeToFile(fileToDownloadIn);
+				return true;
+			}
+			
+			raw.streamResponse().writeToFile(fileToDownloadIn, transferSize, preallocate);
+			return true;
+		} catch(HttpResponseException e) {
+			LOGGER.error("HTTP response did not yield an OK status", e);
+		} catch(IOException e) {
+			LOGGER.error("Unable to download url to file", e);
+		}
+		
+		return false;
+	}
+
 	/**
 	 * Create a {@link WebRequest} object for the given {@link WebRequestMethod}
 	 * and the given url. This method will never return a <code>null</code>.
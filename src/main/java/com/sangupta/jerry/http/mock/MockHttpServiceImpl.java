@@ -23,14 +23,22 @@ package com.sangupta.jerry.http.mock;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.google.gson.JsonParseException;
+import com.sangupta.jerry.http.HttpBulkExecutor;
+import com.sangupta.jerry.http.JsonStreamIterator;
 import com.sangupta.jerry.http.WebRequest;
 import com.sangupta.jerry.http.WebRequestMethod;
 import com.sangupta.jerry.http.WebResponse;
 import com.sangupta.jerry.http.helper.HttpHelper;
 import com.sangupta.jerry.http.service.HttpService;
+import com.sangupta.jerry.util.GsonUtils;
 
 /**
  * A mock {@link HttpService} implementation that allows us to send
@@ -110,6 +118,30 @@ public class MockHttpServiceImpl implements HttpService {
 		return this.getResponse();
 	}
 
+	@Override
+	public <T> T getJSON(String url, Class<T> type) {
+		WebResponse response = this.getResponse();
+		if(response == null || response.getContent() == null) {
+			return null;
+		}
+		
+		try {
+			return GsonUtils.getGson().fromJson(response.getContent(), type);
+		} catch(JsonParseException e) {
+			return null;
+		}
+	}
+	
+	@Override
+	public <T> JsonStreamIterator<T> streamJSON(String url, Class<T> type) {
+		WebResponse response = this.getResponse();
+		if(response == null || response.getContent() == null) {
+			return null;
+		}
+		
+		return new JsonStreamIterator<T>(new StringReader(response.getContent()), type);
+	}
+
 	@Override
 	public Map<String, String> getResponseHeaders(String url) {
 		WebResponse response = this.getResponse();
@@ -185,6 +217,43 @@ public class MockHttpServiceImpl implements HttpService {
 		return this.getResponse();
 	}
 
+	@Override
+	public Iterator<HttpBulkExecutor.Result> executeAll(Iterable<WebRequest> requests, int parallelism, int maxPerHost) {
+		if(requests == null) {
+			throw new IllegalArgumentException("Webrequests to be executed cannot be null");
+		}
+		
+		if(parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+		
+		if(maxPerHost <= 0) {
+			throw new IllegalArgumentException("Max requests per host must be positive");
+		}
+		
+		List<HttpBulkExecutor.Result> results = new ArrayList<>();
+		int index = 0;
+		for(WebRequest request : requests) {
+			results.add(new HttpBulkExecutor.Result(index++, request, this.getResponse(), null));
+		}
+		
+		return results.iterator();
+	}
+
+	@Override
+	public Iterator<HttpBulkExecutor.Result> getAll(Iterable<String> urls, int parallelism, int maxPerHost) {
+		if(urls == null) {
+			throw new IllegalArgumentException("URLs to be fetched cannot be null");
+		}
+		
+		List<WebRequest> requests = new ArrayList<>();
+		for(String url : urls) {
+			requests.add(this.getWebRequest(WebRequestMethod.GET, url));
+		}
+		
+		return this.executeAll(requests, parallelism, maxPerHost);
+	}
+
 	@Override
 	public void setConnectionTimeout(int millis) {
 		// ignore - nothing to do
@@ -195,6 +264,11 @@ public class MockHttpServiceImpl implements HttpService {
 		// ignore - nothing to do
 	}
 
+	@Override
+	public void setRequestCompression(int minimumSize) {
+		// ignore - nothing to do
+	}
+
 	@Override
 	public File downloadToTempFile(String url) throws IOException {
 		return HttpHelper.downloadToTempFile(url, this);
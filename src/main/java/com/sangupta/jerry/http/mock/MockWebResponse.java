@@ -121,7 +121,7 @@ public class MockWebResponse extends WebResponse {
 	 * @return this very {@link MockWebResponse} instance
 	 */
 	public MockWebResponse addHeader(String name, String value) {
-		this.headers.put(name, value);
+		this.setHeader(name, value);
 		return this;
 	}
 	
@@ -23,10 +23,13 @@ package com.sangupta.jerry.http.service;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Map;
 
 import com.google.gson.Gson;
 import com.sangupta.jerry.constants.HttpMimeType;
+import com.sangupta.jerry.http.HttpBulkExecutor;
+import com.sangupta.jerry.http.JsonStreamIterator;
 import com.sangupta.jerry.http.WebRequest;
 import com.sangupta.jerry.http.WebRequestMethod;
 import com.sangupta.jerry.http.WebResponse;
@@ -68,6 +71,69 @@ public interface HttpService {
 	 */
 	public WebResponse getResponse(String url);
 	
+	/**
+	 * Return the JSON response body for a GET request to the given URL,
+	 * deserialized to the given type straight off the connection without an
+	 * intermediate {@link String}. In case an {@link IOException} is thrown,
+	 * the response status code is greater than or equal to HTTP 300, or the
+	 * body cannot be parsed, the error will be eaten up, logged at DEBUG
+	 * level, and <code>null</code> returned.
+	 * 
+	 * The default implementation executes the request obtained from
+	 * {@link #getWebRequest(WebRequestMethod, String)} without logging.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @param type
+	 *            the type to deserialize to
+	 * 
+	 * @return the deserialized response body
+	 * 
+	 * @since 2.1.0
+	 */
+	public default <T> T getJSON(String url, Class<T> type) {
+		try {
+			return this.getWebRequest(WebRequestMethod.GET, url).execute().as(type);
+		} catch(Exception e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Return a lazy {@link Iterator} over the elements of the JSON response
+	 * body for a GET request to the given URL. The body may either be a
+	 * top-level JSON array or newline-delimited JSON, and elements are read
+	 * off the connection one at a time keeping the memory used constant. In
+	 * case an {@link IOException} is thrown or the response status code is
+	 * greater than or equal to HTTP 300, the error will be eaten up, logged at
+	 * DEBUG level, and <code>null</code> returned.
+	 * 
+	 * The returned iterator owns the underlying connection and MUST be closed
+	 * if not read till the end. Parsing errors during iteration are thrown
+	 * as-is.
+	 * 
+	 * The default implementation executes the request obtained from
+	 * {@link #getWebRequest(WebRequestMethod, String)} without logging.
+	 * 
+	 * @param url
+	 *            the url to hit
+	 * 
+	 * @param type
+	 *            the type of each element
+	 * 
+	 * @return the {@link JsonStreamIterator} over the elements
+	 * 
+	 * @since 2.1.0
+	 */
+	public default <T> JsonStreamIterator<T> streamJSON(String url, Class<T> type) {
+		try {
+			return this.getWebRequest(WebRequestMethod.GET, url).execute().iterate(type);
+		} catch(Exception e) {
+			return null;
+		}
+	}
+	
 	/**
 	 * Returns the HTTP headers etc by making a HEAD request to the given URL as
 	 * a {@link Map}.
@@ -192,7 +258,8 @@ public interface HttpService {
 	
 	/**
 	 * POST the XML representation of the given object, to the given URL. The
-	 * object is converted to XML format using {@link XStream} project.
+	 * object is converted to XML format using {@link XStream} project, and
+	 * is written straight into the connection as it is serialized.
 	 * 
 	 * @param uri
 	 *            the url to hit
@@ -207,7 +274,8 @@ public interface HttpService {
 	
 	/**
 	 * POST the JSON representation of the given object to the given URL. The
-	 * object is converted to JSON format usign {@link Gson} project.
+	 * object is converted to JSON format usign {@link Gson} project, and is
+	 * written straight into the connection as it is serialized.
 	 * 
 	 * @param uri
 	 *            the url to hit
@@ -247,6 +315,140 @@ public interface HttpService {
 	 */
 	public WebResponse plainExecuteSilently(WebRequest request);
 	
+	/**
+	 * Execute the given {@link WebRequest}s with at most the given number of
+	 * requests in flight, massaging each request the same way as
+	 * {@link #executeSilently(WebRequest)}. The requests are read lazily, and
+	 * the results are returned in the order they complete, each carrying the
+	 * index of its request. A failed request is returned as a result with the
+	 * error attached.
+	 * 
+	 * @param requests
+	 *            the {@link WebRequest}s to be executed
+	 * 
+	 * @param parallelism
+	 *            the maximum number of requests in flight
+	 * 
+	 * @return an {@link Iterator} over the results in completion order
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if requests is <code>null</code> or parallelism is not
+	 *             positive
+	 * 
+	 * @since 2.1.0
+	 */
+	public default Iterator<HttpBulkExecutor.Result> executeAll(Iterable<WebRequest> requests, int parallelism) {
+		return this.executeAll(requests, parallelism, HttpBulkExecutor.DEFAULT_MAX_PER_HOST);
+	}
+	
+	/**
+	 * Execute the given {@link WebRequest}s with at most the given number of
+	 * requests in flight overall and to a single host. See
+	 * {@link #executeAll(Iterable, int)} for details. A cap per host above
+	 * the connections per route of the underlying connection pool only makes
+	 * requests wait for a connection.
+	 * 
+	 * The default implementation executes the requests as given, over a new
+	 * {@link HttpBulkExecutor}, and implementations should override it to
+	 * apply their own settings to each request.
+	 * 
+	 * @param requests
+	 *            the {@link WebRequest}s to be executed
+	 * 
+	 * @param parallelism
+	 *            the maximum number of requests in flight
+	 * 
+	 * @param maxPerHost
+	 *            the maximum number of requests in flight to a single host
+	 * 
+	 * @return an {@link Iterator} over the results in completion order
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if requests is <code>null</code>, or parallelism or
+	 *             maxPerHost is not positive
+	 * 
+	 * @since 2.1.0
+	 */
+	public default Iterator<HttpBulkExecutor.Result> executeAll(Iterable<WebRequest> requests, int parallelism, int maxPerHost) {
+		if(requests == null) {
+			throw new IllegalArgumentException("Webrequests to be executed cannot be null");
+		}
+		
+		return new HttpBulkExecutor().parallelism(parallelism).maxPerHost(maxPerHost).executeAll(requests);
+	}
+	
+	/**
+	 * Execute a GET request for each of the given URLs with the default
+	 * parallelism and cap per host of {@link HttpBulkExecutor}, returning the
+	 * results in the order they complete.
+	 * 
+	 * @param urls
+	 *            the URLs to hit
+	 * 
+	 * @return an {@link Iterator} over the results in completion order
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if urls is <code>null</code>
+	 * 
+	 * @since 2.1.0
+	 */
+	public default Iterator<HttpBulkExecutor.Result> getAll(Iterable<String> urls) {
+		return this.getAll(urls, HttpBulkExecutor.DEFAULT_PARALLELISM, HttpBulkExecutor.DEFAULT_MAX_PER_HOST);
+	}
+	
+	/**
+	 * Execute a GET request for each of the given URLs with at most the
+	 * given number of requests in flight overall and to a single host,
+	 * returning the results in the order they complete. The requests are
+	 * created lazily via {@link #getWebRequest(WebRequestMethod, String)}.
+	 * 
+	 * @param urls
+	 *            the URLs to hit
+	 * 
+	 * @param parallelism
+	 *            the maximum number of requests in flight
+	 * 
+	 * @param maxPerHost
+	 *            the maximum number of requests in flight to a single host
+	 * 
+	 * @return an {@link Iterator} over the results in completion order
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if urls is <code>null</code>, or parallelism or maxPerHost
+	 *             is not positive
+	 * 
+	 * @since 2.1.0
+	 */
+	public default Iterator<HttpBulkExecutor.Result> getAll(final Iterable<String> urls, int parallelism, int maxPerHost) {
+		if(urls == null) {
+			throw new IllegalArgumentException("URLs to be fetched cannot be null");
+		}
+		
+		Iterable<WebRequest> requests = new Iterable<WebRequest>() {
+			
+			@Override
+			public Iterator<WebRequest> iterator() {
+				final Iterator<String> iterator = urls.iterator();
+				return new Iterator<WebRequest>() {
+					
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+					
+					@Override
+					public WebRequest next() {
+						return getWebRequest(WebRequestMethod.GET, iterator.next());
+					}
+					
+				};
+			}
+			
+		};
+		
+		return new HttpBulkExecutor().parallelism(parallelism).maxPerHost(maxPerHost).executeAll(requests);
+	}
+	
 	/**
 	 * Change the default value of the connection timeout.
 	 * 
@@ -263,6 +465,33 @@ public interface HttpService {
 	 */
 	public void setSocketTimeout(int millis);
 	
+	/**
+	 * Compress the bodies of requests created or massaged by this service
+	 * with gzip, when they are at least the given number of bytes long. See
+	 * {@link WebRequest#compressBody(int)}. The bodies sent by
+	 * {@link #postJSON(String, Object)} and {@link #postXML(String, Object)}
+	 * have no length known upfront, and are always compressed when enabled.
+	 * Compression is disabled by default.
+	 * 
+	 * The default implementation does not support compression and throws
+	 * {@link UnsupportedOperationException}.
+	 * 
+	 * @param minimumSize
+	 *            the minimum size of bodies to compress, or <code>-1</code>
+	 *            to disable compression
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the size is less than <code>-1</code>
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the implementation does not support compression
+	 * 
+	 * @since 2.1.0
+	 */
+	public default void setRequestCompression(int minimumSize) {
+		throw new UnsupportedOperationException("Request compression is not supported by this service");
+	}
+	
 	/**
 	 * Download the file at the given location URL and store it as a temporary
 	 * file on disk. The temporary file is set to be deleted at the exit of the
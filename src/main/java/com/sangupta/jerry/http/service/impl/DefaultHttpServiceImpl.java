@@ -23,6 +23,7 @@ package com.sangupta.jerry.http.service.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.http.client.HttpClient;
@@ -31,15 +32,14 @@ import org.apache.http.entity.ContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.sangupta.jerry.constants.HttpMimeType;
+import com.sangupta.jerry.http.HttpBulkExecutor;
+import com.sangupta.jerry.http.JsonStreamIterator;
 import com.sangupta.jerry.http.WebRequest;
 import com.sangupta.jerry.http.WebRequestMethod;
 import com.sangupta.jerry.http.WebResponse;
 import com.sangupta.jerry.http.helper.HttpHelper;
 import com.sangupta.jerry.http.service.HttpService;
 import com.sangupta.jerry.util.DateUtils;
-import com.sangupta.jerry.util.GsonUtils;
-import com.sangupta.jerry.util.XStreamUtils;
 
 /**
  * Default implementation of {@link HttpService} that uses Apache {@link HttpClient}
@@ -77,6 +77,11 @@ public class DefaultHttpServiceImpl implements HttpService {
 	 */
 	private volatile boolean followRedirects = true;
 	
+	/**
+	 * Minimum size of request bodies to compress, <code>-1</code> to disable
+	 */
+	private volatile int requestCompression = -1;
+	
 	@Override
 	public String getTextResponse(String url) {
 		try {
@@ -99,6 +104,28 @@ public class DefaultHttpServiceImpl implements HttpService {
 		return null;
 	}
 
+	@Override
+	public <T> T getJSON(String url, Class<T> type) {
+		try {
+			return this.getWebRequest(WebRequestMethod.GET, url).execute().as(type);
+		} catch(Exception e) {
+			LOGGER.debug("Unable to fetch JSON response from url: {}", url, e);
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public <T> JsonStreamIterator<T> streamJSON(String url, Class<T> type) {
+		try {
+			return this.getWebRequest(WebRequestMethod.GET, url).execute().iterate(type);
+		} catch(Exception e) {
+			LOGGER.debug("Unable to stream JSON response from url: {}", url, e);
+		}
+		
+		return null;
+	}
+
 	@Override
 	public Map<String, String> getResponseHeaders(String url) {
 		try {
@@ -212,8 +239,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 		try {
 			WebRequest request = this.getWebRequest(WebRequestMethod.POST, url);
 			
-			String requestBody = XStreamUtils.getXStream(object.getClass()).toXML(object);
-			request.bodyString(requestBody, ContentType.create(HttpMimeType.XML));
+			request.bodyXml(object);
 			
 			return request.execute().webResponse();
 		} catch(IOException e) {
@@ -228,8 +254,7 @@ public class DefaultHttpServiceImpl implements HttpService {
 		try {
 			WebRequest request = this.getWebRequest(WebRequestMethod.POST, url);
 			
-			String requestBody = GsonUtils.getGson().toJson(object);
-			request.bodyString(requestBody, ContentType.create(HttpMimeType.JSON));
+			request.bodyJson(object);
 			
 			return request.execute().webResponse();
 		} catch(IOException e) {
@@ -245,12 +270,39 @@ public class DefaultHttpServiceImpl implements HttpService {
 			throw new IllegalArgumentException("Webrequest to be executed cannot be null");
 		}
 		
+		this.massage(request);
+		return this.plainExecuteSilently(request);
+	}
+	
+	/**
+	 * Apply the connection/socket timeouts, cookie policy and redirect
+	 * settings of this service to the given request.
+	 * 
+	 */
+	private void massage(WebRequest request) {
 		request.connectTimeout(connectionTimeout).socketTimeout(socketTimeout).cookiePolicy(cookiePolicy);
 		if(this.followRedirects) {
 			request.followRedirects();
 		}
 		
-		return this.plainExecuteSilently(request);
+		this.applyCompression(request);
+	}
+	
+	/**
+	 * Enable body compression on the given request, if configured and the
+	 * request may carry a body.
+	 * 
+	 */
+	private void applyCompression(WebRequest request) {
+		int minimumSize = this.requestCompression;
+		if(minimumSize < 0) {
+			return;
+		}
+		
+		WebRequestMethod method = request.getWebRequestMethod();
+		if(method == WebRequestMethod.POST || method == WebRequestMethod.PUT || method == WebRequestMethod.PATCH) {
+			request.compressBody(minimumSize);
+		}
 	}
 	
 	@Override
@@ -268,14 +320,107 @@ public class DefaultHttpServiceImpl implements HttpService {
 		return null;
 	}
 	
+	/**
+	 * The {@link Iterator} returned is also {@link java.io.Closeable}, closing
+	 * it before it is exhausted aborts the remaining requests.
+	 * 
+	 */
 	@Override
-	public WebRequest getWebRequest(WebRequestMethod method, String uri) {
-		WebRequest request = HttpHelper.getWebRequest(method, uri);
-		request.connectTimeout(connectionTimeout).socketTimeout(socketTimeout).cookiePolicy(cookiePolicy);
-		if(this.followRedirects) {
-			request.followRedirects();
+	public HttpBulkExecutor.ResultIterator executeAll(Iterable<WebRequest> requests, int parallelism) {
+		return this.executeAll(requests, parallelism, HttpBulkExecutor.DEFAULT_MAX_PER_HOST);
+	}
+	
+	/**
+	 * The {@link Iterator} returned is also {@link java.io.Closeable}, closing
+	 * it before it is exhausted aborts the remaining requests.
+	 * 
+	 */
+	@Override
+	public HttpBulkExecutor.ResultIterator executeAll(final Iterable<WebRequest> requests, int parallelism, int maxPerHost) {
+		if(requests == null) {
+			throw new IllegalArgumentException("Webrequests to be executed cannot be null");
+		}
+		
+		Iterable<WebRequest> massaged = new Iterable<WebRequest>() {
+			
+			@Override
+			public Iterator<WebRequest> iterator() {
+				final Iterator<WebRequest> iterator = requests.iterator();
+				return new Iterator<WebRequest>() {
+					
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+					
+					@Override
+					public WebRequest next() {
+						WebRequest request = iterator.next();
+						if(request != null) {
+							massage(request);
+						}
+						
+						return request;
+					}
+					
+				};
+			}
+			
+		};
+		
+		return bulkExecute(massaged, parallelism, maxPerHost);
+	}
+	
+	@Override
+	public HttpBulkExecutor.ResultIterator getAll(Iterable<String> urls) {
+		return this.getAll(urls, HttpBulkExecutor.DEFAULT_PARALLELISM, HttpBulkExecutor.DEFAULT_MAX_PER_HOST);
+	}
+	
+	@Override
+	public HttpBulkExecutor.ResultIterator getAll(final Iterable<String> urls, int parallelism, int maxPerHost) {
+		if(urls == null) {
+			throw new IllegalArgumentException("URLs to be fetched cannot be null");
 		}
 		
+		Iterable<WebRequest> requests = new Iterable<WebRequest>() {
+			
+			@Override
+			public Iterator<WebRequest> iterator() {
+				final Iterator<String> iterator = urls.iterator();
+				return new Iterator<WebRequest>() {
+					
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+					
+					@Override
+					public WebRequest next() {
+						// already massaged when created
+						return getWebRequest(WebRequestMethod.GET, iterator.next());
+					}
+					
+				};
+			}
+			
+		};
+		
+		return bulkExecute(requests, parallelism, maxPerHost);
+	}
+	
+	/**
+	 * Execute the given massaged requests over the default executor,
+	 * which all requests of this service are executed with.
+	 * 
+	 */
+	private static HttpBulkExecutor.ResultIterator bulkExecute(Iterable<WebRequest> requests, int parallelism, int maxPerHost) {
+		return new HttpBulkExecutor().parallelism(parallelism).maxPerHost(maxPerHost).executeAll(requests);
+	}
+	
+	@Override
+	public WebRequest getWebRequest(WebRequestMethod method, String uri) {
+		WebRequest request = HttpHelper.getWebRequest(method, uri);
+		this.massage(request);
 		return request;
 	}
 
@@ -289,14 +434,23 @@ public class DefaultHttpServiceImpl implements HttpService {
 		this.socketTimeout = millis;
 	}
 	
+	@Override
+	public void setRequestCompression(int minimumSize) {
+		if(minimumSize < -1) {
+			throw new IllegalArgumentException("Minimum size cannot be less than -1");
+		}
+		
+		this.requestCompression = minimumSize;
+	}
+	
 	@Override
 	public File downloadToTempFile(String url) throws IOException {
-		return HttpHelper.downloadToTempFile(url, this);
+		return HttpHelper.downloadToTempFile(this.getWebRequest(WebRequestMethod.GET, url));
 	}
 
 	@Override
 	public boolean downloadToFile(String url, File fileToDownloadIn) throws IOException {
-		return HttpHelper.downloadToFile(url, fileToDownloadIn, this);
+		return HttpHelper.downloadToFile(this.getWebRequest(WebRequestMethod.GET, url), fileToDownloadIn);
 	}
 
 }
@@ -0,0 +1,476 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.Configurable;
+import org.apache.http.client.methods.HttpExecutionAware;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.RedirectLocations;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpProcessor;
+
+/**
+ * A {@link CloseableHttpClient} that sends requests over HTTP/2 using the
+ * HTTP client of the JDK, which keeps a single connection per host and
+ * multiplexes all requests to that host over it.
+ * 
+ * Requests to <code>https</code> servers negotiate HTTP/2 using ALPN, and
+ * requests to plain-text servers on the loopback interface using the
+ * <code>h2c</code> upgrade; servers that do not agree are talked to over
+ * HTTP/1.1 by the JDK client. All other requests, as well as those that go
+ * through a proxy, are sent over the given HTTP/1.1 client so that they
+ * continue to use its connection pool.
+ * 
+ * Responses are returned as regular HttpClient responses, with the
+ * protocol version set to <code>HTTP/2.0</code> when served over HTTP/2.
+ * Cookies and authentication handled by the HTTP/1.1 client are not applied
+ * to requests sent over HTTP/2.
+ * 
+ * This class is compiled for Java 11 and is only ever loaded via
+ * {@link Http2Engine}.
+ * 
+ * @author sangupta
+ * 
+ * @since 2.1.0
+ */
+class JdkHttp2Client extends CloseableHttpClient {
+	
+	/**
+	 * The protocol version of responses served over HTTP/2
+	 */
+	static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+	
+	/**
+	 * Default connect timeout
+	 */
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+	
+	/**
+	 * Headers that are managed by the JDK client and cannot be set on a
+	 * request, in lower case
+	 */
+	private static final Set<String> RESTRICTED_HEADERS = new HashSet<>();
+	
+	static {
+		RESTRICTED_HEADERS.add("connection");
+		RESTRICTED_HEADERS.add("content-length");
+		RESTRICTED_HEADERS.add("expect");
+		RESTRICTED_HEADERS.add("host");
+		RESTRICTED_HEADERS.add("keep-alive");
+		RESTRICTED_HEADERS.add("proxy-connection");
+		RESTRICTED_HEADERS.add("te");
+		RESTRICTED_HEADERS.add("transfer-encoding");
+		RESTRICTED_HEADERS.add("upgrade");
+	}
+	
+	/**
+	 * The client used for requests not sent over HTTP/2
+	 */
+	private final CloseableHttpClient http1Client;
+	
+	/**
+	 * Sets the accepted encodings of requests, and decodes responses
+	 */
+	private final HttpProcessor contentDecoding;
+	
+	/**
+	 * The JDK client that holds the HTTP/2 connections
+	 */
+	private final java.net.http.HttpClient client;
+	
+	/**
+	 * Constructor
+	 * 
+	 * @param http1Client
+	 *            the client to use for requests not sent over HTTP/2
+	 * 
+	 * @param contentDecoding
+	 *            the processor that sets the accepted encodings of requests
+	 *            and decodes responses
+	 */
+	JdkHttp2Client(CloseableHttpClient http1Client, HttpProcessor contentDecoding) {
+		if(http1Client == null) {
+			throw new IllegalArgumentException("HTTP/1.1 client cannot be null");
+		}
+		
+		if(contentDecoding == null) {
+			throw new IllegalArgumentException("Content decoding processor cannot be null");
+		}
+		
+		this.http1Client = http1Client;
+		this.contentDecoding = contentDecoding;
+		this.client = java.net.http.HttpClient.newBuilder()
+				.version(Version.HTTP_2)
+				.followRedirects(Redirect.NORMAL)
+				.connectTimeout(CONNECT_TIMEOUT)
+				.build();
+	}
+	
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) throws IOException, ClientProtocolException {
+		RequestConfig config = null;
+		if(request instanceof Configurable) {
+			config = ((Configurable) request).getConfig();
+		}
+		
+		if(target == null || !isHttp2Target(target) || (config != null && config.getProxy() != null)) {
+			return this.http1Client.execute(target, request, context);
+		}
+		
+		HttpClientContext clientContext = HttpClientContext.adapt(context != null ? context : new HttpClientContext());
+		if(config != null) {
+			clientContext.setRequestConfig(config);
+		}
+		
+		// work on a copy of the request, the original may be retried
+		final URI uri = getURI(target, request);
+		final HttpRequestWrapper wrapper = HttpRequestWrapper.wrap(request, target);
+		try {
+			this.contentDecoding.process(wrapper, clientContext);
+		} catch(HttpException e) {
+			throw new ClientProtocolException(e);
+		}
+		
+		final java.net.http.HttpRequest jdkRequest = this.toJdkRequest(uri, wrapper, config);
+		final CompletableFuture<java.net.http.HttpResponse<InputStream>> future = this.client.sendAsync(jdkRequest, BodyHandlers.ofInputStream());
+		if(request instanceof HttpExecutionAware) {
+			((HttpExecutionAware) request).setCancellable(new Cancellable() {
+				
+				@Override
+				public boolean cancel() {
+					return future.cancel(true);
+				}
+				
+			});
+		}
+		
+		java.net.http.HttpResponse<InputStream> jdkResponse;
+		try {
+			jdkResponse = future.get();
+		} catch(InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for response from " + uri);
+		} catch(CancellationException e) {
+			throw new RequestAbortedException("Request aborted");
+		} catch(ExecutionException e) {
+			throw toIOException(e.getCause());
+		}
+		
+		Http2Response response = toResponse(jdkResponse);
+		clientContext.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, target);
+		clientContext.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+		clientContext.setAttribute(HttpCoreContext.HTTP_RESPONSE, response);
+		setRedirectLocations(jdkResponse, clientContext);
+		
+		try {
+			this.contentDecoding.process(response, clientContext);
+		} catch(HttpException e) {
+			response.close();
+			throw new ClientProtocolException(e);
+		}
+		
+		return response;
+	}
+	
+	/**
+	 * Check if requests to the given host may be sent over HTTP/2.
+	 * 
+	 * @param target
+	 *            the target host
+	 * 
+	 * @return <code>true</code> for <code>https</code> hosts and plain-text
+	 *         hosts on the loopback interface
+	 */
+	static boolean isHttp2Target(HttpHost target) {
+		String scheme = target.getSchemeName();
+		if("https".equalsIgnoreCase(scheme)) {
+			return true;
+		}
+		
+		if(!"http".equalsIgnoreCase(scheme)) {
+			return false;
+		}
+		
+		String host = target.getHostName().toLowerCase(Locale.ROOT);
+		return "localhost".equals(host) || host.startsWith("127.") || "::1".equals(host) || "[::1]".equals(host);
+	}
+	
+	private static URI getURI(HttpHost target, HttpRequest request) throws ClientProtocolException {
+		try {
+			URI uri;
+			if(request instanceof HttpUriRequest) {
+				uri = ((HttpUriRequest) request).getURI();
+			} else {
+				uri = URI.create(request.getRequestLine().getUri());
+			}
+			
+			if(uri.isAbsolute()) {
+				return uri;
+			}
+			
+			return URIUtils.rewriteURI(uri, target);
+		} catch(Exception e) {
+			throw new ClientProtocolException("Invalid request URI", e);
+		}
+	}
+	
+	private java.net.http.HttpRequest toJdkRequest(URI uri, HttpRequest request, RequestConfig config) throws IOException {
+		java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(uri);
+		
+		for(Header header : request.getAllHeaders()) {
+			if(!RESTRICTED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+				builder.header(header.getName(), header.getValue());
+			}
+		}
+		
+		BodyPublisher publisher = BodyPublishers.noBody();
+		if(request instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+			if(entity != null) {
+				publisher = toPublisher(entity);
+				
+				if(entity.getContentType() != null && !request.containsHeader(HttpHeaders.CONTENT_TYPE)) {
+					builder.header(HttpHeaders.CONTENT_TYPE, entity.getContentType().getValue());
+				}
+				
+				if(entity.getContentEncoding() != null && !request.containsHeader(HttpHeaders.CONTENT_ENCODING)) {
+					builder.header(HttpHeaders.CONTENT_ENCODING, entity.getContentEncoding().getValue());
+				}
+			}
+		}
+		
+		if(config != null && config.getSocketTimeout() > 0) {
+			builder.timeout(Duration.ofMillis(config.getSocketTimeout()));
+		}
+		
+		return builder.method(request.getRequestLine().getMethod(), publisher).build();
+	}
+	
+	/**
+	 * Create the publisher for the given entity. Repeatable entities are
+	 * streamed, as the JDK client may need to send the body more than once;
+	 * others are read fully once.
+	 * 
+	 */
+	private static BodyPublisher toPublisher(final HttpEntity entity) throws IOException {
+		if(!entity.isRepeatable()) {
+			byte[] bytes = readFully(entity);
+			return BodyPublishers.ofByteArray(bytes);
+		}
+		
+		BodyPublisher publisher = BodyPublishers.ofInputStream(new Supplier<InputStream>() {
+			
+			@Override
+			public InputStream get() {
+				try {
+					return entity.getContent();
+				} catch(IOException e) {
+					throw new IllegalStateException("Unable to read request body", e);
+				}
+			}
+			
+		});
+		
+		long length = entity.getContentLength();
+		if(length >= 0) {
+			return BodyPublishers.fromPublisher(publisher, length);
+		}
+		
+		return publisher;
+	}
+	
+	private static byte[] readFully(HttpEntity entity) throws IOException {
+		long length = entity.getContentLength();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(length > 0 && length < Integer.MAX_VALUE ? (int) length : 4096);
+		entity.writeTo(stream);
+		return stream.toByteArray();
+	}
+	
+	private static IOException toIOException(Throwable cause) {
+		if(cause instanceof HttpConnectTimeoutException) {
+			ConnectTimeoutException e = new ConnectTimeoutException(cause.getMessage());
+			e.initCause(cause);
+			return e;
+		}
+		
+		if(cause instanceof HttpTimeoutException) {
+			SocketTimeoutException e = new SocketTimeoutException(cause.getMessage());
+			e.initCause(cause);
+			return e;
+		}
+		
+		if(cause instanceof IOException) {
+			return (IOException) cause;
+		}
+		
+		if(cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		
+		return new ClientProtocolException(cause);
+	}
+	
+	private static Http2Response toResponse(java.net.http.HttpResponse<InputStream> jdkResponse) {
+		ProtocolVersion version = jdkResponse.version() == Version.HTTP_2 ? HTTP_2 : HttpVersion.HTTP_1_1;
+		int statusCode = jdkResponse.statusCode();
+		String reason = EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH);
+		
+		Http2Response response = new Http2Response(version, statusCode, reason, jdkResponse.body());
+		for(Map.Entry<String, List<String>> entry : jdkResponse.headers().map().entrySet()) {
+			String name = entry.getKey();
+			if(name.startsWith(":")) {
+				// pseudo-headers of HTTP/2
+				continue;
+			}
+			
+			for(String value : entry.getValue()) {
+				response.addHeader(name, value);
+			}
+		}
+		
+		BasicHttpEntity entity = new BasicHttpEntity();
+		entity.setContent(jdkResponse.body());
+		entity.setContentLength(jdkResponse.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1));
+		entity.setContentType(response.getFirstHeader(HttpHeaders.CONTENT_TYPE));
+		entity.setContentEncoding(response.getFirstHeader(HttpHeaders.CONTENT_ENCODING));
+		response.setEntity(entity);
+		
+		return response;
+	}
+	
+	/**
+	 * Record the redirects followed by the JDK client the same way the
+	 * HTTP/1.1 client does.
+	 * 
+	 */
+	private static void setRedirectLocations(java.net.http.HttpResponse<InputStream> jdkResponse, HttpClientContext context) {
+		Optional<java.net.http.HttpResponse<InputStream>> previous = jdkResponse.previousResponse();
+		if(!previous.isPresent()) {
+			return;
+		}
+		
+		LinkedList<URI> locations = new LinkedList<>();
+		java.net.http.HttpResponse<InputStream> current = jdkResponse;
+		while(previous.isPresent()) {
+			locations.addFirst(current.uri());
+			current = previous.get();
+			previous = current.previousResponse();
+		}
+		
+		RedirectLocations redirectLocations = new RedirectLocations();
+		redirectLocations.addAll(locations);
+		context.setAttribute(HttpClientContext.REDIRECT_LOCATIONS, redirectLocations);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		this.http1Client.close();
+	}
+	
+	@Override
+	@Deprecated
+	public HttpParams getParams() {
+		return this.http1Client.getParams();
+	}
+	
+	@Override
+	@Deprecated
+	public ClientConnectionManager getConnectionManager() {
+		return this.http1Client.getConnectionManager();
+	}
+	
+	/**
+	 * A response received from the JDK client.
+	 * 
+	 */
+	private static final class Http2Response extends BasicHttpResponse implements CloseableHttpResponse {
+		
+		private final InputStream body;
+		
+		Http2Response(ProtocolVersion version, int statusCode, String reason, InputStream body) {
+			super(new BasicStatusLine(version, statusCode, reason));
+			this.body = body;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			// closing the body before it is read resets the stream
+			this.body.close();
+		}
+		
+	}
+	
+}
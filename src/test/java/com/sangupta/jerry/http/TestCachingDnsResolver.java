@@ -0,0 +1,285 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.conn.DnsResolver;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CachingDnsResolver}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestCachingDnsResolver {
+	
+	@Test
+	public void testCaching() throws UnknownHostException {
+		CountingResolver delegate = new CountingResolver(address(1));
+		CachingDnsResolver resolver = new CachingDnsResolver(delegate);
+		
+		for(int index = 0; index < 10; index++) {
+			Assert.assertEquals(address(1), resolver.resolve("Example.COM")[0]);
+			Assert.assertEquals(address(1), resolver.resolve("example.com")[0]);
+		}
+		
+		Assert.assertEquals(1, delegate.calls.get());
+		Assert.assertEquals(1, resolver.getMissCount());
+		Assert.assertEquals(19, resolver.getHitCount());
+		Assert.assertEquals(1, resolver.size());
+		
+		resolver.invalidate("EXAMPLE.com");
+		resolver.resolve("example.com");
+		Assert.assertEquals(2, delegate.calls.get());
+	}
+	
+	@Test
+	public void testExpiry() throws Exception {
+		CountingResolver delegate = new CountingResolver(address(1));
+		CachingDnsResolver resolver = new CachingDnsResolver(delegate).ttl(50, TimeUnit.MILLISECONDS).staleWhileRefresh(0, TimeUnit.MILLISECONDS);
+		
+		resolver.resolve("example.com");
+		resolver.resolve("example.com");
+		Assert.assertEquals(1, delegate.calls.get());
+		
+		Thread.sleep(100);
+		resolver.resolve("example.com");
+		Assert.assertEquals(2, delegate.calls.get());
+		Assert.assertEquals(0, resolver.getRefreshCount());
+	}
+	
+	@Test
+	public void testStaleWhileRefresh() throws Exception {
+		CountingResolver delegate = new CountingResolver(address(1));
+		CachingDnsResolver resolver = new CachingDnsResolver(delegate).ttl(50, TimeUnit.MILLISECONDS);
+		
+		resolver.resolve("example.com");
+		Thread.sleep(100);
+		
+		// the refresh blocks, but stale addresses are served meanwhile
+		delegate.block = new CountDownLatch(1);
+		delegate.addresses = new InetAddress[] { address(2) };
+		for(int index = 0; index < 5; index++) {
+			Assert.assertEquals(address(1), resolver.resolve("example.com")[0]);
+		}
+		
+		Assert.assertEquals(1, resolver.getRefreshCount());
+		delegate.block.countDown();
+		
+		long start = System.currentTimeMillis();
+		while(resolver.resolve("example.com")[0].equals(address(1))) {
+			Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals(address(2), resolver.resolve("example.com")[0]);
+		Assert.assertEquals(2, delegate.calls.get());
+		Assert.assertEquals(1, resolver.getMissCount());
+	}
+	
+	@Test
+	public void testStaleOnRefreshFailure() throws Exception {
+		CountingResolver delegate = new CountingResolver(address(1));
+		CachingDnsResolver resolver = new CachingDnsResolver(delegate).ttl(50, TimeUnit.MILLISECONDS);
+		
+		resolver.resolve("example.com");
+		Thread.sleep(100);
+		
+		delegate.addresses = null;
+		resolver.resolve("example.com");
+		
+		long start = System.currentTimeMillis();
+		while(delegate.calls.get() < 2) {
+			Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals(address(1), resolver.resolve("example.com")[0]);
+	}
+	
+	@Test
+	public void testNegativeCaching() throws Exception {
+		CountingResolver delegate = new CountingResolver((InetAddress[]) null);
+		CachingDnsResolver resolver = new CachingDnsResolver(delegate).negativeTtl(50, TimeUnit.MILLISECONDS);
+		
+		for(int index = 0; index < 5; index++) {
+			try {
+				resolver.resolve("missing.example.com");
+				Assert.assertTrue(false);
+			} catch(UnknownHostException e) {
+				Assert.assertTrue(true);
+			}
+		}
+		
+		Assert.assertEquals(1, delegate.calls.get());
+		
+		Thread.sleep(100);
+		delegate.addresses = new InetAddress[] { address(1) };
+		Assert.assertEquals(address(1), resolver.resolve("missing.example.com")[0]);
+		Assert.assertEquals(2, delegate.calls.get());
+		
+		// disabled negative caching
+		resolver = new CachingDnsResolver(delegate).negativeTtl(0, TimeUnit.MILLISECONDS);
+		delegate.addresses = null;
+		for(int index = 0; index < 3; index++) {
+			try {
+				resolver.resolve("missing.example.com");
+				Assert.assertTrue(false);
+			} catch(UnknownHostException e) {
+				Assert.assertTrue(true);
+			}
+		}
+		
+		Assert.assertEquals(5, delegate.calls.get());
+		Assert.assertEquals(0, resolver.size());
+	}
+	
+	@Test
+	public void testRotation() throws UnknownHostException {
+		CachingDnsResolver resolver = new CachingDnsResolver(new CountingResolver(address(1), address(2), address(3)));
+		
+		Set<InetAddress> firsts = new HashSet<>();
+		for(int index = 0; index < 3; index++) {
+			InetAddress[] addresses = resolver.resolve("example.com");
+			Assert.assertEquals(3, addresses.length);
+			Assert.assertEquals(3, new HashSet<>(java.util.Arrays.asList(addresses)).size());
+			firsts.add(addresses[0]);
+		}
+		
+		Assert.assertEquals(3, firsts.size());
+	}
+	
+	@Test
+	public void testMaxEntries() throws UnknownHostException {
+		CachingDnsResolver resolver = new CachingDnsResolver(new CountingResolver(address(1))).maxEntries(2);
+		resolver.resolve("a.example.com");
+		resolver.resolve("b.example.com");
+		resolver.resolve("c.example.com");
+		Assert.assertEquals(2, resolver.size());
+		
+		resolver.invalidateAll();
+		Assert.assertEquals(0, resolver.size());
+	}
+	
+	@Test
+	public void testExecutor() throws IOException {
+		CachingDnsResolver resolver = new CachingDnsResolver();
+		HttpExecutor executor = HttpExecutor.builder().dnsResolver(resolver).build();
+		try {
+			executor.execute(WebRequest.get("http://localhost:1/never"));
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		} finally {
+			executor.shutdown();
+		}
+		
+		Assert.assertEquals(1, resolver.size());
+		Assert.assertEquals(1, resolver.getMissCount());
+	}
+	
+	@Test
+	public void testInvalidArguments() throws UnknownHostException {
+		try {
+			new CachingDnsResolver(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new CachingDnsResolver().ttl(-1, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new CachingDnsResolver().negativeTtl(1, null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new CachingDnsResolver().maxEntries(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new CachingDnsResolver().resolve(null);
+			Assert.assertTrue(false);
+		} catch(UnknownHostException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	private static InetAddress address(int last) throws UnknownHostException {
+		return InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte) last });
+	}
+	
+	private static class CountingResolver implements DnsResolver {
+		
+		private final AtomicInteger calls = new AtomicInteger();
+		
+		private volatile InetAddress[] addresses;
+		
+		private volatile CountDownLatch block;
+		
+		CountingResolver(InetAddress... addresses) {
+			this.addresses = addresses;
+		}
+		
+		@Override
+		public InetAddress[] resolve(String host) throws UnknownHostException {
+			this.calls.incrementAndGet();
+			if(this.block != null) {
+				try {
+					this.block.await();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			
+			if(this.addresses == null) {
+				throw new UnknownHostException(host);
+			}
+			
+			return this.addresses;
+		}
+		
+	}
+	
+}
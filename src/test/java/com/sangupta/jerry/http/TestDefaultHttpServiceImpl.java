@@ -23,6 +23,7 @@ package com.sangupta.jerry.http;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
@@ -30,6 +31,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -271,6 +273,36 @@ public class TestDefaultHttpServiceImpl {
 		Assert.assertEquals(RANDOM_STRING, result.getHeaders().get(RANDOM_STRING));
 	}
 	
+	@Test
+	public void testPostJSONCompressed() {
+		handler.setResponse(RESPONSE_CODE, RANDOM_STRING);
+		handler.checkBody(GsonUtils.getGson().toJson(RANDOM_STRING));
+		handler.checkMethod(WebRequestMethod.POST);
+		
+		HttpService compressingService = new DefaultHttpServiceImpl();
+		compressingService.setRequestCompression(0);
+		
+		WebResponse result = compressingService.postJSON(LOCAL_URL, RANDOM_STRING);
+		Assert.assertNotNull(result);
+		Assert.assertEquals(RANDOM_STRING, result.getContent());
+		Assert.assertEquals("gzip", handler.getContentEncoding());
+		
+		// bodies below the threshold are sent as is
+		compressingService.setRequestCompression(1024 * 1024);
+		handler.checkBody(RANDOM_STRING);
+		WebRequest request = compressingService.getWebRequest(WebRequestMethod.POST, LOCAL_URL).bodyString(RANDOM_STRING, HttpMimeType.TEXT_PLAIN);
+		result = compressingService.executeSilently(request);
+		Assert.assertEquals(RANDOM_STRING, result.getContent());
+		Assert.assertNull(handler.getContentEncoding());
+		
+		try {
+			compressingService.setRequestCompression(-2);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
 	@Test
 	public void testExecuteSilently() {
 		handler.setResponse(RESPONSE_CODE, RANDOM_STRING);
@@ -331,6 +363,8 @@ public class TestDefaultHttpServiceImpl {
 		private String bodyToCheck;
 		
 		private WebRequestMethod method;
+		
+		private String contentEncoding;
         
 		@Override
         public void handle(HttpExchange httpExchange) throws IOException {
@@ -355,8 +389,14 @@ public class TestDefaultHttpServiceImpl {
             	return;
             }
             
+            this.contentEncoding = httpExchange.getRequestHeaders().getFirst(HttpHeaderName.CONTENT_ENCODING);
             if(this.bodyToCheck != null) {
-            	String myBody = IOUtils.toString(httpExchange.getRequestBody());
+            	InputStream stream = httpExchange.getRequestBody();
+            	if("gzip".equalsIgnoreCase(this.contentEncoding)) {
+            		stream = new GZIPInputStream(stream);
+            	}
+            	
+            	String myBody = IOUtils.toString(stream);
             	if(!this.bodyToCheck.equals(myBody)) {
             		httpExchange.sendResponseHeaders(-1, 0);
             	}
@@ -373,6 +413,10 @@ public class TestDefaultHttpServiceImpl {
 			this.method = method;
 		}
 
+		public String getContentEncoding() {
+			return this.contentEncoding;
+		}
+
 		public void checkBody(String body) {
 			this.bodyToCheck = body;
 		}
@@ -392,6 +436,7 @@ public class TestDefaultHttpServiceImpl {
 			this.headers.clear();
 			this.bodyToCheck = null;
 			this.method = null;
+			this.contentEncoding = null;
 		}
 		
 		private void addHeader(HttpExchange httpExchange, String name, String value) {
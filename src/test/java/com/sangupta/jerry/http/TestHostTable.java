@@ -0,0 +1,108 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import org.apache.http.HttpHost;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link HostTable}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestHostTable {
+	
+	@Test
+	public void testEviction() throws InterruptedException {
+		HostTable<TestEntry> table = new HostTable<TestEntry>(16);
+		
+		TestEntry pinned = new TestEntry(false);
+		table.putIfAbsent(host(0), pinned);
+		for(int index = 1; index < 16; index++) {
+			table.putIfAbsent(host(index), new TestEntry(true));
+		}
+		
+		// recently used hosts are kept
+		Thread.sleep(5);
+		TestEntry used = table.get(host(1));
+		Assert.assertNotNull(used);
+		
+		// past the bound, the least recently used evictable hosts go
+		Assert.assertEquals(16, table.size());
+		table.putIfAbsent(host(16), new TestEntry(true));
+		Assert.assertEquals(14, table.size());
+		Assert.assertSame(pinned, table.peek(host(0)));
+		Assert.assertSame(used, table.peek(host(1)));
+		Assert.assertNotNull(table.peek(host(16)));
+		for(int index = 2; index <= 4; index++) {
+			Assert.assertNull(table.peek(host(index)));
+		}
+		
+		Assert.assertNotNull(table.peek(host(5)));
+		
+		// an existing entry is returned as is
+		Assert.assertSame(pinned, table.putIfAbsent(host(0), new TestEntry(true)));
+		
+		table.clear();
+		Assert.assertEquals(0, table.size());
+		
+		try {
+			new HostTable<TestEntry>(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testMetricsBounded() {
+		HttpMetrics metrics = new HttpMetrics(null);
+		for(int index = 0; index < 1000; index++) {
+			metrics.route(host(index)).recordFailure();
+		}
+		
+		Assert.assertTrue(metrics.snapshot().getRoutes().size() <= HostTable.DEFAULT_MAX_HOSTS);
+	}
+	
+	private static HttpHost host(int index) {
+		return new HttpHost("host" + index + ".example.com", 80, "http");
+	}
+	
+	private static class TestEntry extends HostTable.Entry {
+		
+		private final boolean evictable;
+		
+		TestEntry(boolean evictable) {
+			this.evictable = evictable;
+		}
+		
+		@Override
+		boolean isEvictable() {
+			return this.evictable;
+		}
+		
+	}
+
+}
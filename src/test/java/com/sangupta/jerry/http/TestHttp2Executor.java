@@ -0,0 +1,212 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpExecutor} talking {@link HttpProtocol#HTTP_2}.
+ * The test server only speaks HTTP/1.1, so these check the <code>h2c</code>
+ * upgrade offered on loopback and the fall back to HTTP/1.1.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttp2Executor {
+	
+	private static HttpServer server;
+	
+	private static final String LOCAL_URL = "http://localhost:8080/";
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/echo", new EchoHandler());
+		server.createContext("/redirect", new RedirectHandler());
+		server.setExecutor(Executors.newFixedThreadPool(8));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Test
+	public void testProtocol() {
+		Assert.assertEquals(HttpProtocol.HTTP_1_1, HttpExecutor.DEFAULT.getProtocol());
+		
+		HttpExecutor executor = HttpExecutor.builder().protocol(HttpProtocol.HTTP_2).build();
+		try {
+			Assert.assertEquals(Http2Engine.isSupported() ? HttpProtocol.HTTP_2 : HttpProtocol.HTTP_1_1, executor.getProtocol());
+		} finally {
+			executor.shutdown();
+		}
+		
+		// caching stays on HTTP/1.1
+		executor = HttpExecutor.builder().protocol(HttpProtocol.HTTP_2).memoryCache(10, 1024).build();
+		try {
+			Assert.assertEquals(HttpProtocol.HTTP_1_1, executor.getProtocol());
+		} finally {
+			executor.shutdown();
+		}
+		
+		try {
+			HttpExecutor.builder().protocol(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testUpgradeFallback() throws Exception {
+		Assume.assumeTrue(Http2Engine.isSupported());
+		
+		HttpExecutor executor = HttpExecutor.builder().protocol(HttpProtocol.HTTP_2).build();
+		try {
+			WebResponse response = executor.execute(WebRequest.get(LOCAL_URL + "echo").addHeader("X-Name", "jerry")).webResponse();
+			Assert.assertEquals(200, response.getResponseCode());
+			Assert.assertEquals("GET:", response.getContent());
+			
+			// header names are lower case in HTTP/2, lookups ignore case
+			Assert.assertEquals("jerry", response.getHeaders().get("X-Name"));
+			Assert.assertEquals("jerry", response.getHeader("x-name"));
+			
+			// h2c was offered, and the server answered over HTTP/1.1
+			Assert.assertEquals("h2c", response.getHeaders().get("x-upgrade"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testPost() throws Exception {
+		Assume.assumeTrue(Http2Engine.isSupported());
+		
+		HttpExecutor executor = HttpExecutor.builder().protocol(HttpProtocol.HTTP_2).build();
+		try {
+			WebResponse response = executor.execute(WebRequest.post(LOCAL_URL + "echo").bodyString("hello world", "text/plain")).webResponse();
+			Assert.assertEquals(200, response.getResponseCode());
+			Assert.assertEquals("POST:hello world", response.getContent());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testRedirect() throws Exception {
+		Assume.assumeTrue(Http2Engine.isSupported());
+		
+		HttpExecutor executor = HttpExecutor.builder().protocol(HttpProtocol.HTTP_2).build();
+		try {
+			WebResponse response = executor.execute(WebRequest.get(LOCAL_URL + "redirect")).webResponse();
+			Assert.assertEquals("GET:", response.getContent());
+			Assert.assertEquals(1, response.getRedirectChain().size());
+			Assert.assertEquals(LOCAL_URL + "echo", response.getRedirectChain().get(0).toString());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		Assume.assumeTrue(Http2Engine.isSupported());
+		
+		HttpExecutor executor = HttpExecutor.builder().protocol(HttpProtocol.HTTP_2).build();
+		try {
+			List<Future<WebResponse>> futures = new ArrayList<>();
+			for(int index = 0; index < 20; index++) {
+				futures.add(executor.submit(WebRequest.post(LOCAL_URL + "echo").bodyString("request-" + index, "text/plain")));
+			}
+			
+			for(int index = 0; index < 20; index++) {
+				Assert.assertEquals("POST:request-" + index, futures.get(index).get(10, TimeUnit.SECONDS).getContent());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private static class EchoHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			InputStream stream = exchange.getRequestBody();
+			byte[] buffer = new byte[1024];
+			int read;
+			while((read = stream.read(buffer)) != -1) {
+				body.write(buffer, 0, read);
+			}
+			
+			String name = exchange.getRequestHeaders().getFirst("X-Name");
+			if(name != null) {
+				exchange.getResponseHeaders().add("X-Name", name);
+			}
+			
+			String upgrade = exchange.getRequestHeaders().getFirst("Upgrade");
+			if(upgrade != null) {
+				exchange.getResponseHeaders().add("X-Upgrade", upgrade);
+			}
+			
+			byte[] bytes = (exchange.getRequestMethod() + ":" + body.toString("UTF-8")).getBytes("UTF-8");
+			exchange.sendResponseHeaders(200, bytes.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(bytes);
+			os.close();
+		}
+		
+	}
+	
+	private static class RedirectHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			exchange.getResponseHeaders().add("Location", LOCAL_URL + "echo");
+			exchange.sendResponseHeaders(302, -1);
+			exchange.close();
+		}
+		
+	}
+	
+}
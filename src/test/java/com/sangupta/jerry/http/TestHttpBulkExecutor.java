@@ -0,0 +1,332 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.service.impl.DefaultHttpServiceImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpBulkExecutor}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpBulkExecutor {
+	
+	private static HttpServer server;
+	
+	private static final ConcurrentMap<String, AtomicInteger> ACTIVE = new ConcurrentHashMap<>();
+	
+	private static final ConcurrentMap<String, AtomicInteger> MAX_ACTIVE = new ConcurrentHashMap<>();
+	
+	private static final AtomicInteger TOTAL_ACTIVE = new AtomicInteger();
+	
+	private static final AtomicInteger MAX_TOTAL_ACTIVE = new AtomicInteger();
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/slow", new SlowHandler(false));
+		server.createContext("/tracked", new SlowHandler(true));
+		server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(32));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Before
+	public void before() {
+		ACTIVE.clear();
+		MAX_ACTIVE.clear();
+		TOTAL_ACTIVE.set(0);
+		MAX_TOTAL_ACTIVE.set(0);
+	}
+	
+	@Test
+	public void testExecuteAll() {
+		List<WebRequest> requests = new ArrayList<>();
+		for(int index = 0; index < 40; index++) {
+			String host = index % 4 == 0 ? "127.0.0.1" : "localhost";
+			requests.add(WebRequest.get("http://" + host + ":8080/tracked?id=" + index + "&sleep=20"));
+		}
+		
+		HttpBulkExecutor.ResultIterator iterator = new HttpBulkExecutor().parallelism(8).maxPerHost(3).executeAll(requests);
+		
+		BitSet seen = new BitSet();
+		while(iterator.hasNext()) {
+			HttpBulkExecutor.Result result = iterator.next();
+			Assert.assertTrue(result.isSuccess());
+			Assert.assertNull(result.getError());
+			Assert.assertSame(requests.get(result.getIndex()), result.getRequest());
+			Assert.assertEquals(String.valueOf(result.getIndex()), result.getResponse().getContent());
+			
+			Assert.assertFalse(seen.get(result.getIndex()));
+			seen.set(result.getIndex());
+		}
+		
+		Assert.assertEquals(40, seen.cardinality());
+		Assert.assertTrue(MAX_ACTIVE.get("localhost").get() <= 3);
+		Assert.assertTrue(MAX_ACTIVE.get("127.0.0.1").get() <= 3);
+		Assert.assertTrue(MAX_TOTAL_ACTIVE.get() > 1);
+		Assert.assertTrue(MAX_TOTAL_ACTIVE.get() <= 6);
+	}
+	
+	@Test
+	public void testExecuteAllOnVirtualThreads() {
+		List<WebRequest> requests = new ArrayList<>();
+		for(int index = 0; index < 40; index++) {
+			String host = index % 2 == 0 ? "127.0.0.1" : "localhost";
+			requests.add(WebRequest.get("http://" + host + ":8080/tracked?id=" + index + "&sleep=20"));
+		}
+		
+		HttpBulkExecutor.ResultIterator iterator = new HttpBulkExecutor().parallelism(4).maxPerHost(3).virtualThreads(true).executeAll(requests);
+		
+		BitSet seen = new BitSet();
+		while(iterator.hasNext()) {
+			HttpBulkExecutor.Result result = iterator.next();
+			Assert.assertTrue(result.isSuccess());
+			Assert.assertEquals(String.valueOf(result.getIndex()), result.getResponse().getContent());
+			seen.set(result.getIndex());
+		}
+		
+		Assert.assertEquals(40, seen.cardinality());
+		Assert.assertTrue(MAX_ACTIVE.get("localhost").get() <= 3);
+		Assert.assertTrue(MAX_ACTIVE.get("127.0.0.1").get() <= 3);
+		Assert.assertTrue(MAX_TOTAL_ACTIVE.get() > 1);
+		Assert.assertTrue(MAX_TOTAL_ACTIVE.get() <= 4);
+	}
+	
+	@Test
+	public void testCompletionOrder() {
+		List<WebRequest> requests = new ArrayList<>();
+		requests.add(WebRequest.get("http://localhost:8080/slow?id=0&sleep=1000"));
+		for(int index = 1; index < 5; index++) {
+			requests.add(WebRequest.get("http://localhost:8080/slow?id=" + index + "&sleep=0"));
+		}
+		
+		HttpBulkExecutor.ResultIterator iterator = new HttpBulkExecutor().parallelism(4).executeAll(requests);
+		
+		List<Integer> order = new ArrayList<>();
+		while(iterator.hasNext()) {
+			order.add(iterator.next().getIndex());
+		}
+		
+		Assert.assertEquals(5, order.size());
+		Assert.assertEquals(Integer.valueOf(0), order.get(4));
+	}
+	
+	@Test
+	public void testFailedRequest() {
+		List<WebRequest> requests = new ArrayList<>();
+		requests.add(WebRequest.get("http://localhost:8080/slow?id=0&sleep=0"));
+		requests.add(WebRequest.get("http://localhost:1/never"));
+		
+		HttpBulkExecutor.ResultIterator iterator = new HttpBulkExecutor().executeAll(requests);
+		
+		int failed = 0;
+		int succeeded = 0;
+		while(iterator.hasNext()) {
+			HttpBulkExecutor.Result result = iterator.next();
+			if(result.isSuccess()) {
+				Assert.assertEquals(0, result.getIndex());
+				succeeded++;
+			} else {
+				Assert.assertEquals(1, result.getIndex());
+				Assert.assertNotNull(result.getError());
+				failed++;
+			}
+		}
+		
+		Assert.assertEquals(1, succeeded);
+		Assert.assertEquals(1, failed);
+	}
+	
+	@Test
+	public void testClose() {
+		List<WebRequest> requests = new ArrayList<>();
+		requests.add(WebRequest.get("http://localhost:8080/slow?id=0&sleep=0"));
+		for(int index = 1; index < 20; index++) {
+			requests.add(WebRequest.get("http://localhost:8080/slow?id=" + index + "&sleep=2000"));
+		}
+		
+		HttpBulkExecutor.ResultIterator iterator = new HttpBulkExecutor().parallelism(2).executeAll(requests);
+		
+		Assert.assertTrue(iterator.hasNext());
+		Assert.assertEquals(0, iterator.next().getIndex());
+		
+		long start = System.currentTimeMillis();
+		iterator.close();
+		Assert.assertFalse(iterator.hasNext());
+		Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+	}
+	
+	@Test
+	public void testGetAll() {
+		List<String> urls = new ArrayList<>();
+		for(int index = 0; index < 10; index++) {
+			urls.add("http://localhost:8080/slow?id=" + index + "&sleep=0");
+		}
+		
+		BitSet seen = new BitSet();
+		java.util.Iterator<HttpBulkExecutor.Result> iterator = new DefaultHttpServiceImpl().getAll(urls);
+		while(iterator.hasNext()) {
+			HttpBulkExecutor.Result result = iterator.next();
+			Assert.assertEquals(urls.get(result.getIndex()), result.getRequest().getURI().toString());
+			Assert.assertEquals(String.valueOf(result.getIndex()), result.getResponse().getContent());
+			seen.set(result.getIndex());
+		}
+		
+		Assert.assertEquals(10, seen.cardinality());
+		
+		// capped per host
+		urls.clear();
+		for(int index = 0; index < 20; index++) {
+			urls.add("http://localhost:8080/tracked?id=" + index + "&sleep=20");
+		}
+		
+		seen.clear();
+		iterator = new DefaultHttpServiceImpl().getAll(urls, 8, 2);
+		while(iterator.hasNext()) {
+			HttpBulkExecutor.Result result = iterator.next();
+			Assert.assertEquals(String.valueOf(result.getIndex()), result.getResponse().getContent());
+			seen.set(result.getIndex());
+		}
+		
+		Assert.assertEquals(20, seen.cardinality());
+		Assert.assertTrue(MAX_ACTIVE.get("localhost").get() <= 2);
+		
+		try {
+			new DefaultHttpServiceImpl().getAll(urls, 8, 0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new HttpBulkExecutor(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpBulkExecutor().parallelism(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpBulkExecutor().maxPerHost(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpBulkExecutor().executeAll(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	private static class SlowHandler implements HttpHandler {
+		
+		/**
+		 * Whether to track the concurrency of requests
+		 */
+		private final boolean tracked;
+		
+		SlowHandler(boolean tracked) {
+			this.tracked = tracked;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			String host = exchange.getRequestHeaders().getFirst("Host");
+			host = host.substring(0, host.indexOf(':'));
+			
+			if(this.tracked) {
+				int active = ACTIVE.computeIfAbsent(host, key -> new AtomicInteger()).incrementAndGet();
+				MAX_ACTIVE.computeIfAbsent(host, key -> new AtomicInteger()).accumulateAndGet(active, Math::max);
+				MAX_TOTAL_ACTIVE.accumulateAndGet(TOTAL_ACTIVE.incrementAndGet(), Math::max);
+			}
+			
+			String id = null;
+			long sleep = 0;
+			for(String param : exchange.getRequestURI().getQuery().split("&")) {
+				String[] tokens = param.split("=");
+				if("id".equals(tokens[0])) {
+					id = tokens[1];
+				} else if("sleep".equals(tokens[0])) {
+					sleep = Long.parseLong(tokens[1]);
+				}
+			}
+			
+			try {
+				Thread.sleep(sleep);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			if(this.tracked) {
+				ACTIVE.get(host).decrementAndGet();
+				TOTAL_ACTIVE.decrementAndGet();
+			}
+			
+			byte[] body = id.getBytes();
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(body);
+			os.close();
+		}
+		
+	}
+
+}
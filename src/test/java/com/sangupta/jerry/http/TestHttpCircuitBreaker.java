@@ -0,0 +1,280 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHost;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpCircuitBreaker}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpCircuitBreaker {
+	
+	private static final String URL = "http://localhost:8080/breaker";
+	
+	private static HttpServer server;
+	
+	private static final AtomicInteger REQUESTS = new AtomicInteger();
+	
+	private static volatile int status;
+	
+	private static volatile long sleep;
+	
+	private HttpCircuitBreaker breaker;
+	
+	private HttpExecutor executor;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/breaker", new StatusHandler());
+		server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(4));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Before
+	public void before() {
+		REQUESTS.set(0);
+		status = 200;
+		sleep = 0;
+		
+		this.breaker = new HttpCircuitBreaker().slidingWindow(4, 4).openDuration(200, TimeUnit.MILLISECONDS).halfOpenCalls(2);
+		this.executor = HttpExecutor.builder().build().circuitBreaker(this.breaker);
+	}
+	
+	@After
+	public void after() {
+		this.executor.shutdown();
+	}
+	
+	@Test
+	public void testOpenAndRecover() throws Exception {
+		Assert.assertEquals(HttpCircuitBreaker.State.CLOSED, this.breaker.getState(URL));
+		
+		status = 500;
+		for(int index = 0; index < 4; index++) {
+			Assert.assertEquals(500, this.executor.execute(WebRequest.get(URL)).webResponse().getResponseCode());
+		}
+		
+		Assert.assertEquals(HttpCircuitBreaker.State.OPEN, this.breaker.getState(URL));
+		Assert.assertEquals(HttpCircuitBreaker.State.OPEN, this.breaker.getState(new HttpHost("localhost", 8080)));
+		Assert.assertEquals(HttpCircuitBreaker.State.OPEN, this.breaker.getStates().get("http://localhost:8080"));
+		
+		try {
+			this.executor.execute(WebRequest.get(URL));
+			Assert.assertTrue(false);
+		} catch(HttpCircuitOpenException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertEquals(4, REQUESTS.get());
+		Assert.assertEquals(1, this.breaker.getRejections());
+		
+		// trial calls once the open duration is over
+		Thread.sleep(250);
+		Assert.assertEquals(HttpCircuitBreaker.State.HALF_OPEN, this.breaker.getState(URL));
+		
+		status = 200;
+		Assert.assertEquals(200, this.executor.execute(WebRequest.get(URL)).webResponse().getResponseCode());
+		Assert.assertEquals(HttpCircuitBreaker.State.HALF_OPEN, this.breaker.getState(URL));
+		Assert.assertEquals(200, this.executor.execute(WebRequest.get(URL)).webResponse().getResponseCode());
+		Assert.assertEquals(HttpCircuitBreaker.State.CLOSED, this.breaker.getState(URL));
+	}
+	
+	@Test
+	public void testHalfOpenFailureReopens() throws Exception {
+		status = 500;
+		for(int index = 0; index < 4; index++) {
+			this.executor.execute(WebRequest.get(URL)).webResponse();
+		}
+		
+		Thread.sleep(250);
+		
+		this.executor.execute(WebRequest.get(URL)).webResponse();
+		this.executor.execute(WebRequest.get(URL)).webResponse();
+		Assert.assertEquals(HttpCircuitBreaker.State.OPEN, this.breaker.getState(URL));
+	}
+	
+	@Test
+	public void testFailureRateBelowThreshold() throws IOException {
+		for(int index = 0; index < 20; index++) {
+			status = index % 4 == 0 ? 500 : 200;
+			this.executor.execute(WebRequest.get(URL)).webResponse();
+		}
+		
+		Assert.assertEquals(HttpCircuitBreaker.State.CLOSED, this.breaker.getState(URL));
+	}
+	
+	@Test
+	public void testConnectionRefused() throws IOException {
+		this.breaker.openDuration(1, TimeUnit.MINUTES);
+		for(int index = 0; index < 4; index++) {
+			try {
+				this.executor.execute(WebRequest.get("http://localhost:1/never"));
+				Assert.assertTrue(false);
+			} catch(HttpCircuitOpenException e) {
+				Assert.assertTrue(false);
+			} catch(IOException e) {
+				Assert.assertTrue(true);
+			}
+		}
+		
+		Assert.assertEquals(HttpCircuitBreaker.State.OPEN, this.breaker.getState("http://localhost:1"));
+		Assert.assertEquals(HttpCircuitBreaker.State.CLOSED, this.breaker.getState(URL));
+		
+		// rejections are fast
+		long start = System.nanoTime();
+		for(int index = 0; index < 10000; index++) {
+			try {
+				this.executor.execute(WebRequest.get("http://localhost:1/never"));
+			} catch(HttpCircuitOpenException e) {
+				// expected
+			}
+		}
+		
+		Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+		Assert.assertEquals(10000, this.breaker.getRejections());
+	}
+	
+	@Test
+	public void testSlowCalls() throws IOException {
+		this.breaker.slowCallRateThreshold(50, 50, TimeUnit.MILLISECONDS);
+		sleep = 100;
+		
+		for(int index = 0; index < 4; index++) {
+			Assert.assertEquals(200, this.executor.execute(WebRequest.get(URL)).webResponse().getResponseCode());
+		}
+		
+		Assert.assertEquals(HttpCircuitBreaker.State.OPEN, this.breaker.getState(URL));
+	}
+	
+	@Test
+	public void testAsync() throws Exception {
+		status = 500;
+		for(int index = 0; index < 4; index++) {
+			this.executor.executeAsync(WebRequest.get(URL)).get();
+		}
+		
+		Assert.assertEquals(HttpCircuitBreaker.State.OPEN, this.breaker.getState(URL));
+		
+		try {
+			this.executor.executeAsync(WebRequest.get(URL)).get();
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof HttpCircuitOpenException);
+		}
+	}
+	
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new HttpCircuitBreaker().failureRateThreshold(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpCircuitBreaker().slowCallRateThreshold(50, 0, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpCircuitBreaker().slidingWindow(10, 20);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpCircuitBreaker().openDuration(-1, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpCircuitBreaker().halfOpenCalls(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpCircuitBreaker().getState("/relative");
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	private static class StatusHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			REQUESTS.incrementAndGet();
+			if(sleep > 0) {
+				try {
+					Thread.sleep(sleep);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			
+			byte[] body = "ok".getBytes();
+			exchange.sendResponseHeaders(status, body.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(body);
+			os.close();
+		}
+		
+	}
+
+}
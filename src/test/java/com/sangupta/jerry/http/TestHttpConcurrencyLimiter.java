@@ -0,0 +1,294 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpConcurrencyLimiter}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpConcurrencyLimiter {
+	
+	private static final String URL = "http://localhost:8080/limited";
+	
+	private static final HttpHost HOST = new HttpHost("localhost", 8080);
+	
+	private static HttpServer server;
+	
+	private static volatile int status;
+	
+	private static volatile long sleep;
+	
+	private HttpExecutor executor;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/limited", new LimitedHandler());
+		server.setExecutor(Executors.newFixedThreadPool(32));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Before
+	public void before() {
+		status = 200;
+		sleep = 0;
+		this.executor = HttpExecutor.builder().maxConnectionsPerRoute(64).build();
+	}
+	
+	@After
+	public void after() {
+		this.executor.shutdown();
+	}
+	
+	@Test
+	public void testLimitGrows() throws Exception {
+		final HttpConcurrencyLimiter limiter = new HttpConcurrencyLimiter().limits(2, 1, 50).queue(5, TimeUnit.SECONDS);
+		this.executor.concurrencyLimiter(limiter);
+		sleep = 5;
+		
+		ExecutorService threads = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for(int thread = 0; thread < 16; thread++) {
+				futures.add(threads.submit(new java.util.concurrent.Callable<Void>() {
+					
+					@Override
+					public Void call() throws Exception {
+						for(int index = 0; index < 20; index++) {
+							Assert.assertEquals(200, executor.execute(WebRequest.get(URL)).webResponse().getResponseCode());
+						}
+						
+						return null;
+					}
+					
+				}));
+			}
+			
+			for(Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			threads.shutdown();
+		}
+		
+		int limit = limiter.getLimit(HOST);
+		Assert.assertTrue("limit is " + limit, limit > 2);
+		Assert.assertEquals(Integer.valueOf(limit), limiter.getLimits().get("http://localhost:8080"));
+		Assert.assertEquals(0, limiter.getInFlight(HOST));
+		Assert.assertEquals(limit, this.executor.getPoolingConnectionManager().getMaxPerRoute(new HttpRoute(HOST)));
+	}
+	
+	@Test
+	public void testLimitShrinksOnOverload() throws IOException {
+		HttpConcurrencyLimiter limiter = new HttpConcurrencyLimiter().limits(10, 1, 50);
+		this.executor.concurrencyLimiter(limiter);
+		status = 503;
+		
+		for(int index = 0; index < 30; index++) {
+			this.executor.execute(WebRequest.get(URL)).webResponse();
+		}
+		
+		Assert.assertEquals(1, limiter.getLimit(HOST));
+		Assert.assertEquals(1, this.executor.getPoolingConnectionManager().getMaxPerRoute(new HttpRoute(HOST)));
+	}
+	
+	@Test
+	public void testRejectAndQueue() throws Exception {
+		HttpConcurrencyLimiter limiter = new HttpConcurrencyLimiter().limits(1, 1, 1);
+		this.executor.concurrencyLimiter(limiter);
+		sleep = 500;
+		
+		final CountDownLatch started = new CountDownLatch(1);
+		Thread slow = new Thread() {
+			
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					executor.execute(WebRequest.get(URL)).webResponse();
+				} catch(IOException e) {
+					// ignore
+				}
+			}
+			
+		};
+		
+		slow.start();
+		started.await();
+		Thread.sleep(100);
+		
+		try {
+			this.executor.execute(WebRequest.get(URL));
+			Assert.assertTrue(false);
+		} catch(HttpConcurrencyLimitException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertEquals(1, limiter.getRejections());
+		
+		// waits for the slow request to complete
+		limiter.queue(5, TimeUnit.SECONDS);
+		Assert.assertEquals(200, this.executor.execute(WebRequest.get(URL)).webResponse().getResponseCode());
+		Assert.assertEquals(1, limiter.getRejections());
+		
+		slow.join();
+	}
+	
+	@Test
+	public void testInFlightUntilConsumed() throws Exception {
+		HttpConcurrencyLimiter limiter = new HttpConcurrencyLimiter().limits(1, 1, 1);
+		this.executor.concurrencyLimiter(limiter);
+		
+		StreamingWebResponse streaming = this.executor.execute(WebRequest.get(URL)).streamResponse();
+		Assert.assertEquals(1, limiter.getInFlight(HOST));
+		
+		try {
+			this.executor.execute(WebRequest.get(URL));
+			Assert.assertTrue(false);
+		} catch(HttpConcurrencyLimitException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// asynchronous requests are limited too
+		try {
+			this.executor.executeAsync(WebRequest.get(URL)).get();
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof HttpConcurrencyLimitException);
+		}
+		
+		streaming.close();
+		Assert.assertEquals(0, limiter.getInFlight(HOST));
+		
+		WebRawResponse raw = this.executor.execute(WebRequest.get(URL));
+		Assert.assertEquals(1, limiter.getInFlight(HOST));
+		raw.webResponse();
+		Assert.assertEquals(0, limiter.getInFlight(HOST));
+		
+		Assert.assertEquals(200, this.executor.executeAsync(WebRequest.get(URL)).get().getResponseCode());
+		Assert.assertEquals(0, limiter.getInFlight(HOST));
+	}
+	
+	@Test
+	public void testSharedPoolUntouched() throws IOException {
+		HttpExecutor shared = HttpExecutor.newInstance();
+		int maxPerRoute = shared.getPoolingConnectionManager().getMaxPerRoute(new HttpRoute(HOST));
+		
+		HttpConcurrencyLimiter limiter = new HttpConcurrencyLimiter().limits(10, 1, 50);
+		shared.concurrencyLimiter(limiter);
+		status = 503;
+		
+		for(int index = 0; index < 30; index++) {
+			shared.execute(WebRequest.get(URL)).webResponse();
+		}
+		
+		Assert.assertEquals(1, limiter.getLimit(HOST));
+		Assert.assertEquals(maxPerRoute, shared.getPoolingConnectionManager().getMaxPerRoute(new HttpRoute(HOST)));
+	}
+	
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new HttpConcurrencyLimiter().limits(5, 0, 10);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpConcurrencyLimiter().limits(20, 1, 10);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpConcurrencyLimiter().queue(-1, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpConcurrencyLimiter().queue(1, null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	private static class LimitedHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			if(sleep > 0) {
+				try {
+					Thread.sleep(sleep);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			
+			byte[] body = "ok".getBytes();
+			exchange.sendResponseHeaders(status, body.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(body);
+			os.close();
+		}
+		
+	}
+
+}
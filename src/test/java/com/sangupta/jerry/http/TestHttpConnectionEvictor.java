@@ -0,0 +1,201 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpConnectionEvictor}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpConnectionEvictor {
+	
+	private static HttpServer server;
+	
+	private static final String LOCAL_URL = "http://localhost:8080/";
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/plain", new Handler(null));
+		server.createContext("/keepalive", new Handler("timeout=1, max=100"));
+		server.setExecutor(Executors.newFixedThreadPool(4));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Test
+	public void testKeepAliveHint() throws Exception {
+		HttpConnectionEvictor evictor = new HttpConnectionEvictor().idleTimeout(0, TimeUnit.SECONDS);
+		HttpExecutor executor = HttpExecutor.builder().connectionEvictor(evictor).build();
+		try {
+			Assert.assertEquals("done", executor.execute(WebRequest.get(LOCAL_URL + "keepalive")).webResponse().getContent());
+			Assert.assertEquals(1, getAvailable(executor));
+			
+			awaitEvictions(evictor, 1);
+			Assert.assertEquals(1, evictor.getExpiredEvictions());
+			Assert.assertEquals(0, evictor.getIdleEvictions());
+			Assert.assertEquals(0, getAvailable(executor));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testIdleTimeout() throws Exception {
+		HttpConnectionEvictor evictor = new HttpConnectionEvictor().idleTimeout(200, TimeUnit.MILLISECONDS);
+		HttpExecutor executor = HttpExecutor.builder().connectionEvictor(evictor).build();
+		try {
+			executor.execute(WebRequest.get(LOCAL_URL + "plain")).webResponse();
+			Assert.assertEquals(1, getAvailable(executor));
+			
+			awaitEvictions(evictor, 1);
+			Assert.assertEquals(1, evictor.getIdleEvictions());
+			Assert.assertEquals(0, getAvailable(executor));
+			
+			// a new connection is opened for the next request
+			Assert.assertEquals("done", executor.execute(WebRequest.get(LOCAL_URL + "plain")).webResponse().getContent());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testMaxLifetime() throws Exception {
+		HttpConnectionEvictor evictor = new HttpConnectionEvictor().idleTimeout(0, TimeUnit.SECONDS).maxLifetime(300, TimeUnit.MILLISECONDS);
+		HttpExecutor executor = HttpExecutor.builder().build().connectionEvictor(evictor);
+		try {
+			executor.execute(WebRequest.get(LOCAL_URL + "plain")).webResponse();
+			
+			awaitEvictions(evictor, 1);
+			Assert.assertEquals(1, evictor.getLifetimeEvictions());
+			Assert.assertEquals(1, evictor.getEvictions());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testRegistration() {
+		Assert.assertNotNull(HttpExecutor.DEFAULT.getConnectionEvictor());
+		Assert.assertSame(HttpExecutor.DEFAULT.getConnectionEvictor(), HttpExecutor.newInstance().getConnectionEvictor());
+		
+		HttpExecutor executor = HttpExecutor.builder().connectionEvictor(null).build();
+		try {
+			Assert.assertNull(executor.getConnectionEvictor());
+			
+			HttpConnectionEvictor evictor = new HttpConnectionEvictor();
+			executor.connectionEvictor(evictor);
+			Assert.assertSame(evictor, executor.getConnectionEvictor());
+		} finally {
+			executor.shutdown();
+		}
+		
+		// no longer swept once shut down
+		Assert.assertNull(executor.getConnectionEvictor());
+	}
+	
+	@Test
+	public void testKeepAliveMillis() {
+		Assert.assertEquals(4000, HttpConnectionEvictor.getKeepAliveMillis(5));
+		Assert.assertEquals(1000, HttpConnectionEvictor.getKeepAliveMillis(2));
+		Assert.assertEquals(500, HttpConnectionEvictor.getKeepAliveMillis(1));
+		Assert.assertEquals(1, HttpConnectionEvictor.getKeepAliveMillis(0));
+	}
+	
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new HttpConnectionEvictor().idleTimeout(-1, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpConnectionEvictor().maxLifetime(1, null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	private static void awaitEvictions(HttpConnectionEvictor evictor, int count) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		while(evictor.getEvictions() < count) {
+			Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+			Thread.sleep(50);
+		}
+	}
+	
+	private static int getAvailable(HttpExecutor executor) {
+		// the route is dropped from the pool once it has no connections
+		HttpMetrics.PoolSnapshot pool = executor.getMetrics().snapshot().getRoutePools().get("http://localhost:8080");
+		return pool == null ? 0 : pool.getAvailable();
+	}
+	
+	private static class Handler implements HttpHandler {
+		
+		private final String keepAlive;
+		
+		Handler(String keepAlive) {
+			this.keepAlive = keepAlive;
+		}
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			if(this.keepAlive != null) {
+				exchange.getResponseHeaders().add("Keep-Alive", this.keepAlive);
+			}
+			
+			byte[] bytes = "done".getBytes();
+			exchange.sendResponseHeaders(200, bytes.length);
+			
+			OutputStream os = exchange.getResponseBody();
+			os.write(bytes);
+			os.close();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,191 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for warming up the connections of {@link HttpExecutor}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpConnectionWarmUp {
+	
+	private static HttpServer server;
+	
+	private static final String LOCAL_URL = "http://localhost:8080/warm";
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/warm", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] bytes = "warm".getBytes();
+				exchange.sendResponseHeaders(200, bytes.length);
+				
+				OutputStream os = exchange.getResponseBody();
+				os.write(bytes);
+				os.close();
+			}
+			
+		});
+		server.setExecutor(Executors.newFixedThreadPool(4));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Test
+	public void testWarmUp() throws IOException {
+		HttpExecutor executor = HttpExecutor.builder().maxConnectionsPerRoute(4).build();
+		try {
+			HttpRoute route = HttpExecutor.getRoute(LOCAL_URL);
+			Assert.assertEquals(3, executor.warmUp(route, 3));
+			Assert.assertEquals(3, getAvailable(executor));
+			
+			// already warm
+			Assert.assertEquals(0, executor.warmUp(route, 3));
+			
+			// capped at the maximum of the route
+			Assert.assertEquals(1, executor.warmUp(route, 10));
+			Assert.assertEquals(4, getAvailable(executor));
+			
+			// requests use the warm connections
+			for(int index = 0; index < 5; index++) {
+				Assert.assertEquals("warm", executor.execute(WebRequest.get(LOCAL_URL)).webResponse().getContent());
+			}
+			
+			Assert.assertEquals(4, getAvailable(executor));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testWarmUpFailure() {
+		HttpExecutor executor = HttpExecutor.builder().build();
+		try {
+			executor.warmUp(HttpExecutor.getRoute("http://localhost:1/never"), 2);
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testAwaitWarm() throws InterruptedException {
+		HttpRoute route = HttpExecutor.getRoute(LOCAL_URL);
+		HttpExecutor executor = HttpExecutor.builder().minIdleConnections(route, 2).build();
+		try {
+			Assert.assertTrue(executor.awaitWarm(5, TimeUnit.SECONDS));
+			Assert.assertEquals(2, getAvailable(executor));
+			
+			executor.minIdleConnections(HttpExecutor.getRoute("http://localhost:1/never"), 1);
+			Assert.assertFalse(executor.awaitWarm(5, TimeUnit.SECONDS));
+			
+			executor.minIdleConnections(HttpExecutor.getRoute("http://localhost:1/never"), 0);
+			Assert.assertTrue(executor.awaitWarm(5, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testGetRoute() {
+		HttpRoute route = HttpExecutor.getRoute("https://Example.com/path?query");
+		Assert.assertEquals(new HttpHost("example.com", 443, "https"), route.getTargetHost());
+		Assert.assertTrue(route.isSecure());
+		Assert.assertNull(route.getProxyHost());
+		
+		route = HttpExecutor.getRoute("http://example.com:8080");
+		Assert.assertEquals(new HttpHost("example.com", 8080, "http"), route.getTargetHost());
+		Assert.assertFalse(route.isSecure());
+	}
+	
+	@Test
+	public void testInvalidArguments() throws IOException, InterruptedException {
+		try {
+			HttpExecutor.getRoute("/relative");
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.DEFAULT.warmUp(null, 1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.DEFAULT.minIdleConnections(HttpExecutor.getRoute(LOCAL_URL), -1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.DEFAULT.minIdleConnections(new HttpRoute(new HttpHost("example.com"), new HttpHost("proxy.example.com")), 1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.DEFAULT.awaitWarm(1, null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	private static int getAvailable(HttpExecutor executor) {
+		return executor.getMetrics().snapshot().getRoutePools().get("http://localhost:8080").getAvailable();
+	}
+	
+}
@@ -0,0 +1,314 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpDecompressor}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpDecompressor {
+	
+	private static HttpServer server;
+	
+	private static final String LOCAL_URL = "http://localhost:8080/";
+	
+	private static final String TEXT;
+	
+	static {
+		StringBuilder builder = new StringBuilder();
+		for(int index = 0; index < 2000; index++) {
+			builder.append("line number ").append(index).append(" of the response body\n");
+		}
+		
+		TEXT = builder.toString();
+	}
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		byte[] text = TEXT.getBytes("UTF-8");
+		
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/gzip", new Handler("gzip", gzip(text)));
+		server.createContext("/zlib", new Handler("deflate", deflate(text, false)));
+		server.createContext("/deflate", new Handler("deflate", deflate(text, true)));
+		server.createContext("/members", new Handler("gzip", concat(gzip("first ".getBytes("UTF-8")), gzip("second".getBytes("UTF-8")))));
+		server.createContext("/bomb", new Handler("gzip", gzip(new byte[1024 * 1024])));
+		server.createContext("/plain", new Handler(null, text));
+		server.setExecutor(Executors.newFixedThreadPool(4));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Test
+	public void testGzip() throws Exception {
+		HttpDecompressor decompressor = new HttpDecompressor();
+		HttpExecutor executor = HttpExecutor.builder().decompressor(decompressor).build();
+		try {
+			Assert.assertSame(decompressor, executor.getDecompressor());
+			
+			WebResponse response = executor.execute(WebRequest.get(LOCAL_URL + "gzip")).webResponse();
+			Assert.assertEquals(TEXT, response.getContent());
+			Assert.assertEquals("gzip, deflate", response.getHeaders().get("X-accept-encoding"));
+			Assert.assertNull(response.getHeaders().get("Content-encoding"));
+			
+			Assert.assertEquals(1, decompressor.getDecompressedResponses());
+			Assert.assertEquals(TEXT.length(), decompressor.getDecompressedBytes());
+			Assert.assertTrue(decompressor.getCompressedBytes() > 0);
+			Assert.assertTrue(decompressor.getCompressedBytes() < TEXT.length() / 4);
+			
+			// bodies that are not compressed are left alone
+			Assert.assertEquals(TEXT, executor.execute(WebRequest.get(LOCAL_URL + "plain")).webResponse().getContent());
+			Assert.assertEquals(1, decompressor.getDecompressedResponses());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testDeflate() throws Exception {
+		HttpDecompressor decompressor = new HttpDecompressor();
+		HttpExecutor executor = HttpExecutor.builder().decompressor(decompressor).build();
+		try {
+			Assert.assertEquals(TEXT, executor.execute(WebRequest.get(LOCAL_URL + "zlib")).webResponse().getContent());
+			Assert.assertEquals(TEXT, executor.execute(WebRequest.get(LOCAL_URL + "deflate")).webResponse().getContent());
+			Assert.assertEquals("first second", executor.execute(WebRequest.get(LOCAL_URL + "members")).webResponse().getContent());
+			Assert.assertEquals(3, decompressor.getDecompressedResponses());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testStreaming() throws Exception {
+		HttpDecompressor decompressor = new HttpDecompressor();
+		HttpExecutor executor = HttpExecutor.builder().decompressor(decompressor).build();
+		try {
+			StreamingWebResponse response = executor.execute(WebRequest.get(LOCAL_URL + "gzip")).streamResponse();
+			try {
+				Assert.assertEquals(TEXT, new String(readFully(response.asStream()), "UTF-8"));
+			} finally {
+				response.close();
+			}
+			
+			Assert.assertEquals(TEXT.length(), decompressor.getDecompressedBytes());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testMaxDecompressedSize() throws Exception {
+		HttpDecompressor decompressor = new HttpDecompressor().maxDecompressedSize(256 * 1024);
+		HttpExecutor executor = HttpExecutor.builder().decompressor(decompressor).build();
+		try {
+			try {
+				executor.execute(WebRequest.get(LOCAL_URL + "bomb")).webResponse();
+				Assert.assertTrue(false);
+			} catch(HttpDecompressionException e) {
+				Assert.assertTrue(true);
+			}
+			
+			Assert.assertEquals(1, decompressor.getRejectedResponses());
+			Assert.assertTrue(decompressor.getDecompressedBytes() <= 256 * 1024 + DecompressingInputStream.BUFFER_SIZE);
+			
+			// smaller bodies are still fine
+			Assert.assertEquals(TEXT, executor.execute(WebRequest.get(LOCAL_URL + "gzip")).webResponse().getContent());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testEncodings() throws Exception {
+		HttpDecompressor decompressor = new HttpDecompressor().encodings("deflate");
+		Assert.assertEquals("deflate", decompressor.getAcceptEncoding());
+		
+		HttpExecutor executor = HttpExecutor.builder().decompressor(decompressor).build();
+		try {
+			WebResponse response = executor.execute(WebRequest.get(LOCAL_URL + "gzip")).webResponse();
+			Assert.assertEquals("deflate", response.getHeaders().get("X-accept-encoding"));
+			
+			// explicit headers are kept
+			response = executor.execute(WebRequest.get(LOCAL_URL + "gzip").addHeader("Accept-Encoding", "gzip")).webResponse();
+			Assert.assertEquals("gzip", response.getHeaders().get("X-accept-encoding"));
+		} finally {
+			executor.shutdown();
+		}
+		
+		try {
+			new HttpDecompressor().encodings("br");
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpDecompressor().encodings();
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpDecompressor().maxDecompressedSize(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testCorruptBody() throws Exception {
+		byte[] bytes = gzip(TEXT.getBytes("UTF-8"));
+		bytes[bytes.length - 6] ^= 0xff;
+		
+		InputStream stream = new DecompressingInputStream(new ByteArrayInputStream(bytes), true, new HttpDecompressor());
+		try {
+			readFully(stream);
+			Assert.assertTrue(false);
+		} catch(ZipException e) {
+			Assert.assertTrue(true);
+		} finally {
+			stream.close();
+		}
+		
+		// truncated
+		stream = new DecompressingInputStream(new ByteArrayInputStream(bytes, 0, bytes.length / 2), true, new HttpDecompressor());
+		try {
+			readFully(stream);
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		} finally {
+			stream.close();
+		}
+	}
+	
+	@Test
+	public void testHttp2() throws Exception {
+		Assume.assumeTrue(Http2Engine.isSupported());
+		
+		HttpDecompressor decompressor = new HttpDecompressor();
+		HttpExecutor executor = HttpExecutor.builder().protocol(HttpProtocol.HTTP_2).decompressor(decompressor).build();
+		try {
+			Assert.assertEquals(TEXT, executor.execute(WebRequest.get(LOCAL_URL + "gzip")).webResponse().getContent());
+			Assert.assertEquals(1, decompressor.getDecompressedResponses());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private static byte[] gzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream stream = new GZIPOutputStream(out);
+		stream.write(bytes);
+		stream.close();
+		return out.toByteArray();
+	}
+	
+	private static byte[] deflate(byte[] bytes, boolean raw) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DeflaterOutputStream stream = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw));
+		stream.write(bytes);
+		stream.close();
+		return out.toByteArray();
+	}
+	
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] bytes = new byte[first.length + second.length];
+		System.arraycopy(first, 0, bytes, 0, first.length);
+		System.arraycopy(second, 0, bytes, first.length, second.length);
+		return bytes;
+	}
+	
+	private static byte[] readFully(InputStream stream) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while((read = stream.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		
+		return out.toByteArray();
+	}
+	
+	private static class Handler implements HttpHandler {
+		
+		private final String encoding;
+		
+		private final byte[] body;
+		
+		Handler(String encoding, byte[] body) {
+			this.encoding = encoding;
+			this.body = body;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if(acceptEncoding != null) {
+				exchange.getResponseHeaders().add("X-Accept-Encoding", acceptEncoding);
+			}
+			
+			if(this.encoding != null) {
+				exchange.getResponseHeaders().add("Content-Encoding", this.encoding);
+			}
+			
+			exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+			exchange.sendResponseHeaders(200, this.body.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(this.body);
+			os.close();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,290 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.client.HttpResponseException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpDownloadManager}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpDownloadManager {
+	
+	private static final int SEGMENT_SIZE = 64 * 1024;
+	
+	private static final byte[] BODY = new byte[16 * SEGMENT_SIZE + 1234];
+	
+	private static HttpServer server;
+	
+	private static final AtomicInteger RANGE_REQUESTS = new AtomicInteger();
+	
+	/**
+	 * Number of requests that did not ask for the identity encoding
+	 */
+	private static final AtomicInteger ENCODED_REQUESTS = new AtomicInteger();
+	
+	/**
+	 * Number of range requests to serve before failing, -1 for no failures
+	 */
+	private static volatile int failAfter = -1;
+	
+	private static volatile String etag = "\"v1\"";
+	
+	private File file;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		for(int index = 0; index < BODY.length; index++) {
+			BODY[index] = (byte) (index * 31);
+		}
+		
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/ranged", new RangeHandler(true));
+		server.createContext("/plain", new RangeHandler(false));
+		server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(8));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Before
+	public void before() throws IOException {
+		RANGE_REQUESTS.set(0);
+		ENCODED_REQUESTS.set(0);
+		failAfter = -1;
+		etag = "\"v1\"";
+		
+		this.file = File.createTempFile("jerry-http-download-", ".bin");
+		this.file.delete();
+	}
+	
+	@After
+	public void after() {
+		this.file.delete();
+		new File(this.file.getPath() + HttpDownloadManager.PART_SUFFIX).delete();
+		new File(this.file.getPath() + HttpDownloadManager.JOURNAL_SUFFIX).delete();
+	}
+	
+	@Test
+	public void testSegmentedDownload() throws IOException {
+		HttpDownloadManager manager = new HttpDownloadManager().segmentSize(SEGMENT_SIZE).parallelism(4);
+		
+		Assert.assertEquals(BODY.length, manager.download("http://localhost:8080/ranged", this.file));
+		Assert.assertArrayEquals(BODY, FileUtils.readFileToByteArray(this.file));
+		Assert.assertTrue(RANGE_REQUESTS.get() >= 17);
+		Assert.assertEquals(0, ENCODED_REQUESTS.get());
+		Assert.assertFalse(new File(this.file.getPath() + HttpDownloadManager.PART_SUFFIX).exists());
+		Assert.assertFalse(new File(this.file.getPath() + HttpDownloadManager.JOURNAL_SUFFIX).exists());
+	}
+	
+	@Test
+	public void testResume() throws IOException {
+		HttpDownloadManager manager = new HttpDownloadManager().segmentSize(SEGMENT_SIZE).parallelism(1).maxRetries(0);
+		
+		failAfter = 5;
+		try {
+			manager.download("http://localhost:8080/ranged", this.file);
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertFalse(this.file.exists());
+		Assert.assertTrue(new File(this.file.getPath() + HttpDownloadManager.JOURNAL_SUFFIX).exists());
+		
+		// resume only fetches what is missing
+		failAfter = -1;
+		RANGE_REQUESTS.set(0);
+		Assert.assertEquals(BODY.length, manager.download("http://localhost:8080/ranged", this.file));
+		Assert.assertArrayEquals(BODY, FileUtils.readFileToByteArray(this.file));
+		Assert.assertTrue(RANGE_REQUESTS.get() < 17);
+	}
+	
+	@Test
+	public void testResourceChangedRestarts() throws IOException {
+		HttpDownloadManager manager = new HttpDownloadManager().segmentSize(SEGMENT_SIZE).parallelism(1).maxRetries(0);
+		
+		failAfter = 5;
+		try {
+			manager.download("http://localhost:8080/ranged", this.file);
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// a new version invalidates the journal
+		failAfter = -1;
+		etag = "\"v2\"";
+		RANGE_REQUESTS.set(0);
+		Assert.assertEquals(BODY.length, manager.download("http://localhost:8080/ranged", this.file));
+		Assert.assertArrayEquals(BODY, FileUtils.readFileToByteArray(this.file));
+		Assert.assertTrue(RANGE_REQUESTS.get() >= 17);
+	}
+	
+	@Test
+	public void testResourceChangedMidway() throws IOException {
+		HttpDownloadManager manager = new HttpDownloadManager().segmentSize(SEGMENT_SIZE).parallelism(1);
+		
+		// the If-Range check on the server fails
+		failAfter = -2;
+		try {
+			manager.download("http://localhost:8080/ranged", this.file);
+			Assert.assertTrue(false);
+		} catch(HttpResponseException e) {
+			Assert.assertEquals(412, e.getStatusCode());
+		}
+	}
+	
+	@Test
+	public void testWithoutRangeSupport() throws IOException {
+		Assert.assertEquals(BODY.length, new HttpDownloadManager().download("http://localhost:8080/plain", this.file));
+		Assert.assertArrayEquals(BODY, FileUtils.readFileToByteArray(this.file));
+		Assert.assertFalse(new File(this.file.getPath() + HttpDownloadManager.PART_SUFFIX).exists());
+		Assert.assertFalse(new File(this.file.getPath() + HttpDownloadManager.JOURNAL_SUFFIX).exists());
+	}
+	
+	@Test
+	public void testRespectsRateLimits() throws IOException {
+		HttpExecutor executor = HttpExecutor.builder().build();
+		try {
+			executor.addRateLimiting("localhost", 8, 1, TimeUnit.SECONDS);
+			
+			HttpDownloadManager manager = new HttpDownloadManager(executor).segmentSize(SEGMENT_SIZE).parallelism(8).rateLimitBackOff(50, TimeUnit.MILLISECONDS);
+			Assert.assertEquals(BODY.length, manager.download("http://localhost:8080/ranged", this.file));
+			Assert.assertArrayEquals(BODY, FileUtils.readFileToByteArray(this.file));
+		} finally {
+			executor.removeAllRateLimiting();
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testArguments() {
+		try {
+			new HttpDownloadManager(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpDownloadManager().segmentSize(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpDownloadManager().parallelism(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	private static class RangeHandler implements HttpHandler {
+		
+		private final boolean supportsRanges;
+		
+		public RangeHandler(boolean supportsRanges) {
+			this.supportsRanges = supportsRanges;
+		}
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if(this.supportsRanges && !"identity".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+					ENCODED_REQUESTS.incrementAndGet();
+				}
+				
+				if(this.supportsRanges) {
+					exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+					exchange.getResponseHeaders().add("ETag", etag);
+				}
+				
+				if("HEAD".equals(exchange.getRequestMethod())) {
+					exchange.getResponseHeaders().add("Content-Length", String.valueOf(BODY.length));
+					exchange.sendResponseHeaders(200, -1);
+					return;
+				}
+				
+				String range = exchange.getRequestHeaders().getFirst("Range");
+				if(!this.supportsRanges || range == null) {
+					exchange.sendResponseHeaders(200, BODY.length);
+					exchange.getResponseBody().write(BODY);
+					return;
+				}
+				
+				int count = RANGE_REQUESTS.incrementAndGet();
+				if(failAfter >= 0 && count > failAfter) {
+					exchange.sendResponseHeaders(500, -1);
+					return;
+				}
+				
+				if(failAfter == -2) {
+					// resource changed, If-Range fails
+					exchange.sendResponseHeaders(200, BODY.length);
+					exchange.getResponseBody().write(BODY);
+					return;
+				}
+				
+				String[] bounds = range.substring("bytes=".length()).split("-");
+				int start = Integer.parseInt(bounds[0]);
+				int end = Integer.parseInt(bounds[1]);
+				
+				exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + BODY.length);
+				exchange.sendResponseHeaders(206, end - start + 1);
+				
+				OutputStream os = exchange.getResponseBody();
+				os.write(BODY, start, end - start + 1);
+			} finally {
+				exchange.close();
+			}
+		}
+		
+	}
+
+}
@@ -1,7 +1,11 @@
 package com.sangupta.jerry.http;
 
+import java.util.concurrent.TimeUnit;
+
 import org.apache.http.HttpHost;
+import org.apache.http.config.SocketConfig;
 import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -82,4 +86,67 @@ public class TestHttpExecutor {
 			Assert.assertTrue(true);
 		}
 	}
+	
+	@Test
+	public void testBuilder() {
+		int globalMax = HttpExecutor.getConnectionManager().getMaxTotal();
+		int globalPerRoute = HttpExecutor.getConnectionManager().getDefaultMaxPerRoute();
+		
+		HttpRoute route = new HttpRoute(new HttpHost("localhost", 8080));
+		HttpExecutor executor = HttpExecutor.builder()
+				.maxConnections(40)
+				.maxConnectionsPerRoute(20)
+				.maxConnectionsOnHost(route, 30)
+				.validateAfterInactivity(500)
+				.connectionTimeToLive(1, TimeUnit.MINUTES)
+				.socketConfig(SocketConfig.custom().setTcpNoDelay(true).build())
+				.rateLimiter(new TokenBucketRateLimiter())
+				.build();
+		
+		PoolingHttpClientConnectionManager pool = executor.getPoolingConnectionManager();
+		Assert.assertNotSame(HttpExecutor.getConnectionManager(), pool);
+		Assert.assertEquals(40, pool.getMaxTotal());
+		Assert.assertEquals(20, pool.getDefaultMaxPerRoute());
+		Assert.assertEquals(30, pool.getMaxPerRoute(route));
+		Assert.assertEquals(500, pool.getValidateAfterInactivity());
+		Assert.assertTrue(pool.getDefaultSocketConfig().isTcpNoDelay());
+		
+		// instance methods only touch the own pool
+		executor.maxConnections(80).maxConnectionsPerRoute(10).maxConnectionsOnHost("localhost", 7);
+		Assert.assertEquals(80, pool.getMaxTotal());
+		Assert.assertEquals(10, pool.getDefaultMaxPerRoute());
+		Assert.assertEquals(7, pool.getMaxPerRoute(new HttpRoute(new HttpHost("localhost"))));
+		Assert.assertEquals(globalMax, HttpExecutor.getConnectionManager().getMaxTotal());
+		Assert.assertEquals(globalPerRoute, HttpExecutor.getConnectionManager().getDefaultMaxPerRoute());
+		
+		// own rate limits are not shared with the default executor
+		executor.addRateLimiting("localhost", 1, TimeUnit.MINUTES);
+		HttpExecutor.DEFAULT.addRateLimiting("localhost", 1, TimeUnit.MINUTES);
+		HttpExecutor.DEFAULT.removeAllRateLimiting();
+		
+		executor.shutdown();
+		HttpExecutor.DEFAULT.shutdown();
+		Assert.assertEquals(globalMax, HttpExecutor.getConnectionManager().getMaxTotal());
+		
+		try {
+			HttpExecutor.builder().maxConnections(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.builder().maxConnectionsPerRoute(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.builder().maxConnectionsOnHost(null, 1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
 }
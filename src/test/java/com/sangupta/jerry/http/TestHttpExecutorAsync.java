@@ -0,0 +1,390 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.constants.HttpMimeType;
+import com.sangupta.jerry.http.mock.MockWebResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the asynchronous execution path of {@link HttpExecutor}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpExecutorAsync {
+	
+	private static HttpServer server;
+	
+	private static final String LOCAL_URL = "http://localhost:8080/async";
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/async", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange httpExchange) throws IOException {
+				byte[] bytes = httpExchange.getRequestURI().getQuery().getBytes();
+				httpExchange.sendResponseHeaders(200, bytes.length);
+				
+				OutputStream os = httpExchange.getResponseBody();
+				os.write(bytes);
+				os.close();
+			}
+			
+		});
+		server.createContext("/echo", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange httpExchange) throws IOException {
+				InputStream body = httpExchange.getRequestBody();
+				if("gzip".equals(httpExchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+					body = new GZIPInputStream(body);
+				}
+				
+				byte[] bytes = IOUtils.toByteArray(body);
+				httpExchange.sendResponseHeaders(200, bytes.length);
+				
+				OutputStream os = httpExchange.getResponseBody();
+				os.write(bytes);
+				os.close();
+			}
+			
+		});
+		server.setExecutor(Executors.newFixedThreadPool(4));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+		HttpExecutor.DEFAULT.removeAllRateLimiting();
+	}
+	
+	@Test
+	public void testExecuteAsync() throws InterruptedException, ExecutionException {
+		WebResponse response = WebRequest.get(LOCAL_URL + "?hello").executeAsync().get();
+		Assert.assertNotNull(response);
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals("hello", response.getContent());
+	}
+	
+	@Test
+	public void testManyConcurrentRequests() throws InterruptedException, ExecutionException {
+		List<CompletableFuture<WebResponse>> futures = new ArrayList<>();
+		for(int index = 0; index < 200; index++) {
+			futures.add(WebRequest.get(LOCAL_URL + "?" + index).executeAsync());
+		}
+		
+		for(int index = 0; index < futures.size(); index++) {
+			Assert.assertEquals(String.valueOf(index), futures.get(index).get().getContent());
+		}
+	}
+	
+	@Test
+	public void testBuiltExecutor() throws Exception {
+		// the resolver of the builder applies to asynchronous requests too
+		DnsResolver resolver = new DnsResolver() {
+			
+			@Override
+			public InetAddress[] resolve(String host) throws UnknownHostException {
+				if("jerry.test".equals(host)) {
+					return new InetAddress[] { InetAddress.getLoopbackAddress() };
+				}
+				
+				return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+			}
+			
+		};
+		
+		HttpExecutor executor = HttpExecutor.builder().maxConnectionsPerRoute(2).dnsResolver(resolver).build();
+		try {
+			List<CompletableFuture<WebResponse>> futures = new ArrayList<>();
+			for(int index = 0; index < 20; index++) {
+				futures.add(executor.executeAsync(WebRequest.get("http://jerry.test:8080/async?" + index)));
+			}
+			
+			for(int index = 0; index < futures.size(); index++) {
+				Assert.assertEquals(String.valueOf(index), futures.get(index).get().getContent());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		// the owned client is gone along with the executor
+		try {
+			executor.executeAsync(WebRequest.get(LOCAL_URL + "?hello")).get();
+			Assert.assertTrue(false);
+		} catch(IllegalStateException | ExecutionException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// caching executors do not fall back to the global client
+		executor = HttpExecutor.builder().memoryCache(10, 1024).build();
+		try {
+			executor.executeAsync(WebRequest.get(LOCAL_URL + "?hello"));
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testAsyncClientCreatedLazily() throws Exception {
+		// make sure the global client is up so that it does not count
+		HttpExecutor.DEFAULT.executeAsync(WebRequest.get(LOCAL_URL + "?hello")).get();
+		
+		int threads = countThreads("jerry-http-async");
+		HttpExecutor executor = HttpExecutor.builder().build();
+		try {
+			// building the executor starts no I/O threads
+			Assert.assertEquals(threads, countThreads("jerry-http-async"));
+			
+			Assert.assertEquals("hello", executor.executeAsync(WebRequest.get(LOCAL_URL + "?hello")).get().getContent());
+			Assert.assertEquals(threads + 1, countThreads("jerry-http-async"));
+			
+			// while later requests reuse the client
+			Assert.assertEquals("world", executor.executeAsync(WebRequest.get(LOCAL_URL + "?world")).get().getContent());
+			Assert.assertEquals(threads + 1, countThreads("jerry-http-async"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private static int countThreads(String prefix) {
+		int count = 0;
+		for(Thread thread : Thread.getAllStackTraces().keySet()) {
+			if(thread.isAlive() && thread.getName().startsWith(prefix + "-")) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	@Test
+	public void testInterceptors() throws InterruptedException, ExecutionException {
+		HttpExecutor executor = HttpExecutor.newInstance();
+		executor.addInvocationInterception(new MyInterceptor(new MockWebResponse("before"), null));
+		Assert.assertEquals("before", executor.executeAsync(WebRequest.get(LOCAL_URL + "?hello")).get().getContent());
+		
+		executor.removeAllInterceptors();
+		executor.addInvocationInterception(new MyInterceptor(null, new MockWebResponse("after")));
+		Assert.assertEquals("after", executor.executeAsync(WebRequest.get(LOCAL_URL + "?hello")).get().getContent());
+		
+		// exceptions are passed to the interceptor
+		executor.removeAllInterceptors();
+		MyInterceptor interceptor = new MyInterceptor(null, new MockWebResponse("failed"));
+		executor.addInvocationInterception(interceptor);
+		Assert.assertEquals("failed", executor.executeAsync(WebRequest.get("http://localhost:1/hit")).get().getContent());
+		Assert.assertNotNull(interceptor.exception);
+	}
+	
+	@Test
+	public void testRateLimiting() throws InterruptedException {
+		HttpExecutor.DEFAULT.addRateLimiting("localhost", 1, TimeUnit.MINUTES);
+		try {
+			WebRequest.get(LOCAL_URL + "?one").executeAsync();
+			
+			CompletableFuture<WebResponse> future = WebRequest.get(LOCAL_URL + "?two").executeAsync();
+			try {
+				future.get();
+				Assert.assertTrue(false);
+			} catch(ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof HttpRateLimitException);
+			}
+		} finally {
+			HttpExecutor.DEFAULT.removeAllRateLimiting();
+		}
+	}
+	
+	@Test
+	public void testDeferredByRateLimit() throws InterruptedException, ExecutionException {
+		HttpExecutor.DEFAULT.addRateLimiting("localhost", 1, 100, TimeUnit.MILLISECONDS);
+		HttpExecutor.DEFAULT.blockOnRateLimit(1, TimeUnit.SECONDS);
+		try {
+			long start = System.currentTimeMillis();
+			List<CompletableFuture<WebResponse>> futures = new ArrayList<>();
+			for(int index = 0; index < 4; index++) {
+				futures.add(WebRequest.get(LOCAL_URL + "?" + index).executeAsync());
+			}
+			
+			// returned without blocking the caller
+			Assert.assertTrue(System.currentTimeMillis() - start < 250);
+			
+			for(int index = 0; index < futures.size(); index++) {
+				Assert.assertEquals(String.valueOf(index), futures.get(index).get().getContent());
+			}
+			
+			Assert.assertTrue(System.currentTimeMillis() - start >= 290);
+		} finally {
+			HttpExecutor.DEFAULT.rejectOnRateLimit();
+			HttpExecutor.DEFAULT.removeAllRateLimiting();
+		}
+	}
+	
+	@Test
+	public void testCancelWhileDeferred() throws InterruptedException, ExecutionException {
+		HttpExecutor.DEFAULT.addRateLimiting("localhost", 1, 1, TimeUnit.SECONDS);
+		HttpExecutor.DEFAULT.blockOnRateLimit(5, TimeUnit.SECONDS);
+		try {
+			long start = System.currentTimeMillis();
+			Assert.assertEquals("one", WebRequest.get(LOCAL_URL + "?one").executeAsync().get().getContent());
+			
+			// cancelled before its turn, the permit is given back
+			CompletableFuture<WebResponse> cancelled = WebRequest.get(LOCAL_URL + "?two").executeAsync();
+			Assert.assertTrue(cancelled.cancel(false));
+			
+			// and taken by the next request, a second after the first
+			Assert.assertEquals("three", WebRequest.get(LOCAL_URL + "?three").executeAsync().get().getContent());
+			Assert.assertTrue(System.currentTimeMillis() - start < 1800);
+		} finally {
+			HttpExecutor.DEFAULT.rejectOnRateLimit();
+			HttpExecutor.DEFAULT.removeAllRateLimiting();
+		}
+	}
+	
+	@Test
+	public void testCompressedBody() throws InterruptedException, ExecutionException {
+		StringBuilder builder = new StringBuilder();
+		for(int index = 0; index < 1000; index++) {
+			builder.append("{\"index\":").append(index).append("}\n");
+		}
+		String body = builder.toString();
+		
+		WebResponse response = WebRequest.post("http://localhost:8080/echo").bodyString(body, HttpMimeType.JSON).compressBody().executeAsync().get();
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals(body, response.getContent());
+	}
+	
+	@Test
+	public void testSubmit() throws InterruptedException, ExecutionException {
+		List<CompletableFuture<WebResponse>> futures = new ArrayList<>();
+		for(int index = 0; index < 50; index++) {
+			futures.add(HttpExecutor.DEFAULT.submit(WebRequest.get(LOCAL_URL + "?" + index)));
+		}
+		
+		for(int index = 0; index < futures.size(); index++) {
+			Assert.assertEquals(String.valueOf(index), futures.get(index).get().getContent());
+		}
+		
+		try {
+			HttpExecutor.DEFAULT.submit(WebRequest.get("http://localhost:1/hit")).get();
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IOException);
+		}
+		
+		try {
+			HttpExecutor.DEFAULT.submit(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testExceptions() {
+		try {
+			HttpExecutor.DEFAULT.executeAsync(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.DEFAULT.executeAsync(WebRequest.get(LOCAL_URL), null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			WebRequest.get("http://localhost:1/hit").executeAsync().get();
+			Assert.assertTrue(false);
+		} catch(ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof IOException);
+		} catch(InterruptedException e) {
+			Assert.assertTrue(false);
+		}
+	}
+	
+	private static class MyInterceptor implements HttpInvocationInterceptor {
+		
+		private final WebResponse before;
+		
+		private final WebResponse after;
+		
+		private volatile IOException exception;
+		
+		public MyInterceptor(WebResponse before, WebResponse after) {
+			this.before = before;
+			this.after = after;
+		}
+		
+		@Override
+		public int getPriority() {
+			return 0;
+		}
+
+		@Override
+		public WebResponse beforeInvocation(WebRequest request) {
+			return this.before;
+		}
+
+		@Override
+		public WebResponse afterInvocation(WebResponse response, IOException exception) {
+			this.exception = exception;
+			return this.after;
+		}
+		
+	}
+	
+}
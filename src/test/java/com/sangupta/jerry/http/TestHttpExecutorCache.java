@@ -0,0 +1,223 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.client.utils.DateUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for response caching in {@link HttpExecutor}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpExecutorCache {
+	
+	private static HttpServer server;
+	
+	private static final AtomicInteger SERVER_HITS = new AtomicInteger();
+	
+	private static final String LAST_MODIFIED = DateUtils.formatDate(new java.util.Date(System.currentTimeMillis() - 60000l));
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/fresh", new CachingHandler("max-age=60"));
+		server.createContext("/stale", new CachingHandler("max-age=0"));
+		server.setExecutor(null);
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Before
+	public void reset() {
+		SERVER_HITS.set(0);
+	}
+	
+	@Test
+	public void testMemoryCache() throws IOException {
+		HttpExecutor executor = HttpExecutor.builder().memoryCache(100, 1024 * 1024).build();
+		try {
+			assertCaching(executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testDiskCache() throws IOException {
+		File directory = new File(FileUtils.getTempDirectory(), "jerry-http-cache-" + System.nanoTime());
+		HttpExecutor executor = HttpExecutor.builder().diskCache(directory, 100, 1024 * 1024).build();
+		try {
+			assertCaching(executor);
+			Assert.assertTrue(directory.list().length > 0);
+		} finally {
+			executor.shutdown();
+			FileUtils.deleteQuietly(directory);
+		}
+	}
+	
+	@Test
+	public void testDiskCacheEviction() throws IOException, InterruptedException {
+		File directory = new File(FileUtils.getTempDirectory(), "jerry-http-cache-" + System.nanoTime());
+		HttpExecutor executor = HttpExecutor.builder().diskCache(directory, 2, 1024 * 1024).build();
+		try {
+			for(int index = 0; index < 10; index++) {
+				Assert.assertEquals("fresh", executor.execute(WebRequest.get("http://localhost:8080/fresh?" + index)).webResponse().getContent());
+			}
+			
+			// files of evicted entries are deleted in the background
+			// once the entries are garbage collected
+			long deadline = System.currentTimeMillis() + 10000l;
+			while(directory.list().length > 2 && System.currentTimeMillis() < deadline) {
+				System.gc();
+				Thread.sleep(100);
+			}
+			
+			Assert.assertTrue(directory.list().length <= 2);
+			
+			// all files are deleted on shutdown
+			executor.shutdown();
+			Assert.assertEquals(0, directory.list().length);
+		} finally {
+			executor.shutdown();
+			FileUtils.deleteQuietly(directory);
+		}
+	}
+	
+	@Test
+	public void testNoCacheByDefault() throws IOException {
+		Assert.assertNull(HttpExecutor.DEFAULT.getCacheStatistics());
+		
+		HttpExecutor executor = HttpExecutor.builder().build();
+		try {
+			Assert.assertNull(executor.getCacheStatistics());
+			Assert.assertEquals("fresh", executor.execute(WebRequest.get("http://localhost:8080/fresh")).webResponse().getContent());
+			Assert.assertEquals("fresh", executor.execute(WebRequest.get("http://localhost:8080/fresh")).webResponse().getContent());
+			Assert.assertEquals(2, SERVER_HITS.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testExceptions() {
+		try {
+			HttpExecutor.builder().memoryCache(0, 1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.builder().memoryCache(1, 0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			HttpExecutor.builder().diskCache(null, 1, 1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	private void assertCaching(HttpExecutor executor) throws IOException {
+		HttpCacheStatistics statistics = executor.getCacheStatistics();
+		Assert.assertNotNull(statistics);
+		
+		// fresh responses are served from cache
+		Assert.assertEquals("fresh", executor.execute(WebRequest.get("http://localhost:8080/fresh")).webResponse().getContent());
+		Assert.assertEquals("fresh", executor.execute(WebRequest.get("http://localhost:8080/fresh")).webResponse().getContent());
+		Assert.assertEquals(1, SERVER_HITS.get());
+		Assert.assertEquals(1, statistics.getMisses());
+		Assert.assertEquals(1, statistics.getHits());
+		
+		// stale responses are revalidated with a conditional request
+		Assert.assertEquals("stale", executor.execute(WebRequest.get("http://localhost:8080/stale")).webResponse().getContent());
+		Assert.assertEquals("stale", executor.execute(WebRequest.get("http://localhost:8080/stale")).webResponse().getContent());
+		Assert.assertEquals(3, SERVER_HITS.get());
+		Assert.assertEquals(2, statistics.getMisses());
+		Assert.assertEquals(1, statistics.getValidated());
+		
+		statistics.reset();
+		Assert.assertEquals(0, statistics.getHits());
+		Assert.assertEquals(0, statistics.getMisses());
+		Assert.assertEquals(0, statistics.getValidated());
+		Assert.assertEquals(0, statistics.getModuleResponses());
+	}
+	
+	private static class CachingHandler implements HttpHandler {
+		
+		private final String cacheControl;
+		
+		CachingHandler(String cacheControl) {
+			this.cacheControl = cacheControl;
+		}
+
+		@Override
+		public void handle(HttpExchange httpExchange) throws IOException {
+			SERVER_HITS.incrementAndGet();
+			
+			httpExchange.getResponseHeaders().add("Cache-Control", this.cacheControl);
+			httpExchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+			httpExchange.getResponseHeaders().add("Date", DateUtils.formatDate(new java.util.Date()));
+			
+			if(httpExchange.getRequestHeaders().getFirst("If-Modified-Since") != null) {
+				httpExchange.sendResponseHeaders(304, -1);
+				httpExchange.close();
+				return;
+			}
+			
+			byte[] bytes = httpExchange.getRequestURI().getPath().substring(1).getBytes();
+			httpExchange.sendResponseHeaders(200, bytes.length);
+			
+			OutputStream os = httpExchange.getResponseBody();
+			os.write(bytes);
+			os.close();
+		}
+		
+	}
+	
+}
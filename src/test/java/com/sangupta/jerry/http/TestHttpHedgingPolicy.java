@@ -0,0 +1,243 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpHedgingPolicy}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpHedgingPolicy {
+	
+	private static HttpServer server;
+	
+	private static final AtomicInteger REQUESTS = new AtomicInteger();
+	
+	/**
+	 * Number of requests, from the start, that are served slowly
+	 */
+	private static volatile int slowRequests;
+	
+	private HttpExecutor executor;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/hedge", new SlowFirstHandler());
+		server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(8));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Before
+	public void before() {
+		REQUESTS.set(0);
+		slowRequests = 0;
+		this.executor = HttpExecutor.builder().build();
+	}
+	
+	@After
+	public void after() {
+		this.executor.shutdown();
+	}
+	
+	@Test
+	public void testHedgeWins() throws IOException {
+		HttpHedgingPolicy policy = new HttpHedgingPolicy(100, TimeUnit.MILLISECONDS).budget(100);
+		this.executor.hedging(policy);
+		slowRequests = 1;
+		
+		long start = System.currentTimeMillis();
+		WebResponse response = this.executor.execute(WebRequest.get("http://localhost:8080/hedge")).webResponse();
+		long elapsed = System.currentTimeMillis() - start;
+		
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals("2", response.getContent());
+		Assert.assertTrue(elapsed < 2000);
+		Assert.assertEquals(1, policy.getRequestCount());
+		Assert.assertEquals(1, policy.getHedgeCount());
+		Assert.assertEquals(1, policy.getHedgeWins());
+		
+		// the aborted request is not a failure
+		Assert.assertEquals(0, this.executor.getMetrics().snapshot().getRoute("http://localhost:8080").getFailures());
+	}
+	
+	@Test
+	public void testNoHedgeWhenFast() throws IOException {
+		HttpHedgingPolicy policy = new HttpHedgingPolicy(1, TimeUnit.SECONDS).budget(100);
+		this.executor.hedging(policy);
+		
+		for(int index = 1; index <= 5; index++) {
+			WebResponse response = this.executor.execute(WebRequest.get("http://localhost:8080/hedge")).webResponse();
+			Assert.assertEquals(String.valueOf(index), response.getContent());
+		}
+		
+		Assert.assertEquals(5, policy.getRequestCount());
+		Assert.assertEquals(0, policy.getHedgeCount());
+		Assert.assertEquals(5, REQUESTS.get());
+	}
+	
+	@Test
+	public void testBudget() throws IOException {
+		HttpHedgingPolicy policy = new HttpHedgingPolicy(50, TimeUnit.MILLISECONDS).budget(0);
+		this.executor.hedging(policy);
+		slowRequests = 1;
+		
+		WebResponse response = this.executor.execute(WebRequest.get("http://localhost:8080/hedge")).webResponse();
+		Assert.assertEquals("1", response.getContent());
+		Assert.assertEquals(0, policy.getHedgeCount());
+		Assert.assertEquals(1, policy.getBudgetRejections());
+		Assert.assertEquals(1, REQUESTS.get());
+	}
+	
+	@Test
+	public void testPostNotHedged() throws IOException {
+		HttpHedgingPolicy policy = new HttpHedgingPolicy(50, TimeUnit.MILLISECONDS).budget(100);
+		this.executor.hedging(policy);
+		slowRequests = 1;
+		
+		WebResponse response = this.executor.execute(WebRequest.post("http://localhost:8080/hedge")).webResponse();
+		Assert.assertEquals("1", response.getContent());
+		Assert.assertEquals(0, policy.getRequestCount());
+		Assert.assertEquals(1, REQUESTS.get());
+	}
+	
+	@Test
+	public void testPercentileDelay() throws IOException {
+		for(int index = 0; index < 10; index++) {
+			this.executor.execute(WebRequest.get("http://localhost:8080/hedge")).webResponse();
+		}
+		
+		// fixed delay is too long to hedge, the observed percentile is not
+		HttpHedgingPolicy policy = new HttpHedgingPolicy(1, TimeUnit.MINUTES).usePercentile(95).minSamples(5).budget(100);
+		this.executor.hedging(policy);
+		REQUESTS.set(0);
+		slowRequests = 1;
+		
+		long start = System.currentTimeMillis();
+		WebResponse response = this.executor.execute(WebRequest.get("http://localhost:8080/hedge")).webResponse();
+		
+		Assert.assertEquals("2", response.getContent());
+		Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+		Assert.assertEquals(1, policy.getHedgeWins());
+	}
+	
+	@Test
+	public void testCancelBeforeExecution() {
+		// a hedge cancelled before it is sent must not survive the reset
+		WebRequest duplicate = WebRequest.get("http://localhost:8080/hedge").duplicate();
+		duplicate.cancel();
+		try {
+			this.executor.executeOnce(duplicate);
+			Assert.assertTrue(false);
+		} catch(IOException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertEquals(0, REQUESTS.get());
+	}
+	
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new HttpHedgingPolicy(-1, TimeUnit.MILLISECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpHedgingPolicy(1, null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpHedgingPolicy(1, TimeUnit.MILLISECONDS).usePercentile(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpHedgingPolicy(1, TimeUnit.MILLISECONDS).budget(101);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpHedgingPolicy(1, TimeUnit.MILLISECONDS).minSamples(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	private static class SlowFirstHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			int request = REQUESTS.incrementAndGet();
+			if(request <= slowRequests) {
+				try {
+					Thread.sleep(3000);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			
+			byte[] body = String.valueOf(request).getBytes();
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(body);
+			os.close();
+		}
+		
+	}
+
+}
@@ -0,0 +1,271 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpMetrics} and {@link LatencyHistogram}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpMetrics {
+	
+	private static HttpServer server;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/ok", new StatusHandler(200));
+		server.createContext("/missing", new StatusHandler(404));
+		server.createContext("/error", new StatusHandler(503));
+		server.createContext("/chunked", new StatusHandler(200, 0));
+		server.setExecutor(null);
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Test
+	public void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.snapshot().getMedian());
+		
+		for(long value = 1; value <= 100000; value++) {
+			histogram.recordMicros(value);
+		}
+		
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		Assert.assertEquals(100000, snapshot.getCount());
+		Assert.assertEquals(100000, snapshot.getMax());
+		Assert.assertEquals(50000.5d, snapshot.getMean(), 0.001d);
+		assertWithin(50000, snapshot.getMedian());
+		assertWithin(90000, snapshot.get90thPercentile());
+		assertWithin(99000, snapshot.get99thPercentile());
+		assertWithin(99900, snapshot.get999thPercentile());
+		Assert.assertEquals(100000, snapshot.getValueAtPercentile(100));
+		
+		// small values are exact
+		histogram.reset();
+		histogram.recordMicros(7);
+		histogram.recordNanos(-1);
+		Assert.assertEquals(1, histogram.snapshot().getCount());
+		Assert.assertEquals(7, histogram.snapshot().getMedian());
+		
+		// huge values are clamped
+		histogram.recordMicros(Long.MAX_VALUE);
+		Assert.assertEquals(LatencyHistogram.MAX_VALUE, histogram.snapshot().getMax());
+		
+		// every bucket bound maps back to its bucket
+		for(int index = 0; index < LatencyHistogram.BUCKET_COUNT; index++) {
+			Assert.assertEquals(index, LatencyHistogram.bucketIndex(LatencyHistogram.highestValueInBucket(index)));
+		}
+		
+		try {
+			snapshot.getValueAtPercentile(101);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testRecordingDoesNotAllocate() {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if(!bean.isThreadAllocatedMemorySupported()) {
+			return;
+		}
+		
+		bean.setThreadAllocatedMemoryEnabled(true);
+		
+		HttpMetrics metrics = new HttpMetrics(null);
+		HttpHost host = new HttpHost("localhost", 8080, "http");
+		
+		// warm up so that the route exists and the code is compiled
+		record(metrics, host, 100000);
+		
+		long threadId = Thread.currentThread().getId();
+		long before = bean.getThreadAllocatedBytes(threadId);
+		record(metrics, host, 100000);
+		long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+		
+		Assert.assertTrue("Allocated " + allocated + " bytes", allocated < 10000);
+	}
+	
+	private static void record(HttpMetrics metrics, HttpHost host, int times) {
+		for(int index = 0; index < times; index++) {
+			HttpMetrics.RouteMetrics route = metrics.route(host);
+			route.recordResponse(0, index * 1000l, -1, 200, 10);
+			route.recordCompletion(System.nanoTime() - index * 1000l, 100);
+		}
+	}
+	
+	@Test
+	public void testExecutorMetrics() throws IOException {
+		HttpExecutor executor = HttpExecutor.builder().build();
+		try {
+			for(int index = 0; index < 5; index++) {
+				Assert.assertEquals("ok", executor.execute(WebRequest.get("http://localhost:8080/ok")).webResponse().getContent());
+			}
+			
+			executor.execute(WebRequest.get("http://localhost:8080/missing")).webResponse();
+			executor.execute(WebRequest.get("http://localhost:8080/error")).discardContent();
+			
+			// streamed, closing without reading aborts the connection
+			StreamingWebResponse streaming = executor.execute(WebRequest.get("http://localhost:8080/ok")).streamResponse();
+			streaming.close();
+			
+			executor.execute(WebRequest.post("http://localhost:8080/ok").bodyString("hello", "text/plain")).webResponse();
+			
+			HttpMetrics.Snapshot snapshot = executor.getMetrics().snapshot();
+			HttpMetrics.RouteSnapshot route = snapshot.getRoute("http://localhost:8080");
+			Assert.assertNotNull(route);
+			
+			Assert.assertEquals(7, route.getResponses(2));
+			Assert.assertEquals(1, route.getResponses(4));
+			Assert.assertEquals(1, route.getResponses(5));
+			Assert.assertEquals(0, route.getResponses(6));
+			Assert.assertEquals(9, route.getTimeToFirstByte().getCount());
+			Assert.assertEquals(9, route.getTotal().getCount());
+			Assert.assertEquals(5, route.getBytesSent());
+			Assert.assertEquals(8 * 2, route.getBytesReceived());
+			
+			// connections are reused
+			Assert.assertTrue(route.getConnect().getCount() >= 1);
+			Assert.assertTrue(route.getConnect().getCount() < 9);
+			
+			Assert.assertNotNull(snapshot.getPool());
+			Assert.assertEquals(0, snapshot.getPool().getLeased());
+			Assert.assertTrue(snapshot.getPool().getAvailable() >= 1);
+			Assert.assertNotNull(snapshot.getRoutePools().get("http://localhost:8080"));
+			
+			// rate limit rejections
+			executor.addRateLimiting("localhost", 1, TimeUnit.MINUTES);
+			executor.execute(WebRequest.get("http://localhost:8080/ok")).webResponse();
+			try {
+				executor.execute(WebRequest.get("http://localhost:8080/ok"));
+				Assert.assertTrue(false);
+			} catch(HttpRateLimitException e) {
+				Assert.assertTrue(true);
+			}
+			executor.removeAllRateLimiting();
+			
+			Assert.assertEquals(1, executor.getMetrics().snapshot().getRoute("http://localhost:8080").getRateLimitRejections());
+			
+			// failures
+			try {
+				executor.execute(WebRequest.get("http://localhost:1/nothing-here").connectTimeout(1000));
+				Assert.assertTrue(false);
+			} catch(IOException e) {
+				Assert.assertTrue(true);
+			}
+			
+			Assert.assertEquals(1, executor.getMetrics().snapshot().getRoute("http://localhost:1").getFailures());
+			
+			executor.getMetrics().reset();
+			Assert.assertTrue(executor.getMetrics().snapshot().getRoutes().isEmpty());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testBytesReceived() throws IOException {
+		HttpExecutor executor = HttpExecutor.builder().build();
+		try {
+			// chunked bodies have no content-length
+			Assert.assertEquals("ok", executor.execute(WebRequest.get("http://localhost:8080/chunked")).webResponse().getContent());
+			executor.execute(WebRequest.get("http://localhost:8080/chunked")).discardContent();
+			
+			StreamingWebResponse streaming = executor.execute(WebRequest.get("http://localhost:8080/chunked")).streamResponse();
+			try {
+				Assert.assertEquals(-1, streaming.getSize());
+				Assert.assertEquals('o', streaming.asStream().read());
+			} finally {
+				streaming.close();
+			}
+			
+			// closing the stream drains the rest of the body
+			streaming = executor.execute(WebRequest.get("http://localhost:8080/chunked")).streamResponse();
+			try {
+				streaming.asStream().close();
+				Assert.assertEquals(2, streaming.getBytesRead());
+			} finally {
+				streaming.close();
+			}
+			
+			Assert.assertEquals(2 + 2 + 1 + 2, executor.getMetrics().snapshot().getRoute("http://localhost:8080").getBytesReceived());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private static void assertWithin(long expected, long actual) {
+		Assert.assertTrue("Expected " + expected + " but was " + actual, Math.abs(expected - actual) <= expected * 0.04);
+	}
+	
+	private static class StatusHandler implements HttpHandler {
+		
+		private final int status;
+		
+		private final int length;
+		
+		public StatusHandler(int status) {
+			this(status, 2);
+		}
+		
+		public StatusHandler(int status, int length) {
+			this.status = status;
+			this.length = length;
+		}
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			byte[] body = "ok".getBytes();
+			exchange.sendResponseHeaders(this.status, this.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(body);
+			os.close();
+		}
+		
+	}
+
+}
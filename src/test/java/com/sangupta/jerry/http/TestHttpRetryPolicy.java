@@ -0,0 +1,291 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link HttpRetryPolicy}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestHttpRetryPolicy {
+	
+	private static HttpServer server;
+	
+	private static final AtomicInteger REQUESTS = new AtomicInteger();
+	
+	/**
+	 * Number of requests, from the start, that fail with a 503
+	 */
+	private static volatile int failures;
+	
+	private static volatile String retryAfter;
+	
+	private HttpRetryPolicy policy;
+	
+	private HttpExecutor executor;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/flaky", new FlakyHandler());
+		server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(4));
+		server.start();
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Before
+	public void before() {
+		REQUESTS.set(0);
+		failures = 0;
+		retryAfter = null;
+		
+		this.policy = new HttpRetryPolicy().backOff(1, 10, TimeUnit.MILLISECONDS);
+		this.executor = HttpExecutor.builder().retryPolicy(this.policy).build();
+	}
+	
+	@After
+	public void after() {
+		this.executor.shutdown();
+	}
+	
+	@Test
+	public void testRetryOnStatus() throws IOException {
+		failures = 2;
+		
+		WebResponse response = this.executor.execute(WebRequest.get("http://localhost:8080/flaky")).webResponse();
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals("3", response.getContent());
+		Assert.assertEquals(3, REQUESTS.get());
+		Assert.assertEquals(1, this.policy.getRequestCount());
+		Assert.assertEquals(2, this.policy.getRetryCount());
+	}
+	
+	@Test
+	public void testMaxAttempts() throws IOException {
+		failures = 5;
+		
+		WebResponse response = this.executor.execute(WebRequest.get("http://localhost:8080/flaky")).webResponse();
+		Assert.assertEquals(503, response.getResponseCode());
+		Assert.assertEquals(HttpRetryPolicy.DEFAULT_MAX_ATTEMPTS, REQUESTS.get());
+	}
+	
+	@Test
+	public void testPostNotRetried() throws IOException {
+		failures = 1;
+		
+		WebResponse response = this.executor.execute(WebRequest.post("http://localhost:8080/flaky")).webResponse();
+		Assert.assertEquals(503, response.getResponseCode());
+		Assert.assertEquals(1, REQUESTS.get());
+		
+		failures = 2;
+		this.policy.retryNonIdempotent(true);
+		response = this.executor.execute(WebRequest.post("http://localhost:8080/flaky")).webResponse();
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals(3, REQUESTS.get());
+	}
+	
+	@Test
+	public void testRetryAfter() throws IOException {
+		failures = 1;
+		retryAfter = "3600";
+		
+		WebResponse response = this.executor.execute(WebRequest.get("http://localhost:8080/flaky")).webResponse();
+		Assert.assertEquals(503, response.getResponseCode());
+		Assert.assertEquals(1, REQUESTS.get());
+		
+		failures = 2;
+		retryAfter = "0";
+		response = this.executor.execute(WebRequest.get("http://localhost:8080/flaky")).webResponse();
+		Assert.assertEquals(200, response.getResponseCode());
+	}
+	
+	@Test
+	public void testConnectionRefused() throws IOException {
+		try {
+			this.executor.execute(WebRequest.get("http://localhost:1/never"));
+			Assert.assertTrue(false);
+		} catch(ConnectException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertEquals(HttpRetryPolicy.DEFAULT_MAX_ATTEMPTS - 1, this.policy.getRetryCount());
+	}
+	
+	@Test
+	public void testBudget() throws IOException {
+		this.policy.budget(0).maxAttempts(2);
+		failures = Integer.MAX_VALUE;
+		
+		// the budget starts with ten saved retries and earns nothing
+		for(int index = 0; index < 12; index++) {
+			this.executor.execute(WebRequest.get("http://localhost:8080/flaky")).webResponse();
+		}
+		
+		Assert.assertEquals(10, this.policy.getRetryCount());
+		Assert.assertEquals(2, this.policy.getBudgetRejections());
+		Assert.assertEquals(22, REQUESTS.get());
+	}
+	
+	@Test
+	public void testInterceptorSeesEachAttempt() throws IOException {
+		failures = 2;
+		
+		final AtomicInteger before = new AtomicInteger();
+		final AtomicInteger after = new AtomicInteger();
+		this.executor.addInvocationInterception(new HttpInvocationInterceptor() {
+			
+			@Override
+			public int getPriority() {
+				return 0;
+			}
+			
+			@Override
+			public WebResponse beforeInvocation(WebRequest request) {
+				before.incrementAndGet();
+				return null;
+			}
+			
+			@Override
+			public WebResponse afterInvocation(WebResponse response, IOException exception) {
+				after.incrementAndGet();
+				return response;
+			}
+			
+		});
+		
+		WebResponse response = this.executor.execute(WebRequest.get("http://localhost:8080/flaky")).webResponse();
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertEquals(3, before.get());
+		Assert.assertEquals(3, after.get());
+	}
+	
+	@Test
+	public void testNextDelay() {
+		HttpRetryPolicy policy = new HttpRetryPolicy().backOff(10, 100, TimeUnit.MILLISECONDS);
+		long base = TimeUnit.MILLISECONDS.toNanos(10);
+		long max = TimeUnit.MILLISECONDS.toNanos(100);
+		
+		long delay = base;
+		for(int index = 0; index < 1000; index++) {
+			long next = policy.nextDelayNanos(delay);
+			Assert.assertTrue(next >= base);
+			Assert.assertTrue(next <= max);
+			Assert.assertTrue(next <= delay * 3);
+			delay = next;
+		}
+	}
+	
+	@Test
+	public void testRetryAfterParsing() {
+		Assert.assertEquals(0, HttpRetryPolicy.getRetryAfterNanos(null));
+		Assert.assertEquals(0, HttpRetryPolicy.getRetryAfterNanos("junk"));
+		Assert.assertEquals(TimeUnit.SECONDS.toNanos(120), HttpRetryPolicy.getRetryAfterNanos(" 120 "));
+		Assert.assertEquals(0, HttpRetryPolicy.getRetryAfterNanos("Wed, 21 Oct 2015 07:28:00 GMT"));
+	}
+	
+	@Test
+	public void testInvalidArguments() {
+		try {
+			new HttpRetryPolicy().maxAttempts(0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpRetryPolicy().backOff(10, 5, TimeUnit.MILLISECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpRetryPolicy().backOff(1, 5, null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpRetryPolicy().retryOnStatus((int[]) null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new HttpRetryPolicy().budget(-1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	private static class FlakyHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			int request = REQUESTS.incrementAndGet();
+			
+			int status = 200;
+			if(request <= failures) {
+				status = 503;
+				if(retryAfter != null) {
+					exchange.getResponseHeaders().add("Retry-After", retryAfter);
+				}
+			}
+			
+			byte[] body = String.valueOf(request).getBytes();
+			exchange.sendResponseHeaders(status, body.length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(body);
+			os.close();
+		}
+		
+	}
+
+}
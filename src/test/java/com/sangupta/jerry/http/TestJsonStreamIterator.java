@@ -0,0 +1,320 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.jerry.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+import org.apache.http.client.HttpResponseException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.service.impl.DefaultHttpServiceImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link JsonStreamIterator} and the typed JSON accessors of
+ * {@link WebRawResponse}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestJsonStreamIterator {
+	
+	private static final int ELEMENTS = 100000;
+	
+	private static HttpServer server;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/object", new JsonHandler("application/json", false, false));
+		server.createContext("/array", new JsonHandler("application/json", true, false));
+		server.createContext("/ndjson", new JsonHandler("application/x-ndjson", false, true));
+		server.createContext("/lines", new JsonHandler("text/plain", false, true));
+		server.createContext("/missing", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+			}
+			
+		});
+		server.setExecutor(null);
+		server.start();
+	}
+	
+	@AfterClass
+	public static void tearDown() {
+		server.stop(0);
+	}
+	
+	public static class Item {
+		
+		int id;
+		
+		String name;
+		
+	}
+	
+	private static class JsonHandler implements HttpHandler {
+		
+		private final String contentType;
+		
+		private final boolean array;
+		
+		private final boolean lines;
+		
+		public JsonHandler(String contentType, boolean array, boolean lines) {
+			this.contentType = contentType;
+			this.array = array;
+			this.lines = lines;
+		}
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			exchange.getResponseHeaders().add("Content-Type", this.contentType);
+			exchange.sendResponseHeaders(200, 0);
+			
+			OutputStream os = exchange.getResponseBody();
+			try {
+				if(!this.array && !this.lines) {
+					os.write(item(1).getBytes(StandardCharsets.UTF_8));
+					return;
+				}
+				
+				if(this.array) {
+					os.write('[');
+				}
+				
+				for(int index = 0; index < ELEMENTS; index++) {
+					if(index > 0) {
+						os.write(this.array ? ',' : '\n');
+					}
+					
+					os.write(item(index).getBytes(StandardCharsets.UTF_8));
+				}
+				
+				if(this.array) {
+					os.write(']');
+				}
+			} catch(IOException e) {
+				// client aborted the connection
+			} finally {
+				exchange.close();
+			}
+		}
+		
+		private static String item(int id) {
+			return "{\"id\":" + id + ",\"name\":\"item-" + id + "\"}";
+		}
+		
+	}
+	
+	@Test
+	public void testAs() throws IOException {
+		WebRawResponse raw = WebRequest.get("http://localhost:8080/object").execute();
+		Item item = raw.as(Item.class);
+		Assert.assertNotNull(item);
+		Assert.assertEquals(1, item.id);
+		Assert.assertEquals("item-1", item.name);
+		Assert.assertTrue(raw.isConsumed());
+		
+		try {
+			raw.as(Item.class);
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			WebRequest.get("http://localhost:8080/missing").execute().as(Item.class);
+			Assert.assertTrue(false);
+		} catch(HttpResponseException e) {
+			Assert.assertEquals(404, e.getStatusCode());
+		}
+	}
+	
+	@Test
+	public void testIterateArray() throws IOException {
+		int count = 0;
+		try(JsonStreamIterator<Item> iterator = WebRequest.get("http://localhost:8080/array").execute().iterate(Item.class)) {
+			while(iterator.hasNext()) {
+				Item item = iterator.next();
+				Assert.assertEquals(count, item.id);
+				count++;
+			}
+			
+			Assert.assertTrue(iterator.isClosed());
+			
+			try {
+				iterator.next();
+				Assert.assertTrue(false);
+			} catch(NoSuchElementException e) {
+				Assert.assertTrue(true);
+			}
+		}
+		
+		Assert.assertEquals(ELEMENTS, count);
+	}
+	
+	@Test
+	public void testStreamLines() throws IOException {
+		// detected via the content type
+		try(Stream<Item> stream = WebRequest.get("http://localhost:8080/ndjson").execute().stream(Item.class)) {
+			Assert.assertEquals(ELEMENTS, stream.count());
+		}
+		
+		// detected via the first token
+		try(Stream<Item> stream = WebRequest.get("http://localhost:8080/lines").execute().stream(Item.class)) {
+			Assert.assertEquals(ELEMENTS - 1, stream.skip(ELEMENTS - 1).findFirst().get().id);
+		}
+	}
+	
+	@Test
+	public void testEarlyClose() throws IOException {
+		JsonStreamIterator<Item> iterator = WebRequest.get("http://localhost:8080/array").execute().iterate(Item.class);
+		Assert.assertTrue(iterator.hasNext());
+		Assert.assertEquals(0, iterator.next().id);
+		
+		iterator.close();
+		Assert.assertTrue(iterator.isClosed());
+		Assert.assertFalse(iterator.hasNext());
+		
+		// the connection is usable afterwards
+		Item item = WebRequest.get("http://localhost:8080/object").execute().as(Item.class);
+		Assert.assertEquals(1, item.id);
+	}
+	
+	@Test
+	public void testReader() throws IOException {
+		try(JsonStreamIterator<Item> iterator = new JsonStreamIterator<Item>(new StringReader("[{\"id\":3}, null, {\"id\":4}]"), Item.class)) {
+			Assert.assertEquals(3, iterator.next().id);
+			Assert.assertNull(iterator.next());
+			Assert.assertEquals(4, iterator.next().id);
+			Assert.assertFalse(iterator.hasNext());
+		}
+		
+		try(JsonStreamIterator<Item> iterator = new JsonStreamIterator<Item>(new StringReader(""), Item.class)) {
+			Assert.assertFalse(iterator.hasNext());
+		}
+		
+		try {
+			new JsonStreamIterator<Item>(new StringReader(""), null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Assert.assertTrue(JsonStreamIterator.isLineDelimited("application/x-ndjson; charset=UTF-8"));
+		Assert.assertTrue(JsonStreamIterator.isLineDelimited("application/jsonl"));
+		Assert.assertFalse(JsonStreamIterator.isLineDelimited("application/json"));
+		Assert.assertFalse(JsonStreamIterator.isLineDelimited(null));
+	}
+	
+	@Test
+	public void testWithInterceptor() throws IOException {
+		HttpInvocationInterceptor interceptor = new HttpInvocationInterceptor() {
+			
+			@Override
+			public int getPriority() {
+				return 0;
+			}
+			
+			@Override
+			public WebResponse beforeInvocation(WebRequest request) {
+				return null;
+			}
+			
+			@Override
+			public WebResponse afterInvocation(WebResponse response, IOException exception) {
+				return response;
+			}
+			
+		};
+		
+		HttpExecutor.DEFAULT.addInvocationInterception(interceptor);
+		try {
+			WebRawResponse raw = WebRequest.get("http://localhost:8080/object").execute();
+			Assert.assertTrue(raw instanceof HandledWebRawResponse);
+			Assert.assertEquals("item-1", raw.as(Item.class).name);
+			
+			try(Stream<Item> stream = WebRequest.get("http://localhost:8080/ndjson").execute().stream(Item.class)) {
+				Assert.assertEquals(ELEMENTS, stream.count());
+			}
+			
+			try {
+				WebRequest.get("http://localhost:8080/missing").execute().iterate(Item.class);
+				Assert.assertTrue(false);
+			} catch(HttpResponseException e) {
+				Assert.assertEquals(404, e.getStatusCode());
+			}
+			
+			DefaultHttpServiceImpl service = new DefaultHttpServiceImpl();
+			Assert.assertEquals(1, service.getJSON("http://localhost:8080/object", Item.class).id);
+			Assert.assertNull(service.getJSON("http://localhost:8080/missing", Item.class));
+			Assert.assertNull(service.streamJSON("http://localhost:8080/missing", Item.class));
+			
+			try(JsonStreamIterator<Item> iterator = service.streamJSON("http://localhost:8080/array", Item.class)) {
+				Assert.assertEquals(0, iterator.next().id);
+			}
+		} finally {
+			HttpExecutor.DEFAULT.removeInvocationInterceptor(interceptor);
+		}
+	}
+	
+	@Test
+	public void testHttpService() throws IOException {
+		DefaultHttpServiceImpl service = new DefaultHttpServiceImpl();
+		
+		Item item = service.getJSON("http://localhost:8080/object", Item.class);
+		Assert.assertNotNull(item);
+		Assert.assertEquals("item-1", item.name);
+		
+		Assert.assertNull(service.getJSON("http://localhost:8080/missing", Item.class));
+		Assert.assertNull(service.getJSON("http://localhost:8080/array", Item.class));
+		Assert.assertNull(service.streamJSON("http://localhost:8080/missing", Item.class));
+		
+		int count = 0;
+		try(JsonStreamIterator<Item> iterator = service.streamJSON("http://localhost:8080/ndjson", Item.class)) {
+			while(iterator.hasNext()) {
+				iterator.next();
+				count++;
+			}
+		}
+		
+		Assert.assertEquals(ELEMENTS, count);
+	}
+
+}
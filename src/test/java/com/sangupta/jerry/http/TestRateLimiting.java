@@ -21,6 +21,7 @@
 
 package com.sangupta.jerry.http;
 
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.http.client.HttpClient;
@@ -213,6 +214,87 @@ public class TestRateLimiting {
 		}
 	}
 	
+	@Test
+	public void testSubSecondRateLimiting() throws InterruptedException {
+		HttpService service = new DefaultHttpServiceImpl();
+		service.setConnectionTimeout(10);
+		service.setSocketTimeout(10);
+		
+		HttpExecutor.DEFAULT.addRateLimiting("localhost", 1, 100, TimeUnit.MILLISECONDS);
+		service.getTextResponse("http://localhost:8080/hit");
+		
+		try {
+			service.getTextResponse("http://localhost:8080/hit");
+			Assert.assertTrue(false);
+		} catch(HttpRateLimitException e) {
+			Assert.assertTrue(true);
+		}
+		
+		Thread.sleep(150);
+		service.getTextResponse("http://localhost:8080/hit");
+	}
+	
+	@Test
+	public void testBlockOnRateLimit() {
+		HttpService service = new DefaultHttpServiceImpl();
+		service.setConnectionTimeout(10);
+		service.setSocketTimeout(10);
+		
+		HttpExecutor.DEFAULT.addRateLimiting("localhost", 1, 100, TimeUnit.MILLISECONDS);
+		HttpExecutor.DEFAULT.blockOnRateLimit(1, TimeUnit.SECONDS);
+		try {
+			long start = System.currentTimeMillis();
+			service.getTextResponse("http://localhost:8080/hit");
+			service.getTextResponse("http://localhost:8080/hit");
+			service.getTextResponse("http://localhost:8080/hit");
+			Assert.assertTrue(System.currentTimeMillis() - start >= 190);
+			
+			// waits longer than the maximum are rejected
+			HttpExecutor.DEFAULT.blockOnRateLimit(10, TimeUnit.MILLISECONDS);
+			service.getTextResponse("http://localhost:8080/hit");
+			Assert.assertTrue(false);
+		} catch(HttpRateLimitException e) {
+			Assert.assertTrue(true);
+		} finally {
+			HttpExecutor.DEFAULT.rejectOnRateLimit();
+		}
+		
+		try {
+			HttpExecutor.DEFAULT.blockOnRateLimit(-1, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+	
+	@Test
+	public void testBlockOnRateLimitPerExecutor() {
+		// executors over the global client share the limits, but not the wait
+		HttpExecutor blocking = HttpExecutor.newInstance().blockOnRateLimit(1, TimeUnit.SECONDS);
+		HttpExecutor rejecting = HttpExecutor.newInstance();
+		
+		HttpExecutor.DEFAULT.addRateLimiting("localhost", 1, 100, TimeUnit.MILLISECONDS);
+		hit(blocking);
+		try {
+			hit(rejecting);
+			Assert.assertTrue(false);
+		} catch(HttpRateLimitException e) {
+			Assert.assertTrue(true);
+		}
+		
+		long start = System.currentTimeMillis();
+		hit(blocking);
+		Assert.assertTrue(System.currentTimeMillis() - start >= 50);
+	}
+	
+	private static void hit(HttpExecutor executor) {
+		try {
+			executor.execute(WebRequest.get("http://localhost:8080/hit")).webResponse();
+		} catch(IOException e) {
+			// only the rate limit matters, not the response
+		}
+	}
+	
 	private void mustWait(int seconds) {
 		// wait for 10 seconds
 		long delta = 1000l * seconds;
@@ -0,0 +1,278 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sangupta.jerry.http.service.impl.DefaultHttpServiceImpl;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for {@link StreamingWebResponse} and
+ * {@link ChunkedResponseHandler}.
+ * 
+ * @author sangupta
+ *
+ */
+@SuppressWarnings("restriction")
+public class TestStreamingWebResponse {
+	
+	private static final int BODY_SIZE = 4 * 1024 * 1024;
+	
+	private static HttpServer server;
+	
+	@BeforeClass
+	public static void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(8080), 0);
+		server.createContext("/large", new LargeBodyHandler(BODY_SIZE));
+		server.createContext("/chunked", new LargeBodyHandler(0));
+		server.setExecutor(null);
+		server.start();
+	}
+	
+	private static class LargeBodyHandler implements HttpHandler {
+		
+		private final long contentLength;
+		
+		public LargeBodyHandler(long contentLength) {
+			this.contentLength = contentLength;
+		}
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+			exchange.sendResponseHeaders(200, this.contentLength);
+			
+			byte[] block = new byte[64 * 1024];
+			for(int index = 0; index < block.length; index++) {
+				block[index] = (byte) index;
+			}
+			
+			OutputStream os = exchange.getResponseBody();
+			try {
+				for(int written = 0; written < BODY_SIZE; written += block.length) {
+					os.write(block);
+				}
+			} catch(IOException e) {
+				// client aborted the connection
+			} finally {
+				exchange.close();
+			}
+			}
+	}
+	
+	@AfterClass
+	public static void shutdown() {
+		server.stop(0);
+	}
+	
+	@Test
+	public void testStreamFully() throws IOException {
+		HttpExecutor executor = HttpExecutor.builder().maxConnections(1).maxConnectionsPerRoute(1).build();
+		try {
+			StreamingWebResponse response = executor.execute(WebRequest.get("http://localhost:8080/large")).streamResponse();
+			try {
+				Assert.assertEquals(200, response.getResponseCode());
+				Assert.assertEquals(BODY_SIZE, response.getSize());
+				Assert.assertEquals("application/octet-stream", response.getContentType());
+				
+				InputStream stream = response.asStream();
+				Assert.assertTrue(stream == response.asStream());
+				
+				byte[] buffer = new byte[8192];
+				long total = 0;
+				int read;
+				while((read = stream.read(buffer)) != -1) {
+					total += read;
+				}
+				
+				Assert.assertEquals(BODY_SIZE, total);
+				Assert.assertEquals(BODY_SIZE, response.getBytesRead());
+			} finally {
+				response.close();
+			}
+			
+			Assert.assertTrue(response.isClosed());
+			Assert.assertEquals(0, executor.getPoolingConnectionManager().getTotalStats().getLeased());
+			Assert.assertEquals(1, executor.getPoolingConnectionManager().getTotalStats().getAvailable());
+			
+			try {
+				response.asStream();
+				Assert.assertTrue(false);
+			} catch(IllegalStateException e) {
+				Assert.assertTrue(true);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testPartialReadReleasesConnection() throws IOException {
+		HttpExecutor executor = HttpExecutor.builder().maxConnections(1).maxConnectionsPerRoute(1).build();
+		try {
+			for(int iteration = 0; iteration < 3; iteration++) {
+				StreamingWebResponse response = executor.execute(WebRequest.get("http://localhost:8080/large")).streamResponse();
+				try {
+					ReadableByteChannel channel = response.asChannel();
+					ByteBuffer buffer = ByteBuffer.allocate(1024);
+					int read = channel.read(buffer);
+					Assert.assertTrue(read > 0);
+					Assert.assertEquals(read, response.getBytesRead());
+				} finally {
+					response.close();
+				}
+				
+				Assert.assertEquals(0, executor.getPoolingConnectionManager().getTotalStats().getLeased());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testBufferedAccessorsNotSupported() throws IOException {
+		WebRawResponse raw = HttpExecutor.DEFAULT.execute(WebRequest.get("http://localhost:8080/large"));
+		StreamingWebResponse response = raw.streamResponse();
+		try {
+			Assert.assertTrue(raw.isConsumed());
+			
+			try {
+				response.asBytes();
+				Assert.assertTrue(false);
+			} catch(IllegalStateException e) {
+				Assert.assertTrue(true);
+			}
+			
+			try {
+				response.getContent();
+				Assert.assertTrue(false);
+			} catch(IllegalStateException e) {
+				Assert.assertTrue(true);
+			}
+			
+			try {
+				raw.streamResponse();
+				Assert.assertTrue(false);
+			} catch(IllegalStateException e) {
+				Assert.assertTrue(true);
+			}
+		} finally {
+			response.close();
+			response.close();
+		}
+	}
+	
+	@Test
+	public void testWriteToFile() throws IOException {
+		File file = File.createTempFile("jerry-http-", ".bin");
+		try {
+			StreamingWebResponse response = HttpExecutor.DEFAULT.execute(WebRequest.get("http://localhost:8080/large")).streamResponse();
+			Assert.assertEquals(BODY_SIZE, response.writeToFile(file, 1024, true));
+			Assert.assertTrue(response.isClosed());
+			Assert.assertEquals(BODY_SIZE, file.length());
+			
+			// no content-length: preallocation is skipped
+			response = HttpExecutor.DEFAULT.execute(WebRequest.get("http://localhost:8080/chunked")).streamResponse();
+			Assert.assertEquals(0, response.getBytesRead());
+			Assert.assertEquals(BODY_SIZE, response.writeToFile(file, StreamingWebResponse.DEFAULT_TRANSFER_SIZE, true));
+			Assert.assertEquals(BODY_SIZE, response.getBytesRead());
+			Assert.assertEquals(BODY_SIZE, file.length());
+			
+			// raw response streams as well
+			WebRequest.get("http://localhost:8080/large").execute().writeToFile(file);
+			Assert.assertEquals(BODY_SIZE, file.length());
+			
+			byte[] bytes = FileUtils.readFileToByteArray(file);
+			for(int index = 0; index < bytes.length; index += 4099) {
+				Assert.assertEquals((byte) (index % (64 * 1024)), bytes[index]);
+			}
+			
+			// via the service
+			file.delete();
+			Assert.assertTrue(new DefaultHttpServiceImpl().downloadToFile("http://localhost:8080/large", file));
+			Assert.assertEquals(BODY_SIZE, file.length());
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void testChunkedResponseHandler() throws IOException {
+		final AtomicLong total = new AtomicLong();
+		final AtomicInteger maxChunk = new AtomicInteger();
+		
+		WebResponse response = WebRequest.get("http://localhost:8080/large").execute().webResponse(new ChunkedResponseHandler(new ChunkedResponseHandler.ChunkListener() {
+			
+			@Override
+			public void onChunk(byte[] buffer, int offset, int length) throws IOException {
+				total.addAndGet(length);
+				if(length > maxChunk.get()) {
+					maxChunk.set(length);
+				}
+			}
+			
+		}, 4096));
+		
+		Assert.assertEquals(200, response.getResponseCode());
+		Assert.assertNull(response.getBytes());
+		Assert.assertEquals(BODY_SIZE, total.get());
+		Assert.assertTrue(maxChunk.get() <= 4096);
+		
+		try {
+			new ChunkedResponseHandler(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			new ChunkedResponseHandler(new ChunkedResponseHandler.ChunkListener() {
+				
+				@Override
+				public void onChunk(byte[] buffer, int offset, int length) throws IOException {
+				}
+				
+			}, 0);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+}
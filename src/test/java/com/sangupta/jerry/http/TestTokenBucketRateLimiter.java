@@ -0,0 +1,218 @@
+/**
+ *
+ * jerry-http - Common Java Functionality
+ * Copyright (c) 2012-2017, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/jerry-http
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.http;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TokenBucketRateLimiter}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestTokenBucketRateLimiter {
+	
+	@Test
+	public void testLimits() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter();
+		Assert.assertFalse(limiter.hasRateLimits());
+		Assert.assertTrue(limiter.tryAcquire("localhost"));
+		
+		limiter.addRateLimiting("LocalHost", 3, 1, TimeUnit.MINUTES);
+		Assert.assertTrue(limiter.hasRateLimits());
+		
+		Assert.assertTrue(limiter.tryAcquire("localhost"));
+		Assert.assertTrue(limiter.tryAcquire("LOCALHOST"));
+		Assert.assertTrue(limiter.tryAcquire("localhost"));
+		Assert.assertFalse(limiter.tryAcquire("localhost"));
+		
+		// other hosts are not affected
+		Assert.assertTrue(limiter.tryAcquire("example.com"));
+		Assert.assertTrue(limiter.tryAcquire(null));
+		
+		limiter.removeRateLimiting("LOCALHOST");
+		Assert.assertTrue(limiter.tryAcquire("localhost"));
+		Assert.assertFalse(limiter.hasRateLimits());
+		
+		limiter.addRateLimiting("localhost", 1, 1, TimeUnit.DAYS);
+		limiter.removeAllRateLimiting();
+		Assert.assertFalse(limiter.hasRateLimits());
+	}
+	
+	@Test
+	public void testSubSecondRefill() throws InterruptedException {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter();
+		limiter.addRateLimiting("localhost", 2, 50, TimeUnit.MILLISECONDS);
+		
+		Assert.assertTrue(limiter.tryAcquire("localhost"));
+		Assert.assertTrue(limiter.tryAcquire("localhost"));
+		Assert.assertFalse(limiter.tryAcquire("localhost"));
+		
+		Thread.sleep(60);
+		Assert.assertTrue(limiter.tryAcquire("localhost"));
+		Assert.assertTrue(limiter.tryAcquire("localhost"));
+		Assert.assertFalse(limiter.tryAcquire("localhost"));
+	}
+	
+	@Test
+	public void testReserve() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter();
+		Assert.assertEquals(0, limiter.reserve("localhost", 0));
+		
+		limiter.addRateLimiting("localhost", 1, 1, TimeUnit.SECONDS);
+		Assert.assertEquals(0, limiter.reserve("localhost", 0));
+		
+		// not available without waiting
+		Assert.assertEquals(-1, limiter.reserve("localhost", 0));
+		
+		// waiters are queued one interval apart
+		long first = limiter.reserve("localhost", TimeUnit.SECONDS.toNanos(5));
+		long second = limiter.reserve("localhost", TimeUnit.SECONDS.toNanos(5));
+		Assert.assertTrue(first > 0 && first <= TimeUnit.SECONDS.toNanos(1));
+		Assert.assertTrue(second > first);
+		Assert.assertTrue(second - first >= TimeUnit.MILLISECONDS.toNanos(990));
+		
+		// beyond the maximum wait nothing is reserved
+		Assert.assertEquals(-1, limiter.reserve("localhost", TimeUnit.SECONDS.toNanos(1)));
+		long third = limiter.reserve("localhost", TimeUnit.SECONDS.toNanos(5));
+		Assert.assertTrue(third - second >= TimeUnit.MILLISECONDS.toNanos(990));
+		Assert.assertTrue(third - second <= TimeUnit.MILLISECONDS.toNanos(1010));
+	}
+	
+	@Test
+	public void testCancelReservation() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter();
+		limiter.cancelReservation("localhost");
+		
+		limiter.addRateLimiting("localhost", 1, 1, TimeUnit.SECONDS);
+		
+		// a full bucket is not over-filled
+		limiter.cancelReservation("localhost");
+		Assert.assertEquals(0, limiter.reserve("localhost", 0));
+		Assert.assertEquals(-1, limiter.reserve("localhost", 0));
+		
+		// the next waiter takes the slot given back
+		long first = limiter.reserve("localhost", TimeUnit.SECONDS.toNanos(5));
+		limiter.cancelReservation("localhost");
+		long second = limiter.reserve("localhost", TimeUnit.SECONDS.toNanos(5));
+		Assert.assertTrue(second <= first);
+		Assert.assertTrue(first - second <= TimeUnit.MILLISECONDS.toNanos(10));
+		
+		// the token taken right away is given back as well
+		limiter.cancelReservation("localhost");
+		limiter.cancelReservation("localhost");
+		Assert.assertEquals(0, limiter.reserve("localhost", 0));
+	}
+	
+	@Test
+	public void testNoOverAdmissionUnderContention() throws InterruptedException {
+		final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter();
+		final int limit = 1000;
+		limiter.addRateLimiting("localhost", limit, 1, TimeUnit.HOURS);
+		
+		final int threads = 32;
+		final AtomicInteger admitted = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		
+		for(int index = 0; index < threads; index++) {
+			new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for(int count = 0; count < 1000; count++) {
+							if(limiter.tryAcquire("localhost")) {
+								admitted.incrementAndGet();
+							}
+						}
+					} catch(InterruptedException e) {
+						// exit
+					} finally {
+						done.countDown();
+					}
+				}
+				
+			}).start();
+		}
+		
+		start.countDown();
+		done.await();
+		
+		Assert.assertEquals(limit, admitted.get());
+	}
+	
+	@Test
+	public void testExceptions() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter();
+		
+		try {
+			limiter.addRateLimiting(null, 1, 1, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			limiter.addRateLimiting("localhost", 0, 1, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			limiter.addRateLimiting("localhost", 1, 0, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			limiter.addRateLimiting("localhost", 1, 1, null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			limiter.addRateLimiting("localhost", 10, 1, TimeUnit.NANOSECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		limiter.addRateLimiting("localhost", 1, 1, TimeUnit.SECONDS);
+		try {
+			limiter.addRateLimiting("LOCALHOST", 1, 1, TimeUnit.SECONDS);
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+}
@@ -22,6 +22,7 @@
 package com.sangupta.jerry.http;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -29,9 +30,14 @@ import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpVersion;
 import org.apache.http.entity.ContentType;
@@ -44,6 +50,7 @@ import org.junit.Test;
 import com.sangupta.jerry.constants.HttpHeaderName;
 import com.sangupta.jerry.constants.HttpMimeType;
 import com.sangupta.jerry.util.ByteArrayUtils;
+import com.sangupta.jerry.util.GsonUtils;
 
 /**
  * Unit tests for {@link WebRequest}.
@@ -218,6 +225,106 @@ public class TestWebRequest {
 		Assert.assertEquals("one=two&three=four", bodyAsString(request));
 	}
 
+	@Test
+	public void testCompressBody() throws IOException {
+		// exception on get request
+		try {
+			WebRequest.get("http://localhost").compressBody();
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			WebRequest.post("http://localhost").compressBody(-1);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		try {
+			WebRequest.post("http://localhost").compressBody(0, 10);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+		
+		StringBuilder builder = new StringBuilder();
+		for(int index = 0; index < 1000; index++) {
+			builder.append("{\"index\":").append(index).append("}\n");
+		}
+		String body = builder.toString();
+		
+		// applies to the body already set
+		WebRequest request = WebRequest.post("http://localhost").bodyString(body, HttpMimeType.JSON).compressBody();
+		HttpEntity entity = ((HttpEntityEnclosingRequest) request.getHttpRequest()).getEntity();
+		Assert.assertEquals("gzip", entity.getContentEncoding().getValue());
+		Assert.assertEquals(-1, entity.getContentLength());
+		Assert.assertTrue(entity.isChunked());
+		Assert.assertTrue(entity.isRepeatable());
+		Assert.assertEquals(HttpMimeType.JSON, ContentType.get(entity).getMimeType());
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeTo(out);
+		Assert.assertTrue(out.size() < body.length() / 4);
+		Assert.assertEquals(body, IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), "UTF-8"));
+		
+		// and to bodies set later, above the threshold
+		request = WebRequest.post("http://localhost").compressBody(100, Deflater.BEST_SPEED);
+		request.bodyString("small", HttpMimeType.TEXT_PLAIN);
+		Assert.assertEquals("small", bodyAsString(request));
+		
+		request.bodyString(body, HttpMimeType.TEXT_PLAIN);
+		out = new ByteArrayOutputStream();
+		((HttpEntityEnclosingRequest) request.getHttpRequest()).getEntity().writeTo(out);
+		Assert.assertEquals(body, IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), "UTF-8"));
+		
+		// bodies of unknown length are compressed
+		request.bodyStream(new ByteArrayInputStream(new byte[10]));
+		Assert.assertEquals("gzip", ((HttpEntityEnclosingRequest) request.getHttpRequest()).getEntity().getContentEncoding().getValue());
+	}
+
+	@Test
+	public void testBodyJson() throws IOException {
+		Map<String, Object> object = new HashMap<>();
+		object.put("name", "jerry \u00e9");
+		object.put("values", Arrays.asList(1, 2, 3));
+		String json = GsonUtils.getGson().toJson(object);
+		
+		// one-shot
+		WebRequest request = WebRequest.post("http://localhost").bodyJson(object);
+		HttpEntity entity = ((HttpEntityEnclosingRequest) request.getHttpRequest()).getEntity();
+		Assert.assertFalse(entity.isRepeatable());
+		Assert.assertEquals(-1, entity.getContentLength());
+		Assert.assertEquals("application/json; charset=UTF-8", entity.getContentType().getValue());
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeTo(out);
+		Assert.assertEquals(json, out.toString("UTF-8"));
+		
+		try {
+			entity.writeTo(new ByteArrayOutputStream());
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// repeatable
+		request = WebRequest.post("http://localhost").bodyJson(object, true);
+		entity = ((HttpEntityEnclosingRequest) request.getHttpRequest()).getEntity();
+		Assert.assertTrue(entity.isRepeatable());
+		Assert.assertEquals(json, IOUtils.toString(entity.getContent(), "UTF-8"));
+		Assert.assertEquals(json, IOUtils.toString(entity.getContent(), "UTF-8"));
+		
+		// exception on get request
+		try {
+			WebRequest.get("http://localhost").bodyJson(object);
+			Assert.assertTrue(false);
+		} catch(IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
 	private String bodyAsString(WebRequest request) throws UnsupportedOperationException, IOException {
 		InputStream stream = ((HttpEntityEnclosingRequest) request.getHttpRequest()).getEntity().getContent();
 		return IOUtils.toString(stream);
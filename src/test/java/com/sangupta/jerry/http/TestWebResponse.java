@@ -21,15 +21,25 @@
 
 package com.sangupta.jerry.http;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.message.BasicHeader;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -142,10 +152,104 @@ public class TestWebResponse {
 		
 		Assert.assertEquals(-1, response.getLastModified());
 		
-		response.headers.put(HttpHeaderName.LAST_MODIFIED, "Fri, 03 Jun 2016 01:54:51 GMT");
+		response.setHeader(HttpHeaderName.LAST_MODIFIED, "Fri, 03 Jun 2016 01:54:51 GMT");
 		Assert.assertEquals(1464918891000l, response.getLastModified());
 		
-		response.headers.put(HttpHeaderName.LAST_MODIFIED, "garbage value");
+		response.setHeader(HttpHeaderName.LAST_MODIFIED, "garbage value");
 		Assert.assertEquals(-1, response.getLastModified());
+		
+		// as sent by HTTP/2 servers
+		response.setHeader("last-modified", "Fri, 03 Jun 2016 01:54:51 GMT");
+		Assert.assertEquals(1464918891000l, response.getLastModified());
+		Assert.assertEquals(1, response.getHeaders(HttpHeaderName.LAST_MODIFIED).size());
+	}
+	
+	@Test
+	public void testHeaders() throws IOException, ClassNotFoundException {
+		Header[] source = new Header[] {
+			new BasicHeader("content-type", "text/plain"),
+			new BasicHeader("Set-Cookie", "a=1"),
+			new BasicHeader("X-Custom", "one"),
+			new BasicHeader("set-cookie", "b=2")
+		};
+		
+		WebResponseHeaders headers = new WebResponseHeaders(source);
+		Assert.assertEquals(4, headers.size());
+		Assert.assertEquals("text/plain", headers.getFirst("Content-Type"));
+		Assert.assertEquals("text/plain", headers.getFirst("CONTENT-TYPE"));
+		Assert.assertSame(HttpHeaders.CONTENT_TYPE, headers.getName(0));
+		Assert.assertEquals("x-custom", headers.getName(2).toLowerCase());
+		
+		// repeated headers are all kept
+		Assert.assertEquals(Arrays.asList("a=1", "b=2"), headers.getAll("SET-COOKIE"));
+		Assert.assertEquals("a=1", headers.getFirst("set-cookie"));
+		Assert.assertEquals("b=2", headers.getLast("set-cookie"));
+		Assert.assertTrue(headers.getAll("missing").isEmpty());
+		Assert.assertNull(headers.getFirst("missing"));
+		Assert.assertFalse(headers.contains(null));
+		
+		// map view
+		Map<String, String> map = headers.asMap();
+		Assert.assertEquals(3, map.size());
+		Assert.assertEquals("b=2", map.get("Set-Cookie"));
+		Assert.assertEquals("one", map.get("x-custom"));
+		Assert.assertTrue(map.containsKey("X-CUSTOM"));
+		Assert.assertFalse(map.containsKey("missing"));
+		
+		Map<String, String> copy = new HashMap<>(map);
+		Assert.assertEquals(3, copy.size());
+		Assert.assertEquals("b=2", copy.get("Set-Cookie"));
+		
+		try {
+			map.put("a", "b");
+			Assert.assertTrue(false);
+		} catch(UnsupportedOperationException e) {
+			Assert.assertTrue(true);
+		}
+		
+		// set replaces all existing values
+		headers.set("SET-COOKIE", "c=3");
+		Assert.assertEquals(Arrays.asList("c=3"), headers.getAll("set-cookie"));
+		Assert.assertEquals(3, headers.size());
+		
+		headers.add("Set-Cookie", "d=4");
+		Assert.assertEquals(Arrays.asList("c=3", "d=4"), headers.getAll("set-cookie"));
+		
+		// wrapping replaces all headers
+		headers.wrap(new Header[] { new BasicHeader("X-Other", "two") });
+		Assert.assertEquals(1, headers.size());
+		Assert.assertNull(headers.getFirst("Set-Cookie"));
+		Assert.assertEquals("two", headers.asMap().get("x-other"));
+		
+		headers.wrap(null);
+		Assert.assertTrue(headers.isEmpty());
+		
+		headers.wrap(source);
+		Assert.assertEquals(4, headers.size());
+		
+		// serialization
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(new WebResponseHeaders(source));
+		}
+		
+		try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			WebResponseHeaders read = (WebResponseHeaders) in.readObject();
+			Assert.assertEquals(4, read.size());
+			Assert.assertEquals(Arrays.asList("a=1", "b=2"), read.getAll("Set-Cookie"));
+			Assert.assertEquals("b=2", read.asMap().get("SET-COOKIE"));
+		}
+		
+		// empty
+		WebResponseHeaders empty = new WebResponseHeaders(null);
+		Assert.assertTrue(empty.isEmpty());
+		Assert.assertTrue(empty.asMap().isEmpty());
+		
+		try {
+			empty.getName(0);
+			Assert.assertTrue(false);
+		} catch(IndexOutOfBoundsException e) {
+			Assert.assertTrue(true);
+		}
 	}
 }
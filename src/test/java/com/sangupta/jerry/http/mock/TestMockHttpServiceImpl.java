@@ -30,6 +30,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.sangupta.jerry.constants.HttpMimeType;
+import com.sangupta.jerry.http.JsonStreamIterator;
 import com.sangupta.jerry.http.WebRequestMethod;
 import com.sangupta.jerry.http.WebResponse;
 import com.sangupta.jerry.util.ByteArrayUtils;
@@ -71,6 +72,27 @@ public class TestMockHttpServiceImpl {
 		Assert.assertEquals(RANDOM_STRING, body);
 	}
 	
+	@Test
+	public void testGetJSON() throws IOException {
+		service.setNextResponse(new MockWebResponse("[1, 2, 3]"));
+		int[] values = service.getJSON(SOME_TEST_URL, int[].class);
+		Assert.assertArrayEquals(new int[] { 1, 2, 3 }, values);
+		
+		service.setNextResponse(new MockWebResponse("{1, 2"));
+		Assert.assertNull(service.getJSON(SOME_TEST_URL, int[].class));
+		Assert.assertNull(service.getJSON(SOME_TEST_URL, int[].class));
+		
+		service.setNextResponse(new MockWebResponse("1\n2\n3\n"));
+		int sum = 0;
+		try(JsonStreamIterator<Integer> iterator = service.streamJSON(SOME_TEST_URL, Integer.class)) {
+			while(iterator.hasNext()) {
+				sum += iterator.next();
+			}
+		}
+		
+		Assert.assertEquals(6, sum);
+	}
+	
 	@Test
 	public void testGetResponse() {
 		MockWebResponse response = new MockWebResponse(RANDOM_STRING);